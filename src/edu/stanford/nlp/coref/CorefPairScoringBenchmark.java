@@ -0,0 +1,102 @@
+package edu.stanford.nlp.coref;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+
+import edu.stanford.nlp.coref.data.CorefCluster;
+import edu.stanford.nlp.coref.data.Dictionaries;
+import edu.stanford.nlp.coref.data.Document;
+import edu.stanford.nlp.coref.data.DocumentMaker;
+import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.StringUtils;
+
+/**
+ * Reports how many mention pairs per second the neural coreference
+ * algorithms score on a long document, scoring the candidate antecedents
+ * of each mention together and one at a time.  It also checks that both
+ * find the same clusters.
+ * <br>
+ * Usage: {@code java edu.stanford.nlp.coref.CorefPairScoringBenchmark -file long.txt [-coref.algorithm fastneural] [-iterations n]}
+ * <br>
+ * Any other properties are passed on to the pipeline and the coref system.
+ * The document is annotated once, and only {@link CorefAlgorithm#runCoref} is timed.
+ */
+public class CorefPairScoringBenchmark {
+
+  private CorefPairScoringBenchmark() {} // main method only
+
+  private static Set<Set<Integer>> clusters(Document document) {
+    Set<Set<Integer>> clusters = new HashSet<>();
+    for (CorefCluster cluster : document.corefClusters.values()) {
+      Set<Integer> mentionIds = new HashSet<>();
+      for (Mention mention : cluster.getCorefMentions()) {
+        mentionIds.add(mention.mentionID);
+      }
+      clusters.add(mentionIds);
+    }
+    return clusters;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Properties props = StringUtils.argsToProperties(args);
+    String file = props.getProperty("file");
+    if (file == null) {
+      throw new IllegalArgumentException("A -file with a long document is needed");
+    }
+    props.setProperty("coref.algorithm", props.getProperty("coref.algorithm", "neural"));
+    props.setProperty("annotators", props.getProperty("annotators",
+        "tokenize,ssplit,pos,lemma,ner,depparse,coref.mention"));
+    int iterations = Integer.parseInt(props.getProperty("iterations", "5"));
+
+    Annotation annotation = new Annotation(IOUtils.slurpFile(file));
+    new StanfordCoreNLP(props).annotate(annotation);
+    Dictionaries dictionaries = new Dictionaries(props);
+    DocumentMaker docMaker = new DocumentMaker(props, dictionaries);
+
+    Document document = docMaker.makeDocument(annotation);
+    List<Mention> sortedMentions = CorefUtils.getSortedMentions(document);
+    int pairs = 0;
+    for (List<Integer> candidates : CorefUtils.heuristicFilter(sortedMentions,
+        CorefProperties.maxMentionDistance(props),
+        CorefProperties.maxMentionDistanceWithStringMatch(props)).values()) {
+      pairs += candidates.size();
+    }
+
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%d mentions, %d candidate pairs%n", sortedMentions.size(), pairs));
+    report.append(String.format("%-10s %12s %12s%n", "scoring", "ms/doc", "pairs/sec"));
+    Set<Set<Integer>> expected = null;
+    for (boolean batch : new boolean[] { false, true }) {
+      props.setProperty("coref.neural.batch", Boolean.toString(batch));
+      props.setProperty("coref.fastneural.batch", Boolean.toString(batch));
+      CorefAlgorithm algorithm = CorefAlgorithm.fromProps(props, dictionaries);
+
+      document = docMaker.makeDocument(annotation);
+      algorithm.runCoref(document);  // warms up the JIT
+      Set<Set<Integer>> clusters = clusters(document);
+      if (expected == null) {
+        expected = clusters;
+      } else if ( ! expected.equals(clusters)) {
+        report.append("The clusters found by batch scoring differ from scoring one pair at a time\n");
+      }
+
+      long elapsed = 0;
+      for (int i = 0; i < iterations; i++) {
+        document = docMaker.makeDocument(annotation);
+        long start = System.nanoTime();
+        algorithm.runCoref(document);
+        elapsed += System.nanoTime() - start;
+      }
+      double seconds = elapsed / 1e9 / iterations;
+      report.append(String.format("%-10s %12.1f %12.0f%n", batch ? "batch" : "pair",
+          seconds * 1000, pairs / seconds));
+    }
+    System.out.print(report);
+  }
+
+}
@@ -56,6 +56,20 @@ public class CorefProperties {
     return PropertiesUtils.getBool(props, "coref.removeSingletonClusters", true);
   }
 
+  /**
+   * If positive, coref is run over windows of this many sentences
+   * rather than the whole document at once, to bound its memory use
+   * on very long documents.
+   */
+  public static int windowSize(Properties props) {
+    return PropertiesUtils.getInt(props, "coref.windowSize", 0);
+  }
+
+  /** How many sentences each window shares with the next one */
+  public static int windowOverlap(Properties props) {
+    return PropertiesUtils.getInt(props, "coref.windowOverlap", 10);
+  }
+
   // ---------- Heuristic Mention Filtering ----------
 
   public static int maxMentionDistance(Properties props) {
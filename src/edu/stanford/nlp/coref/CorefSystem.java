@@ -2,7 +2,11 @@ package edu.stanford.nlp.coref;
 
 import java.io.FileOutputStream;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.logging.Logger;
@@ -12,8 +16,18 @@ import edu.stanford.nlp.coref.data.CorefCluster;
 import edu.stanford.nlp.coref.data.Dictionaries;
 import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.DocumentMaker;
+import edu.stanford.nlp.coref.data.DocumentPreprocessor;
+import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.math.NumberMatchingRegex;
 import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.DisjointSet;
+import edu.stanford.nlp.util.FastDisjointSet;
 import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.IntTuple;
+import edu.stanford.nlp.util.Pair;
 import edu.stanford.nlp.util.StringUtils;
 import edu.stanford.nlp.util.logging.Redwood;
 
@@ -26,6 +40,9 @@ public class CorefSystem {
   private final CorefAlgorithm corefAlgorithm;
   private final boolean removeSingletonClusters;
   private final boolean verbose;
+  /** The number of sentences in each window coref is run on, or 0 to run it on the whole document */
+  private final int windowSize;
+  private final int windowOverlap;
 
   public CorefSystem(Properties props) {
     try {
@@ -34,6 +51,9 @@ public class CorefSystem {
       corefAlgorithm = CorefAlgorithm.fromProps(props, dictionaries);
       removeSingletonClusters = CorefProperties.removeSingletonClusters(props);
       verbose = CorefProperties.verbose(props);
+      windowSize = CorefProperties.windowSize(props);
+      windowOverlap = CorefProperties.windowOverlap(props);
+      checkWindows(windowSize, windowOverlap);
     } catch (Exception e) {
       throw new RuntimeException("Error initializing coref system", e);
     }
@@ -41,13 +61,38 @@ public class CorefSystem {
 
   public CorefSystem(DocumentMaker docMaker, CorefAlgorithm corefAlgorithm,
       boolean removeSingletonClusters, boolean verbose) {
+    this(docMaker, corefAlgorithm, removeSingletonClusters, verbose, 0, 0);
+  }
+
+  /**
+   * @param windowSize The number of sentences in each window coref is run on,
+   *                   or 0 to run it on the whole document
+   * @param windowOverlap The number of sentences consecutive windows share
+   */
+  public CorefSystem(DocumentMaker docMaker, CorefAlgorithm corefAlgorithm,
+      boolean removeSingletonClusters, boolean verbose, int windowSize, int windowOverlap) {
+    checkWindows(windowSize, windowOverlap);
     this.docMaker = docMaker;
     this.corefAlgorithm = corefAlgorithm;
     this.removeSingletonClusters = removeSingletonClusters;
     this.verbose = verbose;
+    this.windowSize = windowSize;
+    this.windowOverlap = windowOverlap;
+  }
+
+  private static void checkWindows(int windowSize, int windowOverlap) {
+    if (windowSize > 0 && (windowOverlap < 0 || windowOverlap >= windowSize)) {
+      throw new IllegalArgumentException("coref.windowOverlap must be at least 0 and less than coref.windowSize");
+    }
   }
 
   public void annotate(Annotation ann) {
+    List<CoreMap> sentences = ann.get(CoreAnnotations.SentencesAnnotation.class);
+    if (windowSize > 0 && sentences != null && sentences.size() > windowSize) {
+      annotateInWindows(ann, sentences);
+      return;
+    }
+
     Document document;
     try {
       document = docMaker.makeDocument(ann);
@@ -69,6 +114,222 @@ public class CorefSystem {
     ann.set(CorefCoreAnnotations.CorefChainAnnotation.class, result);
   }
 
+  /**
+   * Runs coref on overlapping windows of sentences, so that the Document,
+   * and whatever the algorithm keeps for it, only ever covers one window
+   * rather than the whole document.  Two mentions are coreferent if some
+   * window found them to be, so chains are joined through the mentions
+   * in the sentences which consecutive windows share.  Before coref is
+   * run on a window, the mentions of those sentences which earlier
+   * windows found to be coreferent are put in one cluster, so the
+   * algorithm continues the chains which reach into the window.
+   * <br>
+   * Besides the annotation itself, only an ID for each mention, the
+   * clusters of those IDs, and the speaker and utterance of each token
+   * are kept from one window to the next.
+   */
+  private void annotateInWindows(Annotation ann, List<CoreMap> sentences) {
+    // the ID each mention would have if coref were run on the whole document
+    Map<Mention, Integer> mentionIds = new IdentityHashMap<>();
+    List<CoreLabel> tokens = new ArrayList<>();
+    int[] sentenceStarts = new int[sentences.size() + 1];
+    for (int i = 0; i < sentences.size(); i++) {
+      CoreMap sentence = sentences.get(i);
+      for (Mention m : sentence.get(CorefCoreAnnotations.CorefMentionsAnnotation.class)) {
+        mentionIds.put(m, mentionIds.size());
+      }
+      tokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+      sentenceStarts[i + 1] = tokens.size();
+    }
+    DisjointSet<Integer> clusters = new FastDisjointSet<>(new HashSet<>(mentionIds.values()));
+    // the ID of each cluster, by the representative of its mention IDs
+    Map<Integer, Integer> clusterIds = Generics.newHashMap();
+    WindowDiscourse discourse = new WindowDiscourse(tokens);
+
+    for (int start = 0; ; start += windowSize - windowOverlap) {
+      int end = Math.min(start + windowSize, sentences.size());
+      discourse.reset(sentenceStarts[start], sentenceStarts[end]);
+      Document document;
+      try {
+        document = docMaker.makeDocument(windowAnnotation(ann, sentences.subList(start, end)));
+      } catch (Exception e) {
+        throw new RuntimeException("Error making document", e);
+      }
+
+      Map<Integer, Mention> clusterMentions = Generics.newHashMap();
+      for (Mention m : CorefUtils.getSortedMentions(document)) {
+        Mention first = clusterMentions.putIfAbsent(clusters.find(mentionIds.get(m)), m);
+        if (first != null) {
+          CorefUtils.mergeCoreferenceClusters(new Pair<>(m.mentionID, first.mentionID), document);
+        }
+      }
+
+      CorefUtils.checkForInterrupt();
+      corefAlgorithm.runCoref(document);
+      CorefUtils.checkForInterrupt();
+
+      for (CorefCluster c : document.corefClusters.values()) {
+        Integer first = null;
+        for (Mention m : c.getCorefMentions()) {
+          int id = mentionIds.get(m);
+          if (first == null) {
+            first = id;
+          } else {
+            clusters.union(first, id);
+          }
+        }
+        // a cluster keeps the ID the algorithm gave it in the last window it was in
+        Mention named = document.predictedMentionsByID.get(c.clusterID);
+        clusterIds.put(clusters.find(first), (named != null) ? mentionIds.get(named) : first);
+      }
+      discourse.keep(document, sentenceStarts[start], sentenceStarts[end], mentionIds);
+      if (end == sentences.size()) {
+        break;
+      }
+    }
+    discourse.set();
+    DocumentPreprocessor.setParagraphAnnotation(sentences);
+
+    // give each mention the ID, sentence and cluster it would have had from the whole document
+    Map<Integer, CorefCluster> corefClusters = Generics.newHashMap();
+    Map<Mention, IntTuple> positions = Generics.newHashMap();
+    for (int i = 0; i < sentences.size(); i++) {
+      List<Mention> mentions = sentences.get(i).get(CorefCoreAnnotations.CorefMentionsAnnotation.class);
+      for (int j = 0; j < mentions.size(); j++) {
+        Mention m = mentions.get(j);
+        m.mentionID = mentionIds.get(m);
+        m.sentNum = i;
+        m.paragraph = m.headWord.get(CoreAnnotations.ParagraphAnnotation.class);
+        m.utter = m.headWord.get(CoreAnnotations.UtteranceAnnotation.class);
+        CorefCluster c = corefClusters.computeIfAbsent(clusters.find(m.mentionID), k -> new CorefCluster(clusterIds.get(k)));
+        m.corefClusterID = c.clusterID;
+        c.corefMentions.add(m);
+        IntTuple position = new IntTuple(2);
+        position.set(0, i);
+        position.set(1, j);
+        positions.put(m, position);
+      }
+    }
+
+    Map<Integer, CorefChain> result = Generics.newHashMap();
+    for (CorefCluster c : corefClusters.values()) {
+      if (removeSingletonClusters && c.size() == 1) {
+        continue;
+      }
+      result.put(c.clusterID, new CorefChain(c, positions));
+    }
+    ann.set(CorefCoreAnnotations.CorefChainAnnotation.class, result);
+  }
+
+  /**
+   * The speaker and utterance of each token of a document which coref is
+   * run on in windows.  Preprocessing a window sets these for each of its
+   * tokens.  Utterances are numbered from the start of the window, and
+   * speakers can be named by the IDs of the window's mentions.  So each
+   * window starts from the speakers and utterances the tokens came with,
+   * and each token keeps what the first window to cover it found.  Those
+   * values are renumbered to continue the windows before, and the mention
+   * IDs are changed to document IDs.
+   */
+  private static class WindowDiscourse {
+    private final List<CoreLabel> tokens;
+    private final String[] givenSpeakers;
+    private final Integer[] givenUtterances;
+    private final String[] speakers;
+    private final int[] utterances;
+    /** The number of tokens, from the start, whose speaker and utterance are kept */
+    private int kept = 0;
+    private int maxUtterance = 0;
+
+    WindowDiscourse(List<CoreLabel> tokens) {
+      this.tokens = tokens;
+      givenSpeakers = new String[tokens.size()];
+      givenUtterances = new Integer[tokens.size()];
+      for (int i = 0; i < tokens.size(); i++) {
+        givenSpeakers[i] = tokens.get(i).get(CoreAnnotations.SpeakerAnnotation.class);
+        givenUtterances[i] = tokens.get(i).get(CoreAnnotations.UtteranceAnnotation.class);
+      }
+      speakers = new String[tokens.size()];
+      utterances = new int[tokens.size()];
+    }
+
+    /** Give the tokens from index from to index to the speakers and utterances they came with */
+    void reset(int from, int to) {
+      for (int i = from; i < to; i++) {
+        set(tokens.get(i), givenSpeakers[i], givenUtterances[i]);
+      }
+    }
+
+    /** Keep what preprocessing document, a window of the tokens from index from to index to, found */
+    void keep(Document document, int from, int to, Map<Mention, Integer> mentionIds) {
+      // the tokens an earlier window covered end with the same utterances there
+      int lastUtterance = 0;
+      for (int i = from; i < kept; i++) {
+        lastUtterance = Math.max(lastUtterance, tokens.get(i).get(CoreAnnotations.UtteranceAnnotation.class));
+      }
+      int shift = maxUtterance - lastUtterance;
+      // in an article, utterance 0 is everything outside quotations
+      boolean article = document.docType == Document.DocType.ARTICLE;
+      for (int i = kept; i < to; i++) {
+        CoreLabel token = tokens.get(i);
+        int utterance = token.get(CoreAnnotations.UtteranceAnnotation.class);
+        utterances[i] = (article && utterance == 0) ? 0 : utterance + shift;
+        maxUtterance = Math.max(maxUtterance, utterances[i]);
+
+        String speaker = token.get(CoreAnnotations.SpeakerAnnotation.class);
+        if (speaker != null && ! speaker.equals(givenSpeakers[i])) {
+          if (speaker.startsWith("PER") && NumberMatchingRegex.isDecimalInteger(speaker.substring(3))) {
+            // the speaker DocumentPreprocessor names for an utterance
+            int speakerUtterance = Integer.parseInt(speaker.substring(3));
+            speaker = "PER" + ((article && speakerUtterance == 0) ? 0 : speakerUtterance + shift);
+          } else if (NumberMatchingRegex.isDecimalInteger(speaker)) {
+            Mention m = document.predictedMentionsByID.get(Integer.parseInt(speaker));
+            if (m != null) {
+              speaker = Integer.toString(mentionIds.get(m));
+            }
+          }
+        }
+        speakers[i] = speaker;
+      }
+      kept = to;
+    }
+
+    /** Give all the tokens the speakers and utterances kept for them */
+    void set() {
+      for (int i = 0; i < tokens.size(); i++) {
+        set(tokens.get(i), speakers[i], utterances[i]);
+      }
+    }
+
+    private static void set(CoreLabel token, String speaker, Integer utterance) {
+      if (speaker == null) {
+        token.remove(CoreAnnotations.SpeakerAnnotation.class);
+      } else {
+        token.set(CoreAnnotations.SpeakerAnnotation.class, speaker);
+      }
+      if (utterance == null) {
+        token.remove(CoreAnnotations.UtteranceAnnotation.class);
+      } else {
+        token.set(CoreAnnotations.UtteranceAnnotation.class, utterance);
+      }
+    }
+  }
+
+  /** An annotation of some of the sentences of a document, with the document's information */
+  private static Annotation windowAnnotation(Annotation ann, List<CoreMap> sentences) {
+    Annotation window = new Annotation(ann.get(CoreAnnotations.TextAnnotation.class));
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (CoreMap sentence : sentences) {
+      tokens.addAll(sentence.get(CoreAnnotations.TokensAnnotation.class));
+    }
+    window.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    window.set(CoreAnnotations.SentencesAnnotation.class, new ArrayList<>(sentences));
+    window.set(CoreAnnotations.DocIDAnnotation.class, ann.get(CoreAnnotations.DocIDAnnotation.class));
+    window.set(CoreAnnotations.DocDateAnnotation.class, ann.get(CoreAnnotations.DocDateAnnotation.class));
+    window.set(CoreAnnotations.UseMarkedDiscourseAnnotation.class, ann.get(CoreAnnotations.UseMarkedDiscourseAnnotation.class));
+    return window;
+  }
+
   public void runOnConll(Properties props) throws Exception {
     String baseName = CorefProperties.conllOutputPath(props) +
         Calendar.getInstance().getTime().toString().replaceAll("\\s", "-").replaceAll(":", "-");
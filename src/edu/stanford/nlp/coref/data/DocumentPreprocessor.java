@@ -436,9 +436,25 @@ public class DocumentPreprocessor  {
 
   /** Set paragraph index */
   private static void setParagraphAnnotation(Document doc) {
+    int paragraphIndex = setParagraphAnnotation(doc.annotation.get(CoreAnnotations.SentencesAnnotation.class));
+    for(List<Mention> l : doc.predictedMentions) {
+      for(Mention m : l){
+        m.paragraph = m.headWord.get(CoreAnnotations.ParagraphAnnotation.class);
+      }
+    }
+    doc.numParagraph = paragraphIndex;
+  }
+
+  /**
+   * Set the paragraph index of each token of the sentences, counting from 1.
+   * Tokens without character offsets get -1.
+   *
+   * @return The number of paragraphs
+   */
+  public static int setParagraphAnnotation(List<CoreMap> sentences) {
     int paragraphIndex = 0;
     int previousOffset = -10;
-    for(CoreMap sent : doc.annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+    for(CoreMap sent : sentences) {
       for(CoreLabel w : sent.get(CoreAnnotations.TokensAnnotation.class)) {
         if(w.containsKey(CoreAnnotations.CharacterOffsetBeginAnnotation.class)) {
           if(w.get(CoreAnnotations.CharacterOffsetBeginAnnotation.class) > previousOffset+2) paragraphIndex++;
@@ -449,12 +465,7 @@ public class DocumentPreprocessor  {
         }
       }
     }
-    for(List<Mention> l : doc.predictedMentions) {
-      for(Mention m : l){
-        m.paragraph = m.headWord.get(CoreAnnotations.ParagraphAnnotation.class);
-      }
-    }
-    doc.numParagraph = paragraphIndex;
+    return paragraphIndex;
   }
 
   /** Process discourse information */
@@ -1,9 +1,12 @@
 package edu.stanford.nlp.coref.fastneural;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import edu.stanford.nlp.coref.CorefAlgorithm;
 import edu.stanford.nlp.coref.CorefProperties;
@@ -41,6 +44,7 @@ public class FastNeuralCorefAlgorithm implements CorefAlgorithm {
   private final double greedyness;
   private final int maxMentionDistance;
   private final int maxMentionDistanceWithStringMatch;
+  private final boolean batchScoring;
   private final FeatureExtractor featureExtractor;
   private final FastNeuralCorefModel model;
 
@@ -48,6 +52,7 @@ public class FastNeuralCorefAlgorithm implements CorefAlgorithm {
     greedyness = FastNeuralCorefProperties.greedyness(props);
     maxMentionDistance = CorefProperties.maxMentionDistance(props);
     maxMentionDistanceWithStringMatch = CorefProperties.maxMentionDistanceWithStringMatch(props);
+    batchScoring = FastNeuralCorefProperties.batchScoring(props);
     featureExtractor = new FeatureExtractor(props, dictionaries, null,
         StatisticalCorefProperties.wordCountsPath(props));
     FastNeuralCorefModel loadedModel = IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(
@@ -69,6 +74,54 @@ public class FastNeuralCorefAlgorithm implements CorefAlgorithm {
 
     Compressor<String> compressor = new Compressor<>();
     DocumentExamples examples = featureExtractor.extract(0, document, mentionPairs, compressor);
+    Counter<Pair<Integer, Integer>> pairwiseScores = batchScoring ?
+        scoreByAnaphor(document, examples, compressor, mentionToCandidateAntecedents.keySet()) :
+        scoreByPair(document, examples, compressor, mentionToCandidateAntecedents.keySet());
+
+    // Link each mention to the highest-scoring candidate antecedent
+    for (Map.Entry<Integer, List<Integer>> e : mentionToCandidateAntecedents.entrySet()) {
+      int antecedent = -1;
+      int anaphor = e.getKey();
+      double bestScore = pairwiseScores.getCount(new Pair<>(-1, anaphor)) - 50 * (greedyness - 0.5);
+      for (int ca : e.getValue()) {
+        double score = pairwiseScores.getCount(new Pair<>(ca, anaphor));
+        if (score > bestScore) {
+          bestScore = score;
+          antecedent = ca;
+        }
+      }
+      if (antecedent > 0) {
+        CorefUtils.mergeCoreferenceClusters(new Pair<>(antecedent, anaphor), document);
+      }
+    }
+  }
+
+  /** Scores the candidate antecedents of each anaphor together */
+  private Counter<Pair<Integer, Integer>> scoreByAnaphor(Document document,
+      DocumentExamples examples, Compressor<String> compressor, Set<Integer> anaphorIds) {
+    Map<Integer, List<Example>> pairsByAnaphor = new HashMap<>();
+    for (Example mentionPair : examples.examples) {
+      pairsByAnaphor.computeIfAbsent(mentionPair.mentionId2, k -> new ArrayList<>()).add(mentionPair);
+    }
+    FastNeuralCorefModel.DocumentScorer scorer = model.documentScorer(document, examples, compressor);
+    Counter<Pair<Integer, Integer>> pairwiseScores = new ClassicCounter<>();
+    for (int anaphorId : anaphorIds) {
+      if (Thread.interrupted()) {  // Allow interrupting
+        throw new RuntimeInterruptedException();
+      }
+      List<Example> pairs = pairsByAnaphor.getOrDefault(anaphorId, Collections.emptyList());
+      double[] scores = scorer.score(anaphorId, pairs);
+      pairwiseScores.incrementCount(new Pair<>(-1, anaphorId), scores[0]);
+      for (int i = 0; i < pairs.size(); i++) {
+        pairwiseScores.incrementCount(new Pair<>(pairs.get(i).mentionId1, anaphorId), scores[i + 1]);
+      }
+    }
+    return pairwiseScores;
+  }
+
+  /** Scores each mention pair separately */
+  private Counter<Pair<Integer, Integer>> scoreByPair(Document document,
+      DocumentExamples examples, Compressor<String> compressor, Set<Integer> anaphorIds) {
     Counter<Pair<Integer, Integer>> pairwiseScores = new ClassicCounter<>();
     // We cache representations for mentions so we compute them O(n) rather than O(n^2) times
     Map<Integer, SimpleMatrix> antecedentCache = new HashMap<>();
@@ -91,7 +144,7 @@ public class FastNeuralCorefAlgorithm implements CorefAlgorithm {
           ));
     }
     // Score each mention for anaphoricity
-    for (int anaphorId : mentionToCandidateAntecedents.keySet()) {
+    for (int anaphorId : anaphorIds) {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
       }
@@ -105,22 +158,6 @@ public class FastNeuralCorefAlgorithm implements CorefAlgorithm {
               antecedentCache,
               anaphorCache));
     }
-
-    // Link each mention to the highest-scoring candidate antecedent
-    for (Map.Entry<Integer, List<Integer>> e : mentionToCandidateAntecedents.entrySet()) {
-      int antecedent = -1;
-      int anaphor = e.getKey();
-      double bestScore = pairwiseScores.getCount(new Pair<>(-1, anaphor)) - 50 * (greedyness - 0.5);
-      for (int ca : e.getValue()) {
-        double score = pairwiseScores.getCount(new Pair<>(ca, anaphor));
-        if (score > bestScore) {
-          bestScore = score;
-          antecedent = ca;
-        }
-      }
-      if (antecedent > 0) {
-        CorefUtils.mergeCoreferenceClusters(new Pair<>(antecedent, anaphor), document);
-      }
-    }
+    return pairwiseScores;
   }
 }
@@ -7,9 +7,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import edu.stanford.nlp.coref.data.Document;
 import edu.stanford.nlp.coref.data.Mention;
 import edu.stanford.nlp.coref.neural.CategoricalFeatureExtractor;
 import edu.stanford.nlp.coref.neural.EmbeddingExtractor;
+import edu.stanford.nlp.coref.statistical.CompressedFeatureVector;
+import edu.stanford.nlp.coref.statistical.Compressor;
+import edu.stanford.nlp.coref.statistical.DocumentExamples;
+import edu.stanford.nlp.coref.statistical.Example;
 import edu.stanford.nlp.io.IOUtils;
 import edu.stanford.nlp.neural.Embedding;
 import edu.stanford.nlp.neural.NeuralUtils;
@@ -94,6 +99,128 @@ public class FastNeuralCorefModel implements Serializable {
     return pairVector.elementSum();
   }
 
+  /**
+   * Scores the mention pairs of a document, reading the features of its
+   * mentions and pairs from the {@link DocumentExamples} that were made
+   * for it with {@code compressor}.
+   */
+  public DocumentScorer documentScorer(Document document, DocumentExamples examples,
+      Compressor<String> compressor) {
+    return new DocumentScorer(document, examples, compressor);
+  }
+
+  /**
+   * Scores all of the candidate antecedents of an anaphor together, as
+   * {@link #score} scores them one at a time.  The representation of each
+   * mention is made once.  The features are read straight from their
+   * compressed vectors, without a Counter for each pair, into a matrix
+   * with a column for each candidate which is kept from one anaphor to
+   * the next, and each layer of the network is one matrix multiply.
+   */
+  public class DocumentScorer {
+    private final Document document;
+    private final DocumentExamples examples;
+    /** The index in the model of each feature of the compressor, or -1 */
+    private final int[] pairFeatureIndex;
+    private final int[] mentionFeatureIndex;
+    private final Map<Integer, SimpleMatrix> antecedentCache = new HashMap<>();
+    private final Map<Integer, SimpleMatrix> anaphorCache = new HashMap<>();
+    private final SimpleMatrix pairFeatures;
+
+    private DocumentScorer(Document document, DocumentExamples examples,
+        Compressor<String> compressor) {
+      this.document = document;
+      this.examples = examples;
+      Map<String, Integer> index = compressor.getIndex();
+      pairFeatureIndex = new int[index.size()];
+      mentionFeatureIndex = new int[index.size()];
+      for (Map.Entry<String, Integer> feature : index.entrySet()) {
+        pairFeatureIndex[feature.getValue()] = pairFeatureIds.getOrDefault(feature.getKey(), -1);
+        mentionFeatureIndex[feature.getValue()] = mentionFeatureIds.getOrDefault(feature.getKey(), -1);
+      }
+      pairFeatures = new SimpleMatrix(pairFeatureIds.size() + 23, 1);
+    }
+
+    /**
+     * The scores of the anaphor with each of the pairs, which all have it
+     * as their second mention, after the score of it having no antecedent.
+     */
+    public double[] score(int anaphorId, List<Example> pairs) {
+      int numColumns = pairs.size() + 1;
+      Mention anaphor = document.predictedMentionsByID.get(anaphorId);
+      SimpleMatrix anaphorVector = anaphorCache.computeIfAbsent(anaphorId,
+          id -> mentionVector(anaphor, anaphorKernel, anaphorBias));
+
+      pairFeatures.reshape(pairFeatures.numRows(), numColumns);
+      pairFeatures.zero();
+      List<SimpleMatrix> antecedentVectors = new ArrayList<>(numColumns);
+      antecedentVectors.add(NARepresentation);
+      for (int i = 0; i < pairs.size(); i++) {
+        Example pair = pairs.get(i);
+        Mention antecedent = document.predictedMentionsByID.get(pair.mentionId1);
+        antecedentVectors.add(antecedentCache.computeIfAbsent(pair.mentionId1,
+            id -> mentionVector(antecedent, antecedentKernel, antecedentBias)));
+        int col = i + 1;
+        CompressedFeatureVector features = pair.pairwiseFeatures;
+        for (int j = 0; j < features.keys.size(); j++) {
+          int row = pairFeatureIndex[features.keys.get(j)];
+          if (row >= 0) {
+            pairFeatures.set(row, col, features.values.get(j));
+          }
+        }
+        int row = pairFeatureIds.size();
+        row = setColumn(col, row,
+            CategoricalFeatureExtractor.encodeDistance(anaphor.sentNum - antecedent.sentNum));
+        row = setColumn(col, row,
+            CategoricalFeatureExtractor.encodeDistance(anaphor.mentionNum - antecedent.mentionNum - 1));
+        pairFeatures.set(row, col, antecedent.sentNum == anaphor.sentNum &&
+            antecedent.endIndex > anaphor.startIndex ? 1 : 0);
+      }
+
+      SimpleMatrix pairFeaturesVectors = pairFeaturesKernel.mult(pairFeatures);
+      int antecedentSize = NARepresentation.numRows();
+      int anaphorSize = anaphorVector.numRows();
+      SimpleMatrix pairVectors = new SimpleMatrix(
+          antecedentSize + anaphorSize + pairFeaturesVectors.numRows(), numColumns);
+      for (int col = 0; col < numColumns; col++) {
+        SimpleMatrix antecedentVector = antecedentVectors.get(col);
+        for (int row = 0; row < antecedentSize; row++) {
+          pairVectors.set(row, col, Math.max(0, antecedentVector.get(row)));
+        }
+        for (int row = 0; row < anaphorSize; row++) {
+          pairVectors.set(antecedentSize + row, col, Math.max(0, anaphorVector.get(row)));
+        }
+        for (int row = 0; row < pairFeaturesVectors.numRows(); row++) {
+          pairVectors.set(antecedentSize + anaphorSize + row, col,
+              Math.max(0, pairFeaturesVectors.get(row, col) + pairFeaturesBias.get(row)));
+        }
+      }
+      return NeuralUtils.feedforwardColumnSums(pairVectors, networkLayers);
+    }
+
+    private int setColumn(int col, int row, SimpleMatrix values) {
+      for (int i = 0; i < values.getNumElements(); i++) {
+        pairFeatures.set(row++, col, values.get(i));
+      }
+      return row;
+    }
+
+    private SimpleMatrix mentionVector(Mention mention, SimpleMatrix kernel, SimpleMatrix bias) {
+      SimpleMatrix featureVector = new SimpleMatrix(mentionFeatureIds.size(), 1);
+      CompressedFeatureVector features = examples.mentionFeatures.get(mention.mentionID);
+      for (int i = 0; i < features.keys.size(); i++) {
+        int id = mentionFeatureIndex[features.keys.get(i)];
+        if (id >= 0) {
+          featureVector.set(id, features.values.get(i));
+        }
+      }
+      return kernel
+          .mult(NeuralUtils.concatenate(
+              embeddingExtractor.getMentionEmbeddingsForFast(mention), featureVector))
+          .plus(bias);
+    }
+  }
+
   private SimpleMatrix makeFeatureVector(Counter<String> features, Map<String, Integer> featureIds) {
     SimpleMatrix featureVector = new SimpleMatrix(featureIds.size(), 1);
     for (Map.Entry<String, Double> feature : features.entrySet()) {
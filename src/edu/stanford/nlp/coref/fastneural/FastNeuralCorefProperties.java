@@ -13,6 +13,11 @@ public class FastNeuralCorefProperties {
     return PropertiesUtils.getDouble(props, "coref.fastneural.greedyness", 0.5);
   }
 
+  /** Whether to score all of the candidate antecedents of a mention together, rather than one at a time */
+  public static boolean batchScoring(Properties props) {
+    return PropertiesUtils.getBool(props, "coref.fastneural.batch", true);
+  }
+
   public static String modelPath(Properties props) {
     return PropertiesUtils.getString(props, "coref.fastneural.modelPath",
         "edu/stanford/nlp/models/coref/fastneural/fast-english-model.ser.gz");
@@ -49,6 +49,16 @@ public class CategoricalFeatureExtractor {
 
   public SimpleMatrix getPairFeatures(Pair<Integer, Integer> pair, Document document,
       Map<Integer, List<Mention>> mentionsByHeadIndex) {
+    return getPairFeatures(pair, document, mentionsByHeadIndex, new HashMap<>());
+  }
+
+  /**
+   * As {@link #getPairFeatures(Pair, Document, Map)}, keeping the features of each mention
+   * in {@code mentionFeatures} by mention ID, so they are made once per mention rather than
+   * once per pair.
+   */
+  public SimpleMatrix getPairFeatures(Pair<Integer, Integer> pair, Document document,
+      Map<Integer, List<Mention>> mentionsByHeadIndex, Map<Integer, SimpleMatrix> mentionFeatures) {
     Mention m1 = document.predictedMentionsByID.get(pair.first);
     Mention m2 = document.predictedMentionsByID.get(pair.second);
     List<Integer> featureVals = pairwiseFeatures(document, m1, m2, dictionaries, conll);
@@ -61,8 +71,10 @@ public class CategoricalFeatureExtractor {
         encodeDistance(m2.mentionNum - m1.mentionNum - 1),
         new SimpleMatrix(new double[][] {{
           m1.sentNum == m2.sentNum && m1.endIndex > m2.startIndex ? 1 : 0}}),
-        getMentionFeatures(m1, document, mentionsByHeadIndex),
-        getMentionFeatures(m2, document, mentionsByHeadIndex),
+        mentionFeatures.computeIfAbsent(m1.mentionID,
+            k -> getMentionFeatures(m1, document, mentionsByHeadIndex)),
+        mentionFeatures.computeIfAbsent(m2.mentionID,
+            k -> getMentionFeatures(m2, document, mentionsByHeadIndex)),
         encodeGenre(document));
 
     return features;
@@ -39,6 +39,7 @@ public class NeuralCorefAlgorithm implements CorefAlgorithm {
   private final double greedyness;
   private final int maxMentionDistance;
   private final int maxMentionDistanceWithStringMatch;
+  private final boolean batchScoring;
 
   private final CategoricalFeatureExtractor featureExtractor;
   private final EmbeddingExtractor embeddingExtractor;
@@ -48,6 +49,7 @@ public class NeuralCorefAlgorithm implements CorefAlgorithm {
     greedyness = NeuralCorefProperties.greedyness(props);
     maxMentionDistance = CorefProperties.maxMentionDistance(props);
     maxMentionDistanceWithStringMatch = CorefProperties.maxMentionDistanceWithStringMatch(props);
+    batchScoring = NeuralCorefProperties.batchScoring(props);
 
     model = IOUtils.readObjectAnnouncingTimingFromURLOrClasspathOrFileSystem(
         log, "Loading coref model", NeuralCorefProperties.modelPath(props));
@@ -83,14 +85,19 @@ public class NeuralCorefAlgorithm implements CorefAlgorithm {
 
     Map<Integer, List<Integer>> mentionToCandidateAntecedents = CorefUtils.heuristicFilter(sortedMentions,
         maxMentionDistance, maxMentionDistanceWithStringMatch);
+    Map<Integer, SimpleMatrix> mentionFeatures = new HashMap<>();
     for (Map.Entry<Integer, List<Integer>> e : mentionToCandidateAntecedents.entrySet()) {
       double bestScore = anaphoricityScores.getCount(e.getKey()) - 50 * (greedyness - 0.5);
       int m = e.getKey();
+      List<Integer> candidates = e.getValue();
+      double[] scores = batchScoring ? getPairwiseScores(m, candidates, document,
+          mentionsByHeadIndex, antecedentEmbeddings, anaphorEmbeddings, mentionFeatures) : null;
       Integer antecedent = null;
-      for (int ca : e.getValue()) {
-        double score = model.getPairwiseScore(antecedentEmbeddings.get(ca),
+      for (int i = 0; i < candidates.size(); i++) {
+        int ca = candidates.get(i);
+        double score = batchScoring ? scores[i] : model.getPairwiseScore(antecedentEmbeddings.get(ca),
             anaphorEmbeddings.get(m), featureExtractor.getPairFeatures(
-                  new Pair<>(ca, m), document, mentionsByHeadIndex));
+                  new Pair<>(ca, m), document, mentionsByHeadIndex, mentionFeatures));
         if (score > bestScore) {
           bestScore = score;
           antecedent = ca;
@@ -102,4 +109,26 @@ public class NeuralCorefAlgorithm implements CorefAlgorithm {
       }
     }
   }
+
+  /** The pairwise scores of the anaphor with each of its candidate antecedents, all made together */
+  private double[] getPairwiseScores(int m, List<Integer> candidates, Document document,
+      Map<Integer, List<Mention>> mentionsByHeadIndex, Map<Integer, SimpleMatrix> antecedentEmbeddings,
+      Map<Integer, SimpleMatrix> anaphorEmbeddings, Map<Integer, SimpleMatrix> mentionFeatures) {
+    if (candidates.isEmpty()) {
+      return new double[0];
+    }
+    List<SimpleMatrix> candidateEmbeddings = new ArrayList<>(candidates.size());
+    SimpleMatrix pairFeatures = null;
+    for (int i = 0; i < candidates.size(); i++) {
+      int ca = candidates.get(i);
+      candidateEmbeddings.add(antecedentEmbeddings.get(ca));
+      SimpleMatrix features = featureExtractor.getPairFeatures(
+          new Pair<>(ca, m), document, mentionsByHeadIndex, mentionFeatures);
+      if (pairFeatures == null) {
+        pairFeatures = new SimpleMatrix(features.numRows(), candidates.size());
+      }
+      pairFeatures.insertIntoThis(0, i, features);
+    }
+    return model.getPairwiseScores(candidateEmbeddings, anaphorEmbeddings.get(m), pairFeatures);
+  }
 }
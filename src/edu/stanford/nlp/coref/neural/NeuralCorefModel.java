@@ -117,6 +117,26 @@ public class NeuralCorefModel implements Serializable {
     return score(firstLayerOutput, pairwiseModel);
   }
 
+  /**
+   * The pairwise scores of an anaphor with several candidate antecedents,
+   * as {@link #getPairwiseScore} gives them one at a time.  The pair
+   * features have one column for each candidate, so that each layer of
+   * the network is one matrix multiply for all of the candidates.
+   */
+  public double[] getPairwiseScores(List<SimpleMatrix> antecedentEmbeddings,
+      SimpleMatrix anaphorEmbedding, SimpleMatrix pairFeatures) {
+    SimpleMatrix firstLayerOutput = pairFeaturesMatrix.mult(pairFeatures);
+    for (int col = 0; col < antecedentEmbeddings.size(); col++) {
+      SimpleMatrix antecedentEmbedding = antecedentEmbeddings.get(col);
+      for (int row = 0; row < firstLayerOutput.numRows(); row++) {
+        double value = antecedentEmbedding.get(row) + anaphorEmbedding.get(row)
+            + firstLayerOutput.get(row, col) + pairwiseFirstLayerBias.get(row);
+        firstLayerOutput.set(row, col, Math.max(0, value));
+      }
+    }
+    return NeuralUtils.feedforwardColumnSums(firstLayerOutput, pairwiseModel);
+  }
+
   private static double score(SimpleMatrix features, List<SimpleMatrix> weights) {
     for (int i = 0; i < weights.size(); i += 2) {
       features = weights.get(i).mult(features).plus(weights.get(i + 1));
@@ -15,6 +15,11 @@ public class NeuralCorefProperties {
     return PropertiesUtils.getDouble(props, "coref.neural.greedyness", 0.5);
   }
 
+  /** Whether to score all of the candidate antecedents of a mention together, rather than one at a time */
+  public static boolean batchScoring(Properties props) {
+    return PropertiesUtils.getBool(props, "coref.neural.batch", true);
+  }
+
   public static String modelPath(Properties props) {
     String defaultPath = "edu/stanford/nlp/models/coref/neural/" +
         (CorefProperties.getLanguage(props) == Locale.CHINESE ? "chinese" : "english") +
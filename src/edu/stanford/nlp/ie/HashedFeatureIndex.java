@@ -0,0 +1,131 @@
+package edu.stanford.nlp.ie;
+
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Maps 64 bit hashes of feature names to their indices in a feature
+ * {@link Index}, so that a feature can be looked up from its hash without
+ * ever building the feature's String.
+ * <br>
+ * The hash is 64 bit FNV-1a over the chars of the name.  It can be
+ * computed a piece at a time with {@link #append(long, String)} and
+ * {@link #append(long, char)}, starting from {@link #START}, and gives
+ * the same value as hashing the concatenated String with
+ * {@link #hash(String)}.  This is what lets an index built from the
+ * Strings of an existing model be used with features that are only
+ * ever hashed.
+ * <br>
+ * Two names with the same hash would be indistinguishable.  With 64
+ * bits this is very unlikely even for millions of features; if it does
+ * happen the name which comes first in the index wins, and a warning
+ * is logged.
+ */
+public class HashedFeatureIndex {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(HashedFeatureIndex.class);
+
+  /** The hash of the empty String */
+  public static final long START = 0xcbf29ce484222325L;
+
+  private static final long PRIME = 0x100000001b3L;
+
+  /** Marks an empty slot; the values are stored as index + 1 */
+  private static final int EMPTY = 0;
+
+  private final long[] keys;
+  private final int[] values;
+  private final int mask;
+  private final int size;
+  private final Index<String> source;
+
+  /**
+   * Hash all the Strings of an index.
+   *
+   * @param index The index to hash.  It should not change afterwards.
+   */
+  public HashedFeatureIndex(Index<String> index) {
+    this.source = index;
+    this.size = index.size();
+    int capacity = Integer.highestOneBit(Math.max(16, size * 2 - 1)) << 1;
+    keys = new long[capacity];
+    values = new int[capacity];
+    mask = capacity - 1;
+
+    int collisions = 0;
+    for (int i = 0; i < size; i++) {
+      long h = hash(index.get(i));
+      int slot = slot(h);
+      while (values[slot] != EMPTY && keys[slot] != h) {
+        slot = (slot + 1) & mask;
+      }
+      if (values[slot] != EMPTY) {
+        collisions++;
+        continue;
+      }
+      keys[slot] = h;
+      values[slot] = i + 1;
+    }
+    if (collisions > 0) {
+      log.warn("HashedFeatureIndex: " + collisions + " features have the same hash as an earlier feature and can't be told apart");
+    }
+  }
+
+  /** Add a String to a hash */
+  public static long append(long h, String s) {
+    if (s == null) {
+      s = "null";  // as StringBuilder does
+    }
+    for (int i = 0, len = s.length(); i < len; i++) {
+      h = (h ^ s.charAt(i)) * PRIME;
+    }
+    return h;
+  }
+
+  /** Add a char to a hash */
+  public static long append(long h, char c) {
+    return (h ^ c) * PRIME;
+  }
+
+  /** The hash of a whole String */
+  public static long hash(String s) {
+    return append(START, s);
+  }
+
+  private int slot(long h) {
+    // mix the high bits in, since FNV's low bits alone are weak
+    h ^= h >>> 29;
+    h *= 0xbf58476d1ce4e5b9L;
+    h ^= h >>> 32;
+    return (int) h & mask;
+  }
+
+  /**
+   * The index of the feature with this hash, or -1 if there is none.
+   */
+  public int indexOf(long h) {
+    int slot = slot(h);
+    while (true) {
+      int value = values[slot];
+      if (value == EMPTY) {
+        return -1;
+      }
+      if (keys[slot] == h) {
+        return value - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+  }
+
+  /** The number of features in the index this was built from */
+  public int size() {
+    return size;
+  }
+
+  /** Whether this was built from the given index, as it is now */
+  public boolean isFor(Index<String> index) {
+    return source == index && size == index.size();
+  }
+
+}
@@ -31,6 +31,7 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
@@ -399,7 +400,28 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
   @Override
   public Collection<String> getCliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique) {
     Set<String> features = Generics.newHashSet(100);
-    FeatureCollector c = new FeatureCollector(features);
+    collectCliqueFeatures(cInfo, loc, clique, new FeatureCollector(features));
+    return features;
+  }
+
+  /**
+   * Extracts the features at a certain index as their indices in a feature index,
+   * without building their Strings.  The result is the same as looking up each
+   * of the Strings of {@link #getCliqueFeatures} in the index the hashes come from,
+   * and leaving out the ones which aren't there.
+   *
+   * @param cInfo The complete data set as a List of WordInfo
+   * @param loc  The index at which to extract features.
+   * @param index The hashes of the known features
+   * @return The indices of the known features, in increasing order
+   */
+  public int[] getCliqueFeatureIds(PaddedList<IN> cInfo, int loc, Clique clique, HashedFeatureIndex index) {
+    FeatureCollector c = new FeatureCollector(index);
+    collectCliqueFeatures(cInfo, loc, clique, c);
+    return c.ids();
+  }
+
+  private void collectCliqueFeatures(PaddedList<IN> cInfo, int loc, Clique clique, FeatureCollector c) {
     String domain = cInfo.get(0).get(CoreAnnotations.DomainAnnotation.class);
 
 //    log.info(doFE+"\t"+domain);
@@ -430,9 +452,6 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     } else {
       throw new IllegalArgumentException("Unknown clique: " + clique);
     }
-
-    // log.info(StringUtils.join(features,"\n")+"\n");
-    return features;
   }
 
   /**
@@ -444,6 +463,10 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
    * This class is <em>not thread safe</em>, but you are unlikely to want to parallelize
    * at this low level anyway.
    *
+   * If made with a {@link HashedFeatureIndex}, the features are not built at all: the
+   * hash of each feature name is computed as it is appended to, and the feature is
+   * looked up by its hash.
+   *
    * @author Erich Schubert
    */
   protected static class FeatureCollector {
@@ -459,6 +482,16 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     /** Output collection */
     Set<String> collection;
 
+    /** The features to look hashes up in, or null if building Strings */
+    private final HashedFeatureIndex hashedIndex;
+
+    /** The hash of the current feature name so far */
+    private long hash;
+
+    /** The indices of the features found so far */
+    private int[] ids;
+    private int numIds;
+
     /**
      * Constructor
      *
@@ -466,6 +499,17 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
      */
     public FeatureCollector(Set<String> output) {
       this.collection = output;
+      this.hashedIndex = null;
+    }
+
+    /**
+     * Constructor for collecting feature indices instead of Strings.
+     *
+     * @param index The features to look up
+     */
+    public FeatureCollector(HashedFeatureIndex index) {
+      this.hashedIndex = index;
+      this.ids = new int[100];
     }
 
     /**
@@ -502,6 +546,10 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
      * @return this
      */
     public FeatureCollector build() {
+      if (hashedIndex != null) {
+        hash = HashedFeatureIndex.START;
+        return this;
+      }
       assert buf.length() == 0 : "Previous feature not added? " + buf.toString();
       buf.setLength(0);
       return this;
@@ -514,7 +562,11 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
      * @return this
      */
     public FeatureCollector append(String s) {
-      buf.append(s);
+      if (hashedIndex != null) {
+        hash = HashedFeatureIndex.append(hash, s);
+      } else {
+        buf.append(s);
+      }
       return this;
     }
 
@@ -525,7 +577,11 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
      * @return this
      */
     public FeatureCollector append(char c) {
-      buf.append(c);
+      if (hashedIndex != null) {
+        hash = HashedFeatureIndex.append(hash, c);
+      } else {
+        buf.append(c);
+      }
       return this;
     }
 
@@ -535,14 +591,22 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
      * @return this
      */
     public FeatureCollector dash() {
-      buf.append('-');
-      return this;
+      return append('-');
     }
 
     /**
      * End the current feature, and add with suffixes.
      */
     public void add() {
+      if (hashedIndex != null) {
+        long h = HashedFeatureIndex.append(hash, '|');
+        addId(hashedIndex.indexOf(HashedFeatureIndex.append(h, suffix)));
+        if (domain != null) {
+          h = HashedFeatureIndex.append(HashedFeatureIndex.append(h, domain), '-');
+          addId(hashedIndex.indexOf(HashedFeatureIndex.append(h, suffix)));
+        }
+        return;
+      }
       final int l = buf.append('|').length();
       collection.add(intern(buf.append(suffix).toString()));
       if (domain != null) {
@@ -560,6 +624,31 @@ public class NERFeatureFactory<IN extends CoreLabel> extends FeatureFactory<IN>
     public void add(String feat) {
       build().append(feat).add();
     }
+
+    private void addId(int id) {
+      if (id < 0) {
+        return;  // not a known feature
+      }
+      if (numIds == ids.length) {
+        ids = Arrays.copyOf(ids, numIds * 2);
+      }
+      ids[numIds++] = id;
+    }
+
+    /**
+     * The indices of the features collected, without duplicates, in increasing order.
+     * Only for a collector made with a {@link HashedFeatureIndex}.
+     */
+    public int[] ids() {
+      Arrays.sort(ids, 0, numIds);
+      int unique = 0;
+      for (int i = 0; i < numIds; i++) {
+        if (unique == 0 || ids[i] != ids[unique - 1]) {
+          ids[unique++] = ids[i];
+        }
+      }
+      return Arrays.copyOf(ids, unique);
+    }
   }
 
   // TODO: when breaking serialization, it seems like it would be better to
@@ -56,6 +56,12 @@ public class CRFBiasedClassifier<IN extends CoreMap> extends CRFClassifier<IN>
 
   public CRFBiasedClassifier(SeqClassifierFlags flags) {super(flags); }
 
+  /** The bias features are added in makeDatum, so they can't be found by hash. */
+  @Override
+  protected boolean supportsHashedFeatureIds() {
+    return false;
+  }
+
   @Override
   public CRFDatum<Collection<String>, CRFLabel> makeDatum(List<IN> info, int loc, List<FeatureFactory<IN>> featureFactories) {
 
@@ -137,6 +137,10 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
 
   CliquePotentialFunction cliquePotentialFunction;
   HasCliquePotentialFunction cliquePotentialFunctionHelper;
+  /** The hashes of featureIndex, if flags.useHashedFeatureIds */
+  private HashedFeatureIndex hashedFeatureIndex;
+  /** Test time inference for linear potentials, created when first needed */
+  private CRFLinearChainInference linearChainInference;
 
   /** Parameter weights of the classifier.  weights[featureIndex][labelIndex] */
   double[][] weights;
@@ -428,6 +432,9 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
    *         the third element is a double[][][] representing the feature values (optionally null)
    */
   public Triple<int[][][], int[], double[][][]> documentToDataAndLabels(List<IN> document) {
+    if (useHashedFeatureIds()) {
+      return documentToDataAndLabelsHashed(document);
+    }
     int docSize = document.size();
     // first index is position in the document also the index of the
     // clique/factor table
@@ -491,6 +498,99 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     return new Triple<>(data, labels, featureVals);
   }
 
+  /**
+   * Whether {@link #documentToDataAndLabels} should look features up by hash, as
+   * requested by {@code flags.useHashedFeatureIds}.  This needs every feature
+   * factory to be a {@link NERFeatureFactory}, and gives up for options that need
+   * the feature Strings.
+   */
+  private boolean useHashedFeatureIds() {
+    if ( ! flags.useHashedFeatureIds || flags.useEmbedding || flags.printFeatures != null ||
+        ! supportsHashedFeatureIds() || featureIndex == null) {
+      return false;
+    }
+    for (FeatureFactory<IN> featureFactory : featureFactories) {
+      if ( ! (featureFactory instanceof NERFeatureFactory)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Whether the features of this classifier are exactly those of its feature factories,
+   * so that they can be looked up by hash.  Subclasses which add features of their own
+   * in {@link #makeDatum} should return false.
+   */
+  protected boolean supportsHashedFeatureIds() {
+    return true;
+  }
+
+  /** The hashes of the feature index, made when first needed and again if the feature index changes. */
+  private HashedFeatureIndex hashedFeatureIndex() {
+    HashedFeatureIndex index = hashedFeatureIndex;
+    if (index == null || ! index.isFor(featureIndex)) {
+      Timing timer = new Timing();
+      index = new HashedFeatureIndex(featureIndex);
+      hashedFeatureIndex = index;
+      log.info("Hashed " + index.size() + " features in " + Timing.toSecondsString(timer.stop()) + " seconds");
+    }
+    return index;
+  }
+
+  /**
+   * The same as {@link #documentToDataAndLabels}, but the features of each
+   * clique are found from their hashes, without making their Strings.
+   */
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  private Triple<int[][][], int[], double[][][]> documentToDataAndLabelsHashed(List<IN> document) {
+    int docSize = document.size();
+    int[][][] data = new int[docSize][windowSize][];
+    double[][][] featureVals = new double[docSize][windowSize][];
+    int[] labels = new int[docSize];
+    HashedFeatureIndex index = hashedFeatureIndex();
+
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+
+    PaddedList<IN> pInfo = new PaddedList<>(document, pad);
+    List<int[]> cliqueIds = new ArrayList<>();
+    for (int j = 0; j < docSize; j++) {
+      final int loc = j;
+      for (int k = 0; k < windowSize; k++) {
+        cliqueIds.clear();
+        FeatureFactory.eachClique(k, 0, c -> {
+          for (FeatureFactory<IN> featureFactory : featureFactories) {
+            cliqueIds.add(((NERFeatureFactory) featureFactory).getCliqueFeatureIds(pInfo, loc, c, index));
+          }
+        });
+        if (cliqueIds.size() == 1) {
+          data[j][k] = cliqueIds.get(0);
+        } else {
+          int total = 0;
+          for (int[] ids : cliqueIds) {
+            total += ids.length;
+          }
+          int[] ids = new int[total];
+          int m = 0;
+          for (int[] part : cliqueIds) {
+            System.arraycopy(part, 0, ids, m, part.length);
+            m += part.length;
+          }
+          data[j][k] = ids;
+        }
+      }
+      labels[j] = classIndex.indexOf(document.get(j).get(CoreAnnotations.AnswerAnnotation.class));
+    }
+
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+
+    return new Triple<>(data, labels, featureVals);
+  }
+
   public void printLabelInformation(String testFile, DocumentReaderAndWriter<IN> readerAndWriter) throws Exception {
     ObjectBank<List<IN>> documents = makeObjectBankFromFile(testFile, readerAndWriter);
     for (List<IN> document : documents) {
@@ -1071,7 +1171,7 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     }
   }
 
-  private List<IN> classify(List<IN> document, Triple<int[][][], int[], double[][][]> documentDataAndLabels) {
+  List<IN> classify(List<IN> document, Triple<int[][][], int[], double[][][]> documentDataAndLabels) {
     if (flags.doGibbs) {
       try {
         return classifyGibbs(document, documentDataAndLabels);
@@ -1155,6 +1255,9 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       return document;
     }
 
+    if (linearChainInference() != null) {
+      return classifyMaxEnt(document, documentToDataAndLabels(document));
+    }
     SequenceModel model = getSequenceModel(document);
     return classifyMaxEnt(document, model);
   }
@@ -1163,10 +1266,65 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     if (document.isEmpty()) {
       return document;
     }
+    CRFLinearChainInference inference = linearChainInference();
+    if (inference != null) {
+      return classifyLinearChain(document, documentDataAndLabels, inference);
+    }
     SequenceModel model = getSequenceModel(documentDataAndLabels, document);
     return classifyMaxEnt(document, model);
   }
 
+  /**
+   * Returns the flat array inference engine if it gives the same answers as the
+   * clique tree would for the current inference type and clique potentials, or null if not.
+   * Setting {@code inferenceType} to {@code CliqueTreeViterbi} always uses the clique tree.
+   */
+  private CRFLinearChainInference linearChainInference() {
+    if (flags.inferenceType != null && ! flags.inferenceType.equalsIgnoreCase("Viterbi")) {
+      return null;
+    }
+    if ( ! (getCliquePotentialFunctionForTest() instanceof LinearCliquePotentialFunction)) {
+      return null;
+    }
+    CRFLinearChainInference inference = linearChainInference;
+    if (inference == null || inference.labelIndices() != labelIndices) {
+      inference = new CRFLinearChainInference(labelIndices, classIndex.size(), classIndex.indexOf(flags.backgroundSymbol));
+      linearChainInference = inference;
+    }
+    return inference;
+  }
+
+  private List<IN> classifyLinearChain(List<IN> document, Triple<int[][][], int[], double[][][]> documentDataAndLabels,
+                                       CRFLinearChainInference inference) {
+    int[][][] data = documentDataAndLabels.first();
+    int[][] allowedLabels = null;
+    if (labelDictionary != null) {
+      allowedLabels = new int[data.length][];
+      for (int j = 0; j < data.length; j++) {
+        String observation = document.get(flags.useReverse ? data.length - 1 - j : j).get(CoreAnnotations.TextAnnotation.class);
+        if (labelDictionary.isConstrained(observation)) {
+          allowedLabels[j] = labelDictionary.getConstrainedSet(observation);
+        }
+      }
+    }
+    double[][] w = ((LinearCliquePotentialFunction) getCliquePotentialFunctionForTest()).weights();
+    double[] probs = new double[data.length];
+    int[] bestSequence = inference.bestSequence(w, data, documentDataAndLabels.third(), allowedLabels, probs);
+
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+    for (int j = 0, docSize = document.size(); j < docSize; j++) {
+      IN wi = document.get(j);
+      wi.set(CoreAnnotations.AnswerAnnotation.class, classIndex.get(bestSequence[j]));
+      wi.set(CoreAnnotations.AnswerProbAnnotation.class, probs[j]);
+    }
+    if (flags.useReverse) {
+      Collections.reverse(document);
+    }
+    return document;
+  }
+
   private List<IN> classifyMaxEnt(List<IN> document, SequenceModel model) {
     if (document.isEmpty()) {
       return document;
@@ -1179,10 +1337,12 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
     BestSequenceFinder tagInference;
     if (flags.inferenceType.equalsIgnoreCase("Viterbi")) {
       tagInference = new ExactBestSequenceFinder();
+    } else if (flags.inferenceType.equalsIgnoreCase("CliqueTreeViterbi")) {
+      tagInference = new ExactBestSequenceFinder();
     } else if (flags.inferenceType.equalsIgnoreCase("Beam")) {
       tagInference = new BeamBestSequenceFinder(flags.beamSize);
     } else {
-      throw new RuntimeException("Unknown inference type: " + flags.inferenceType + ". Your options are Viterbi|Beam.");
+      throw new RuntimeException("Unknown inference type: " + flags.inferenceType + ". Your options are Viterbi|CliqueTreeViterbi|Beam.");
     }
 
     int[] bestSequence = tagInference.bestSequence(model);
@@ -2595,6 +2755,11 @@ public class CRFClassifier<IN extends CoreMap> extends AbstractSequenceClassifie
       labelDictionary = (LabelDictionary) ois.readObject();
     }
 
+    if (useHashedFeatureIds()) {
+      // rehash the feature Strings of the model now rather than on the first document
+      hashedFeatureIndex();
+    }
+
     if (VERBOSE) {
       log.info("windowSize=" + windowSize);
       log.info("flags=\n" + flags);
@@ -0,0 +1,123 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.DefaultPaths;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Triple;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compares the speed of CRF inference through the clique tree with the
+ * flat array inference of {@link CRFLinearChainInference}, in tokens per
+ * second.  Features are extracted once up front, so the inference numbers
+ * are for inference alone; the classify numbers include feature extraction.
+ * <br>
+ * Usage: {@code java edu.stanford.nlp.ie.crf.CRFInferenceBenchmark [-loadClassifier model] [-textFile file] [-iterations n]}
+ * <br>
+ * The default model is {@link DefaultPaths#DEFAULT_NER_THREECLASS_MODEL}.
+ * Without a file, a short built-in text is classified repeatedly.
+ */
+public class CRFInferenceBenchmark {
+
+  private static final String DEFAULT_TEXT =
+      "USAir said in the filings that Mr. Icahn first contacted Mr. Colodny last September to discuss the " +
+      "benefits of combining TWA and USAir -- either by TWA's acquisition of USAir, or USAir's acquisition of TWA. " +
+      "Barack Obama was born in Hawaii and later moved to Chicago, where he worked for the University of Chicago. ";
+
+  private CRFInferenceBenchmark() {} // main method only
+
+  private static long classifyAll(CRFClassifier<CoreLabel> crf, List<List<CoreLabel>> documents,
+                                  List<Triple<int[][][], int[], double[][][]>> data, String inferenceType) {
+    crf.flags.inferenceType = inferenceType;
+    long start = System.nanoTime();
+    for (int i = 0; i < documents.size(); i++) {
+      if (data == null) {
+        crf.classifyMaxEnt(documents.get(i));
+      } else {
+        crf.classify(documents.get(i), data.get(i));
+      }
+    }
+    return System.nanoTime() - start;
+  }
+
+  private static List<String> answers(List<List<CoreLabel>> documents) {
+    List<String> answers = new ArrayList<>();
+    for (List<CoreLabel> document : documents) {
+      for (CoreLabel token : document) {
+        answers.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+    }
+    return answers;
+  }
+
+  private static void report(String name, long tokens, long nanos) {
+    System.out.printf("%-28s %12.0f tokens/sec%n", name, tokens / (nanos / 1e9));
+  }
+
+  public static void main(String[] args) throws Exception {
+    Properties props = StringUtils.argsToProperties(args);
+    String model = props.getProperty("loadClassifier", DefaultPaths.DEFAULT_NER_THREECLASS_MODEL);
+    String file = props.getProperty("textFile");
+    int iterations = Integer.parseInt(props.getProperty("iterations", "10"));
+
+    String text;
+    if (file != null) {
+      text = IOUtils.slurpFile(file);
+    } else {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 500; i++) {
+        sb.append(DEFAULT_TEXT);
+      }
+      text = sb.toString();
+    }
+
+    CRFClassifier<CoreLabel> crf = CRFClassifier.getClassifier(model);
+    List<List<CoreLabel>> documents = new ArrayList<>();
+    for (List<CoreLabel> document : crf.makeObjectBankFromString(text, crf.plainTextReaderAndWriter())) {
+      documents.add(document);
+    }
+    List<Triple<int[][][], int[], double[][][]>> data = new ArrayList<>();
+    long tokens = 0;
+    for (List<CoreLabel> document : documents) {
+      data.add(crf.documentToDataAndLabels(document));
+      tokens += document.size();
+    }
+    System.out.printf("%d documents, %d tokens, %d classes, window %d%n",
+        documents.size(), tokens, crf.classIndex.size(), crf.windowSize);
+
+    // warm up the JIT on both code paths, and check that they agree
+    classifyAll(crf, documents, data, "CliqueTreeViterbi");
+    List<String> cliqueTreeAnswers = answers(documents);
+    classifyAll(crf, documents, data, "Viterbi");
+    List<String> flatAnswers = answers(documents);
+    int disagreements = 0;
+    for (int i = 0; i < cliqueTreeAnswers.size(); i++) {
+      if ( ! cliqueTreeAnswers.get(i).equals(flatAnswers.get(i))) {
+        disagreements++;
+      }
+    }
+    System.out.printf("Labels differing between the two: %d%n", disagreements);
+
+    long cliqueTreeTime = 0;
+    long flatTime = 0;
+    long cliqueTreeClassifyTime = 0;
+    long flatClassifyTime = 0;
+    for (int i = 0; i < iterations; i++) {
+      cliqueTreeTime += classifyAll(crf, documents, data, "CliqueTreeViterbi");
+      flatTime += classifyAll(crf, documents, data, "Viterbi");
+      cliqueTreeClassifyTime += classifyAll(crf, documents, null, "CliqueTreeViterbi");
+      flatClassifyTime += classifyAll(crf, documents, null, "Viterbi");
+    }
+    tokens *= iterations;
+    report("inference, clique tree:", tokens, cliqueTreeTime);
+    report("inference, flat arrays:", tokens, flatTime);
+    report("classify, clique tree:", tokens, cliqueTreeClassifyTime);
+    report("classify, flat arrays:", tokens, flatClassifyTime);
+  }
+
+}
@@ -0,0 +1,361 @@
+package edu.stanford.nlp.ie.crf;
+
+import edu.stanford.nlp.util.Index;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Test time inference for a linear chain CRF with linear clique potentials,
+ * working directly on flat arrays instead of going through
+ * {@link CRFCliqueTree}, {@link FactorTable} and a
+ * {@link edu.stanford.nlp.sequences.BestSequenceFinder}.
+ * <br>
+ * For each position, the potentials of all the cliques ending there are
+ * summed into one table of {@code numClasses^windowSize} entries, indexed
+ * the same way as a {@link FactorTable}: the label of the current position
+ * varies fastest.  Viterbi then runs over states of the previous
+ * {@code windowSize - 1} labels, with positions before the start of the
+ * document fixed to the background label, as {@link TestSequenceModel}
+ * does.  The marginal probability of the chosen labels comes from a scaled
+ * forward-backward pass in probability space over the same tables, which
+ * gives the same numbers as {@link CRFCliqueTree#prob(int, int)}.
+ * <br>
+ * The inner loops run over contiguous ranges of labels so that the JIT
+ * can vectorize them.  Scratch arrays are kept per thread and only ever
+ * grow, so classifying a document allocates little more than the result.
+ */
+final class CRFLinearChainInference {
+
+  private final List<Index<CRFLabel>> labelIndices;
+  private final int numClasses;
+  private final int windowSize;
+  /** numClasses^(windowSize-1): the number of assignments of the previous labels */
+  private final int numStates;
+  /** numClasses^windowSize: the size of the potential table at each position */
+  private final int tableSize;
+  /** The state in which all the previous labels are the background label */
+  private final int backgroundState;
+  /** For cliques of size j+1, the entry in a table of numClasses^(j+1) of each of the clique's labels */
+  private final int[][] cliqueEntries;
+  private final int maxCliqueLabels;
+
+  private static final class Workspace {
+    double[] potentials = new double[0];
+    double[] alpha = new double[0];
+    double[] beta = new double[0];
+    int[] backPointers = new int[0];
+    double[] cliqueScores = new double[0];
+    double[] cliqueTable = new double[0];
+    double[] score = new double[0];
+    double[] nextScore = new double[0];
+    double[] constraint = new double[0];
+  }
+
+  private static final ThreadLocal<Workspace> workspaces = ThreadLocal.withInitial(Workspace::new);
+
+  CRFLinearChainInference(List<Index<CRFLabel>> labelIndices, int numClasses, int backgroundIndex) {
+    this.labelIndices = labelIndices;
+    this.numClasses = numClasses;
+    this.windowSize = labelIndices.size();
+    int states = 1;
+    int background = 0;
+    for (int i = 0; i < windowSize - 1; i++) {
+      states *= numClasses;
+      background = background * numClasses + backgroundIndex;
+    }
+    this.numStates = states;
+    this.tableSize = states * numClasses;
+    this.backgroundState = background;
+
+    cliqueEntries = new int[windowSize][];
+    int maxLabels = 0;
+    for (int j = 0; j < windowSize; j++) {
+      Index<CRFLabel> labelIndex = labelIndices.get(j);
+      int[] entries = new int[labelIndex.size()];
+      for (int k = 0; k < entries.length; k++) {
+        int entry = 0;
+        for (int label : labelIndex.get(k).getLabel()) {
+          entry = entry * numClasses + label;
+        }
+        entries[k] = entry;
+      }
+      cliqueEntries[j] = entries;
+      maxLabels = Math.max(maxLabels, entries.length);
+    }
+    this.maxCliqueLabels = maxLabels;
+  }
+
+  /** The label indices this was built for */
+  List<Index<CRFLabel>> labelIndices() {
+    return labelIndices;
+  }
+
+  private static double[] ensure(double[] array, int size) {
+    return array.length >= size ? array : new double[Math.max(size, array.length * 2)];
+  }
+
+  private static int[] ensure(int[] array, int size) {
+    return array.length >= size ? array : new int[Math.max(size, array.length * 2)];
+  }
+
+  /**
+   * Finds the best labeling of a document, and the marginal probability of each chosen label.
+   *
+   * @param weights The weights of the classifier, as in {@link LinearCliquePotentialFunction}
+   * @param data The features of the document, as returned by {@link CRFClassifier#documentToDataAndLabels}
+   * @param featureVals The feature values of the document, or null if all features have value 1
+   * @param allowedLabels For each position, the labels allowed there, or null if any label is
+   *                      allowed.  May itself be null if no position is constrained.
+   *                      Only Viterbi is constrained; the marginals never are.
+   * @param probs If not null, filled with the marginal probability of the chosen label at each position
+   * @return The index of the best label at each position
+   */
+  int[] bestSequence(double[][] weights, int[][][] data, double[][][] featureVals, int[][] allowedLabels, double[] probs) {
+    int length = data.length;
+    Workspace ws = workspaces.get();
+    ws.potentials = ensure(ws.potentials, length * tableSize);
+    computePotentials(ws, weights, data, featureVals);
+    int[] labels = viterbi(ws, length, allowedLabels);
+    if (probs != null) {
+      marginals(ws, length, labels, probs);
+    }
+    return labels;
+  }
+
+  /** Sums the potentials of all the cliques ending at each position into one table per position. */
+  private void computePotentials(Workspace ws, double[][] weights, int[][][] data, double[][][] featureVals) {
+    ws.cliqueScores = ensure(ws.cliqueScores, maxCliqueLabels);
+    ws.cliqueTable = ensure(ws.cliqueTable, tableSize);
+    double[] potentials = ws.potentials;
+    double[] scores = ws.cliqueScores;
+    double[] table = ws.cliqueTable;
+
+    for (int i = 0; i < data.length; i++) {
+      int base = i * tableSize;
+      Arrays.fill(potentials, base, base + tableSize, 0.0);
+      int cliqueSize = 1;
+      for (int j = 0; j < windowSize; j++) {
+        cliqueSize *= numClasses;
+        int[] entries = cliqueEntries[j];
+        int numLabels = entries.length;
+        Arrays.fill(scores, 0, numLabels, 0.0);
+        int[] features = data[i][j];
+        double[] values = (featureVals == null || featureVals[i] == null) ? null : featureVals[i][j];
+        if (features != null) {
+          for (int m = 0; m < features.length; m++) {
+            double[] w = weights[features[m]];
+            if (values == null) {
+              for (int k = 0; k < numLabels; k++) {
+                scores[k] += w[k];
+              }
+            } else {
+              double value = values[m];
+              for (int k = 0; k < numLabels; k++) {
+                scores[k] += value * w[k];
+              }
+            }
+          }
+        }
+
+        // labelings never seen in training are impossible, as in FactorTable
+        Arrays.fill(table, 0, cliqueSize, Double.NEGATIVE_INFINITY);
+        for (int k = 0; k < numLabels; k++) {
+          table[entries[k]] = scores[k];
+        }
+        for (int offset = base, end = base + tableSize; offset < end; offset += cliqueSize) {
+          for (int s = 0; s < cliqueSize; s++) {
+            potentials[offset + s] += table[s];
+          }
+        }
+      }
+    }
+  }
+
+  private int[] viterbi(Workspace ws, int length, int[][] allowedLabels) {
+    ws.score = ensure(ws.score, numStates);
+    ws.nextScore = ensure(ws.nextScore, numStates);
+    ws.backPointers = ensure(ws.backPointers, length * numStates);
+    ws.constraint = ensure(ws.constraint, numClasses);
+    double[] potentials = ws.potentials;
+    double[] score = ws.score;
+    double[] next = ws.nextScore;
+    double[] constraint = ws.constraint;
+    int[] back = ws.backPointers;
+    // states that differ only in their first label all move on to the same states
+    int stateMod = numStates / numClasses;
+
+    Arrays.fill(score, 0, numStates, Double.NEGATIVE_INFINITY);
+    score[backgroundState] = 0.0;
+    for (int i = 0; i < length; i++) {
+      int base = i * tableSize;
+      int backBase = i * numStates;
+      int[] allowed = allowedLabels == null ? null : allowedLabels[i];
+      if (allowed == null) {
+        Arrays.fill(constraint, 0, numClasses, 0.0);
+      } else {
+        Arrays.fill(constraint, 0, numClasses, Double.NEGATIVE_INFINITY);
+        for (int label : allowed) {
+          constraint[label] = 0.0;
+        }
+      }
+      Arrays.fill(next, 0, numStates, Double.NEGATIVE_INFINITY);
+      Arrays.fill(back, backBase, backBase + numStates, 0);
+
+      if (numStates == 1) {
+        // no previous labels to condition on
+        for (int c = 0; c < numClasses; c++) {
+          double candidate = score[0] + potentials[base + c] + constraint[c];
+          if (candidate > next[0]) {
+            next[0] = candidate;
+            back[backBase] = c;
+          }
+        }
+      } else {
+        for (int prev = 0; prev < numStates; prev++) {
+          double prevScore = score[prev];
+          if (prevScore == Double.NEGATIVE_INFINITY) {
+            continue;
+          }
+          int entry = base + prev * numClasses;
+          int state = (prev % stateMod) * numClasses;
+          for (int c = 0; c < numClasses; c++) {
+            double candidate = prevScore + potentials[entry + c] + constraint[c];
+            if (candidate > next[state + c]) {
+              next[state + c] = candidate;
+              back[backBase + state + c] = prev * numClasses + c;
+            }
+          }
+        }
+      }
+      double[] swap = score;
+      score = next;
+      next = swap;
+    }
+
+    int best = 0;
+    for (int s = 1; s < numStates; s++) {
+      if (score[s] > score[best]) {
+        best = s;
+      }
+    }
+    int[] labels = new int[length];
+    for (int i = length - 1; i >= 0; i--) {
+      int entry = back[i * numStates + best];
+      labels[i] = entry % numClasses;
+      best = entry / numClasses;
+    }
+    return labels;
+  }
+
+  /** Scaled forward-backward, filling in the marginal probability of the given label at each position. */
+  private void marginals(Workspace ws, int length, int[] labels, double[] probs) {
+    ws.alpha = ensure(ws.alpha, length * tableSize);
+    ws.beta = ensure(ws.beta, length * numStates);
+    ws.score = ensure(ws.score, numStates);
+    double[] potentials = ws.potentials;
+    double[] alpha = ws.alpha;
+    double[] beta = ws.beta;
+    double[] message = ws.score;
+    int stateMod = numStates / numClasses;
+
+    // Exponentiate each table relative to its own max, which only rescales the whole position
+    for (int i = 0; i < length; i++) {
+      int base = i * tableSize;
+      double max = Double.NEGATIVE_INFINITY;
+      for (int t = 0; t < tableSize; t++) {
+        max = Math.max(max, potentials[base + t]);
+      }
+      if (max == Double.NEGATIVE_INFINITY) {
+        max = 0.0;
+      }
+      for (int t = 0; t < tableSize; t++) {
+        potentials[base + t] = Math.exp(potentials[base + t] - max);
+      }
+    }
+
+    // Forward: alpha[i][prev * numClasses + c], over every labeling of the window at i
+    for (int i = 0; i < length; i++) {
+      int base = i * tableSize;
+      if (i == 0) {
+        System.arraycopy(potentials, 0, alpha, 0, tableSize);
+      } else {
+        // sum out the first label of the previous window
+        int prevBase = base - tableSize;
+        Arrays.fill(message, 0, numStates, 0.0);
+        for (int first = 0; first < tableSize; first += numStates) {
+          for (int s = 0; s < numStates; s++) {
+            message[s] += alpha[prevBase + first + s];
+          }
+        }
+        for (int prev = 0; prev < numStates; prev++) {
+          double m = message[prev];
+          int entry = base + prev * numClasses;
+          for (int c = 0; c < numClasses; c++) {
+            alpha[entry + c] = m * potentials[entry + c];
+          }
+        }
+      }
+      normalize(alpha, base, tableSize);
+    }
+
+    // Backward: beta[i][state], over the labels of the window at i but its first
+    int last = (length - 1) * numStates;
+    Arrays.fill(beta, last, last + numStates, 1.0);
+    for (int i = length - 2; i >= 0; i--) {
+      int base = i * numStates;
+      int nextBase = base + numStates;
+      int nextPotentials = (i + 1) * tableSize;
+      for (int s = 0; s < numStates; s++) {
+        int entry = nextPotentials + s * numClasses;
+        double sum = 0.0;
+        if (numStates == 1) {
+          for (int c = 0; c < numClasses; c++) {
+            sum += potentials[entry + c];
+          }
+          sum *= beta[nextBase];
+        } else {
+          int state = nextBase + (s % stateMod) * numClasses;
+          for (int c = 0; c < numClasses; c++) {
+            sum += potentials[entry + c] * beta[state + c];
+          }
+        }
+        beta[base + s] = sum;
+      }
+      normalize(beta, base, numStates);
+    }
+
+    for (int i = 0; i < length; i++) {
+      int base = i * tableSize;
+      int betaBase = i * numStates;
+      double total = 0.0;
+      double labelMass = 0.0;
+      for (int prev = 0; prev < numStates; prev++) {
+        int entry = base + prev * numClasses;
+        int state = numStates == 1 ? betaBase : betaBase + (prev % stateMod) * numClasses;
+        for (int c = 0; c < numClasses; c++) {
+          double mass = alpha[entry + c] * beta[numStates == 1 ? state : state + c];
+          total += mass;
+          if (c == labels[i]) {
+            labelMass += mass;
+          }
+        }
+      }
+      probs[i] = labelMass / total;
+    }
+  }
+
+  private static void normalize(double[] array, int from, int size) {
+    double sum = 0.0;
+    for (int k = from, end = from + size; k < end; k++) {
+      sum += array[k];
+    }
+    if (sum > 0.0) {
+      double scale = 1.0 / sum;
+      for (int k = from, end = from + size; k < end; k++) {
+        array[k] *= scale;
+      }
+    }
+  }
+
+}
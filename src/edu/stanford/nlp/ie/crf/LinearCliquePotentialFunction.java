@@ -11,6 +11,11 @@ public class LinearCliquePotentialFunction implements CliquePotentialFunction {
     this.weights = weights;
   }
 
+  /** The weights, for inference code which computes the potentials itself */
+  double[][] weights() {
+    return weights;
+  }
+
   @Override
   public double computeCliquePotential(int cliqueSize, int labelIndex,
       int[] cliqueFeatures, double[] featureVal, int posInSent) {
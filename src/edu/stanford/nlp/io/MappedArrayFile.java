@@ -0,0 +1,386 @@
+package edu.stanford.nlp.io;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A file of named arrays which is memory-mapped read-only when it is
+ * opened, rather than read into the heap.  It is meant for the large
+ * weight arrays of models: opening one costs next to nothing however
+ * big the arrays are, and all the processes on a machine which open the
+ * same file share one copy of it in the operating system's page cache.
+ * <br>
+ * Arrays of doubles, floats and ints are stored as matrices, with a
+ * number of rows and columns, and are read through {@link DoubleBuffer},
+ * {@link FloatBuffer} and {@link IntBuffer} views of the mapped file,
+ * row after row.  Lists of Strings can be stored too, for vocabularies
+ * and settings; these are read into the heap when the file is opened.
+ * <br>
+ * The file starts with a header listing the arrays, followed by the
+ * arrays themselves, each 8-byte aligned and in little-endian order.
+ * Each array is mapped separately, so a file may be larger than 2GB as
+ * long as each array is smaller.
+ * <br>
+ * Write a file with {@link Writer}, and read one with {@link #open(String)}.
+ * Java can't unmap a file explicitly, so the mappings stay valid, and
+ * the file open, until the buffers are garbage collected.
+ */
+public class MappedArrayFile {
+
+  private static final long MAGIC = 0x434e4c504d415031L;  // "CNLPMAP1"
+
+  private static final byte DOUBLE = 1;
+  private static final byte FLOAT = 2;
+  private static final byte INT = 3;
+  private static final byte STRINGS = 4;
+
+  private static class Entry {
+    final byte type;
+    final int rows;
+    final int columns;
+    final long offset;
+    final Object data;
+
+    Entry(byte type, int rows, int columns, long offset, Object data) {
+      this.type = type;
+      this.rows = rows;
+      this.columns = columns;
+      this.offset = offset;
+      this.data = data;
+    }
+
+    long bytes() {
+      return (long) rows * columns * (type == DOUBLE ? 8 : 4);
+    }
+  }
+
+  private final String path;
+  private final Map<String, Entry> entries;
+
+  private MappedArrayFile(String path, Map<String, Entry> entries) {
+    this.path = path;
+    this.entries = entries;
+  }
+
+  /** Whether path is a file, rather than a directory or resource, which starts the way a MappedArrayFile does */
+  public static boolean isMappedArrayFile(String path) {
+    File file = new File(path);
+    if ( ! file.isFile() || file.length() < 8) {
+      return false;
+    }
+    try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+      return in.readLong() == MAGIC;
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Map the arrays of a file written by {@link Writer}.
+   *
+   * @throws IOException If the file can't be read or isn't a MappedArrayFile
+   */
+  public static MappedArrayFile open(String path) throws IOException {
+    Map<String, Entry> entries = new LinkedHashMap<>();
+    try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+      FileChannel channel = file.getChannel();
+      if (file.readLong() != MAGIC) {
+        throw new IOException(path + " is not a MappedArrayFile");
+      }
+      int numEntries = file.readInt();
+      for (int i = 0; i < numEntries; i++) {
+        byte[] nameBytes = new byte[file.readInt()];
+        file.readFully(nameBytes);
+        String name = new String(nameBytes, StandardCharsets.UTF_8);
+        byte type = file.readByte();
+        int rows = file.readInt();
+        int columns = file.readInt();
+        long offset = file.readLong();
+        Object data;
+        if (type == STRINGS) {
+          List<String> strings = new ArrayList<>(rows);
+          long position = file.getFilePointer();
+          file.seek(offset);
+          for (int j = 0; j < rows; j++) {
+            byte[] bytes = new byte[file.readInt()];
+            file.readFully(bytes);
+            strings.add(new String(bytes, StandardCharsets.UTF_8));
+          }
+          file.seek(position);
+          data = Collections.unmodifiableList(strings);
+        } else {
+          long bytes = (long) rows * columns * (type == DOUBLE ? 8 : 4);
+          if (bytes > Integer.MAX_VALUE) {
+            throw new IOException("Array " + name + " in " + path + " is too large to map");
+          }
+          MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, bytes);
+          buffer.order(ByteOrder.LITTLE_ENDIAN);
+          data = buffer;
+        }
+        entries.put(name, new Entry(type, rows, columns, offset, data));
+      }
+    }
+    return new MappedArrayFile(path, entries);
+  }
+
+  private Entry entry(String name, byte type) {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      throw new IllegalArgumentException("No array " + name + " in " + path);
+    }
+    if (entry.type != type) {
+      throw new IllegalArgumentException("Array " + name + " in " + path + " is not of the type asked for");
+    }
+    return entry;
+  }
+
+  /** Whether there is an array or list of Strings with this name */
+  public boolean contains(String name) {
+    return entries.containsKey(name);
+  }
+
+  /** The number of rows of an array, or the number of Strings in a list */
+  public int rows(String name) {
+    Entry entry = entries.get(name);
+    if (entry == null) {
+      throw new IllegalArgumentException("No array " + name + " in " + path);
+    }
+    return entry.rows;
+  }
+
+  /** The number of columns of an array */
+  public int columns(String name) {
+    return rows(name) == 0 ? 0 : entries.get(name).columns;
+  }
+
+  /** Whether the named array holds doubles, rather than floats */
+  public boolean isDoubles(String name) {
+    Entry entry = entries.get(name);
+    return entry != null && entry.type == DOUBLE;
+  }
+
+  /** A read-only view of an array of doubles, row after row */
+  public DoubleBuffer doubles(String name) {
+    return ((ByteBuffer) entry(name, DOUBLE).data).duplicate().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+  }
+
+  /** A read-only view of an array of floats, row after row */
+  public FloatBuffer floats(String name) {
+    return ((ByteBuffer) entry(name, FLOAT).data).duplicate().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+  }
+
+  /** A read-only view of an array of ints, row after row */
+  public IntBuffer ints(String name) {
+    return ((ByteBuffer) entry(name, INT).data).duplicate().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+  }
+
+  /** A list of Strings */
+  @SuppressWarnings("unchecked")
+  public List<String> strings(String name) {
+    return (List<String>) entry(name, STRINGS).data;
+  }
+
+  /** The first String of a list, as stored by {@link Writer#addString} */
+  public String string(String name) {
+    List<String> strings = strings(name);
+    return strings.isEmpty() ? null : strings.get(0);
+  }
+
+
+  /**
+   * Collects arrays and then writes them all as a MappedArrayFile.
+   * The arrays are not copied, so they shouldn't change before
+   * {@link #write(String)} is called.
+   */
+  public static class Writer {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private void add(String name, byte type, int rows, int columns, Object data) {
+      if (entries.containsKey(name)) {
+        throw new IllegalArgumentException("Already have an array called " + name);
+      }
+      entries.put(name, new Entry(type, rows, columns, 0, data));
+    }
+
+    private static int columns(double[][] matrix) {
+      int columns = matrix.length == 0 ? 0 : matrix[0].length;
+      for (double[] row : matrix) {
+        if (row.length != columns) {
+          throw new IllegalArgumentException("Rows of different lengths");
+        }
+      }
+      return columns;
+    }
+
+    /** Add a matrix, to be stored as doubles */
+    public Writer addDoubles(String name, double[][] matrix) {
+      add(name, DOUBLE, matrix.length, columns(matrix), matrix);
+      return this;
+    }
+
+    /** Add a matrix, to be stored as floats */
+    public Writer addFloats(String name, double[][] matrix) {
+      add(name, FLOAT, matrix.length, columns(matrix), matrix);
+      return this;
+    }
+
+    /** Add a vector of ints, stored as a single row */
+    public Writer addInts(String name, int[] vector) {
+      add(name, INT, 1, vector.length, vector);
+      return this;
+    }
+
+    /** Add a list of Strings */
+    public Writer addStrings(String name, List<String> strings) {
+      add(name, STRINGS, strings.size(), 0, new ArrayList<>(strings));
+      return this;
+    }
+
+    /** Add a single String, read back with {@link MappedArrayFile#string} */
+    public Writer addString(String name, String value) {
+      return addStrings(name, Collections.singletonList(value));
+    }
+
+    private static long align(long position) {
+      return (position + 7) & ~7L;
+    }
+
+    private static byte[] encode(String s) {
+      return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write all the arrays added to the file at path, replacing it if it exists.
+     * The arrays are written to a temporary file which is then moved to path,
+     * so a file already mapped from path stays valid.
+     */
+    public void write(String path) throws IOException {
+      // the header size, to know where the arrays start
+      long headerSize = 8 + 4;
+      for (String name : entries.keySet()) {
+        headerSize += 4 + encode(name).length + 1 + 4 + 4 + 8;
+      }
+      long offset = align(headerSize);
+      Map<String, Long> offsets = new LinkedHashMap<>();
+      for (Map.Entry<String, Entry> e : entries.entrySet()) {
+        offsets.put(e.getKey(), offset);
+        Entry entry = e.getValue();
+        long bytes;
+        if (entry.type == STRINGS) {
+          bytes = 0;
+          for (Object s : (List<?>) entry.data) {
+            bytes += 4 + encode((String) s).length;
+          }
+        } else {
+          bytes = entry.bytes();
+        }
+        offset = align(offset + bytes);
+      }
+
+      File file = new File(path).getAbsoluteFile();
+      File tmp = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+      try {
+        write(tmp, offsets, offset);
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        // only still there if writing or moving it failed
+        tmp.delete();
+      }
+    }
+
+    private void write(File file, Map<String, Long> offsets, long offset) throws IOException {
+      try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+        out.writeLong(MAGIC);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+          Entry entry = e.getValue();
+          byte[] name = encode(e.getKey());
+          out.writeInt(name.length);
+          out.write(name);
+          out.writeByte(entry.type);
+          out.writeInt(entry.rows);
+          out.writeInt(entry.columns);
+          out.writeLong(offsets.get(e.getKey()));
+        }
+
+        FileChannel channel = out.getChannel();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+          Entry entry = e.getValue();
+          long position = offsets.get(e.getKey());
+          if (entry.type == STRINGS) {
+            out.seek(position);
+            for (Object s : (List<?>) entry.data) {
+              byte[] bytes = encode((String) s);
+              out.writeInt(bytes.length);
+              out.write(bytes);
+            }
+            continue;
+          }
+          ByteBuffer buffer = ByteBuffer.allocate(Math.max(entry.columns, 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+          for (int i = 0; i < entry.rows; i++) {
+            buffer.clear();
+            if (entry.type == INT) {
+              for (int v : (int[]) entry.data) {
+                buffer.putInt(v);
+              }
+            } else {
+              for (double v : ((double[][]) entry.data)[i]) {
+                if (entry.type == DOUBLE) {
+                  buffer.putDouble(v);
+                } else {
+                  buffer.putFloat((float) v);
+                }
+              }
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+              position += channel.write(buffer, position);
+            }
+          }
+        }
+        out.setLength(align(Math.max(out.length(), offset)));
+      }
+    }
+
+  }
+
+  @Override
+  public String toString() {
+    List<String> names = new ArrayList<>(entries.keySet());
+    return "MappedArrayFile[" + path + ": " + String.join(", ", names) + ']';
+  }
+
+  /** For debugging: print the arrays and their sizes */
+  public static void main(String[] args) throws IOException {
+    for (String arg : args) {
+      MappedArrayFile file = open(arg);
+      for (Map.Entry<String, Entry> e : file.entries.entrySet()) {
+        Entry entry = e.getValue();
+        System.out.println(e.getKey() + ": " + (entry.type == STRINGS ? entry.rows + " strings"
+                                                   : entry.rows + " x " + entry.columns + ' ' +
+                                                   Arrays.asList("", "double", "float", "int").get(entry.type)));
+      }
+    }
+  }
+
+}
@@ -423,6 +423,7 @@ public class ComplexNodePattern<M,K> extends NodePattern<M> {
   }
 
   public static class AttributesEqualMatchChecker<K> implements SequencePattern.NodesMatchChecker<Map<K,Object>> {
+    private static final long serialVersionUID = 8788874316214435974L;
     Collection<K> keys;
 
     public AttributesEqualMatchChecker(K... keys) {
@@ -14,6 +14,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.Serializable;
 import java.io.StringReader;
 import java.util.*;
 import java.util.function.Predicate;
@@ -61,7 +62,8 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
    * Describes one stage of extraction.
    * @param <T>
    */
-  public static class Stage<T> {
+  public static class Stage<T> implements Serializable {
+    private static final long serialVersionUID = 1L;
     /** Whether to clear matched expressions from previous stages or not */
     boolean clearMatched = false;
     /**
@@ -253,6 +255,10 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
     return env;
   }
 
+  Map<Integer, Stage<T>> getStages() {
+    return stages;
+  }
+
   public void setExtractRules(SequenceMatchRules.ExtractRule<CoreMap, T> basicExtractRule,
                               SequenceMatchRules.ExtractRule<List<? extends CoreMap>, T> compositeExtractRule,
                               Predicate<T> filterRule)
@@ -277,11 +283,23 @@ public class CoreMapExpressionExtractor<T extends MatchedExpression>  {
 
   /**
    * Creates an extractor using the specified environment, and reading the rules from the given filenames.
+   * If a {@link RuleBundle} cache directory is set, the compiled rules are loaded from there when they can be.
    * @param env
    * @param filenames
    * @throws RuntimeException
    */
   public static <M extends MatchedExpression> CoreMapExpressionExtractor<M> createExtractorFromFiles(Env env, List<String> filenames) throws RuntimeException {
+    String bundleCacheDir = RuleBundle.getCacheDir();
+    if (bundleCacheDir != null) {
+      return RuleBundle.createExtractor(env, filenames, bundleCacheDir);
+    }
+    return parseExtractorFromFiles(env, filenames);
+  }
+
+  /**
+   * Creates an extractor by parsing the rules in the given files, without looking for a compiled {@link RuleBundle}.
+   */
+  static <M extends MatchedExpression> CoreMapExpressionExtractor<M> parseExtractorFromFiles(Env env, List<String> filenames) throws RuntimeException {
     CoreMapExpressionExtractor<M> extractor = new CoreMapExpressionExtractor<>(env);
     for (String filename:filenames) {
       try (BufferedReader br = IOUtils.readerFromString(filename)) {
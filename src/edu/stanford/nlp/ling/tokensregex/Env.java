@@ -293,6 +293,10 @@ public class Env {
     stringRegexVariables.put(var, new Pair<>(varPattern, replace));
   }
 
+  Map<String, Pair<Pattern,String>> getStringRegexVariables() {
+    return stringRegexVariables;
+  }
+
   public String expandStringRegex(String regex) {
     // Replace all variables in regex
     String expanded = regex;
@@ -19,6 +19,7 @@ import java.util.*;
  * @author Angel Chang
  */
 public class MultiCoreMapNodePattern extends MultiNodePattern<CoreMap> {
+  private static final long serialVersionUID = -4964264528701470303L;
 
   Map<Class, CoreMapAttributeAggregator> aggregators = CoreMapAttributeAggregator.getDefaultAggregators();
   NodePattern nodePattern;
@@ -52,6 +53,7 @@ public class MultiCoreMapNodePattern extends MultiNodePattern<CoreMap> {
   }
 
   public static class StringSequenceAnnotationPattern extends MultiNodePattern<CoreMap> {
+    private static final long serialVersionUID = -7248756099217657662L;
     Class textKey;
     PhraseTable phraseTable;
 
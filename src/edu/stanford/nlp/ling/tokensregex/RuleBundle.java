@@ -0,0 +1,513 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.io.*;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.CodeSource;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * TokensRegex rule files compiled into a binary bundle, which can be loaded
+ * without running the rule parser.
+ * <br>
+ * A bundle holds what parsing the rules made: the stages of extraction rules
+ * of the {@link CoreMapExpressionExtractor}, and the variables and settings
+ * the rules changed in the {@link Env}.  Objects which were already in the
+ * environment before the rules were parsed, such as the values of variables
+ * bound in code, aren't written out, but are looked up by name in the
+ * environment the bundle is loaded into.  So a bundle must be loaded into an
+ * environment set up the same way as the one the rules were compiled with.
+ * <br>
+ * If a cache directory is set, with {@link #setCacheDir} or the
+ * {@code tokensregex.bundleCache} system property,
+ * {@link CoreMapExpressionExtractor#createExtractorFromFiles(Env, List)} keeps
+ * a bundle for each set of rule files there.  The bundles are keyed by a hash
+ * of the contents of the rule files, of the initial environment and of the
+ * build of the code, so changing any of them compiles the rules again.
+ * If the build can't be told apart from others (the classes weren't
+ * loaded from a file), the rules aren't cached.  If a bundle can't be read
+ * (say, after the classes in it have changed), the rules are parsed and the
+ * bundle is written again.
+ * <br>
+ * Not all rules can be bundled: rules which use objects that can't be
+ * serialized, and which weren't in the environment to begin with, are
+ * parsed each time.
+ */
+public class RuleBundle {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(RuleBundle.class);
+
+  /** Changed whenever the layout of a bundle changes */
+  private static final int FORMAT_VERSION = 1;
+
+  private static final String BUNDLE_SUFFIX = ".tokensregex.ser";
+
+  private static String cacheDir = System.getProperty("tokensregex.bundleCache");
+
+  private RuleBundle() {} // static methods
+
+  /** The directory compiled rules are kept in, or null if they aren't cached */
+  public static String getCacheDir() {
+    return cacheDir;
+  }
+
+  /** Sets the directory compiled rules are kept in, or turns the cache off if it is null */
+  public static void setCacheDir(String dir) {
+    cacheDir = dir;
+  }
+
+  /** Refers to an object which is already in the environment the rules are loaded into */
+  private static class EnvReference implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private enum Kind { ENV, VARIABLE, RESULTS_ANNOTATION_EXTRACTOR }
+
+    private final Kind kind;
+    private final String name;
+
+    private EnvReference(Kind kind, String name) {
+      this.kind = kind;
+      this.name = name;
+    }
+  }
+
+  /** The environment as it was before the rules were parsed */
+  private static class EnvSnapshot {
+    final Env env;
+    final Map<String, Object> variables;
+    final Map<String, Object> defaults;
+    final Map<String, Pair<Pattern,String>> stringRegexVariables;
+    final Map<String, Object> settings;
+    final Function<MatchedExpression,?> resultsAnnotationExtractor;
+
+    EnvSnapshot(Env env) {
+      this.env = env;
+      this.variables = new HashMap<>(env.getVariables());
+      this.defaults = new HashMap<>(env.getDefaults());
+      this.stringRegexVariables = new HashMap<>(env.getStringRegexVariables());
+      this.settings = settings(env);
+      this.resultsAnnotationExtractor = env.getDefaultResultsAnnotationExtractor();
+    }
+
+    /** The objects which are looked up in the environment instead of being written out */
+    Map<Object, EnvReference> references() {
+      Map<Object, EnvReference> references = new IdentityHashMap<>();
+      references.put(env, new EnvReference(EnvReference.Kind.ENV, null));
+      for (Map.Entry<String, Object> entry : variables.entrySet()) {
+        if ( ! isPlainValue(entry.getValue())) {
+          references.putIfAbsent(entry.getValue(), new EnvReference(EnvReference.Kind.VARIABLE, entry.getKey()));
+        }
+      }
+      if (resultsAnnotationExtractor != null) {
+        references.putIfAbsent(resultsAnnotationExtractor, new EnvReference(EnvReference.Kind.RESULTS_ANNOTATION_EXTRACTOR, null));
+      }
+      return references;
+    }
+
+    Object resolve(EnvReference reference) throws InvalidObjectException {
+      switch (reference.kind) {
+        case ENV:
+          return env;
+        case VARIABLE:
+          if ( ! variables.containsKey(reference.name)) {
+            throw new InvalidObjectException("Rule bundle refers to variable " + reference.name + ", which isn't bound");
+          }
+          return variables.get(reference.name);
+        case RESULTS_ANNOTATION_EXTRACTOR:
+          return resultsAnnotationExtractor;
+        default:
+          throw new InvalidObjectException("Unknown reference " + reference.kind);
+      }
+    }
+  }
+
+  /** What parsing the rules changed in the environment */
+  private static class EnvChanges implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    final Map<String, Object> settings = new HashMap<>();
+    final Map<String, Object> defaults = new HashMap<>();
+    final Set<String> removedDefaults = new HashSet<>();
+    final Map<String, Pair<Pattern,String>> stringRegexVariables = new HashMap<>();
+    final Map<String, Object> variables = new HashMap<>();
+    final Set<String> removedVariables = new HashSet<>();
+
+    EnvChanges(EnvSnapshot before, Env after) {
+      Map<String, Object> afterSettings = settings(after);
+      for (Map.Entry<String, Object> entry : afterSettings.entrySet()) {
+        if ( ! Objects.equals(entry.getValue(), before.settings.get(entry.getKey()))) {
+          settings.put(entry.getKey(), entry.getValue());
+        }
+      }
+      diff(before.defaults, after.getDefaults(), defaults, removedDefaults);
+      for (Map.Entry<String, Pair<Pattern,String>> entry : after.getStringRegexVariables().entrySet()) {
+        if (before.stringRegexVariables.get(entry.getKey()) != entry.getValue()) {
+          stringRegexVariables.put(entry.getKey(), entry.getValue());
+        }
+      }
+      diff(before.variables, after.getVariables(), variables, removedVariables);
+    }
+
+    private static void diff(Map<String, Object> before, Map<String, Object> after,
+                             Map<String, Object> changed, Set<String> removed) {
+      for (Map.Entry<String, Object> entry : after.entrySet()) {
+        if (before.get(entry.getKey()) != entry.getValue()) {
+          changed.put(entry.getKey(), entry.getValue());
+        }
+      }
+      for (String name : before.keySet()) {
+        if ( ! after.containsKey(name)) {
+          removed.add(name);
+        }
+      }
+    }
+
+    void apply(Env env) {
+      for (Map.Entry<String, Object> entry : settings.entrySet()) {
+        try {
+          Env.class.getField(entry.getKey()).set(env, entry.getValue());
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+          throw new IllegalStateException("Cannot set " + entry.getKey() + " in the environment", e);
+        }
+      }
+      env.getDefaults().putAll(defaults);
+      env.getDefaults().keySet().removeAll(removedDefaults);
+      env.getStringRegexVariables().putAll(stringRegexVariables);
+      for (Map.Entry<String, Object> entry : variables.entrySet()) {
+        env.bind(entry.getKey(), entry.getValue());
+      }
+      for (String name : removedVariables) {
+        env.unbind(name);
+      }
+    }
+  }
+
+  /** The public fields of the environment, except for the defaults, which are compared entry by entry */
+  private static Map<String, Object> settings(Env env) {
+    Map<String, Object> settings = new TreeMap<>();
+    for (Field field : Env.class.getFields()) {
+      if ( ! Modifier.isStatic(field.getModifiers()) && ! "defaults".equals(field.getName())) {
+        try {
+          settings.put(field.getName(), field.get(env));
+        } catch (IllegalAccessException e) {
+          throw new IllegalStateException(e);
+        }
+      }
+    }
+    return settings;
+  }
+
+  private static boolean isPlainValue(Object obj) {
+    return obj == null || obj instanceof String || obj instanceof Number || obj instanceof Boolean ||
+        obj instanceof Character || obj instanceof Class || obj instanceof Enum;
+  }
+
+  private static class BundleOutputStream extends ObjectOutputStream {
+    private final Map<Object, EnvReference> references;
+
+    BundleOutputStream(OutputStream out, Map<Object, EnvReference> references) throws IOException {
+      super(out);
+      this.references = references;
+      enableReplaceObject(true);
+    }
+
+    @Override
+    protected Object replaceObject(Object obj) {
+      EnvReference reference = references.get(obj);
+      return (reference != null) ? reference : obj;
+    }
+  }
+
+  private static class BundleInputStream extends ObjectInputStream {
+    private final EnvSnapshot env;
+
+    BundleInputStream(InputStream in, EnvSnapshot env) throws IOException {
+      super(in);
+      this.env = env;
+      enableResolveObject(true);
+    }
+
+    @Override
+    protected Object resolveObject(Object obj) throws IOException {
+      return (obj instanceof EnvReference) ? env.resolve((EnvReference) obj) : obj;
+    }
+  }
+
+  /**
+   * A hash of the rule files and of the environment they are parsed in,
+   * which changes whenever parsing them could give different rules.
+   * Besides the contents of the files, it covers the settings, defaults and
+   * variables of the environment, where a variable holding an object counts
+   * its type and the values of its simple public fields (such as options).
+   */
+  public static String key(Env env, List<String> filenames) {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("format ").append(FORMAT_VERSION).append(' ').append(CodeVersion.VERSION).append('\n');
+    for (Map.Entry<String, Object> entry : settings(env).entrySet()) {
+      sb.append("setting ").append(entry.getKey()).append('=').append(describe(entry.getValue(), 2)).append('\n');
+    }
+    for (Map.Entry<String, Object> entry : new TreeMap<>(env.getDefaults()).entrySet()) {
+      sb.append("default ").append(entry.getKey()).append('=').append(describe(entry.getValue(), 2)).append('\n');
+    }
+    for (Map.Entry<String, Pair<Pattern,String>> entry : new TreeMap<>(env.getStringRegexVariables()).entrySet()) {
+      sb.append("regex ").append(entry.getKey()).append('=').append(entry.getValue().second()).append('\n');
+    }
+    for (Map.Entry<String, Object> entry : new TreeMap<>(env.getVariables()).entrySet()) {
+      sb.append("var ").append(entry.getKey()).append('=').append(describe(entry.getValue(), 1)).append('\n');
+    }
+    digest.update(sb.toString().getBytes(StandardCharsets.UTF_8));
+    for (String filename : filenames) {
+      byte[] contents;
+      try {
+        contents = IOUtils.slurpReader(IOUtils.readerFromString(filename)).getBytes(StandardCharsets.UTF_8);
+      } catch (IOException e) {
+        throw new RuntimeIOException("Error reading rules from " + filename, e);
+      }
+      digest.update(("file " + contents.length + '\n').getBytes(StandardCharsets.UTF_8));
+      digest.update(contents);
+    }
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) {
+      key.append(String.format("%02x", b));
+    }
+    return key.toString();
+  }
+
+  /** The version of the code, worked out the first time a key is made */
+  private static class CodeVersion {
+    static final String VERSION = codeVersion();
+  }
+
+  /**
+   * Tells apart builds of the code, as a bundle from one may not be right
+   * for another.  For classes loaded from a jar this is the size and time of
+   * the jar, and for classes loaded from a directory it is the time of the
+   * newest file in it.
+   *
+   * @return The version, or null if it can't be worked out
+   */
+  private static String codeVersion() {
+    CodeSource source = RuleBundle.class.getProtectionDomain().getCodeSource();
+    URL location = (source != null) ? source.getLocation() : null;
+    if (location == null || ! "file".equals(location.getProtocol())) {
+      return null;
+    }
+    File file;
+    try {
+      file = new File(location.toURI());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      return null;
+    }
+    if (file.isFile()) {
+      return file.length() + ":" + file.lastModified();
+    } else if (file.isDirectory()) {
+      try (Stream<Path> paths = Files.walk(file.toPath())) {
+        return "dir:" + paths.mapToLong(path -> path.toFile().lastModified()).max().orElse(0);
+      } catch (IOException | UncheckedIOException e) {
+        return null;
+      }
+    }
+    return null;
+  }
+
+  /** A description of a value which doesn't depend on where it is in memory */
+  private static String describe(Object value, int depth) {
+    if (value == null) {
+      return "null";
+    } else if (value instanceof Class) {
+      return ((Class<?>) value).getName();
+    } else if (isPlainValue(value)) {
+      return value.toString();
+    }
+    StringBuilder sb = new StringBuilder(value.getClass().getName());
+    if (depth <= 0) {
+      return sb.toString();
+    }
+    if (value instanceof Map) {
+      List<String> entries = new ArrayList<>();
+      for (Map.Entry<?,?> entry : ((Map<?,?>) value).entrySet()) {
+        entries.add(describe(entry.getKey(), depth - 1) + '=' + describe(entry.getValue(), depth - 1));
+      }
+      Collections.sort(entries);
+      sb.append(entries);
+    } else if (value instanceof Collection) {
+      sb.append('[');
+      for (Object element : (Collection<?>) value) {
+        sb.append(describe(element, depth - 1)).append(',');
+      }
+      sb.append(']');
+    } else {
+      sb.append('{');
+      for (Field field : value.getClass().getFields()) {
+        if ( ! Modifier.isStatic(field.getModifiers())) {
+          try {
+            Object fieldValue = field.get(value);
+            if (isPlainValue(fieldValue)) {
+              sb.append(field.getName()).append('=').append(describe(fieldValue, 0)).append(',');
+            }
+          } catch (IllegalAccessException e) {
+            // skip fields we can't see
+          }
+        }
+      }
+      sb.append('}');
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Parses the rule files, as {@link CoreMapExpressionExtractor#createExtractorFromFiles(Env, List)} does,
+   * and writes the result to a bundle.
+   *
+   * @return The extractor made from the rules
+   * @throws NotSerializableException If the rules use objects which can't be written out
+   *   (the environment has still been changed by the rules, and the extractor is fine to use)
+   */
+  public static <M extends MatchedExpression> CoreMapExpressionExtractor<M> compile(Env env, List<String> filenames, String bundleFile) throws IOException {
+    String key = key(env, filenames);
+    EnvSnapshot before = new EnvSnapshot(env);
+    CoreMapExpressionExtractor<M> extractor = CoreMapExpressionExtractor.parseExtractorFromFiles(env, filenames);
+    write(extractor, key, before, new File(bundleFile));
+    return extractor;
+  }
+
+  private static void write(CoreMapExpressionExtractor<?> extractor, String key, EnvSnapshot before, File file) throws IOException {
+    EnvChanges changes = new EnvChanges(before, extractor.getEnv());
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (dir != null && ! dir.exists() && ! dir.mkdirs() && ! dir.isDirectory()) {
+      throw new IOException("Cannot create directory " + dir);
+    }
+    // Write to a temporary file, so no one ever reads half a bundle
+    File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      try (ObjectOutputStream out = new BundleOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)), before.references())) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeObject(changes);
+        out.writeObject(new HashMap<>(extractor.getStages()));
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (tmp.exists() && ! tmp.delete()) {
+        log.warn("Cannot delete " + tmp);
+      }
+    }
+  }
+
+  /**
+   * Loads a bundle into the environment, which must be set up as the one
+   * the rules were compiled with was.  The environment is only changed once
+   * the whole bundle has been read.
+   *
+   * @return The extractor made from the rules
+   */
+  public static <M extends MatchedExpression> CoreMapExpressionExtractor<M> load(Env env, String bundleFile) throws IOException, ClassNotFoundException {
+    return load(env, new File(bundleFile), null);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <M extends MatchedExpression> CoreMapExpressionExtractor<M> load(Env env, File file, String expectedKey) throws IOException, ClassNotFoundException {
+    EnvChanges changes;
+    Map<Integer, CoreMapExpressionExtractor.Stage<M>> stages;
+    try (ObjectInputStream in = new BundleInputStream(new BufferedInputStream(new FileInputStream(file)), new EnvSnapshot(env))) {
+      int version = in.readInt();
+      if (version != FORMAT_VERSION) {
+        throw new InvalidClassException("Rule bundle " + file + " has format " + version + ", not " + FORMAT_VERSION);
+      }
+      String key = in.readUTF();
+      if (expectedKey != null && ! expectedKey.equals(key)) {
+        throw new InvalidObjectException("Rule bundle " + file + " is for other rules");
+      }
+      changes = (EnvChanges) in.readObject();
+      stages = (Map<Integer, CoreMapExpressionExtractor.Stage<M>>) in.readObject();
+    }
+    // The extractor reads its options from the environment before the rules are parsed
+    CoreMapExpressionExtractor<M> extractor = new CoreMapExpressionExtractor<>(env);
+    changes.apply(env);
+    extractor.getStages().putAll(stages);
+    return extractor;
+  }
+
+  /**
+   * Makes an extractor from the rule files, loading it from the bundle for
+   * them in the cache directory if there is one, and otherwise parsing the
+   * rules and writing a bundle for next time.
+   */
+  public static <M extends MatchedExpression> CoreMapExpressionExtractor<M> createExtractor(Env env, List<String> filenames, String cacheDir) {
+    if (CodeVersion.VERSION == null) {
+      // without a version, a bundle from old code would be loaded as though it were up to date
+      log.info("Not caching TokensRegex rules " + filenames + ", as the version of the code they would be bundled with is unknown");
+      return CoreMapExpressionExtractor.parseExtractorFromFiles(env, filenames);
+    }
+    String key = key(env, filenames);
+    File file = new File(cacheDir, key + BUNDLE_SUFFIX);
+    if (file.exists()) {
+      try {
+        return load(env, file, key);
+      } catch (IOException | ClassNotFoundException | ClassCastException e) {
+        log.warn("Cannot load TokensRegex rule bundle " + file + ", parsing the rules again: " + e);
+      }
+    }
+    EnvSnapshot before = new EnvSnapshot(env);
+    CoreMapExpressionExtractor<M> extractor = CoreMapExpressionExtractor.parseExtractorFromFiles(env, filenames);
+    try {
+      write(extractor, key, before, file);
+    } catch (NotSerializableException e) {
+      log.info("TokensRegex rules " + filenames + " can't be cached, as they use " + e.getMessage() + ", which isn't serializable");
+    } catch (IOException e) {
+      log.warn("Cannot write TokensRegex rule bundle " + file + ": " + e);
+    }
+    return extractor;
+  }
+
+  /**
+   * Compiles rule files into a bundle, and compares how long it takes to
+   * load it with how long it takes to parse the rules.
+   * <br>
+   * Usage: {@code java edu.stanford.nlp.ling.tokensregex.RuleBundle -rules rules1.txt,rules2.txt -bundle rules.ser [-iterations 5]}
+   */
+  public static void main(String[] args) throws IOException, ClassNotFoundException {
+    Properties props = StringUtils.argsToProperties(args);
+    List<String> filenames = Arrays.asList(props.getProperty("rules").split(","));
+    String bundleFile = props.getProperty("bundle");
+    int iterations = Integer.parseInt(props.getProperty("iterations", "5"));
+
+    compile(TokenSequencePattern.getNewEnv(), filenames, bundleFile);
+    Timing timing = new Timing();
+    for (int i = 0; i < iterations; i++) {
+      CoreMapExpressionExtractor.parseExtractorFromFiles(TokenSequencePattern.getNewEnv(), filenames);
+    }
+    long parseTime = timing.restart();
+    for (int i = 0; i < iterations; i++) {
+      load(TokenSequencePattern.getNewEnv(), bundleFile);
+    }
+    long loadTime = timing.report();
+    log.info("Parsing the rules took " + (parseTime / iterations) + " ms, loading the bundle took " + (loadTime / iterations) + " ms");
+  }
+
+}
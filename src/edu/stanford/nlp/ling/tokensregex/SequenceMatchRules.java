@@ -462,11 +462,7 @@ public class SequenceMatchRules {
       SequencePatternExtractRule<CoreMap, MatchedExpression> exprExtractRule =
         new SequencePatternExtractRule<>(pattern, exprExtractor, r.matchFindType, r.matchWithResults);
 
-      annotationExtractor.expressionToValue = matched -> {
-        if (matched != null && matched.context != null && matched.context instanceof SequenceMatchResult ) {
-          return valueExtractor.apply( (SequenceMatchResult<CoreMap>) matched.context);
-        } else return null;
-      };
+      annotationExtractor.expressionToValue = new SequenceMatchedValueExtractor(valueExtractor);
       annotationExtractor.valueExtractor = new CoreMapFunctionApplier<>(env, r.annotationField, valueExtractRule);
       r.extractRule = exprExtractRule;
       r.filterRule = new AnnotationMatchedFilter(annotationExtractor);
@@ -527,11 +523,7 @@ public class SequenceMatchRules {
       SequencePatternExtractRule<CoreMap, MatchedExpression> exprExtractRule =
         new SequencePatternExtractRule<>(pattern, exprExtractor, r.matchFindType, r.matchWithResults);
 
-      annotationExtractor.expressionToValue = matched -> {
-        if (matched != null && matched.context != null && matched.context instanceof SequenceMatchResult ) {
-          return valueExtractor.apply( (SequenceMatchResult<CoreMap>) matched.context);
-        } else return null;
-      };
+      annotationExtractor.expressionToValue = new SequenceMatchedValueExtractor(valueExtractor);
       if (r.annotationField != null && r.annotationField != CoreMap.class) {
         annotationExtractor.valueExtractor = new CoreMapFunctionApplier<>(env, r.annotationField, valueExtractRule);
         r.extractRule = new CoreMapExtractRule<>(env, r.annotationField, exprExtractRule);
@@ -583,11 +575,7 @@ public class SequenceMatchRules {
       MultiSequencePatternExtractRule<CoreMap, MatchedExpression> exprExtractRule =
         new MultiSequencePatternExtractRule<>(pattern, exprExtractor);
 
-      annotationExtractor.expressionToValue = matched -> {
-        if (matched != null && matched.context != null && matched.context instanceof SequenceMatchResult ) {
-          return valueExtractor.apply( (SequenceMatchResult<CoreMap>) matched.context);
-        } else return null;
-      };
+      annotationExtractor.expressionToValue = new SequenceMatchedValueExtractor(valueExtractor);
       if (r.annotationField != null && r.annotationField != CoreMap.class) {
         annotationExtractor.valueExtractor = new CoreMapFunctionApplier<>(env, r.annotationField, valueExtractRule);
         r.extractRule = new CoreMapExtractRule<>(env, r.annotationField, exprExtractRule);
@@ -707,7 +695,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class StringMatchResultExtractor implements Function<MatchResult,Value> {
+  public static class StringMatchResultExtractor implements Function<MatchResult,Value>, Serializable {
+    private static final long serialVersionUID = 1L;
     final Env env;
     final Expression action;
     final Expression result;
@@ -736,7 +725,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class SequenceMatchResultExtractor<T> implements Function<SequenceMatchResult<T>,Value> {
+  public static class SequenceMatchResultExtractor<T> implements Function<SequenceMatchResult<T>,Value>, Serializable {
+    private static final long serialVersionUID = 1L;
     final Env env;
     final Expression action;
     final Expression result;
@@ -765,6 +755,26 @@ public class SequenceMatchRules {
   }
 
 
+  /**
+   * Extracts the value of a matched expression from the sequence match it was made from.
+   */
+  public static class SequenceMatchedValueExtractor implements Function<MatchedExpression, Value>, Serializable {
+    private static final long serialVersionUID = 1L;
+    final SequenceMatchResultExtractor<CoreMap> valueExtractor;
+
+    public SequenceMatchedValueExtractor(SequenceMatchResultExtractor<CoreMap> valueExtractor) {
+      this.valueExtractor = valueExtractor;
+    }
+
+    @Override
+    public Value apply(MatchedExpression matched) {
+      if (matched != null && matched.context != null && matched.context instanceof SequenceMatchResult ) {
+        return valueExtractor.apply( (SequenceMatchResult<CoreMap>) matched.context);
+      } else return null;
+    }
+  }
+
+
   /**
    * Interface for a rule that extracts a list of matched items from an input.
    *
@@ -784,7 +794,8 @@ public class SequenceMatchRules {
    * @param <I> input type
    * @param <O> output type
    */
-  public static class FilterExtractRule<I,O> implements ExtractRule<I,O> {
+  public static class FilterExtractRule<I,O> implements ExtractRule<I,O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final Predicate<I> filter;
     final ExtractRule<I,O> rule;
@@ -818,7 +829,8 @@ public class SequenceMatchRules {
    * @param <I> input type
    * @param <O> output type
    */
-  public static class ListExtractRule<I,O> implements ExtractRule<I,O> {
+  public static class ListExtractRule<I,O> implements ExtractRule<I,O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final List<ExtractRule<I,O>> rules;
 
@@ -889,7 +901,8 @@ public class SequenceMatchRules {
    * @param <T> type of the annotation field
    * @param <O> output type
    */
-  public static class CoreMapExtractRule<T,O> implements ExtractRule<CoreMap, O> {
+  public static class CoreMapExtractRule<T,O> implements ExtractRule<CoreMap, O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final Env env;
     final Class annotationField;
@@ -921,7 +934,8 @@ public class SequenceMatchRules {
    *
    * @param <O> output type
    */
-  public static class CoreMapToListExtractRule<O> implements ExtractRule<CoreMap, O> {
+  public static class CoreMapToListExtractRule<O> implements ExtractRule<CoreMap, O>, Serializable {
+    private static final long serialVersionUID = 1L;
     final ExtractRule<List<? extends CoreMap>,O> extractRule;
 
     public CoreMapToListExtractRule(ExtractRule<List<? extends CoreMap>,O> extractRule) {
@@ -939,7 +953,8 @@ public class SequenceMatchRules {
    * Extraction rule.
    * Input is of type CoreMap, output is MatchedExpression.
    */
-  public static class BasicSequenceExtractRule implements ExtractRule< List<? extends CoreMap>, MatchedExpression> {
+  public static class BasicSequenceExtractRule implements ExtractRule< List<? extends CoreMap>, MatchedExpression>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final MatchedExpression.SingleAnnotationExtractor extractor;
 
@@ -964,7 +979,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class SequencePatternExtractRule<T,O> implements ExtractRule< List<? extends T>, O>, Function<List<? extends T>, O> {
+  public static class SequencePatternExtractRule<T,O> implements ExtractRule< List<? extends T>, O>, Function<List<? extends T>, O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final SequencePattern<T> pattern;
     final Function<SequenceMatchResult<T>, O> extractor;
@@ -1019,7 +1035,8 @@ public class SequenceMatchRules {
   } // end static class SequencePatternExtractRule
 
 
-  public static class MultiSequencePatternExtractRule<T,O> implements ExtractRule< List<? extends T>, O>, Function<List<? extends T>, O> {
+  public static class MultiSequencePatternExtractRule<T,O> implements ExtractRule< List<? extends T>, O>, Function<List<? extends T>, O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final MultiPatternMatcher<T> matcher;
     final Function<SequenceMatchResult<T>, O> extractor;
@@ -1054,7 +1071,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class StringPatternExtractRule<O> implements ExtractRule<String, O>, Function<String, O> {
+  public static class StringPatternExtractRule<O> implements ExtractRule<String, O>, Function<String, O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final Pattern pattern;
     private final Function<MatchResult, O> extractor;
@@ -1110,7 +1128,8 @@ public class SequenceMatchRules {
   } // end static class StringPatternExtractRule
 
 
-  public static class StringMatchedExpressionExtractor implements Function<MatchResult, MatchedExpression> {
+  public static class StringMatchedExpressionExtractor implements Function<MatchResult, MatchedExpression>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final MatchedExpression.SingleAnnotationExtractor extractor;
     final int group;
@@ -1128,7 +1147,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class SequenceMatchedExpressionExtractor implements Function<SequenceMatchResult<CoreMap>, MatchedExpression> {
+  public static class SequenceMatchedExpressionExtractor implements Function<SequenceMatchResult<CoreMap>, MatchedExpression>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final MatchedExpression.SingleAnnotationExtractor extractor;
     final int group;
@@ -1156,7 +1176,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class CoreMapFunctionApplier<T,O> implements Function<CoreMap, O> {
+  public static class CoreMapFunctionApplier<T,O> implements Function<CoreMap, O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final Env env;
     final Class annotationField;
@@ -1188,7 +1209,8 @@ public class SequenceMatchRules {
   }
 
 
-  public static class CoreMapToListFunctionApplier<O> implements Function<CoreMap, O> {
+  public static class CoreMapToListFunctionApplier<O> implements Function<CoreMap, O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     final Env env;
     final Function<List<? extends CoreMap>,O> func;
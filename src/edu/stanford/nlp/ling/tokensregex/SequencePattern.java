@@ -2,6 +2,7 @@ package edu.stanford.nlp.ling.tokensregex;
 
 import edu.stanford.nlp.util.*;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
@@ -274,11 +275,13 @@ public class SequencePattern<T> implements Serializable {
   }
 
   // Interface indicating when two nodes match
-  protected static interface NodesMatchChecker<T> {
+  protected static interface NodesMatchChecker<T> extends Serializable {
     public boolean matches(T o1, T o2);
   }
 
   public static final NodesMatchChecker<Object> NODES_EQUAL_CHECKER = new NodesMatchChecker<Object>() {
+    private static final long serialVersionUID = 1L;
+
     @Override
     public boolean matches(Object o1, Object o2) {
       return o1.equals(o2);
@@ -1841,6 +1844,12 @@ public class SequencePattern<T> implements Serializable {
     this.root = f.start;
     varGroupBindings = new VarGroupBindings(totalGroups+1);
     patternExpr.updateBindings(varGroupBindings);
+    try {
+      priority = ois.readDouble();
+      weight = ois.readDouble();
+    } catch (EOFException e) {
+      // patterns written before the priority and weight were kept have neither
+    }
   }
 
 
@@ -1849,7 +1858,8 @@ public class SequencePattern<T> implements Serializable {
     oos.writeObject(toString());
     oos.writeObject(this.getPatternExpr());
     oos.writeObject(this.getAction());
-
+    oos.writeDouble(priority);
+    oos.writeDouble(weight);
   }  //  public void writeObject()
 
   // States for matching conjunctions
@@ -0,0 +1,268 @@
+package edu.stanford.nlp.ling.tokensregex.matcher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * Finds all occurrences of many phrases (sequences of elements, such as
+ * the words of a gazetteer) in a sequence in one pass, with an
+ * Aho-Corasick automaton.  Unlike {@link TrieMapMatcher}, which walks the
+ * trie from every start position, each element of the sequence is looked
+ * at once, so matching takes time linear in the length of the sequence
+ * plus the number of matches, however many phrases there are.
+ * <br>
+ * Phrases are added with {@link #add}, and then {@link #build()} makes the
+ * failure links.  After that the matcher can't be changed, and can be used
+ * from several threads at once.
+ * <br>
+ * The automaton is kept in arrays, rather than a map per state as in
+ * {@link TrieMap}, so that it stays small for millions of phrases.
+ *
+ * @param <K> Type of the elements of the phrases
+ * @param <V> Type of the values of the phrases
+ */
+public class AhoCorasickMatcher<K,V> {
+
+  private static final int ROOT = 0;
+
+  /** The elements of the phrases, numbered */
+  private final Map<K,Integer> symbols = Generics.newHashMap();
+
+  /** Open addressing table of the transitions: the (state, symbol) key of each slot, or -1 if it is empty */
+  private long[] transitionKeys = newTransitionKeys(16);
+  /** The state each transition goes to */
+  private int[] transitionTargets = new int[16];
+  private int numTransitions; // = 0;
+
+  private int numStates = 1;
+  /** [state]: the length of the phrase prefix the state stands for */
+  private int[] depth = new int[16];
+  /** [state]: the first value of a phrase ending in this state, or -1 */
+  private int[] firstValue = newValueHeads(16);
+  /** [state]: the last value of a phrase ending in this state, or -1 */
+  private int[] lastValue = newValueHeads(16);
+
+  private final List<V> values = new ArrayList<>();
+  /** [value]: the next value of a phrase ending in the same state, or -1 */
+  private int[] nextValue = new int[16];
+
+  /** [state]: the state of the longest proper suffix which is a phrase prefix; null until built */
+  private int[] fail; // = null;
+  /** [state]: the state of the longest proper suffix which ends a phrase, or -1 */
+  private int[] outputLink; // = null;
+
+  private static long[] newTransitionKeys(int size) {
+    long[] keys = new long[size];
+    Arrays.fill(keys, -1L);
+    return keys;
+  }
+
+  private static int[] newValueHeads(int size) {
+    int[] heads = new int[size];
+    Arrays.fill(heads, -1);
+    return heads;
+  }
+
+  private static long key(int state, int symbol) {
+    return ((long) state << 32) | symbol;
+  }
+
+  private static int slot(long key, int mask) {
+    long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32)) & mask;
+  }
+
+  /** The state a transition goes to, or -1 if there is none */
+  private int transition(int state, int symbol) {
+    long key = key(state, symbol);
+    int mask = transitionKeys.length - 1;
+    for (int i = slot(key, mask); ; i = (i + 1) & mask) {
+      long k = transitionKeys[i];
+      if (k == key) {
+        return transitionTargets[i];
+      } else if (k == -1L) {
+        return -1;
+      }
+    }
+  }
+
+  private void putTransition(long key, int target) {
+    int mask = transitionKeys.length - 1;
+    int i = slot(key, mask);
+    while (transitionKeys[i] != -1L) {
+      i = (i + 1) & mask;
+    }
+    transitionKeys[i] = key;
+    transitionTargets[i] = target;
+  }
+
+  private int addTransition(int state, int symbol) {
+    if (2 * (numTransitions + 1) > transitionKeys.length) {
+      long[] oldKeys = transitionKeys;
+      int[] oldTargets = transitionTargets;
+      transitionKeys = newTransitionKeys(2 * oldKeys.length);
+      transitionTargets = new int[2 * oldKeys.length];
+      for (int i = 0; i < oldKeys.length; i++) {
+        if (oldKeys[i] != -1L) {
+          putTransition(oldKeys[i], oldTargets[i]);
+        }
+      }
+    }
+    int target = numStates++;
+    if (target == depth.length) {
+      int size = 2 * depth.length;
+      depth = Arrays.copyOf(depth, size);
+      firstValue = Arrays.copyOf(firstValue, size);
+      lastValue = Arrays.copyOf(lastValue, size);
+      Arrays.fill(firstValue, target, size, -1);
+      Arrays.fill(lastValue, target, size, -1);
+    }
+    depth[target] = depth[state] + 1;
+    putTransition(key(state, symbol), target);
+    numTransitions++;
+    return target;
+  }
+
+  /**
+   * Adds a phrase.  A phrase may be added more than once, with different
+   * values, and then each match of it is reported once for each value.
+   *
+   * @throws IllegalStateException If the matcher has already been built
+   */
+  public void add(List<K> phrase, V value) {
+    if (fail != null) {
+      throw new IllegalStateException("Cannot add phrases to an AhoCorasickMatcher once it has been built");
+    }
+    if (phrase.isEmpty()) {
+      throw new IllegalArgumentException("Cannot match an empty phrase");
+    }
+    int state = ROOT;
+    for (K element : phrase) {
+      Integer symbol = symbols.get(element);
+      if (symbol == null) {
+        symbol = symbols.size();
+        symbols.put(element, symbol);
+      }
+      int next = transition(state, symbol);
+      state = (next >= 0) ? next : addTransition(state, symbol);
+    }
+    int index = values.size();
+    values.add(value);
+    if (index == nextValue.length) {
+      nextValue = Arrays.copyOf(nextValue, 2 * index);
+    }
+    nextValue[index] = -1;
+    if (lastValue[state] < 0) {
+      firstValue[state] = index;
+    } else {
+      nextValue[lastValue[state]] = index;
+    }
+    lastValue[state] = index;
+  }
+
+  /** The number of phrases added */
+  public int size() {
+    return values.size();
+  }
+
+  public boolean isBuilt() {
+    return fail != null;
+  }
+
+  /**
+   * Makes the failure links, after which phrases can be matched.
+   * Building a matcher again does nothing.
+   */
+  public void build() {
+    if (fail != null) {
+      return;
+    }
+    // A state's failure link only depends on those of shallower states,
+    // so go through the transitions in order of the depth of the states they go to
+    int maxDepth = 0;
+    for (int state = 0; state < numStates; state++) {
+      maxDepth = Math.max(maxDepth, depth[state]);
+    }
+    int[] starts = new int[maxDepth + 2];
+    for (int state = 1; state < numStates; state++) {
+      starts[depth[state] + 1]++;
+    }
+    for (int d = 1; d < starts.length; d++) {
+      starts[d] += starts[d - 1];
+    }
+    int[] sources = new int[numTransitions];
+    int[] transitionSymbols = new int[numTransitions];
+    int[] targets = new int[numTransitions];
+    for (int i = 0; i < transitionKeys.length; i++) {
+      long key = transitionKeys[i];
+      if (key != -1L) {
+        int target = transitionTargets[i];
+        int position = starts[depth[target]]++;
+        sources[position] = (int) (key >>> 32);
+        transitionSymbols[position] = (int) key;
+        targets[position] = target;
+      }
+    }
+
+    int[] fail = new int[numStates];
+    int[] outputLink = new int[numStates];
+    outputLink[ROOT] = -1;
+    for (int i = 0; i < numTransitions; i++) {
+      int target = targets[i];
+      int link = ROOT;
+      if (sources[i] != ROOT) {
+        int state = fail[sources[i]];
+        int next;
+        while ((next = transition(state, transitionSymbols[i])) < 0 && state != ROOT) {
+          state = fail[state];
+        }
+        link = Math.max(next, ROOT);
+      }
+      fail[target] = link;
+      outputLink[target] = (firstValue[link] >= 0) ? link : outputLink[link];
+    }
+    this.outputLink = outputLink;
+    this.fail = fail;
+  }
+
+  /**
+   * All the occurrences of the phrases in the sequence, including ones
+   * which overlap or are inside others.  They are in order of where they
+   * end, and the longest first of those which end in the same place.
+   *
+   * @throws IllegalStateException If the matcher hasn't been built
+   */
+  public List<Match<K,V>> findAllMatches(List<K> list) {
+    if (fail == null) {
+      throw new IllegalStateException("AhoCorasickMatcher must be built before matching");
+    }
+    List<Match<K,V>> matches = new ArrayList<>();
+    int state = ROOT;
+    for (int i = 0; i < list.size(); i++) {
+      Integer symbol = symbols.get(list.get(i));
+      if (symbol == null) {
+        state = ROOT;
+        continue;
+      }
+      int next;
+      while ((next = transition(state, symbol)) < 0 && state != ROOT) {
+        state = fail[state];
+      }
+      state = Math.max(next, ROOT);
+      int end = i + 1;
+      for (int output = (firstValue[state] >= 0) ? state : outputLink[state]; output > ROOT; output = outputLink[output]) {
+        int begin = end - depth[output];
+        List<K> matched = list.subList(begin, end);
+        for (int value = firstValue[output]; value >= 0; value = nextValue[value]) {
+          matches.add(new Match<>(matched, values.get(value), begin, end));
+        }
+      }
+    }
+    return matches;
+  }
+
+}
@@ -209,7 +209,8 @@ public class Expressions  {
   /**
    * An expression that is a wrapper around another expression.
    */
-  public abstract static class WrappedExpression implements Expression {
+  public abstract static class WrappedExpression implements Expression, Serializable {
+    private static final long serialVersionUID = 1L;
 
     protected Expression expr;
 
@@ -749,6 +750,7 @@ public class Expressions  {
   }
 
   public static class CaseExpression extends Expressions.WrappedExpression {
+    private static final long serialVersionUID = 4106690240825656746L;
     public CaseExpression(List<Pair<Expression,Expression>> conds, Expression elseExpr) {
       if (conds.size() == 0) {
         throw new IllegalArgumentException("No conditions!");
@@ -764,6 +766,7 @@ public class Expressions  {
 
 
   public static class ConditionalExpression extends Expressions.WrappedExpression {
+    private static final long serialVersionUID = 8280361567246713688L;
 
     public ConditionalExpression(Expression expr) {
       this.expr = expr;
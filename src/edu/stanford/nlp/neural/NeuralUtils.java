@@ -323,6 +323,38 @@ public class NeuralUtils {
     return m;
   }
 
+  /**
+   * Applies a feedforward network to each column of the input, and
+   * returns the sum of each column of its output.  The layers are
+   * alternating weight matrices and bias vectors, and ReLU is applied
+   * after each layer with more than one output.  The scores are the
+   * same as applying the network to each column separately, but each
+   * layer is one matrix multiply.
+   */
+  public static double[] feedforwardColumnSums(SimpleMatrix input, List<SimpleMatrix> layers) {
+    SimpleMatrix features = input;
+    for (int i = 0; i < layers.size(); i += 2) {
+      SimpleMatrix weights = layers.get(i);
+      SimpleMatrix bias = layers.get(i + 1);
+      features = weights.mult(features);
+      boolean relu = weights.numRows() > 1;
+      for (int row = 0; row < features.numRows(); ++row) {
+        double b = bias.get(row);
+        for (int col = 0; col < features.numCols(); ++col) {
+          double value = features.get(row, col) + b;
+          features.set(row, col, relu ? Math.max(0, value) : value);
+        }
+      }
+    }
+    double[] sums = new double[features.numCols()];
+    for (int row = 0; row < features.numRows(); ++row) {
+      for (int col = 0; col < sums.length; ++col) {
+        sums[col] += features.get(row, col);
+      }
+    }
+    return sums;
+  }
+
   /**
    * Returns true iff every element of matrix is 0
    */
@@ -0,0 +1,134 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import edu.stanford.nlp.trees.TreebankLanguagePack;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+
+/**
+ * Projects the states of a split grammar onto their basic categories, as
+ * {@link BasicCategoryTagProjection} does for tags, so that NP^S and
+ * NP^VP both become NP and @NP| DT NN becomes @NP.  The target grammar
+ * has a rule for each projected rule, scored with the best score of the
+ * rules projected onto it.  A score in the target grammar is therefore
+ * never worse than the score of any parse it is a projection of, which
+ * makes it a cheap guide to which states are worth building with the
+ * source grammar.
+ *
+ * @see CoarseToFinePruner
+ */
+class BasicCategoryGrammarProjection implements GrammarProjection {
+
+  private final BinaryGrammar sourceBG;
+  private final UnaryGrammar sourceUG;
+  private final BinaryGrammar targetBG;
+  private final UnaryGrammar targetUG;
+  private final Index<String> targetStateIndex;
+  private final int[] projection;
+
+  /** Projections already made, as they take a while for big grammars and are the same for every parser */
+  private static final Map<BinaryGrammar, BasicCategoryGrammarProjection> projections = new WeakHashMap<>();
+
+  /** The projection of a grammar, made the first time it is asked for */
+  static synchronized BasicCategoryGrammarProjection of(BinaryGrammar bg, UnaryGrammar ug, Index<String> stateIndex, TreebankLanguagePack tlp) {
+    BasicCategoryGrammarProjection gp = projections.get(bg);
+    if (gp == null || gp.sourceUG != ug || gp.projection.length != stateIndex.size()) {
+      gp = new BasicCategoryGrammarProjection(bg, ug, stateIndex, tlp);
+      projections.put(bg, gp);
+    }
+    return gp;
+  }
+
+  BasicCategoryGrammarProjection(BinaryGrammar bg, UnaryGrammar ug, Index<String> stateIndex, TreebankLanguagePack tlp) {
+    this.sourceBG = bg;
+    this.sourceUG = ug;
+    int numStates = stateIndex.size();
+    targetStateIndex = new HashIndex<>();
+    projection = new int[numStates];
+    for (int state = 0; state < numStates; state++) {
+      String category = stateIndex.get(state);
+      // keep the marker of binarization states, which basicCategory may remove
+      String basic = tlp.basicCategory(category);
+      if (category.startsWith("@") && ! basic.startsWith("@")) {
+        basic = '@' + basic;
+      }
+      projection[state] = targetStateIndex.addToIndex(basic);
+    }
+
+    // the best score of the rules projected onto each target rule
+    Map<BinaryRule, BinaryRule> binaries = Generics.newHashMap();
+    for (BinaryRule rule : bg) {
+      BinaryRule target = new BinaryRule(projection[rule.parent], projection[rule.leftChild], projection[rule.rightChild], rule.score);
+      BinaryRule best = binaries.get(target);
+      if (best == null) {
+        binaries.put(target, target);
+      } else if (rule.score > best.score) {
+        best.score = rule.score;
+      }
+    }
+    targetBG = new BinaryGrammar(targetStateIndex);
+    for (BinaryRule rule : binaries.keySet()) {
+      targetBG.addRule(rule);
+    }
+    targetBG.splitRules();
+
+    // The closed rules are projected, so that the target's closure is at
+    // least as good as any chain of source unaries
+    Map<UnaryRule, UnaryRule> unaries = Generics.newHashMap();
+    for (int state = 0; state < numStates; state++) {
+      for (UnaryRule rule : ug.closedRulesByChild(state)) {
+        int parent = projection[rule.parent];
+        int child = projection[rule.child];
+        if (parent == child) {
+          continue;
+        }
+        UnaryRule target = new UnaryRule(parent, child, rule.score);
+        UnaryRule best = unaries.get(target);
+        if (best == null) {
+          unaries.put(target, target);
+        } else if (rule.score > best.score) {
+          best.score = rule.score;
+        }
+      }
+    }
+    targetUG = new UnaryGrammar(targetStateIndex);
+    for (UnaryRule rule : unaries.keySet()) {
+      targetUG.addRule(rule);
+    }
+    targetUG.purgeRules();
+  }
+
+  @Override
+  public int project(int state) {
+    return projection[state];
+  }
+
+  /** The states of the target grammar */
+  Index<String> targetStateIndex() {
+    return targetStateIndex;
+  }
+
+  @Override
+  public UnaryGrammar sourceUG() {
+    return sourceUG;
+  }
+
+  @Override
+  public BinaryGrammar sourceBG() {
+    return sourceBG;
+  }
+
+  @Override
+  public UnaryGrammar targetUG() {
+    return targetUG;
+  }
+
+  @Override
+  public BinaryGrammar targetBG() {
+    return targetBG;
+  }
+
+}
@@ -0,0 +1,122 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.parser.common.ArgUtils;
+import edu.stanford.nlp.parser.metrics.Evalb;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.TreeTransformer;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.Pair;
+
+/**
+ * Compares parsing a treebank exhaustively with parsing it with
+ * coarse-to-fine pruning (see {@link TestOptions#coarseToFine}) at
+ * several thresholds, reporting the time taken, the labeled bracketing
+ * F1, and how often the pruned parse is not the exhaustive one.
+ * For example, for WSJ section 23:
+ * <br>
+ * {@code java edu.stanford.nlp.parser.lexparser.CoarseToFineBenchmark -model englishPCFG.ser.gz -treebank /path/to/wsj 2300-2399 -thresholds -6,-8,-10,-12}
+ * <br>
+ * Other flags are passed on to the parser.
+ */
+public class CoarseToFineBenchmark {
+
+  private CoarseToFineBenchmark() {} // main method only
+
+  public static void main(String[] args) {
+    String model = LexicalizedParser.DEFAULT_PARSER_LOC;
+    String treebankPath = null;
+    FileFilter treebankFilter = null;
+    String thresholds = "-6,-8,-10,-12";
+    List<String> flags = new ArrayList<>();
+    for (int argIndex = 0; argIndex < args.length; ) {
+      if (args[argIndex].equalsIgnoreCase("-model")) {
+        model = args[argIndex + 1];
+        argIndex += 2;
+      } else if (args[argIndex].equalsIgnoreCase("-treebank")) {
+        Pair<String, FileFilter> treebankDescription = ArgUtils.getTreebankDescription(args, argIndex, "-treebank");
+        argIndex = argIndex + ArgUtils.numSubArgs(args, argIndex) + 1;
+        treebankPath = treebankDescription.first();
+        treebankFilter = treebankDescription.second();
+      } else if (args[argIndex].equalsIgnoreCase("-thresholds")) {
+        thresholds = args[argIndex + 1];
+        argIndex += 2;
+      } else {
+        flags.add(args[argIndex++]);
+      }
+    }
+    if (treebankPath == null) {
+      throw new IllegalArgumentException("A -treebank to take sentences and gold parses from is needed");
+    }
+
+    LexicalizedParser lp = LexicalizedParser.loadModel(model, flags);
+    Options op = lp.getOp();
+    Treebank treebank = op.tlpParams.testMemoryTreebank();
+    treebank.loadPath(treebankPath, treebankFilter);
+    TreeTransformer collinizer = op.tlpParams.collinizer();
+    List<List<HasWord>> sentences = new ArrayList<>();
+    List<Tree> gold = new ArrayList<>();
+    for (Tree tree : treebank) {
+      List<HasWord> sentence = new ArrayList<>(tree.yieldHasWord());
+      if (sentence.size() <= op.testOptions.maxLength) {
+        sentences.add(sentence);
+        gold.add(collinizer.transformTree(tree));
+      }
+    }
+
+    // warm up the JIT with both ways of parsing
+    List<List<HasWord>> warmUp = sentences.subList(0, Math.min(50, sentences.size()));
+    for (boolean coarseToFine : new boolean[] { false, true }) {
+      op.testOptions.coarseToFine = coarseToFine;
+      for (List<HasWord> sentence : warmUp) {
+        lp.parse(sentence);
+      }
+    }
+
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-12s %10s %8s %8s %9s %10s%n", "threshold", "seconds", "speedup", "F1", "F1 delta", "changed"));
+    List<Tree> exhaustive = null;
+    double exhaustiveSeconds = 0.0;
+    double exhaustiveF1 = 0.0;
+    List<String> settings = new ArrayList<>();
+    settings.add("none");
+    for (String threshold : thresholds.split(",")) {
+      settings.add(threshold.trim());
+    }
+    for (String setting : settings) {
+      op.testOptions.coarseToFine = ! setting.equals("none");
+      if (op.testOptions.coarseToFine) {
+        op.testOptions.coarseToFineThreshold = Double.parseDouble(setting);
+      }
+      Evalb evalb = new Evalb(setting, false);
+      List<Tree> parses = new ArrayList<>();
+      long start = System.nanoTime();
+      for (List<HasWord> sentence : sentences) {
+        parses.add(lp.parse(sentence));
+      }
+      double seconds = (System.nanoTime() - start) / 1e9;
+      for (int i = 0; i < parses.size(); i++) {
+        evalb.evaluate(collinizer.transformTree(parses.get(i)), gold.get(i), null);
+      }
+      double f1 = evalb.getEvalbF1Percent();
+      if (exhaustive == null) {
+        exhaustive = parses;
+        exhaustiveSeconds = seconds;
+        exhaustiveF1 = f1;
+      }
+      int changed = 0;
+      for (int i = 0; i < parses.size(); i++) {
+        if ( ! parses.get(i).equals(exhaustive.get(i))) {
+          changed++;
+        }
+      }
+      report.append(String.format("%-12s %10.3f %8.2f %8.2f %9.2f %10d%n", setting, seconds, exhaustiveSeconds / seconds, f1, f1 - exhaustiveF1, changed));
+    }
+    System.out.print(report);
+  }
+
+}
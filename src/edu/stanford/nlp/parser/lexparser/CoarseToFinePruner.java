@@ -0,0 +1,233 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+
+/**
+ * Decides which states the {@link ExhaustivePCFGParser} should build over
+ * each span by first parsing with a coarse projection of its grammar.
+ * The coarse grammar has a few dozen states instead of thousands, so
+ * filling in its inside and outside charts costs little.  A fine state
+ * is then only built over a span if the best coarse parse through its
+ * coarse state over that span scores within a threshold of the best
+ * coarse parse of the sentence.
+ * <br>
+ * The coarse grammar gives each of its rules the best score of the rules
+ * projected onto it, so coarse scores are never worse than the fine
+ * scores of the parses they are projections of.  The threshold is how
+ * far below the best coarse parse a state's coarse score may be, so a
+ * larger (more negative) threshold prunes less and loses fewer of the
+ * fine parser's best parses.
+ * <br>
+ * A pruner keeps its charts between sentences, so it is not threadsafe;
+ * each parser has its own.
+ *
+ * @see TestOptions#coarseToFine
+ */
+class CoarseToFinePruner {
+
+  private final int[] projection;
+  private final int numStates;
+  private final UnaryGrammar ug;
+  /** The coarse binary rules, by left child */
+  private final BinaryRule[][] rulesWithLC;
+
+  private float[][][] iScore;  // [start][end][coarse state]; null for end <= start
+  private float[][][] oScore;
+  private boolean[][][] allowed;
+  private int arraySize = 0;
+
+  CoarseToFinePruner(BasicCategoryGrammarProjection gp, int numFineStates) {
+    projection = new int[numFineStates];
+    for (int state = 0; state < numFineStates; state++) {
+      projection[state] = gp.project(state);
+    }
+    numStates = gp.targetStateIndex().size();
+    ug = gp.targetUG();
+    BinaryGrammar bg = gp.targetBG();
+    rulesWithLC = new BinaryRule[numStates][];
+    for (int state = 0; state < numStates; state++) {
+      List<BinaryRule> rules = bg.ruleListByLeftChild(state);
+      rulesWithLC[state] = rules.toArray(new BinaryRule[rules.size()]);
+    }
+  }
+
+  /** The coarse state of each fine state */
+  int[] projection() {
+    return projection;
+  }
+
+  private void createArrays(int length) {
+    iScore = new float[length][length + 1][];
+    oScore = new float[length][length + 1][];
+    allowed = new boolean[length][length + 1][];
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        iScore[start][end] = new float[numStates];
+        oScore[start][end] = new float[numStates];
+        allowed[start][end] = new boolean[numStates];
+      }
+    }
+    arraySize = length;
+  }
+
+  /**
+   * Parses a sentence with the coarse grammar, and returns which coarse
+   * states may be built over each span.
+   *
+   * @param fineIScore The fine parser's chart, with the cells of single
+   *     words filled in
+   * @param length The length of the sentence, including the boundary symbol
+   * @param fineGoal The fine parser's goal state
+   * @param threshold How far below the best coarse parse, as a log
+   *     probability, a state's best coarse parse may be for it to be built
+   * @return For each start and end with start &lt; end, whether each
+   *     coarse state may be built over it; or null if the coarse grammar
+   *     can't parse the sentence either, and so nothing should be pruned
+   */
+  boolean[][][] prune(float[][][] fineIScore, int length, int fineGoal, double threshold) {
+    if (length > arraySize) {
+      createArrays(length);
+    }
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
+        Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
+      }
+    }
+    for (int start = 0; start < length; start++) {
+      float[] fine = fineIScore[start][start + 1];
+      float[] coarse = iScore[start][start + 1];
+      for (int state = 0; state < fine.length; state++) {
+        int c = projection[state];
+        if (fine[state] > coarse[c]) {
+          coarse[c] = fine[state];
+        }
+      }
+    }
+
+    doInsideScores(length);
+    int goal = projection[fineGoal];
+    float bestScore = iScore[0][length][goal];
+    if (bestScore == Float.NEGATIVE_INFINITY) {
+      return null;
+    }
+    oScore[0][length][goal] = 0.0f;
+    doOutsideScores(length);
+
+    float minimum = (float) (bestScore + threshold);
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        float[] iS = iScore[start][end];
+        float[] oS = oScore[start][end];
+        boolean[] allowedStates = allowed[start][end];
+        for (int state = 0; state < numStates; state++) {
+          allowedStates[state] = iS[state] + oS[state] >= minimum;
+        }
+      }
+    }
+    return allowed;
+  }
+
+  private void doInsideScores(int length) {
+    for (int diff = 2; diff <= length; diff++) {
+      if (Thread.interrupted()) {
+        throw new RuntimeInterruptedException();
+      }
+      for (int start = 0; start + diff <= length; start++) {
+        int end = start + diff;
+        float[] iScore_start_end = iScore[start][end];
+        for (int split = start + 1; split < end; split++) {
+          float[] left = iScore[start][split];
+          float[] right = iScore[split][end];
+          for (int leftState = 0; leftState < numStates; leftState++) {
+            float lS = left[leftState];
+            if (lS == Float.NEGATIVE_INFINITY) {
+              continue;
+            }
+            for (BinaryRule rule : rulesWithLC[leftState]) {
+              float rS = right[rule.rightChild];
+              if (rS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float tot = rule.score + lS + rS;
+              if (tot > iScore_start_end[rule.parent]) {
+                iScore_start_end[rule.parent] = tot;
+              }
+            }
+          }
+        }
+        for (int state = 0; state < numStates; state++) {
+          float iS = iScore_start_end[state];
+          if (iS == Float.NEGATIVE_INFINITY) {
+            continue;
+          }
+          for (UnaryRule ur : ug.closedRulesByChild(state)) {
+            float tot = iS + ur.score;
+            if (tot > iScore_start_end[ur.parent]) {
+              iScore_start_end[ur.parent] = tot;
+            }
+          }
+        }
+      }
+    }
+  }
+
+  private void doOutsideScores(int length) {
+    for (int diff = length; diff >= 1; diff--) {
+      if (Thread.interrupted()) {
+        throw new RuntimeInterruptedException();
+      }
+      for (int start = 0; start + diff <= length; start++) {
+        int end = start + diff;
+        float[] iScore_start_end = iScore[start][end];
+        float[] oScore_start_end = oScore[start][end];
+        for (int state = 0; state < numStates; state++) {
+          float oS = oScore_start_end[state];
+          if (oS == Float.NEGATIVE_INFINITY) {
+            continue;
+          }
+          for (UnaryRule ur : ug.closedRulesByParent(state)) {
+            float tot = oS + ur.score;
+            if (tot > oScore_start_end[ur.child] && iScore_start_end[ur.child] > Float.NEGATIVE_INFINITY) {
+              oScore_start_end[ur.child] = tot;
+            }
+          }
+        }
+        for (int split = start + 1; split < end; split++) {
+          float[] left = iScore[start][split];
+          float[] right = iScore[split][end];
+          float[] leftO = oScore[start][split];
+          float[] rightO = oScore[split][end];
+          for (int leftState = 0; leftState < numStates; leftState++) {
+            float lS = left[leftState];
+            if (lS == Float.NEGATIVE_INFINITY) {
+              continue;
+            }
+            for (BinaryRule rule : rulesWithLC[leftState]) {
+              float oS = oScore_start_end[rule.parent];
+              if (oS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float rS = right[rule.rightChild];
+              if (rS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float totL = rule.score + rS + oS;
+              if (totL > leftO[leftState]) {
+                leftO[leftState] = totL;
+              }
+              float totR = rule.score + lS + oS;
+              if (totR > rightO[rule.rightChild]) {
+                rightO[rule.rightChild] = totR;
+              }
+            }
+          }
+        }
+      }
+    }
+  }
+
+}
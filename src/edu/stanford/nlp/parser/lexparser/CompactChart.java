@@ -0,0 +1,120 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Arrays;
+
+/**
+ * Inside scores for the {@link ExhaustivePCFGParser} which only stores
+ * the states which were built over each span, for parsing sentences too
+ * long for a full chart of {@code float[length][length + 1][numStates]}.
+ * <br>
+ * Each finished cell is packed into a bitmap of the states built over
+ * its span, the number of built states before each 64 state block of the
+ * bitmap, and the scores of the built states, in state order.  Looking up
+ * a state costs a bit test and a bit count.  All the cells are packed into
+ * the same few arrays, which are kept and reused for the next sentence,
+ * so that parsing long sentences one after another doesn't allocate
+ * anything once the arrays are large enough.
+ * <br>
+ * A chart is filled in one cell at a time with {@link #put}, which must
+ * not be called at the same time as {@link #get}; cells may be read from
+ * many threads at once between calls to put.
+ *
+ * @see TestOptions#compactChartLength
+ */
+class CompactChart {
+
+  private final int numStates;
+  private final int blocksPerCell;
+
+  /** The length of the sentence this chart is for, including the boundary symbol */
+  private int length;
+
+  /** [cell * blocksPerCell + block]: which states of the block were built */
+  private long[] bits = new long[0];
+  /** [cell * blocksPerCell + block]: where the block's first score is in scores */
+  private int[] offsets = new int[0];
+  /** The scores of the built states of all the cells */
+  private float[] scores = new float[1024];
+  private int numScores;
+
+  CompactChart(int numStates) {
+    this.numStates = numStates;
+    this.blocksPerCell = (numStates + 63) >>> 6;
+  }
+
+  /** Empties the chart, ready for a sentence of this length */
+  void clear(int length) {
+    this.length = length;
+    int size = (length * (length + 1) / 2) * blocksPerCell;
+    if (bits.length < size) {
+      bits = new long[size];
+      offsets = new int[size];
+    } else {
+      Arrays.fill(bits, 0, size, 0L);
+    }
+    numScores = 0;
+  }
+
+  /** The index of the cell over [start, end), for 0 &lt;= start &lt; end &lt;= length */
+  int cell(int start, int end) {
+    return start * (2 * length - start + 1) / 2 + (end - start - 1);
+  }
+
+  /**
+   * Stores the cell over [start, end), which is given as an array of the
+   * score of each state, with negative infinity for states not built.
+   */
+  void put(int start, int end, float[] cellScores) {
+    int base = cell(start, end) * blocksPerCell;
+    int built = 0;
+    for (float score : cellScores) {
+      if (score != Float.NEGATIVE_INFINITY) {
+        built++;
+      }
+    }
+    if (numScores + built > scores.length) {
+      scores = Arrays.copyOf(scores, Math.max(numScores + built, scores.length * 2));
+    }
+    for (int block = 0; block < blocksPerCell; block++) {
+      offsets[base + block] = numScores;
+      long blockBits = 0L;
+      int first = block << 6;
+      int last = Math.min(first + 64, numStates);
+      for (int state = first; state < last; state++) {
+        float score = cellScores[state];
+        if (score != Float.NEGATIVE_INFINITY) {
+          blockBits |= 1L << state;
+          scores[numScores++] = score;
+        }
+      }
+      bits[base + block] = blockBits;
+    }
+  }
+
+  /** The score of state in the cell with index cell, or negative infinity if it wasn't built */
+  float get(int cell, int state) {
+    int i = cell * blocksPerCell + (state >>> 6);
+    long blockBits = bits[i];
+    long bit = 1L << state;
+    if ((blockBits & bit) == 0) {
+      return Float.NEGATIVE_INFINITY;
+    }
+    return scores[offsets[i] + Long.bitCount(blockBits & (bit - 1))];
+  }
+
+  /** The score of state over [start, end), or negative infinity if it wasn't built */
+  float get(int start, int end, int state) {
+    return get(cell(start, end), state);
+  }
+
+  /** How many states are stored, over all the cells */
+  int size() {
+    return numScores;
+  }
+
+  /** The number of bytes the arrays of the chart take up, for reporting */
+  long bytes() {
+    return 12L * bits.length + 4L * scores.length;
+  }
+
+}
@@ -44,6 +44,9 @@ import edu.stanford.nlp.util.PriorityQueue;
 import edu.stanford.nlp.util.logging.Redwood;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 import java.util.regex.Matcher;
 
 /** An exhaustive generalized CKY PCFG parser.
@@ -157,7 +160,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   @Override
   public double iScore(Edge edge) {
-    return iScore[edge.start][edge.end][edge.state];
+    return insideScore(edge.start, edge.end, edge.state);
   }
 
   @Override
@@ -213,7 +216,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       int word = wordIndex.indexOf(wordStr);
       IntTaggedWord iTW = new IntTaggedWord(word, tag);
       float score = lex.score(iTW, start, wordStr, null);
-      float bound = iScore[start][start + 1][stateIndex.indexOf(tree.label().value())];
+      float bound = insideScore(start, start + 1, stateIndex.indexOf(tree.label().value()));
       if (score > bound + epsilon) {
         System.out.println("Invalid tagging:");
         System.out.println("  Tag: " + tree.label().value());
@@ -228,7 +231,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (tree.numChildren() == 1) {
       UnaryRule ur = new UnaryRule(parent, firstChild);
       double score = SloppyMath.max(ug.scoreRule(ur), -10000.0) + validateBinarizedTree(tree.children()[0], start);
-      double bound = iScore[start][start + tree.yield().size()][parent];
+      double bound = insideScore(start, start + tree.yield().size(), parent);
       if (score > bound + epsilon) {
         System.out.println("Invalid unary:");
         System.out.println("  Parent: " + tree.label().value());
@@ -243,7 +246,7 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     int secondChild = stateIndex.indexOf(tree.children()[1].label().value());
     BinaryRule br = new BinaryRule(parent, firstChild, secondChild);
     double score = SloppyMath.max(bg.scoreRule(br), -10000.0) + validateBinarizedTree(tree.children()[0], start) + validateBinarizedTree(tree.children()[1], start + tree.children()[0].yield().size());
-    double bound = iScore[start][start + tree.yield().size()][parent];
+    double bound = insideScore(start, start + tree.yield().size(), parent);
     if (score > bound + epsilon) {
       System.out.println("Invalid binary:");
       System.out.println("  Parent: " + tree.label().value());
@@ -333,8 +336,32 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
   protected final boolean[] isTag; // this records whether grammar states (stateIndex) correspond to POS tags
 
+  /** Used for coarse-to-fine pruning; made when first needed */
+  private CoarseToFinePruner pruner; // = null;
+  /** [start][end][coarse state]: whether states projecting onto a coarse state may be built; null to build all states */
+  private boolean[][][] allowedStates; // = null;
+  /** Set while parsing a sentence again without pruning, because pruning lost every parse */
+  private boolean parseUnpruned; // = false;
+
+  /** Whether the current sentence's inside scores are in compactChart rather than iScore */
+  private boolean compact; // = false;
+  /** Whether the arrays were last created for a compact chart, in which case iScore has no cells of its own */
+  private boolean compactArrays; // = false;
+  /** Inside scores of long sentences; made when first needed, and reused */
+  private CompactChart compactChart; // = null;
+  /** [start][state]: with a compact chart, the cells being filled in, before they are packed */
+  private float[][] compactScratch; // = null;
+
 
   public boolean parse(List<? extends HasWord> sentence) {
+    try {
+      return parseSentence(sentence);
+    } finally {
+      closeChartPool();
+    }
+  }
+
+  private boolean parseSentence(List<? extends HasWord> sentence) {
     lr = null; // better nullPointer exception than silent error
     //System.out.println("is it a taggedword?" + (sentence.get(0) instanceof TaggedWord)); //debugging
     if (sentence != this.sentence) {
@@ -348,7 +375,8 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
       tick("Starting PCFG parse...");
     }
     length = sentence.size();
-    if (length > arraySize) {
+    compact = useCompactChart(length);
+    if (length > arraySize || compact != compactArrays) {
       considerCreatingArrays(length);
     }
     int goal = stateIndex.indexOf(goalStr);
@@ -422,14 +450,24 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (Thread.interrupted()) {
       throw new RuntimeInterruptedException();
     }
-    for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
-        if (op.doDep && ! op.testOptions.useFastFactored) {
-          Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
-        }
-        if (op.testOptions.lengthNormalization) {
-          Arrays.fill(wordsInSpan[start][end], 1);
+    if (compact) {
+      // only the cells of single words are filled in before doInsideScores
+      compactChart.clear(length);
+      for (int start = 0; start < length; start++) {
+        Arrays.fill(iScore[start], null);
+        Arrays.fill(compactScratch[start], Float.NEGATIVE_INFINITY);
+        iScore[start][start + 1] = compactScratch[start];
+      }
+    } else {
+      for (int start = 0; start < length; start++) {
+        for (int end = start + 1; end <= length; end++) {
+          Arrays.fill(iScore[start][end], Float.NEGATIVE_INFINITY);
+          if (op.doDep && ! op.testOptions.useFastFactored) {
+            Arrays.fill(oScore[start][end], Float.NEGATIVE_INFINITY);
+          }
+          if (op.testOptions.lengthNormalization) {
+            Arrays.fill(wordsInSpan[start][end], 1);
+          }
         }
       }
     }
@@ -462,6 +500,17 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     initializeChart(sentence);
     //if (op.testOptions.outsideFilter)
     // buildOFilter();
+    allowedStates = null;
+    if (op.testOptions.coarseToFine && ! parseUnpruned && ! floodTags && op.testOptions.maxSpanForTags == 1) {
+      if (op.testOptions.verbose) {
+        Timing.tick("done.");
+        log.info("Starting coarse parse...");
+      }
+      if (pruner == null) {
+        pruner = new CoarseToFinePruner(BasicCategoryGrammarProjection.of(bg, ug, stateIndex, tlp), numStates);
+      }
+      allowedStates = pruner.prune(iScore, length, goal, op.testOptions.coarseToFineThreshold);
+    }
     if (op.testOptions.verbose) {
       Timing.tick("done.");
       log.info("Starting insides...");
@@ -471,10 +520,19 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
     if (op.testOptions.verbose) {
       // insideTime += Timing.tick("done.");
       Timing.tick("done.");
-      System.out.println("PCFG parsing " + length + " words (incl. stop): insideScore = " + iScore[0][length][goal]);
+      System.out.println("PCFG parsing " + length + " words (incl. stop): insideScore = " + insideScore(0, length, goal));
     }
-    bestScore = iScore[0][length][goal];
+    bestScore = insideScore(0, length, goal);
     boolean succeeded = hasParse();
+    if ( ! succeeded && allowedStates != null) {
+      // pruning lost every parse, so parse again building everything
+      parseUnpruned = true;
+      try {
+        return parse(sentence);
+      } finally {
+        parseUnpruned = false;
+      }
+    }
     if (op.testOptions.doRecovery && !succeeded && !floodTags) {
       floodTags = true; // sentence will try to reparse
       // ms: disabled message. this is annoying and it doesn't really provide much information
@@ -546,7 +604,8 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
 
     // The number of whitespace nodes in the lattice
     length = lr.getNumNodes() - 1; //Subtract 1 since considerCreatingArrays will add the final interstice
-    if (length > arraySize)
+    compact = false;
+    if (length > arraySize || compactArrays)
       considerCreatingArrays(length);
 
 
@@ -667,155 +726,194 @@ public class ExhaustivePCFGParser implements Scorer, KBestViterbiParser  {
         throw new RuntimeInterruptedException();
       }
 
-      for (int start = 0; start + diff <= length; start++) {
-        int end = start + diff;
-        // do unaries
-        for (int s = 0; s < numStates; s++) {
-          float oS = oScore[start][end][s];
-          if (oS == Float.NEGATIVE_INFINITY) {
+      final int span = diff;
+      int numStarts = length - diff + 1;
+      if (fillInParallel(numStarts)) {
+        // A cell passes outside scores down to the cells of its left
+        // children, which start where it does, and to those of its right
+        // children, which end where it does.  So cells of the same length
+        // never write to the same cell while passing down to left children,
+        // or while passing down to right children, and doing the two
+        // separately gives the same maxima as doing them together.
+        fillInCells(numStarts, start -> {
+          doOutsideUnaries(start, start + span);
+          doOutsideBinaries(start, start + span, true, false);
+        });
+        fillInCells(numStarts, start -> doOutsideBinaries(start, start + span, false, true));
+      } else {
+        for (int start = 0; start < numStarts; start++) {
+          int end = start + diff;
+          doOutsideUnaries(start, end);
+          doOutsideBinaries(start, end, true, true);
+        }
+      }
+    }
+  }
+
+  private void doOutsideUnaries(final int start, final int end) {
+    for (int s = 0; s < numStates; s++) {
+      float oS = oScore[start][end][s];
+      if (oS == Float.NEGATIVE_INFINITY) {
+        continue;
+      }
+      UnaryRule[] rules = ug.closedRulesByParent(s);
+      for (UnaryRule ur : rules) {
+        float pS = ur.score;
+        float tot = oS + pS;
+        if (tot > oScore[start][end][ur.child] && iScore[start][end][ur.child] > Float.NEGATIVE_INFINITY) {
+          oScore[start][end][ur.child] = tot;
+        }
+      }
+    }
+  }
+
+  /**
+   * Passes the outside score of each state over [start, end) down to the
+   * children of the binary rules which can build it.
+   *
+   * @param leftChildren Whether to update the outside scores of left children
+   * @param rightChildren Whether to update the outside scores of right children
+   */
+  private void doOutsideBinaries(final int start, final int end, boolean leftChildren, boolean rightChildren) {
+    for (int s = 0; s < numStates; s++) {
+      int min1 = narrowRExtent[start][s];
+      if (end < min1) {
+        continue;
+      }
+      BinaryRule[] rules = bg.splitRulesWithLC(s);
+      for (BinaryRule br  : rules) {
+        float oS = oScore[start][end][br.parent];
+        if (oS == Float.NEGATIVE_INFINITY) {
+          continue;
+        }
+        int max1 = narrowLExtent[end][br.rightChild];
+        if (max1 < min1) {
+          continue;
+        }
+        int min = min1;
+        int max = max1;
+        if (max - min > 2) {
+          int min2 = wideLExtent[end][br.rightChild];
+          min = (min1 > min2 ? min1 : min2);
+          if (max1 < min) {
             continue;
           }
-          UnaryRule[] rules = ug.closedRulesByParent(s);
-          for (UnaryRule ur : rules) {
-            float pS = ur.score;
-            float tot = oS + pS;
-            if (tot > oScore[start][end][ur.child] && iScore[start][end][ur.child] > Float.NEGATIVE_INFINITY) {
-              oScore[start][end][ur.child] = tot;
-            }
+          int max2 = wideRExtent[start][br.leftChild];
+          max = (max1 < max2 ? max1 : max2);
+          if (max < min) {
+            continue;
           }
         }
-        // do binaries
-        for (int s = 0; s < numStates; s++) {
-          int min1 = narrowRExtent[start][s];
-          if (end < min1) {
+        float pS = br.score;
+        for (int split = min; split <= max; split++) {
+          float lS = iScore[start][split][br.leftChild];
+          if (lS == Float.NEGATIVE_INFINITY) {
             continue;
           }
-          BinaryRule[] rules = bg.splitRulesWithLC(s);
-          for (BinaryRule br  : rules) {
-            float oS = oScore[start][end][br.parent];
-            if (oS == Float.NEGATIVE_INFINITY) {
-              continue;
-            }
-            int max1 = narrowLExtent[end][br.rightChild];
-            if (max1 < min1) {
-              continue;
-            }
-            int min = min1;
-            int max = max1;
-            if (max - min > 2) {
-              int min2 = wideLExtent[end][br.rightChild];
-              min = (min1 > min2 ? min1 : min2);
-              if (max1 < min) {
-                continue;
-              }
-              int max2 = wideRExtent[start][br.leftChild];
-              max = (max1 < max2 ? max1 : max2);
-              if (max < min) {
-                continue;
-              }
+          float rS = iScore[split][end][br.rightChild];
+          if (rS == Float.NEGATIVE_INFINITY) {
+            continue;
+          }
+          if (leftChildren) {
+            float totL = pS + rS + oS;
+            if (totL > oScore[start][split][br.leftChild]) {
+              oScore[start][split][br.leftChild] = totL;
             }
-            float pS = br.score;
-            for (int split = min; split <= max; split++) {
-              float lS = iScore[start][split][br.leftChild];
-              if (lS == Float.NEGATIVE_INFINITY) {
-                continue;
-              }
-              float rS = iScore[split][end][br.rightChild];
-              if (rS == Float.NEGATIVE_INFINITY) {
-                continue;
-              }
-              float totL = pS + rS + oS;
-              if (totL > oScore[start][split][br.leftChild]) {
-                oScore[start][split][br.leftChild] = totL;
-              }
-              float totR = pS + lS + oS;
-              if (totR > oScore[split][end][br.rightChild]) {
-                oScore[split][end][br.rightChild] = totR;
-              }
+          }
+          if (rightChildren) {
+            float totR = pS + lS + oS;
+            if (totR > oScore[split][end][br.rightChild]) {
+              oScore[split][end][br.rightChild] = totR;
             }
           }
         }
-        for (int s = 0; s < numStates; s++) {
-          int max1 = narrowLExtent[end][s];
-          if (max1 < start) {
+      }
+    }
+    for (int s = 0; s < numStates; s++) {
+      int max1 = narrowLExtent[end][s];
+      if (max1 < start) {
+        continue;
+      }
+      BinaryRule[] rules = bg.splitRulesWithRC(s);
+      for (BinaryRule br : rules) {
+        float oS = oScore[start][end][br.parent];
+        if (oS == Float.NEGATIVE_INFINITY) {
+          continue;
+        }
+        int min1 = narrowRExtent[start][br.leftChild];
+        if (max1 < min1) {
+          continue;
+        }
+        int min = min1;
+        int max = max1;
+        if (max - min > 2) {
+          int min2 = wideLExtent[end][br.rightChild];
+          min = (min1 > min2 ? min1 : min2);
+          if (max1 < min) {
+            continue;
+          }
+          int max2 = wideRExtent[start][br.leftChild];
+          max = (max1 < max2 ? max1 : max2);
+          if (max < min) {
+            continue;
+          }
+        }
+        float pS = br.score;
+        for (int split = min; split <= max; split++) {
+          float lS = iScore[start][split][br.leftChild];
+          if (lS == Float.NEGATIVE_INFINITY) {
             continue;
           }
-          BinaryRule[] rules = bg.splitRulesWithRC(s);
-          for (BinaryRule br : rules) {
-            float oS = oScore[start][end][br.parent];
-            if (oS == Float.NEGATIVE_INFINITY) {
-              continue;
-            }
-            int min1 = narrowRExtent[start][br.leftChild];
-            if (max1 < min1) {
-              continue;
-            }
-            int min = min1;
-            int max = max1;
-            if (max - min > 2) {
-              int min2 = wideLExtent[end][br.rightChild];
-              min = (min1 > min2 ? min1 : min2);
-              if (max1 < min) {
-                continue;
-              }
-              int max2 = wideRExtent[start][br.leftChild];
-              max = (max1 < max2 ? max1 : max2);
-              if (max < min) {
-                continue;
-              }
+          float rS = iScore[split][end][br.rightChild];
+          if (rS == Float.NEGATIVE_INFINITY) {
+            continue;
+          }
+          if (leftChildren) {
+            float totL = pS + rS + oS;
+            if (totL > oScore[start][split][br.leftChild]) {
+              oScore[start][split][br.leftChild] = totL;
             }
-            float pS = br.score;
-            for (int split = min; split <= max; split++) {
-              float lS = iScore[start][split][br.leftChild];
-              if (lS == Float.NEGATIVE_INFINITY) {
-                continue;
-              }
-              float rS = iScore[split][end][br.rightChild];
-              if (rS == Float.NEGATIVE_INFINITY) {
-                continue;
-              }
-              float totL = pS + rS + oS;
-              if (totL > oScore[start][split][br.leftChild]) {
-                oScore[start][split][br.leftChild] = totL;
-              }
-              float totR = pS + lS + oS;
-              if (totR > oScore[split][end][br.rightChild]) {
-                oScore[split][end][br.rightChild] = totR;
-              }
+          }
+          if (rightChildren) {
+            float totR = pS + lS + oS;
+            if (totR > oScore[split][end][br.rightChild]) {
+              oScore[split][end][br.rightChild] = totR;
             }
           }
         }
-        /*
-          for (int s = 0; s < numStates; s++) {
-          float oS = oScore[start][end][s];
-          //if (iScore[start][end][s] == Float.NEGATIVE_INFINITY ||
-          //             oS == Float.NEGATIVE_INFINITY)
-          if (oS == Float.NEGATIVE_INFINITY)
+      }
+    }
+    /*
+      for (int s = 0; s < numStates; s++) {
+      float oS = oScore[start][end][s];
+      //if (iScore[start][end][s] == Float.NEGATIVE_INFINITY ||
+      //             oS == Float.NEGATIVE_INFINITY)
+      if (oS == Float.NEGATIVE_INFINITY)
+      continue;
+      BinaryRule[] rules = bg.splitRulesWithParent(s);
+      for (int r=0; r<rules.length; r++) {
+        BinaryRule br = rules[r];
+        int min1 = narrowRExtent[start][br.leftChild];
+        if (end < min1)
+          continue;
+        int max1 = narrowLExtent[end][br.rightChild];
+        if (max1 < min1)
+          continue;
+        int min2 = wideLExtent[end][br.rightChild];
+        int min = (min1 > min2 ? min1 : min2);
+        if (max1 < min)
+          continue;
+        int max2 = wideRExtent[start][br.leftChild];
+        int max = (max1 < max2 ? max1 : max2);
+        if (max < min)
           continue;
-          BinaryRule[] rules = bg.splitRulesWithParent(s);
-          for (int r=0; r<rules.length; r++) {
-            BinaryRule br = rules[r];
-            int min1 = narrowRExtent[start][br.leftChild];
-            if (end < min1)
-              continue;
-            int max1 = narrowLExtent[end][br.rightChild];
-            if (max1 < min1)
-              continue;
-            int min2 = wideLExtent[end][br.rightChild];
-            int min = (min1 > min2 ? min1 : min2);
-            if (max1 < min)
-              continue;
-            int max2 = wideRExtent[start][br.leftChild];
-            int max = (max1 < max2 ? max1 : max2);
-            if (max < min)
-              continue;
 float pS = (float) br.score;
 for (int split = min; split <= max; split++) {
 float lS = iScore[start][split][br.leftChild];
 if (lS == Float.NEGATIVE_INFINITY)
-          continue;
+      continue;
 float rS = iScore[split][end][br.rightChild];
-              if (rS == Float.NEGATIVE_INFINITY)
+          if (rS == Float.NEGATIVE_INFINITY)
 continue;
 float totL = pS+rS+oS;
 if (totL > oScore[start][split][br.leftChild]) {
@@ -828,15 +926,16 @@ oScore[split][end][br.rightChild] = totR;
 }
 }
 }
-        */
-      }
-    }
+    */
   }
 
   /** Fills in the iScore array of each category over each span
    *  of length 2 or more.
    */
   void doInsideScores() {
+    if (compact) {
+      packCells(1, length);
+    }
     for (int diff = 2; diff <= length; diff++) {
       if (Thread.interrupted()) {
         throw new RuntimeInterruptedException();
@@ -845,13 +944,176 @@ oScore[split][end][br.rightChild] = totR;
       // usually stop one short because boundary symbol only combines
       // with whole sentence span. So for 3 word sentence + boundary = 4,
       // length == 4, and do [0,2], [1,3]; [0,3]; [0,4]
-      for (int start = 0; start < ((diff == length) ? 1: length - diff); start++) {
-        doInsideChartCell(diff, start);
-      } // for start
+      int numStarts = (diff == length) ? 1: length - diff;
+      if (compact) {
+        for (int start = 0; start < numStarts; start++) {
+          Arrays.fill(compactScratch[start], Float.NEGATIVE_INFINITY);
+          iScore[start][start + diff] = compactScratch[start];
+        }
+      }
+      if (fillInParallel(numStarts)) {
+        // A cell only reads the cells of shorter spans, and only writes to
+        // itself and to the extents of states starting where it starts and
+        // ending where it ends, which no other cell of this length does
+        final int span = diff;
+        fillInCells(numStarts, start -> doInsideChartCell(span, start));
+      } else {
+        for (int start = 0; start < numStarts; start++) {
+          doInsideChartCell(diff, start);
+        } // for start
+      }
+      if (compact) {
+        packCells(diff, numStarts);
+      }
     } // for diff (i.e., span)
   } // end doInsideScores()
 
 
+  /**
+   * Whether to parse a sentence of this length with a compact chart.
+   * Only the inside pass over single words can be done with one, so not
+   * when outside scores are needed, nor in a subclass which fills in the
+   * chart itself.
+   */
+  private boolean useCompactChart(int length) {
+    return op.testOptions.compactChartLength >= 0 && length > op.testOptions.compactChartLength &&
+        ( ! op.doDep || op.testOptions.useFastFactored) &&
+        op.testOptions.maxSpanForTags == 1 && ! op.testOptions.lengthNormalization &&
+        supportsCompactChart();
+  }
+
+  /** Whether this parser can fill in a compact chart; false for subclasses which override doInsideScores */
+  boolean supportsCompactChart() {
+    return true;
+  }
+
+  /** Packs the first numStarts cells of span length diff into the compact chart, freeing their scratch arrays */
+  private void packCells(int diff, int numStarts) {
+    for (int start = 0; start < numStarts; start++) {
+      compactChart.put(start, start + diff, iScore[start][start + diff]);
+      iScore[start][start + diff] = null;
+    }
+  }
+
+  /** The inside score of state over [start, end), from whichever chart the sentence was parsed with */
+  protected float insideScore(int start, int end, int state) {
+    return compact ? compactChart.get(start, end, state) : iScore[start][end][state];
+  }
+
+  /**
+   * With a compact chart, the best score of the binary rule with these
+   * children and score over [start, end), with a split from min to max,
+   * or bestIScore if none is better.  This is what the loops over split
+   * points in doInsideChartCell do with a full chart.
+   */
+  private float bestCompactSplit(int start, int end, int leftState, int rightState, float pS, int min, int max,
+                                 float bestIScore, List<ParserConstraint> constraints) {
+    CompactChart chart = compactChart;
+    for (int split = min; split <= max; split++) {
+      if (constraints != null && violatesConstraints(constraints, start, split, end, leftState, rightState)) {
+        continue;
+      }
+      float lS = chart.get(chart.cell(start, split), leftState);
+      if (lS == Float.NEGATIVE_INFINITY) {
+        continue;
+      }
+      float rS = chart.get(chart.cell(split, end), rightState);
+      if (rS == Float.NEGATIVE_INFINITY) {
+        continue;
+      }
+      float tot = pS + lS + rS;
+      if (tot > bestIScore) {
+        bestIScore = tot;
+      }
+    }
+    return bestIScore;
+  }
+
+  /** Whether building leftState over [start, split) and rightState over [split, end) goes against the constraints */
+  private boolean violatesConstraints(List<ParserConstraint> constraints, int start, int split, int end, int leftState, int rightState) {
+    for (ParserConstraint c : constraints) {
+      if (((start < c.start && end >= c.end) || (start <= c.start && end > c.end)) && split > c.start && split < c.end) {
+        return true;
+      }
+      if (start == c.start && split == c.end && ! c.state.matcher(stateIndex.get(leftState)).matches()) {
+        return true;
+      }
+      if (split == c.start && end == c.end && ! c.state.matcher(stateIndex.get(rightState)).matches()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+
+  /**
+   * Threads for filling in charts, when more are asked for than the common
+   * pool has; made when first needed, and shut down once the sentence is parsed
+   */
+  private ForkJoinPool chartPool; // = null;
+
+  /**
+   * Whether to fill in the numCells cells of a span length at the same
+   * time, as asked for by {@link TestOptions#pcfgThreads}.  Printing the
+   * guts of the parse needs them filled in one at a time.
+   */
+  private boolean fillInParallel(int numCells) {
+    return op.testOptions.pcfgThreads > 1 && numCells > 1 && ! spillGuts;
+  }
+
+  /**
+   * Calls fillInCell for each start from 0 to numCells - 1, in parallel, and
+   * waits for them all.  The common pool is used if it has enough threads,
+   * so parsers don't each keep threads of their own.
+   */
+  private void fillInCells(int numCells, IntConsumer fillInCell) {
+    int threads = op.testOptions.pcfgThreads;
+    ForkJoinPool pool;
+    if (threads <= ForkJoinPool.getCommonPoolParallelism()) {
+      pool = ForkJoinPool.commonPool();
+    } else {
+      if (chartPool == null) {
+        chartPool = new ForkJoinPool(threads);
+      }
+      pool = chartPool;
+    }
+    pool.invoke(new CellsTask(0, numCells, fillInCell));
+  }
+
+  private void closeChartPool() {
+    if (chartPool != null) {
+      chartPool.shutdown();
+      chartPool = null;
+    }
+  }
+
+  /** Recursively splits a range of cells until there is one cell to fill in. */
+  private static class CellsTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int start;
+    private final int end;
+    private final IntConsumer fillInCell;
+
+    CellsTask(int start, int end, IntConsumer fillInCell) {
+      this.start = start;
+      this.end = end;
+      this.fillInCell = fillInCell;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start == 1) {
+        fillInCell.accept(start);
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(new CellsTask(start, middle, fillInCell),
+                new CellsTask(middle, end, fillInCell));
+    }
+  }
+
+
   private void doInsideChartCell(final int diff, final int start) {
     final boolean lengthNormalization = op.testOptions.lengthNormalization;
     if (spillGuts) {
@@ -877,6 +1139,9 @@ oScore[split][end][br.rightChild] = totR;
     int[] wideLExtent_end = wideLExtent[end];
     float[][] iScore_start = iScore[start];
     float[] iScore_start_end = iScore_start[end];
+    // coarse-to-fine pruning, if on: only build states whose coarse states are allowed
+    boolean[] allowed_start_end = (allowedStates == null) ? null : allowedStates[start][end];
+    int[] projection = (allowedStates == null) ? null : pruner.projection();
 
     for (int leftState = 0; leftState < numStates; leftState++) {
       int narrowR = narrowRExtent_start[leftState];
@@ -886,6 +1151,9 @@ oScore[split][end][br.rightChild] = totR;
       BinaryRule[] leftRules = bg.splitRulesWithLC(leftState);
       //      if (spillGuts) System.out.println("Found " + leftRules.length + " left rules for state " + stateIndex.get(leftState));
       for (BinaryRule rule : leftRules) {
+        if (allowed_start_end != null && ! allowed_start_end[projection[rule.parent]]) {
+          continue;
+        }
         int rightChild = rule.rightChild;
         int narrowL = narrowLExtent_end[rightChild];
         if (narrowL < narrowR) { // can this right constituent fit next to the left constituent?
@@ -911,51 +1179,55 @@ oScore[split][end][br.rightChild] = totR;
 
         if ( ! lengthNormalization) {
           // find the split that can use this rule to make the max score
-          for (int split = min; split <= max; split++) {
+          if (compact) {
+            bestIScore = bestCompactSplit(start, end, leftState, rightChild, pS, min, max, bestIScore, constraints);
+          } else {
+            for (int split = min; split <= max; split++) {
 
-            if (constraints != null) {
-              boolean skip = false;
-              for (ParserConstraint c : constraints) {
-                if (((start < c.start && end >= c.end) || (start <= c.start && end > c.end)) && split > c.start && split < c.end) {
-                  skip = true;
-                  break;
-                }
-                if ((start == c.start && split == c.end)) {
-                  String tag = stateIndex.get(leftState);
-                  Matcher m = c.state.matcher(tag);
-                  if (!m.matches()) {
+              if (constraints != null) {
+                boolean skip = false;
+                for (ParserConstraint c : constraints) {
+                  if (((start < c.start && end >= c.end) || (start <= c.start && end > c.end)) && split > c.start && split < c.end) {
                     skip = true;
                     break;
                   }
-                }
-                if ((split == c.start && end == c.end)) {
-                  String tag = stateIndex.get(rightChild);
-                  Matcher m = c.state.matcher(tag);
-                  if (!m.matches()) {
-                    skip = true;
-                    break;
+                  if ((start == c.start && split == c.end)) {
+                    String tag = stateIndex.get(leftState);
+                    Matcher m = c.state.matcher(tag);
+                    if (!m.matches()) {
+                      skip = true;
+                      break;
+                    }
                   }
+                  if ((split == c.start && end == c.end)) {
+                    String tag = stateIndex.get(rightChild);
+                    Matcher m = c.state.matcher(tag);
+                    if (!m.matches()) {
+                      skip = true;
+                      break;
+                    }
+                  }
+                }
+                if (skip) {
+                  continue;
                 }
               }
-              if (skip) {
+
+              float lS = iScore_start[split][leftState];
+              if (lS == Float.NEGATIVE_INFINITY) {
                 continue;
               }
-            }
-
-            float lS = iScore_start[split][leftState];
-            if (lS == Float.NEGATIVE_INFINITY) {
-              continue;
-            }
-            float rS = iScore[split][end][rightChild];
-            if (rS == Float.NEGATIVE_INFINITY) {
-              continue;
-            }
-            float tot = pS + lS + rS;
-            if (spillGuts) { log.info("Rule " + rule + " over [" + start + "," + end + ") has log score " + tot + " from L[" + stateIndex.get(leftState) + "=" + leftState + "] = "+ lS  + " R[" + stateIndex.get(rightChild) + "=" + rightChild + "] =  " + rS); }
-            if (tot > bestIScore) {
-              bestIScore = tot;
-            }
-          } // for split point
+              float rS = iScore[split][end][rightChild];
+              if (rS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float tot = pS + lS + rS;
+              if (spillGuts) { log.info("Rule " + rule + " over [" + start + "," + end + ") has log score " + tot + " from L[" + stateIndex.get(leftState) + "=" + leftState + "] = "+ lS  + " R[" + stateIndex.get(rightChild) + "=" + rightChild + "] =  " + rS); }
+              if (tot > bestIScore) {
+                bestIScore = tot;
+              }
+            } // for split point
+          }
           foundBetter = bestIScore > oldIScore;
         } else {
           // find split that uses this rule to make the max *length normalized* score
@@ -1015,6 +1287,9 @@ oScore[split][end][br.rightChild] = totR;
       //      if (spillGuts) System.out.println("Found " + rightRules.length + " right rules for state " + stateIndex.get(rightState));
       for (BinaryRule rule : rightRules) {
         //      if (spillGuts) System.out.println("Considering rule for " + start + " to " + end + ": " + rightRules[i]);
+        if (allowed_start_end != null && ! allowed_start_end[projection[rule.parent]]) {
+          continue;
+        }
 
         int leftChild = rule.leftChild;
         int narrowR = narrowRExtent_start[leftChild];
@@ -1040,54 +1315,58 @@ oScore[split][end][br.rightChild] = totR;
         //System.out.println("Start "+start+" end "+end+" min "+min+" max "+max);
         if ( ! lengthNormalization) {
           // find the split that can use this rule to make the max score
-          for (int split = min; split <= max; split++) {
+          if (compact) {
+            bestIScore = bestCompactSplit(start, end, leftChild, rightState, pS, min, max, bestIScore, constraints);
+          } else {
+            for (int split = min; split <= max; split++) {
 
-            if (constraints != null) {
-              boolean skip = false;
-              for (ParserConstraint c : constraints) {
-                if (((start < c.start && end >= c.end) || (start <= c.start && end > c.end)) && split > c.start && split < c.end) {
-                  skip = true;
-                  break;
-                }
-                if ((start == c.start && split == c.end)) {
-                  String tag = stateIndex.get(leftChild);
-                  Matcher m = c.state.matcher(tag);
-                  if (!m.matches()) {
-                    //if (!tag.startsWith(c.state+"^")) {
+              if (constraints != null) {
+                boolean skip = false;
+                for (ParserConstraint c : constraints) {
+                  if (((start < c.start && end >= c.end) || (start <= c.start && end > c.end)) && split > c.start && split < c.end) {
                     skip = true;
                     break;
                   }
-                }
-                if ((split == c.start && end == c.end)) {
-                  String tag = stateIndex.get(rightState);
-                  Matcher m = c.state.matcher(tag);
-                  if (!m.matches()) {
-                    //if (!tag.startsWith(c.state+"^")) {
-                    skip = true;
-                    break;
+                  if ((start == c.start && split == c.end)) {
+                    String tag = stateIndex.get(leftChild);
+                    Matcher m = c.state.matcher(tag);
+                    if (!m.matches()) {
+                      //if (!tag.startsWith(c.state+"^")) {
+                      skip = true;
+                      break;
+                    }
                   }
+                  if ((split == c.start && end == c.end)) {
+                    String tag = stateIndex.get(rightState);
+                    Matcher m = c.state.matcher(tag);
+                    if (!m.matches()) {
+                      //if (!tag.startsWith(c.state+"^")) {
+                      skip = true;
+                      break;
+                    }
+                  }
+                }
+                if (skip) {
+                  continue;
                 }
               }
-              if (skip) {
+
+              float lS = iScore_start[split][leftChild];
+              // cdm [2012]: Test whether removing these 2 tests might speed things up because less branching?
+              // jab [2014]: oddly enough, removing these tests helps the chinese parser but not the english parser.
+              if (lS == Float.NEGATIVE_INFINITY) {
                 continue;
               }
-            }
-
-            float lS = iScore_start[split][leftChild];
-            // cdm [2012]: Test whether removing these 2 tests might speed things up because less branching?
-            // jab [2014]: oddly enough, removing these tests helps the chinese parser but not the english parser.
-            if (lS == Float.NEGATIVE_INFINITY) {
-              continue;
-            }
-            float rS = iScore[split][end][rightState];
-            if (rS == Float.NEGATIVE_INFINITY) {
-              continue;
-            }
-            float tot = pS + lS + rS;
-            if (tot > bestIScore) {
-              bestIScore = tot;
-            }
-          } // end for split
+              float rS = iScore[split][end][rightState];
+              if (rS == Float.NEGATIVE_INFINITY) {
+                continue;
+              }
+              float tot = pS + lS + rS;
+              if (tot > bestIScore) {
+                bestIScore = tot;
+              }
+            } // end for split
+          }
           foundBetter = bestIScore > oldIScore;
         } else {
           // find split that uses this rule to make the max *length normalized* score
@@ -1147,6 +1426,9 @@ oScore[split][end][br.rightChild] = totR;
 
       UnaryRule[] unaries = ug.closedRulesByChild(state);
       for (UnaryRule ur : unaries) {
+        if (allowed_start_end != null && ! allowed_start_end[projection[ur.parent]]) {
+          continue;
+        }
 
         if (constraints != null) {
           boolean skip = false;
@@ -1520,6 +1802,9 @@ oScore[split][end][br.rightChild] = totR;
       return Double.NEGATIVE_INFINITY;
     }
     int goal = stateIndex.indexOf(stateName);
+    if (compact) {
+      return compactChart.get(0, length, goal);
+    }
     if (iScore == null || iScore.length == 0 || iScore[0].length <= length || iScore[0][length].length <= goal) {
       return Double.NEGATIVE_INFINITY;
     }
@@ -1550,7 +1835,7 @@ oScore[split][end][br.rightChild] = totR;
   private Tree extractBestParse(int goal, int start, int end) {
     // find source of inside score
     // no backtraces so we can speed up the parsing for its primary use
-    double bestScore = iScore[start][end][goal];
+    double bestScore = insideScore(start, end, goal);
     double normBestScore = op.testOptions.lengthNormalization ? (bestScore / wordsInSpan[start][end][goal]) : bestScore;
     String goalStr = stateIndex.get(goal);
 
@@ -1624,7 +1909,7 @@ oScore[split][end][br.rightChild] = totR;
     for (int split = start + 1; split < end; split++) {
       for (Iterator<BinaryRule> binaryI = bg.ruleIteratorByParent(goal); binaryI.hasNext(); ) {
         BinaryRule br = binaryI.next();
-        double score = br.score + iScore[start][split][br.leftChild] + iScore[split][end][br.rightChild];
+        double score = br.score + insideScore(start, split, br.leftChild) + insideScore(split, end, br.rightChild);
         boolean matches;
         if (op.testOptions.lengthNormalization) {
           double normScore = score / (wordsInSpan[start][split][br.leftChild] + wordsInSpan[split][end][br.rightChild]);
@@ -1654,8 +1939,8 @@ oScore[split][end][br.rightChild] = totR;
     // for (Iterator<UnaryRule> unaryI = ug.closedRuleIteratorByParent(goal); unaryI.hasNext(); ) {
     for (Iterator<UnaryRule> unaryI = ug.ruleIteratorByParent(goal); unaryI.hasNext(); ) {
       UnaryRule ur = unaryI.next();
-      // log.info("  Trying " + ur + " dtr score: " + iScore[start][end][ur.child]);
-      double score = ur.score + iScore[start][end][ur.child];
+      // log.info("  Trying " + ur + " dtr score: " + insideScore(start, end, ur.child));
+      double score = ur.score + insideScore(start, end, ur.child);
       boolean matches;
       if (op.testOptions.lengthNormalization) {
         double normScore = score / wordsInSpan[start][end][ur.child];
@@ -1714,7 +1999,7 @@ oScore[split][end][br.rightChild] = totR;
   protected List<Tree> extractBestParses(int goal, int start, int end) {
     // find sources of inside score
     // no backtraces so we can speed up the parsing for its primary use
-    double bestScore = iScore[start][end][goal];
+    double bestScore = insideScore(start, end, goal);
     String goalStr = stateIndex.get(goal);
     //System.out.println("Searching for "+goalStr+" from "+start+" to "+end+" scored "+bestScore);
     // check tags
@@ -1739,7 +2024,7 @@ oScore[split][end][br.rightChild] = totR;
     for (int split = start + 1; split < end; split++) {
       for (Iterator<BinaryRule> binaryI = bg.ruleIteratorByParent(goal); binaryI.hasNext(); ) {
         BinaryRule br = binaryI.next();
-        double score = br.score + iScore[start][split][br.leftChild] + iScore[split][end][br.rightChild];
+        double score = br.score + insideScore(start, split, br.leftChild) + insideScore(split, end, br.rightChild);
         if (matches(score, bestScore)) {
           // build binary split
           List<Tree> leftChildTrees = extractBestParses(br.leftChild, start, split);
@@ -1764,7 +2049,7 @@ oScore[split][end][br.rightChild] = totR;
     // check unaries
     for (Iterator<UnaryRule> unaryI = ug.ruleIteratorByParent(goal); unaryI.hasNext(); ) {
       UnaryRule ur = unaryI.next();
-      double score = ur.score + iScore[start][end][ur.child];
+      double score = ur.score + insideScore(start, end, ur.child);
       if (ur.child != ur.parent && matches(score, bestScore)) {
         // build unary
         List<Tree> childTrees = extractBestParses(ur.child, start, end);
@@ -1988,7 +2273,7 @@ oScore[split][end][br.rightChild] = totR;
     // pre-terminal??
     if (isTag[v.goal] && v.start + 1 == v.end) {
       List<Vertex> tails = new ArrayList<>();
-      double score = iScore[v.start][v.end][v.goal];
+      double score = insideScore(v.start, v.end, v.goal);
       Arc arc = new Arc(tails, v, score);
       bs.add(arc);
     }
@@ -2033,7 +2318,7 @@ oScore[split][end][br.rightChild] = totR;
         List<Double> childrenScores = new ArrayList<>();
         for (int i = 0; i < size; i++) {
           Vertex child = arc.tails.get(i);
-          double s = iScore[child.start][child.end][child.goal];
+          double s = insideScore(child.start, child.end, child.goal);
           childrenScores.add(s);
           score += s;
         }
@@ -2117,7 +2402,7 @@ oScore[split][end][br.rightChild] = totR;
     int start = 0;
     int end = length;
     int goal = stateIndex.indexOf(goalStr);
-    double bestScore = iScore[start][end][goal];
+    double bestScore = insideScore(start, end, goal);
     List<Tree> internalTrees = extractBestParses(goal, start, end);
     //System.out.println("Got internal best parse...");
     // for (Tree internalTree : internalTrees) {
@@ -2215,9 +2500,18 @@ oScore[split][end][br.rightChild] = totR;
     // todo: with some modifications to doInsideScores, we wouldn't need to allocate iScore[i,length] for i != 0 and i != length
     //    System.out.println("initializing iScore arrays with length " + length + " and numStates " + numStates);
     iScore = new float[length][length + 1][];
-    for (int start = 0; start < length; start++) {
-      for (int end = start + 1; end <= length; end++) {
-        iScore[start][end] = new float[numStates];
+    compactArrays = compact;
+    if (compact) {
+      // the cells are scratch arrays while they are being filled in, and then packed into compactChart
+      compactScratch = new float[length][numStates];
+      if (compactChart == null) {
+        compactChart = new CompactChart(numStates);
+      }
+    } else {
+      for (int start = 0; start < length; start++) {
+        for (int end = start + 1; end <= length; end++) {
+          iScore[start][end] = new float[numStates];
+        }
       }
     }
     //    System.out.println("finished initializing iScore arrays");
@@ -2256,6 +2550,7 @@ oScore[split][end][br.rightChild] = totR;
 
   private void clearArrays() {
     iScore = oScore = null;
+    compactScratch = null;
     iPossibleByL = iPossibleByR = oPossibleByL = oPossibleByR = null;
     oFilteredEnd = oFilteredStart = null;
     tags = null;
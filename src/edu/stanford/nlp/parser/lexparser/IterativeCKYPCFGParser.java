@@ -31,6 +31,12 @@ public class IterativeCKYPCFGParser extends ExhaustivePCFGParser {
     }
   }
 
+  /** The iterations fill in the whole chart again, so the compact chart, which packs each span as it is done, can't be used */
+  @Override
+  boolean supportsCompactChart() {
+    return false;
+  }
+
   /** Fills in the iScore array of each category over each spanof length 2
    *  or more, providing
    *  a state's probability is greater than a threshold.
@@ -744,6 +744,22 @@ public class Options implements Serializable  {
     } else if (args[i].equalsIgnoreCase("-testingThreads")) {
       testOptions.testingThreads = Integer.parseInt(args[i + 1]);
       i += 2;
+    } else if (args[i].equalsIgnoreCase("-pcfgThreads")) {
+      testOptions.pcfgThreads = Integer.parseInt(args[i + 1]);
+      i += 2;
+    } else if (args[i].equalsIgnoreCase("-coarseToFine")) {
+      testOptions.coarseToFine = true;
+      i++;
+    } else if (args[i].equalsIgnoreCase("-noCoarseToFine")) {
+      testOptions.coarseToFine = false;
+      i++;
+    } else if (args[i].equalsIgnoreCase("-coarseToFineThreshold")) {
+      testOptions.coarseToFine = true;
+      testOptions.coarseToFineThreshold = Double.parseDouble(args[i + 1]);
+      i += 2;
+    } else if (args[i].equalsIgnoreCase("-compactChartLength")) {
+      testOptions.compactChartLength = Integer.parseInt(args[i + 1]);
+      i += 2;
     } else if (args[i].equalsIgnoreCase("-evals")) {
       testOptions.evals = StringUtils.stringToProperties(args[i+1], testOptions.evals);
       i += 2;
@@ -0,0 +1,124 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.io.FileFilter;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.parser.common.ArgUtils;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.Pair;
+
+/**
+ * Times the PCFG parser filling in its charts with one thread and with
+ * several (see {@link TestOptions#pcfgThreads}), over the sentences of a
+ * treebank grouped by length, and checks that the parses are the same.
+ * For example, for WSJ section 23:
+ * <br>
+ * {@code java edu.stanford.nlp.parser.lexparser.ParallelPCFGBenchmark -model englishPCFG.ser.gz -treebank /path/to/wsj 2300-2399 -threads 4}
+ * <br>
+ * Other flags are passed on to the parser.  Only the gold trees' words are used.
+ */
+public class ParallelPCFGBenchmark {
+
+  private ParallelPCFGBenchmark() {} // main method only
+
+  /** The upper ends of the sentence length buckets; the last bucket is everything longer */
+  private static final int[] BUCKETS = { 10, 20, 30, 40, 50 };
+
+  private static int bucket(int length) {
+    for (int i = 0; i < BUCKETS.length; i++) {
+      if (length <= BUCKETS[i]) {
+        return i;
+      }
+    }
+    return BUCKETS.length;
+  }
+
+  private static String bucketName(int bucket) {
+    if (bucket == BUCKETS.length) {
+      return (BUCKETS[bucket - 1] + 1) + "+";
+    }
+    return (bucket == 0 ? 1 : BUCKETS[bucket - 1] + 1) + "-" + BUCKETS[bucket];
+  }
+
+  /** Parses the sentences and returns the seconds taken */
+  private static double time(LexicalizedParser lp, List<List<HasWord>> sentences, List<Tree> parses) {
+    long start = System.nanoTime();
+    for (List<HasWord> sentence : sentences) {
+      parses.add(lp.parse(sentence));
+    }
+    return (System.nanoTime() - start) / 1e9;
+  }
+
+  public static void main(String[] args) {
+    String model = LexicalizedParser.DEFAULT_PARSER_LOC;
+    String treebankPath = null;
+    FileFilter treebankFilter = null;
+    int threads = Runtime.getRuntime().availableProcessors();
+    List<String> flags = new ArrayList<>();
+    for (int argIndex = 0; argIndex < args.length; ) {
+      if (args[argIndex].equalsIgnoreCase("-model")) {
+        model = args[argIndex + 1];
+        argIndex += 2;
+      } else if (args[argIndex].equalsIgnoreCase("-treebank")) {
+        Pair<String, FileFilter> treebankDescription = ArgUtils.getTreebankDescription(args, argIndex, "-treebank");
+        argIndex = argIndex + ArgUtils.numSubArgs(args, argIndex) + 1;
+        treebankPath = treebankDescription.first();
+        treebankFilter = treebankDescription.second();
+      } else if (args[argIndex].equalsIgnoreCase("-threads")) {
+        threads = Integer.parseInt(args[argIndex + 1]);
+        argIndex += 2;
+      } else {
+        flags.add(args[argIndex++]);
+      }
+    }
+    if (treebankPath == null) {
+      throw new IllegalArgumentException("A -treebank to take sentences from is needed");
+    }
+
+    LexicalizedParser lp = LexicalizedParser.loadModel(model, flags);
+    Treebank treebank = lp.getOp().tlpParams.testMemoryTreebank();
+    treebank.loadPath(treebankPath, treebankFilter);
+
+    List<List<List<HasWord>>> buckets = new ArrayList<>();
+    for (int i = 0; i <= BUCKETS.length; i++) {
+      buckets.add(new ArrayList<>());
+    }
+    for (Tree tree : treebank) {
+      List<HasWord> sentence = new ArrayList<>(tree.yieldHasWord());
+      if (sentence.size() <= lp.getOp().testOptions.maxLength) {
+        buckets.get(bucket(sentence.size())).add(sentence);
+      }
+    }
+
+    // warm up the JIT with both ways of filling in the chart
+    List<List<HasWord>> warmUp = buckets.get(1).isEmpty() ? buckets.get(0) : buckets.get(1);
+    for (int pcfgThreads : new int[] { 1, threads }) {
+      lp.getOp().testOptions.pcfgThreads = pcfgThreads;
+      time(lp, warmUp.subList(0, Math.min(50, warmUp.size())), new ArrayList<>());
+    }
+
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-8s %10s %12s %12s %9s%n", "length", "sentences", "1 thread s", threads + " threads s", "speedup"));
+    for (int i = 0; i <= BUCKETS.length; i++) {
+      List<List<HasWord>> sentences = buckets.get(i);
+      if (sentences.isEmpty()) {
+        continue;
+      }
+      List<Tree> expected = new ArrayList<>();
+      List<Tree> parses = new ArrayList<>();
+      lp.getOp().testOptions.pcfgThreads = 1;
+      double sequential = time(lp, sentences, expected);
+      lp.getOp().testOptions.pcfgThreads = threads;
+      double parallel = time(lp, sentences, parses);
+      if ( ! expected.equals(parses)) {
+        throw new IllegalStateException("Parses with " + threads + " threads differ for sentences of length " + bucketName(i));
+      }
+      report.append(String.format("%-8s %10d %12.3f %12.3f %9.2f%n", bucketName(i), sentences.size(), sequential, parallel, sequential / parallel));
+    }
+    System.out.print(report);
+  }
+
+}
@@ -279,6 +279,50 @@ public class TestOptions implements Serializable  {
    */
   public int testingThreads = 1;
 
+  /**
+   * Number of threads with which to fill in the chart of each sentence
+   * with the exhaustive PCFG parser.  The cells of spans of the same
+   * length are independent of each other, so for long sentences they can
+   * be filled in at the same time, in both the inside and the outside
+   * passes.  The parses and scores are identical to those from one
+   * thread.  Unlike testingThreads, this makes single sentences faster
+   * rather than many sentences, and so also helps with a parser used
+   * from elsewhere, such as the ParserAnnotator.  Set with -pcfgThreads.
+   */
+  public int pcfgThreads = 1;
+
+  /**
+   * If true, the exhaustive PCFG parser first parses each sentence with a
+   * projection of its grammar onto basic categories, and only builds the
+   * states over each span whose basic category could be part of a parse
+   * scoring within coarseToFineThreshold of the best coarse parse.  How
+   * much faster this is depends on the grammar, as the coarse pass has its
+   * own cost, and it may occasionally miss the best parse.  If no
+   * parse survives the pruning, the sentence is parsed again in full.
+   * Set with -coarseToFine.
+   */
+  public boolean coarseToFine = false;
+
+  /**
+   * How far below the best coarse parse, as a log probability, the best
+   * coarse parse through a state over a span may be for the state to be
+   * built there when using coarseToFine.  Closer to zero prunes more.
+   * Setting it with -coarseToFineThreshold also turns on coarseToFine.
+   */
+  public double coarseToFineThreshold = -10.0;
+
+  /**
+   * Sentences longer than this are parsed by the exhaustive PCFG parser
+   * with a compact chart, which only stores the states built over each
+   * span, rather than a score for every state over every span.  A full
+   * chart for a 200 word sentence and a big grammar takes gigabytes; the
+   * compact one usually takes a small fraction of that, more so with
+   * coarseToFine, at some cost in speed.  The compact chart is only used
+   * for PCFG parsing or useFastFactored, as the factored parser needs
+   * the full outside scores.  -1 means never.  Set with -compactChartLength.
+   */
+  public int compactChartLength = -1;
+
   /**
    * When evaluating, don't print out tons of text.  Only print out the final scores
    */
@@ -310,6 +354,9 @@ public class TestOptions implements Serializable  {
             " outputFormatOptions=" + outputFormatOptions + 
             " printAllBestParses=" + printAllBestParses + 
             " testingThreads=" + testingThreads +
+            " pcfgThreads=" + pcfgThreads +
+            " coarseToFine=" + coarseToFine +
+            " compactChartLength=" + compactChartLength +
             " quietEvaluation=" + quietEvaluation);
   }
 
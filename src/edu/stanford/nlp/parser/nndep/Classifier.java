@@ -7,6 +7,7 @@ import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
 import edu.stanford.nlp.util.logging.Redwood;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -44,10 +45,15 @@ public class Classifier  {
   // b1: hiddenSize
   // W2: numLabels x hiddenSize
 
-  // Weight matrices
-  private final double[][] W1, W2, E;
+  // Weight matrices; null once compacted
+  private double[][] W1, W2, E;
   private final double[] b1;
 
+  // The weight matrices and saved activations when they aren't kept
+  // as doubles: in reduced precision once compact() has been called,
+  // or mapped from a file
+  private WeightMatrix compactW1, compactW2, compactE, compactSaved;
+
   // Global gradSaved
   private double[][] gradSaved;
 
@@ -138,8 +144,6 @@ public class Classifier  {
     this.b1 = b1;
     this.W2 = W2;
 
-    initGradientHistories();
-
     numLabels = W2.length;
 
     preMap = new HashMap<>();
@@ -147,10 +151,44 @@ public class Classifier  {
       preMap.put(preComputed.get(i), i);
 
     isTraining = dataset != null;
-    if (isTraining)
+    if (isTraining) {
+      // only needed for training, and as big as the weights themselves
+      initGradientHistories();
       jobHandler = new MulticoreWrapper<>(config.trainingThreads, new CostFunction(), false);
-    else
+    } else {
       jobHandler = null;
+    }
+  }
+
+  /**
+   * A classifier for parsing whose weights and precomputed hidden layer
+   * activations are read from the given matrices, such as ones mapped
+   * from a file, rather than kept as double arrays.  It can't be trained,
+   * saved, or compacted further.
+   *
+   * @param saved The precomputed activations of the first
+   *              {@code saved.rows()} of preComputed, or null if there are none
+   */
+  Classifier(Config config, WeightMatrix E, WeightMatrix W1, double[] b1, WeightMatrix W2,
+             WeightMatrix saved, List<Integer> preComputed) {
+    this.config = config;
+    this.dataset = null;
+
+    this.compactE = E;
+    this.compactW1 = W1;
+    this.b1 = b1;
+    this.compactW2 = W2;
+    this.compactSaved = saved;
+
+    numLabels = W2.rows();
+
+    preMap = new HashMap<>();
+    int numSaved = saved == null ? 0 : saved.rows();
+    for (int i = 0; i < preComputed.size() && i < config.numPreComputed && i < numSaved; ++i)
+      preMap.put(preComputed.get(i), i);
+
+    isTraining = false;
+    jobHandler = null;
   }
 
   /**
@@ -652,6 +690,7 @@ public class Classifier  {
    *                     activations should be precomputed
    */
   public void preCompute(Set<Integer> toPreCompute) {
+    checkNotCompacted();
     long startTime = System.currentTimeMillis();
 
     // NB: It'd make sense to just make the first dimension of this
@@ -675,9 +714,53 @@ public class Classifier  {
 
 
   double[] computeScores(int[] feature) {
+    if (compactW1 != null) {
+      return computeScores(new int[][] { feature }, 1, null)[0];
+    }
     return computeScores(feature, preMap);
   }
 
+  /**
+   * Store the weights and the precomputed hidden layer activations in
+   * less precision, to save memory, and parse with those from then on.
+   * The double weights are thrown away, so this is only for a model which
+   * has been loaded for parsing: it can't be trained or saved afterwards,
+   * nor can more activations be precomputed.
+   *
+   * @param precision The precision to keep the weights in.  If DOUBLE,
+   *                  nothing is done.
+   */
+  public void compact(Config.WeightPrecision precision) {
+    if (precision == Config.WeightPrecision.DOUBLE || compactW1 != null) {
+      return;
+    }
+    if (isTraining) {
+      throw new IllegalStateException("Can't compact the weights of a classifier which is being trained");
+    }
+    long doubleBytes = 8L * (W1.length * W1[0].length + W2.length * W2[0].length + E.length * E[0].length +
+                             (saved == null ? 0 : (long) saved.length * config.hiddenSize));
+    compactW1 = WeightMatrix.of(W1, precision);
+    compactW2 = WeightMatrix.of(W2, precision);
+    compactE = WeightMatrix.of(E, precision);
+    compactSaved = saved == null ? null : WeightMatrix.of(saved, precision);
+    W1 = W2 = E = saved = null;
+    long compactBytes = compactW1.bytes() + compactW2.bytes() + compactE.bytes() +
+                        (compactSaved == null ? 0 : compactSaved.bytes());
+    log.info(String.format("Compacted weights to %s: %.1f MB, was %.1f MB",
+                           precision, compactBytes / 1048576.0, doubleBytes / 1048576.0));
+  }
+
+  /** Whether the weights are kept other than as double arrays, so that they can't be trained or saved */
+  boolean isCompact() {
+    return compactW1 != null;
+  }
+
+  private void checkNotCompacted() {
+    if (compactW1 != null) {
+      throw new IllegalStateException("The double weights of this classifier were thrown away by compact()");
+    }
+  }
+
   /**
    * Feed a feature vector forward through the network. Returns the
    * values of the output layer.
@@ -703,6 +786,103 @@ public class Classifier  {
     return matrixMultiply(W2, hidden);
   }
 
+  /**
+   * Feed a batch of feature vectors forward through the network at
+   * once, as {@link #computeScores(int[])} does for each of them.
+   * <br>
+   * The hidden layer is built a feature position at a time across the
+   * whole batch, so the block of W1 for that position is used for
+   * every vector in the batch which misses the precomputed activations
+   * while it is still in cache, and the output layer is one
+   * matrix-matrix product.  With double weights the sums are done in
+   * the same order as for a single vector, so the scores are exactly the same.
+   *
+   * @param features The feature vectors; only the first {@code batchSize} are used
+   * @param batchSize The number of feature vectors to score
+   * @param scores Where to put the output layer values, one row per
+   *               feature vector, each with a score per label; rows that are
+   *               missing or too short are replaced
+   * @return scores, or a new array if it was null or too short
+   */
+  double[][] computeScores(int[][] features, int batchSize, double[][] scores) {
+    final int hiddenSize = config.hiddenSize;
+    final int numTokens = config.numTokens;
+    final int embeddingSize = config.embeddingSize;
+
+    final double[][] hidden = new double[batchSize][hiddenSize];
+    // the batch members whose feature at the current position isn't precomputed
+    final int[] missed = new int[batchSize];
+    // their embeddings, when the weights are compacted
+    double[][] embeddings = null;
+    final int numFeatures = batchSize == 0 ? 0 : features[0].length;
+    for (int j = 0; j < numFeatures; j++) {
+      int numMissed = 0;
+      for (int b = 0; b < batchSize; b++) {
+        Integer idInteger = preMap.get(features[b][j] * numTokens + j);
+        if (idInteger == null) {
+          missed[numMissed++] = b;
+        } else if (compactSaved != null) {
+          compactSaved.addRowTo(idInteger, hidden[b]);
+        } else {
+          ArrayMath.pairwiseAddInPlace(hidden[b], saved[idInteger]);
+        }
+      }
+      if (numMissed > 0 && compactW1 != null) {
+        final int offset = j * embeddingSize;
+        if (embeddings == null) {
+          embeddings = new double[batchSize][embeddingSize];
+        }
+        for (int m = 0; m < numMissed; m++) {
+          compactE.getRow(features[missed[m]][j], embeddings[m]);
+        }
+        for (int i = 0; i < hiddenSize; i++) {
+          for (int m = 0; m < numMissed; m++) {
+            hidden[missed[m]][i] += compactW1.dot(i, offset, embeddings[m]);
+          }
+        }
+      } else if (numMissed > 0) {
+        final int offset = j * embeddingSize;
+        for (int i = 0; i < hiddenSize; i++) {
+          final double[] row = W1[i];
+          for (int m = 0; m < numMissed; m++) {
+            final int b = missed[m];
+            final double[] embedding = E[features[b][j]];
+            double sum = hidden[b][i];
+            for (int k = 0; k < embedding.length; k++) {
+              sum += row[offset + k] * embedding[k];
+            }
+            hidden[b][i] = sum;
+          }
+        }
+      }
+    }
+
+    if (scores == null || scores.length < batchSize) {
+      scores = scores == null ? new double[batchSize][] : Arrays.copyOf(scores, batchSize);
+    }
+    for (int b = 0; b < batchSize; b++) {
+      addCubeInPlace(hidden[b], b1);
+      if (scores[b] == null || scores[b].length < numLabels) {
+        scores[b] = new double[numLabels];
+      }
+    }
+    if (compactW2 != null) {
+      for (int i = 0; i < numLabels; i++) {
+        for (int b = 0; b < batchSize; b++) {
+          scores[b][i] = compactW2.dot(i, 0, hidden[b]);
+        }
+      }
+    } else {
+      for (int i = 0; i < numLabels; i++) {
+        final double[] row = W2[i];
+        for (int b = 0; b < batchSize; b++) {
+          scores[b][i] = ArrayMath.dotProduct(row, hidden[b]);
+        }
+      }
+    }
+    return scores;
+  }
+
   // extracting these small methods makes things faster; hotspot likes them
 
   private static double[] matrixMultiply(double[][] matrix, double[] vector) {
@@ -730,6 +910,7 @@ public class Classifier  {
 
 
   public double[][] getW1() {
+    checkNotCompacted();
     return W1;
   }
 
@@ -738,11 +919,23 @@ public class Classifier  {
   }
 
   public double[][] getW2() {
+    checkNotCompacted();
     return W2;
   }
 
   public double[][] getE() {
+    checkNotCompacted();
     return E;
   }
 
+  /**
+   * The precomputed hidden layer activations, in the order of the
+   * preComputed list the classifier was made with, or null if none have
+   * been computed.
+   */
+  double[][] getSaved() {
+    checkNotCompacted();
+    return saved;
+  }
+
 }
@@ -208,6 +208,27 @@ public class Config {
    */
   public String tagger = MaxentTagger.DEFAULT_JAR_PATH;
 
+  /**
+   * When parsing many sentences, the number of sentences which are
+   * parsed in lockstep, so that their transitions can be scored
+   * together.  If 1, sentences are parsed one at a time.
+   */
+  public int parseBatchSize = 32;
+
+  /**
+   * The precisions the weights of a loaded model can be kept in.
+   * FLOAT halves the memory used by the weights and the precomputed
+   * hidden layer activations, and INT8 stores each weight in a byte,
+   * with one scale per row of each matrix, for an eighth of the memory.
+   */
+  public enum WeightPrecision { DOUBLE, FLOAT, INT8 }
+
+  /**
+   * The precision to keep the weights of a loaded model in when parsing.
+   * Models are always trained and saved with double weights.
+   */
+  public WeightPrecision weightPrecision = WeightPrecision.DOUBLE;
+
   public Config(Properties properties) {
     setProperties(properties);
   }
@@ -236,6 +257,8 @@ public class Config {
     // Runtime parsing options
     sentenceDelimiter = PropertiesUtils.getString(props, "sentenceDelimiter", sentenceDelimiter);
     tagger = PropertiesUtils.getString(props, "tagger.model", tagger);
+    parseBatchSize = PropertiesUtils.getInt(props, "parseBatchSize", parseBatchSize);
+    weightPrecision = WeightPrecision.valueOf(PropertiesUtils.getString(props, "weightPrecision", weightPrecision.name()).toUpperCase());
 
     String escaperClass = props.getProperty("escaper");
     escaper = escaperClass != null ? ReflectionLoading.loadByReflection(escaperClass) : null;
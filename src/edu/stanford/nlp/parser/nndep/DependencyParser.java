@@ -2,6 +2,7 @@ package edu.stanford.nlp.parser.nndep;
 
 import edu.stanford.nlp.international.Language;
 import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.MappedArrayFile;
 import edu.stanford.nlp.io.RuntimeIOException;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
@@ -32,10 +33,9 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.Writer;
+import java.nio.IntBuffer;
 import java.util.*;
 
-import static java.util.stream.Collectors.toList;
-
 /**
  * This class defines a transition-based dependency parser which makes
  * use of a classifier powered by a neural network. The neural network
@@ -519,6 +519,13 @@ public class DependencyParser  {
 
   private void loadModelFile(String modelFile, boolean verbose) {
     Timing t = new Timing();
+    if (MappedArrayFile.isMappedArrayFile(modelFile)) {
+      loadMappedModelFile(modelFile);
+      t.report(log, "Done mapping " + modelFile);
+      initialize(verbose);
+      t.done(log, "Initializing dependency parser");
+      return;
+    }
     try (BufferedReader input = IOUtils.readerFromString(modelFile)) {
 
       log.info("Loading depparse model: " + modelFile + " ... ");
@@ -632,6 +639,103 @@ public class DependencyParser  {
     t.done(log, "Initializing dependency parser");
   }
 
+  /**
+   * Write the loaded model, including its precomputed hidden layer
+   * activations, as a {@link MappedArrayFile}.  Loading that file with
+   * {@link #loadFromModelFile} maps the weights read-only rather than
+   * reading them into the heap, so it is nearly instant, and all the
+   * processes on a machine which load it share one copy of the weights.
+   * The weights are used where they are, in the file, and so
+   * {@code weightPrecision} has no effect on such a model.
+   *
+   * @param modelFile Where to write the model
+   * @param precision DOUBLE to keep the weights exactly, or FLOAT to halve the size of the file
+   */
+  public void writeMappedModelFile(String modelFile, Config.WeightPrecision precision) {
+    if (precision == Config.WeightPrecision.INT8) {
+      throw new IllegalArgumentException("Mapped models can only be written with double or float weights");
+    }
+    if (classifier == null) {
+      throw new IllegalStateException("No model has been loaded or trained");
+    }
+    double[][] saved = classifier.getSaved();
+    MappedArrayFile.Writer writer = new MappedArrayFile.Writer();
+    writer.addString("language", language.name());
+    writer.addString("tlp", config.tlp.getClass().getCanonicalName());
+    writer.addStrings("words", knownWords);
+    writer.addStrings("pos", knownPos);
+    writer.addStrings("labels", knownLabels);
+    writer.addInts("preComputed", preComputed.stream().mapToInt(Integer::intValue).toArray());
+    writer.addDoubles("b1", new double[][] { classifier.getb1() });
+    for (Pair<String, double[][]> matrix : Arrays.asList(new Pair<>("E", classifier.getE()),
+                                                          new Pair<>("W1", classifier.getW1()),
+                                                          new Pair<>("W2", classifier.getW2()),
+                                                          new Pair<>("saved", saved))) {
+      if (matrix.second() == null) {
+        continue;
+      }
+      if (precision == Config.WeightPrecision.FLOAT) {
+        writer.addFloats(matrix.first(), matrix.second());
+      } else {
+        writer.addDoubles(matrix.first(), matrix.second());
+      }
+    }
+    try {
+      writer.write(modelFile);
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+  }
+
+  private static WeightMatrix mappedMatrix(MappedArrayFile file, String name) {
+    if ( ! file.contains(name)) {
+      return null;
+    }
+    int rows = file.rows(name);
+    int columns = file.columns(name);
+    return file.isDoubles(name) ? new WeightMatrix.DoubleBufferMatrix(file.doubles(name), rows, columns)
+                                : new WeightMatrix.FloatBufferMatrix(file.floats(name), rows, columns);
+  }
+
+  private void loadMappedModelFile(String modelFile) {
+    log.info("Mapping depparse model: " + modelFile + " ... ");
+    MappedArrayFile file;
+    try {
+      file = MappedArrayFile.open(modelFile);
+    } catch (IOException e) {
+      throw new RuntimeIOException(e);
+    }
+    Language modelLanguage = Config.getLanguage(file.string("language"));
+    if (modelLanguage != null) {
+      config.language = modelLanguage;
+    }
+    String tlpCanonicalName = file.string("tlp");
+    try {
+      config.tlp = ReflectionLoading.loadByReflection(tlpCanonicalName);
+    } catch (Exception e) {
+      log.warn("Error: Failed to load TreebankLanguagePack: " + tlpCanonicalName);
+    }
+    knownWords = new ArrayList<>(file.strings("words"));
+    knownPos = new ArrayList<>(file.strings("pos"));
+    knownLabels = new ArrayList<>(file.strings("labels"));
+    generateIDs();
+
+    IntBuffer ids = file.ints("preComputed");
+    preComputed = new ArrayList<>(ids.limit());
+    for (int i = 0; i < ids.limit(); i++) {
+      preComputed.add(ids.get(i));
+    }
+
+    double[] b1 = new double[file.columns("b1")];
+    file.doubles("b1").get(b1);
+    WeightMatrix E = mappedMatrix(file, "E");
+    WeightMatrix W1 = mappedMatrix(file, "W1");
+    WeightMatrix W2 = mappedMatrix(file, "W2");
+    config.hiddenSize = b1.length;
+    config.embeddingSize = file.columns("E");
+    classifier = new Classifier(config, E, W1, b1, W2, mappedMatrix(file, "saved"), preComputed);
+  }
+
   // TODO this should be a function which returns the embeddings array + embedID
   // otherwise the class needlessly carries around the extra baggage of `embeddings`
   // (never again used) for the entire training process
@@ -731,7 +835,7 @@ public class DependencyParser  {
         // prediction, we just do this once in #initialize
         classifier.preCompute();
 
-        List<DependencyTree> predicted = devSents.stream().map(this::predictInner).collect(toList());
+        List<DependencyTree> predicted = predictInner(devSents);
 
         double uas = config.noPunc ? system.getUASnoPunc(devSents, predicted, devTrees) : system.getUAS(devSents, predicted, devTrees);
         log.info("UAS: " + uas);
@@ -756,7 +860,7 @@ public class DependencyParser  {
     if (devFile != null) {
       // Do final UAS evaluation and save if final model beats the
       // best intermediate one
-      List<DependencyTree> predicted = devSents.stream().map(this::predictInner).collect(toList());
+      List<DependencyTree> predicted = predictInner(devSents);
       double uas = config.noPunc ? system.getUASnoPunc(devSents, predicted, devTrees) : system.getUAS(devSents, predicted, devTrees);
 
       if (uas > bestUAS) {
@@ -944,22 +1048,84 @@ public class DependencyParser  {
         throw new RuntimeInterruptedException();
       }
       double[] scores = classifier.computeScores(getFeatureArray(c));
+      system.apply(c, bestTransition(c, scores, numTrans));
+    }
+    return c.tree;
+  }
 
-      double optScore = Double.NEGATIVE_INFINITY;
-      String optTrans = null;
+  /**
+   * Determine the dependency parses of many sentences at once.
+   * <p>
+   * Up to {@link Config#parseBatchSize} sentences are parsed in lockstep:
+   * at each step, the next transition of every unfinished sentence in the
+   * batch is scored with one pass through the network, and as sentences
+   * finish their places are taken by the next ones.  The parses are the same as
+   * those of {@link #predictInner(CoreMap)}.
+   */
+  private List<DependencyTree> predictInner(List<? extends CoreMap> sentences) {
+    int numTrans = system.numTransitions();
+    int batchSize = Math.max(1, config.parseBatchSize);
+
+    Configuration[] configurations = new Configuration[sentences.size()];
+    Configuration[] active = new Configuration[batchSize];
+    int[][] features = new int[batchSize][];
+    double[][] scores = null;
+    int numActive = 0;
+    int next = 0;
+    while (true) {
+      while (numActive < batchSize && next < sentences.size()) {
+        Configuration c = system.initialConfiguration(sentences.get(next));
+        configurations[next++] = c;
+        if (!system.isTerminal(c)) {
+          active[numActive++] = c;
+        }
+      }
+      if (numActive == 0) {
+        break;
+      }
+      if (Thread.interrupted()) {  // Allow interrupting
+        throw new RuntimeInterruptedException();
+      }
 
-      for (int j = 0; j < numTrans; ++j) {
-        if (scores[j] > optScore) {
-          String tr = system.transitions.get(j);
-          if (system.canApply(c, tr)) {
-            optScore = scores[j];
-            optTrans = tr;
-          }
+      for (int b = 0; b < numActive; b++) {
+        features[b] = getFeatureArray(active[b]);
+      }
+      scores = classifier.computeScores(features, numActive, scores);
+
+      int stillActive = 0;
+      for (int b = 0; b < numActive; b++) {
+        Configuration c = active[b];
+        system.apply(c, bestTransition(c, scores[b], numTrans));
+        if (!system.isTerminal(c)) {
+          active[stillActive++] = c;
         }
       }
-      system.apply(c, optTrans);
+      Arrays.fill(active, stillActive, numActive, null);
+      numActive = stillActive;
     }
-    return c.tree;
+
+    List<DependencyTree> trees = new ArrayList<>(configurations.length);
+    for (Configuration c : configurations) {
+      trees.add(c.tree);
+    }
+    return trees;
+  }
+
+  /** The highest scoring transition which can be applied to c */
+  private String bestTransition(Configuration c, double[] scores, int numTrans) {
+    double optScore = Double.NEGATIVE_INFINITY;
+    String optTrans = null;
+
+    for (int j = 0; j < numTrans; ++j) {
+      if (scores[j] > optScore) {
+        String tr = system.transitions.get(j);
+        if (system.canApply(c, tr)) {
+          optScore = scores[j];
+          optTrans = tr;
+        }
+      }
+    }
+    return optTrans;
   }
 
   /**
@@ -974,12 +1140,71 @@ public class DependencyParser  {
       throw new IllegalStateException("Parser has not been  " +
           "loaded and initialized; first load a model.");
 
-    DependencyTree result = predictInner(sentence);
+    return toGrammaticalStructure(sentence, predictInner(sentence));
+  }
+
+  /**
+   * Determine the dependency parses of the given sentences using the loaded model,
+   * parsing up to {@link Config#parseBatchSize} of them at once (see the
+   * {@code parseBatchSize} property).  This gives the same parses as calling
+   * {@link #predict(edu.stanford.nlp.util.CoreMap)} on each sentence, but
+   * is faster for large numbers of sentences, since the network scores
+   * the transitions of the whole batch together.
+   *
+   * @throws java.lang.IllegalStateException If parser has not yet been loaded and initialized
+   *         (see {@link #initialize(boolean)}
+   */
+  public List<GrammaticalStructure> predictAll(List<? extends CoreMap> sentences) {
+    if (system == null)
+      throw new IllegalStateException("Parser has not been  " +
+          "loaded and initialized; first load a model.");
+
+    List<DependencyTree> results = predictInner(sentences);
+    List<GrammaticalStructure> structures = new ArrayList<>(results.size());
+    for (int i = 0; i < results.size(); i++) {
+      structures.add(toGrammaticalStructure(sentences.get(i), results.get(i)));
+    }
+    return structures;
+  }
+
+  /**
+   * Determine the dependency parse of the given sentence, as the parser's
+   * own {@link DependencyTree}, which doesn't refer to the sentence's tokens.
+   * It can be turned into a GrammaticalStructure for this sentence, or any
+   * other with the same words and tags, with {@link #toGrammaticalStructure}.
+   *
+   * @throws java.lang.IllegalStateException If parser has not yet been loaded and initialized
+   *         (see {@link #initialize(boolean)}
+   */
+  public DependencyTree predictTree(CoreMap sentence) {
+    if (system == null)
+      throw new IllegalStateException("Parser has not been  " +
+          "loaded and initialized; first load a model.");
+
+    return predictInner(sentence);
+  }
+
+  /**
+   * Determine the dependency parses of the given sentences, as for
+   * {@link #predictTree(CoreMap)}, parsing them in batches as
+   * {@link #predictAll(List)} does.
+   *
+   * @throws java.lang.IllegalStateException If parser has not yet been loaded and initialized
+   *         (see {@link #initialize(boolean)}
+   */
+  public List<DependencyTree> predictTrees(List<? extends CoreMap> sentences) {
+    if (system == null)
+      throw new IllegalStateException("Parser has not been  " +
+          "loaded and initialized; first load a model.");
 
-    // The rest of this method is just busy-work to convert the
-    // package-local representation into a CoreNLP-standard
-    // GrammaticalStructure.
+    return predictInner(sentences);
+  }
 
+  /**
+   * Busy-work to convert the package-local representation into a
+   * CoreNLP-standard GrammaticalStructure over the tokens of the sentence.
+   */
+  public GrammaticalStructure toGrammaticalStructure(CoreMap sentence, DependencyTree result) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
     List<TypedDependency> dependencies = new ArrayList<>();
 
@@ -1049,6 +1274,10 @@ public class DependencyParser  {
    * @see #predict(edu.stanford.nlp.util.CoreMap)
    */
   public GrammaticalStructure predict(List<? extends HasWord> sentence) {
+    return predict(toSentence(sentence));
+  }
+
+  private static CoreMap toSentence(List<? extends HasWord> sentence) {
     CoreLabel sentenceLabel = new CoreLabel();
     List<CoreLabel> tokens = new ArrayList<>();
 
@@ -1080,7 +1309,7 @@ public class DependencyParser  {
 
     sentenceLabel.set(CoreAnnotations.TokensAnnotation.class, tokens);
 
-    return predict(sentenceLabel);
+    return sentenceLabel;
   }
 
   //TODO: support sentence-only files as input
@@ -1114,7 +1343,7 @@ public class DependencyParser  {
     }
     log.info(String.format("OOV Words: %d / %d = %.2f%%\n", numOOVWords, numWords, numOOVWords * 100.0 / numWords));
 
-    List<DependencyTree> predicted = testSents.stream().map(this::predictInner).collect(toList());
+    List<DependencyTree> predicted = predictInner(testSents);
     Map<String, Double> result = system.evaluate(testSents, predicted, testTrees);
 
     double uas = config.noPunc ? result.get("UASnoPunc") : result.get("UAS");
@@ -1154,10 +1383,13 @@ public class DependencyParser  {
 
     timer.start();
 
-    int numSentences = 0;
+    List<CoreMap> sentences = new ArrayList<>(tagged.size());
     for (List<TaggedWord> taggedSentence : tagged) {
-      GrammaticalStructure parse = predict(taggedSentence);
+      sentences.add(toSentence(taggedSentence));
+    }
 
+    int numSentences = 0;
+    for (GrammaticalStructure parse : predictAll(sentences)) {
       Collection<TypedDependency> deps = parse.typedDependencies();
       for (TypedDependency dep : deps)
         output.println(dep);
@@ -1185,10 +1417,11 @@ public class DependencyParser  {
 
     system = new ArcStandard(config.tlp, lDict, verbose);
 
-    // Pre-compute matrix multiplications
-    if (config.numPreComputed > 0) {
+    // Pre-compute matrix multiplications, unless they were loaded with the weights
+    if (config.numPreComputed > 0 && ! classifier.isCompact()) {
       classifier.preCompute();
     }
+    classifier.compact(config.weightPrecision);
   }
 
   /**
@@ -1199,6 +1432,8 @@ public class DependencyParser  {
   static {
     numArgs.put("textFile", 1);
     numArgs.put("outFile", 1);
+    numArgs.put("mappedModel", 1);
+    numArgs.put("mappedPrecision", 1);
   }
 
   /**
@@ -1234,7 +1469,8 @@ public class DependencyParser  {
    *   <tr><th>Option</th><th>Required for training</th><th>Required for testing / parsing</th><th>Description</th></tr>
    *   <tr><td><tt>-devFile</tt></td><td>Optional</td><td>No</td><td>Path to a development-set treebank in <a href="http://ilk.uvt.nl/conll/#dataformat">CoNLL-X format</a>. If provided, the dev set performance is monitored during training.</td></tr>
    *   <tr><td><tt>-embedFile</tt></td><td>Optional (highly recommended!)</td><td>No</td><td>A word embedding file, containing distributed representations of English words. Each line of the provided file should contain a single word followed by the elements of the corresponding word embedding (space-delimited). It is not absolutely necessary that all words in the treebank be covered by this embedding file, though the parser's performance will generally improve if you are able to provide better embeddings for more words.</td></tr>
-   *   <tr><td><tt>-model</tt></td><td>Yes</td><td>Yes</td><td>Path to a model file. If the path ends in <tt>.gz</tt>, the model will be read as a Gzipped model file. During training, we write to this path; at test time we read a pre-trained model from this path.</td></tr>
+   *   <tr><td><tt>-mappedModel</tt></td><td>No</td><td>No</td><td>Write the model loaded from <tt>-model</tt> to this path in a form which is memory-mapped when loaded, rather than read into the heap (see {@link #writeMappedModelFile}). <tt>-mappedPrecision float</tt> stores the weights as floats, for half the size.</td></tr>
+   *   <tr><td><tt>-model</tt></td><td>Yes</td><td>Yes</td><td>Path to a model file. If the path ends in <tt>.gz</tt>, the model will be read as a Gzipped model file. During training, we write to this path; at test time we read a pre-trained model from this path. A model written with <tt>-mappedModel</tt> is memory-mapped.</td></tr>
    *   <tr><td><tt>-textFile</tt></td><td>No</td><td>Yes (or <tt>testFile</tt>)</td><td>Path to a plaintext file containing sentences to be parsed.</td></tr>
    *   <tr><td><tt>-testFile</tt></td><td>No</td><td>Yes (or <tt>textFile</tt>)</td><td>Path to a test-set treebank in <a href="http://ilk.uvt.nl/conll/#dataformat">CoNLL-X format</a> for final evaluation of the parser.</td></tr>
    *   <tr><td><tt>-trainFile</tt></td><td>Yes</td><td>No</td><td>Path to a training treebank in <a href="http://ilk.uvt.nl/conll/#dataformat">CoNLL-X format.</a></td></tr>
@@ -1265,8 +1501,10 @@ public class DependencyParser  {
    *   <tr><th>Option</th><th>Default</th><th>Description</th></tr>
    *   <tr><td><tt>-escaper</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-textFile</tt>. If provided, use this word-escaper when parsing raw sentences. Should be a fully-qualified class name like <tt>edu.stanford.nlp.trees.international.arabic.ATBEscaper</tt>.</td></tr>
    *   <tr><td><tt>-numPreComputed</tt></td><td>100000</td><td>The parser pre-computes hidden-layer unit activations for particular inputs words at both training and testing time in order to speed up feedforward computation in the neural network. This parameter determines how many words for which we should compute hidden-layer activations.</td></tr>
+   *   <tr><td><tt>-parseBatchSize</tt></td><td>32</td><td>When parsing many sentences, parse this many in lockstep, scoring the transitions of all of them in one pass through the network.</td></tr>
    *   <tr><td><tt>-sentenceDelimiter</tt></td><td>N/A</td><td>Only applicable for testing with <tt>-textFile</tt>.  If provided, assume that the given <tt>textFile</tt> has already been sentence-split, and that sentences are separated by this delimiter.</td></tr>
    *   <tr><td><tt>-tagger.model</tt></td><td>edu/stanford/nlp/models/pos-tagger/english-left3words-distsim.tagger</td><td>Only applicable for testing with <tt>-textFile</tt>. Path to a part-of-speech tagger to use to pre-tag the raw sentences before parsing.</td></tr>
+   *   <tr><td><tt>-weightPrecision</tt></td><td>double</td><td>Keep the weights of the loaded model and the pre-computed activations as <tt>double</tt>, <tt>float</tt>, or <tt>int8</tt> (one byte per weight, with a scale per row), trading accuracy for memory.</td></tr>
    * </table>
    */
   public static void main(String[] args) {
@@ -1280,10 +1518,20 @@ public class DependencyParser  {
     }
 
     boolean loaded = false;
-    // Test with CoNLL-X data
-    if (props.containsKey("testFile")) {
+    // Convert a model to a file to be memory-mapped
+    if (props.containsKey("mappedModel")) {
       parser.loadModelFile(props.getProperty("model"));
       loaded = true;
+      parser.writeMappedModelFile(props.getProperty("mappedModel"),
+          Config.WeightPrecision.valueOf(props.getProperty("mappedPrecision", "double").toUpperCase()));
+    }
+
+    // Test with CoNLL-X data
+    if (props.containsKey("testFile")) {
+      if (!loaded) {
+        parser.loadModelFile(props.getProperty("model"));
+        loaded = true;
+      }
       parser.testCoNLL(props.getProperty("testFile"), props.getProperty("outFile"));
     }
 
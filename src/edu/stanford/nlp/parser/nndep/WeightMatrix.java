@@ -0,0 +1,284 @@
+package edu.stanford.nlp.parser.nndep;
+
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+/**
+ * A matrix of network weights, stored in less precision than doubles to
+ * save memory and memory bandwidth when parsing, or mapped from a
+ * {@link edu.stanford.nlp.io.MappedArrayFile}.  Only the operations
+ * the {@link Classifier} needs for feeding features forward are
+ * supported, and the matrix can't be changed once made.
+ *
+ * @see Config.WeightPrecision
+ */
+abstract class WeightMatrix {
+
+  /** The number of rows */
+  abstract int rows();
+
+  /** The number of bytes used for the weights, for reporting */
+  abstract long bytes();
+
+  /** Add row {@code row} to sum, which must be the length of a row */
+  abstract void addRowTo(int row, double[] sum);
+
+  /** Put row {@code row} into into, which must be the length of a row */
+  abstract void getRow(int row, double[] into);
+
+  /**
+   * The dot product of vector with the part of row {@code row} starting
+   * at column {@code offset} and as long as vector.
+   */
+  abstract double dot(int row, int offset, double[] vector);
+
+  /**
+   * A copy of matrix in the given precision.
+   *
+   * @throws IllegalArgumentException If precision is DOUBLE; doubles are
+   *    kept as they are, in the Classifier's own arrays
+   */
+  static WeightMatrix of(double[][] matrix, Config.WeightPrecision precision) {
+    switch (precision) {
+      case FLOAT:
+        return new FloatMatrix(matrix);
+      case INT8:
+        return new Int8Matrix(matrix);
+      default:
+        throw new IllegalArgumentException("No compact matrix for precision " + precision);
+    }
+  }
+
+
+  /** Doubles read from a buffer, such as a memory-mapped file, row after row */
+  static class DoubleBufferMatrix extends WeightMatrix {
+
+    private final DoubleBuffer weights;
+    private final int rows;
+    private final int columns;
+
+    DoubleBufferMatrix(DoubleBuffer weights, int rows, int columns) {
+      if (weights.limit() != rows * columns) {
+        throw new IllegalArgumentException("Buffer of " + weights.limit() + " doubles is not " + rows + " x " + columns);
+      }
+      this.weights = weights;
+      this.rows = rows;
+      this.columns = columns;
+    }
+
+    @Override
+    int rows() {
+      return rows;
+    }
+
+    @Override
+    long bytes() {
+      return 0;  // not on the heap
+    }
+
+    @Override
+    void addRowTo(int row, double[] sum) {
+      int base = row * columns;
+      for (int j = 0; j < columns; j++) {
+        sum[j] += weights.get(base + j);
+      }
+    }
+
+    @Override
+    void getRow(int row, double[] into) {
+      int base = row * columns;
+      for (int j = 0; j < columns; j++) {
+        into[j] = weights.get(base + j);
+      }
+    }
+
+    @Override
+    double dot(int row, int offset, double[] vector) {
+      int base = row * columns + offset;
+      double sum = 0.0;
+      for (int j = 0; j < vector.length; j++) {
+        sum += weights.get(base + j) * vector[j];
+      }
+      return sum;
+    }
+
+  }
+
+
+  /** Floats read from a buffer, such as a memory-mapped file, row after row */
+  static class FloatBufferMatrix extends WeightMatrix {
+
+    private final FloatBuffer weights;
+    private final int rows;
+    private final int columns;
+
+    FloatBufferMatrix(FloatBuffer weights, int rows, int columns) {
+      if (weights.limit() != rows * columns) {
+        throw new IllegalArgumentException("Buffer of " + weights.limit() + " floats is not " + rows + " x " + columns);
+      }
+      this.weights = weights;
+      this.rows = rows;
+      this.columns = columns;
+    }
+
+    @Override
+    int rows() {
+      return rows;
+    }
+
+    @Override
+    long bytes() {
+      return 0;  // not on the heap
+    }
+
+    @Override
+    void addRowTo(int row, double[] sum) {
+      int base = row * columns;
+      for (int j = 0; j < columns; j++) {
+        sum[j] += weights.get(base + j);
+      }
+    }
+
+    @Override
+    void getRow(int row, double[] into) {
+      int base = row * columns;
+      for (int j = 0; j < columns; j++) {
+        into[j] = weights.get(base + j);
+      }
+    }
+
+    @Override
+    double dot(int row, int offset, double[] vector) {
+      int base = row * columns + offset;
+      double sum = 0.0;
+      for (int j = 0; j < vector.length; j++) {
+        sum += weights.get(base + j) * vector[j];
+      }
+      return sum;
+    }
+
+  }
+
+
+  /** Weights stored as 32 bit floats */
+  static class FloatMatrix extends WeightMatrix {
+
+    private final float[][] weights;
+
+    FloatMatrix(double[][] matrix) {
+      weights = new float[matrix.length][];
+      for (int i = 0; i < matrix.length; i++) {
+        float[] row = weights[i] = new float[matrix[i].length];
+        for (int j = 0; j < row.length; j++) {
+          row[j] = (float) matrix[i][j];
+        }
+      }
+    }
+
+    @Override
+    int rows() {
+      return weights.length;
+    }
+
+    @Override
+    long bytes() {
+      return weights.length == 0 ? 0 : 4L * weights.length * weights[0].length;
+    }
+
+    @Override
+    void addRowTo(int row, double[] sum) {
+      float[] r = weights[row];
+      for (int j = 0; j < r.length; j++) {
+        sum[j] += r[j];
+      }
+    }
+
+    @Override
+    void getRow(int row, double[] into) {
+      float[] r = weights[row];
+      for (int j = 0; j < r.length; j++) {
+        into[j] = r[j];
+      }
+    }
+
+    @Override
+    double dot(int row, int offset, double[] vector) {
+      float[] r = weights[row];
+      double sum = 0.0;
+      for (int j = 0; j < vector.length; j++) {
+        sum += r[offset + j] * vector[j];
+      }
+      return sum;
+    }
+
+  }
+
+
+  /**
+   * Weights stored as signed bytes, each row with its own scale: a row's
+   * largest weight in absolute value is stored as &plusmn;127.
+   */
+  static class Int8Matrix extends WeightMatrix {
+
+    private final byte[][] weights;
+    private final double[] scales;
+
+    Int8Matrix(double[][] matrix) {
+      weights = new byte[matrix.length][];
+      scales = new double[matrix.length];
+      for (int i = 0; i < matrix.length; i++) {
+        double[] row = matrix[i];
+        double max = 0.0;
+        for (double w : row) {
+          max = Math.max(max, Math.abs(w));
+        }
+        double scale = max == 0.0 ? 1.0 : max / 127.0;
+        scales[i] = scale;
+        byte[] quantized = weights[i] = new byte[row.length];
+        for (int j = 0; j < row.length; j++) {
+          quantized[j] = (byte) Math.round(row[j] / scale);
+        }
+      }
+    }
+
+    @Override
+    int rows() {
+      return weights.length;
+    }
+
+    @Override
+    long bytes() {
+      return (weights.length == 0 ? 0 : (long) weights.length * weights[0].length) + 8L * scales.length;
+    }
+
+    @Override
+    void addRowTo(int row, double[] sum) {
+      byte[] r = weights[row];
+      double scale = scales[row];
+      for (int j = 0; j < r.length; j++) {
+        sum[j] += r[j] * scale;
+      }
+    }
+
+    @Override
+    void getRow(int row, double[] into) {
+      byte[] r = weights[row];
+      double scale = scales[row];
+      for (int j = 0; j < r.length; j++) {
+        into[j] = r[j] * scale;
+      }
+    }
+
+    @Override
+    double dot(int row, int offset, double[] vector) {
+      byte[] r = weights[row];
+      double sum = 0.0;
+      for (int j = 0; j < vector.length; j++) {
+        sum += r[offset + j] * vector[j];
+      }
+      return sum * scales[row];
+    }
+
+  }
+
+}
@@ -0,0 +1,57 @@
+package edu.stanford.nlp.parser.nndep;
+
+import edu.stanford.nlp.util.StringUtils;
+
+import java.util.Properties;
+
+/**
+ * Reports the accuracy, speed and memory use of a dependency parser model
+ * with its weights kept in each {@link Config.WeightPrecision}, to help
+ * choose between them.
+ * <br>
+ * Usage: {@code java edu.stanford.nlp.parser.nndep.WeightPrecisionBenchmark -model model -testFile file.conllu [-iterations n]}
+ * <br>
+ * Any other properties are passed on to the parser, as for {@link DependencyParser#main}.
+ * The test file should have gold parses.
+ */
+public class WeightPrecisionBenchmark {
+
+  private WeightPrecisionBenchmark() {} // main method only
+
+  private static long usedMemory() {
+    Runtime runtime = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  public static void main(String[] args) {
+    Properties props = StringUtils.argsToProperties(args);
+    String model = props.getProperty("model", DependencyParser.DEFAULT_MODEL);
+    String testFile = props.getProperty("testFile");
+    if (testFile == null) {
+      throw new IllegalArgumentException("A -testFile with gold parses is needed");
+    }
+    int iterations = Integer.parseInt(props.getProperty("iterations", "3"));
+
+    StringBuilder report = new StringBuilder();
+    report.append(String.format("%-8s %8s %12s %12s%n", "weights", "LAS", "sec/pass", "model MB"));
+    for (Config.WeightPrecision precision : Config.WeightPrecision.values()) {
+      props.setProperty("weightPrecision", precision.name());
+      long before = usedMemory();
+      DependencyParser parser = DependencyParser.loadFromModelFile(model, props);
+      long memory = usedMemory() - before;
+
+      double las = parser.testCoNLL(testFile, null);  // also warms up the JIT
+      long start = System.nanoTime();
+      for (int i = 0; i < iterations; i++) {
+        parser.testCoNLL(testFile, null);
+      }
+      double seconds = (System.nanoTime() - start) / 1e9 / iterations;
+      report.append(String.format("%-8s %8.4f %12.3f %12.1f%n", precision, las, seconds, memory / 1048576.0));
+    }
+    System.out.print(report);
+  }
+
+}
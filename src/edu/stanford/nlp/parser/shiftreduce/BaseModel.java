@@ -1,6 +1,7 @@
 package edu.stanford.nlp.parser.shiftreduce;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -116,6 +117,20 @@ public abstract class BaseModel implements Serializable {
 
   public abstract Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints);
 
+  /**
+   * Finds the highest scoring transitions of each of the states, as
+   * {@link #findHighestScoringTransitions(State, boolean, int, List)}
+   * does for one, in the same order as the states.  Models may score
+   * the states of a beam together more cheaply than one at a time.
+   */
+  public List<Collection<ScoredObject<Integer>>> findHighestScoringTransitions(List<State> states, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    List<Collection<ScoredObject<Integer>>> transitions = new ArrayList<>(states.size());
+    for (State state : states) {
+      transitions.add(findHighestScoringTransitions(state, requireLegal, numTransitions, constraints));
+    }
+    return transitions;
+  }
+
   /**
    * Train a new model.  This is the method to override for new models
    * such that the ShiftReduceParser will fill in the model.  Given a
@@ -22,5 +22,12 @@ public class CombinationFeatureFactory extends FeatureFactory {
     return features;
   }
 
+  @Override
+  public void featurize(State state, FeatureBuilder features) {
+    for (FeatureFactory factory : factories) {
+      factory.featurize(state, features);
+    }
+  }
+
   private static final long serialVersionUID = 1;
 }
@@ -0,0 +1,68 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.List;
+
+/**
+ * Where a {@link FeatureFactory} puts the features of a state.  A
+ * feature is the concatenation of several strings, such as its name
+ * and the words or tags it looks at, which are given one at a time:
+ * <br>
+ * {@code features.start().append("S0WT-").append(word).append("-").append(tag).end();}
+ * <br>
+ * This way the parser can hash the features as they are built, with
+ * {@link HashedFeatures}, instead of building a String for each one,
+ * while training still gets the Strings, with {@link #of(List)}.
+ */
+public abstract class FeatureBuilder {
+
+  /** Starts a new feature */
+  public abstract FeatureBuilder start();
+
+  /** Adds the next piece of the current feature */
+  public abstract FeatureBuilder append(String piece);
+
+  /** Finishes the current feature */
+  public abstract void end();
+
+  /** Adds a feature which is already one string */
+  public void add(String feature) {
+    start().append(feature).end();
+  }
+
+  /** Builds each feature as a String and adds it to the list */
+  public static FeatureBuilder of(List<String> features) {
+    return new Strings(features);
+  }
+
+  private static class Strings extends FeatureBuilder {
+    private final List<String> features;
+    private final StringBuilder current = new StringBuilder();
+
+    Strings(List<String> features) {
+      this.features = features;
+    }
+
+    @Override
+    public FeatureBuilder start() {
+      current.setLength(0);
+      return this;
+    }
+
+    @Override
+    public FeatureBuilder append(String piece) {
+      current.append(piece);
+      return this;
+    }
+
+    @Override
+    public void end() {
+      features.add(current.toString());
+    }
+
+    @Override
+    public void add(String feature) {
+      features.add(feature);
+    }
+  }
+
+}
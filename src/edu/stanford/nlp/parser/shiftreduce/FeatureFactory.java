@@ -16,6 +16,20 @@ public abstract class FeatureFactory implements Serializable {
 
   abstract public List<String> featurize(State state, List<String> features);
 
+  /**
+   * Adds the features of the state to the builder, which may hash them
+   * instead of keeping the strings (see {@link HashedFeatures}).  These
+   * must be the same features as {@link #featurize(State, List)} gives.
+   * This builds the strings of those features and adds them; a factory
+   * which builds its features piece by piece can avoid that by
+   * overriding this.
+   */
+  public void featurize(State state, FeatureBuilder features) {
+    for (String feature : featurize(state)) {
+      features.add(feature);
+    }
+  }
+
   enum Transition {
     LEFT, RIGHT, UNARY
   };
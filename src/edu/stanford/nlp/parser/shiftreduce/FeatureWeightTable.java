@@ -0,0 +1,61 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.Map;
+
+/**
+ * The feature weights of a {@link PerceptronModel}, keyed by the
+ * {@link HashedFeatures#hash(String) hashes} of their feature strings.
+ * The keys are kept in an open addressed table of longs, so looking a
+ * feature up needs neither a String nor a boxed key.
+ * <br>
+ * The table is built from the model's Map from feature strings, which
+ * is what is trained and serialized, so existing models can be used as
+ * they are.
+ */
+class FeatureWeightTable {
+
+  private final long[] keys;
+  private final Weight[] weights;
+  private final int mask;
+  private final int size;
+
+  FeatureWeightTable(Map<String, Weight> featureWeights) {
+    // keep the table at most half full, so probes stay short
+    int capacity = Integer.highestOneBit(Math.max(2, featureWeights.size()) * 2 - 1) << 1;
+    keys = new long[capacity];
+    weights = new Weight[capacity];
+    mask = capacity - 1;
+    for (Map.Entry<String, Weight> entry : featureWeights.entrySet()) {
+      long key = HashedFeatures.hash(entry.getKey());
+      int slot = slot(key);
+      while (weights[slot] != null && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      keys[slot] = key;
+      weights[slot] = entry.getValue();
+    }
+    size = featureWeights.size();
+  }
+
+  private int slot(long key) {
+    return (int) (key ^ (key >>> 32)) & mask;
+  }
+
+  /** The weights of the feature with this hash, or null if it isn't in the model */
+  Weight get(long key) {
+    int slot = slot(key);
+    Weight weight;
+    while ((weight = weights[slot]) != null) {
+      if (keys[slot] == key) {
+        return weight;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  int size() {
+    return size;
+  }
+
+}
@@ -0,0 +1,80 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the features of a state as 64 bit hashes of their strings,
+ * computed piece by piece as the features are built, so the strings are
+ * never put together.  The hash of a feature is the same as
+ * {@link #hash(String)} of the whole string, so weights kept by feature
+ * string can be found by these hashes (see {@link FeatureWeightTable}).
+ * <br>
+ * The hash is 64 bit FNV-1a over the chars of the feature.  With a
+ * few million features in a model, two of them colliding is unlikely
+ * enough to be ignored.
+ */
+public class HashedFeatures extends FeatureBuilder {
+
+  private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+  private static final long PRIME = 0x100000001b3L;
+
+  private long[] hashes;
+  private int size; // = 0;
+  private long current;
+
+  public HashedFeatures() {
+    this(256);
+  }
+
+  public HashedFeatures(int capacity) {
+    hashes = new long[capacity];
+  }
+
+  /** The hash of a whole feature string, as the features added here have */
+  public static long hash(String feature) {
+    return hash(OFFSET_BASIS, feature);
+  }
+
+  private static long hash(long hash, String piece) {
+    for (int i = 0, len = piece.length(); i < len; ++i) {
+      hash ^= piece.charAt(i);
+      hash *= PRIME;
+    }
+    return hash;
+  }
+
+  @Override
+  public FeatureBuilder start() {
+    current = OFFSET_BASIS;
+    return this;
+  }
+
+  @Override
+  public FeatureBuilder append(String piece) {
+    // as a null would be put in a String
+    current = hash(current, String.valueOf(piece));
+    return this;
+  }
+
+  @Override
+  public void end() {
+    if (size == hashes.length) {
+      hashes = Arrays.copyOf(hashes, size * 2);
+    }
+    hashes[size++] = current;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public long get(int i) {
+    return hashes[i];
+  }
+
+  /** Forgets the features, to reuse this for another state */
+  public void clear() {
+    size = 0;
+  }
+
+}
@@ -2,6 +2,8 @@ package edu.stanford.nlp.parser.shiftreduce;
 
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
@@ -43,6 +45,13 @@ public class PerceptronModel extends BaseModel  {
   Map<String, Weight> featureWeights;
   final FeatureFactory featureFactory;
 
+  /**
+   * The featureWeights by the hashes of their features, which the parser
+   * looks features up in.  Built the first time it is needed, and thrown
+   * away whenever featureWeights change.
+   */
+  private transient volatile FeatureWeightTable hashedWeights; // = null;
+
   public PerceptronModel(ShiftReduceOptions op, Index<Transition> transitionIndex,
                          Set<String> knownStates, Set<String> rootStates, Set<String> rootOnlyStates) {
     super(op, transitionIndex, knownStates, rootStates, rootOnlyStates);
@@ -120,6 +129,7 @@ public class PerceptronModel extends BaseModel  {
         featureWeights.get(feature).addScaled(model.featureWeights.get(feature), 1.0f / numModels);
       }
     }
+    hashedWeights = null;
   }
 
   /**
@@ -137,6 +147,7 @@ public class PerceptronModel extends BaseModel  {
         featureIt.remove();
       }
     }
+    hashedWeights = null;
   }
 
   private void filterFeatures(Set<String> keep) {
@@ -146,6 +157,7 @@ public class PerceptronModel extends BaseModel  {
         featureIt.remove();
       }
     }
+    hashedWeights = null;
   }
 
 
@@ -203,10 +215,57 @@ public class PerceptronModel extends BaseModel  {
     return transitions.iterator().next();
   }
 
+  private FeatureWeightTable hashedWeights() {
+    FeatureWeightTable table = hashedWeights;
+    if (table == null) {
+      table = new FeatureWeightTable(featureWeights);
+      hashedWeights = table;
+    }
+    return table;
+  }
+
+  /**
+   * Scores the transitions by the hashes of the state's features, which
+   * saves building and hashing a String for each feature.  This gives
+   * the same scores as the features themselves, and is what the parser
+   * uses; training, which needs to keep the features, uses the Strings.
+   */
   @Override
   public Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
-    List<String> features = featureFactory.featurize(state);
-    return findHighestScoringTransitions(state, features, requireLegal, numTransitions, constraints);
+    float[] scores = new float[transitionIndex.size()];
+    scoreHashedFeatures(state, new HashedFeatures(), hashedWeights(), scores);
+    return highestScoringTransitions(state, scores, requireLegal, numTransitions, constraints);
+  }
+
+  /**
+   * Scores the states of a beam one after another with the same feature
+   * and score buffers, rather than new ones for each state.
+   */
+  @Override
+  public List<Collection<ScoredObject<Integer>>> findHighestScoringTransitions(List<State> states, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
+    HashedFeatures features = new HashedFeatures();
+    FeatureWeightTable table = hashedWeights();
+    float[] scores = new float[transitionIndex.size()];
+    List<Collection<ScoredObject<Integer>>> transitions = new ArrayList<>(states.size());
+    for (State state : states) {
+      features.clear();
+      Arrays.fill(scores, 0.0f);
+      scoreHashedFeatures(state, features, table, scores);
+      transitions.add(highestScoringTransitions(state, scores, requireLegal, numTransitions, constraints));
+    }
+    return transitions;
+  }
+
+  private void scoreHashedFeatures(State state, HashedFeatures features, FeatureWeightTable table, float[] scores) {
+    featureFactory.featurize(state, features);
+    for (int i = 0; i < features.size(); ++i) {
+      Weight weight = table.get(features.get(i));
+      if (weight == null) {
+        // Features not in our index are ignored
+        continue;
+      }
+      weight.score(scores);
+    }
   }
 
   private Collection<ScoredObject<Integer>> findHighestScoringTransitions(State state, List<String> features, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
@@ -219,7 +278,10 @@ public class PerceptronModel extends BaseModel  {
       }
       weight.score(scores);
     }
+    return highestScoringTransitions(state, scores, requireLegal, numTransitions, constraints);
+  }
 
+  private Collection<ScoredObject<Integer>> highestScoringTransitions(State state, float[] scores, boolean requireLegal, int numTransitions, List<ParserConstraint> constraints) {
     PriorityQueue<ScoredObject<Integer>> queue = new PriorityQueue<>(numTransitions + 1, ScoredComparator.ASCENDING_COMPARATOR);
     for (int i = 0; i < scores.length; ++i) {
       if (!requireLegal || transitionIndex.get(i).isLegal(state, constraints)) {
@@ -556,6 +618,7 @@ public class PerceptronModel extends BaseModel  {
           }
         }
         updates.clear();
+        hashedWeights = null;
       }
       trainingTimer.done("Iteration " + iteration);
       log.info("While training, got " + numCorrect + " transitions correct and " + numWrong + " transitions wrong");
@@ -661,6 +724,7 @@ public class PerceptronModel extends BaseModel  {
       temp.saveModel(tempName);
       Set<String> features = featureWeights.keySet();
       featureWeights = Generics.newHashMap();
+      hashedWeights = null;
       trainModel(serializedPath, tagger, random, binarizedTrees, transitionLists, devTreebank, nThreads, features);
     } else {
       trainModel(serializedPath, tagger, random, binarizedTrees, transitionLists, devTreebank, nThreads, null);
@@ -37,6 +37,9 @@ public class ShiftReduceOptions extends Options {
     if (args[i].equalsIgnoreCase("-beamSize")) {
       testOptions().beamSize = Integer.parseInt(args[i + 1]);
       i += 2;
+    } else if (args[i].equalsIgnoreCase("-beamThreads")) {
+      testOptions().beamThreads = Integer.parseInt(args[i + 1]);
+      i += 2;
     } else if (args[i].equalsIgnoreCase("-trainBeamSize")) {
       trainOptions().beamSize = Integer.parseInt(args[i + 1]);
       i += 2;
@@ -3,11 +3,15 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntConsumer;
 
 import edu.stanford.nlp.ling.HasWord;
 import edu.stanford.nlp.ling.Label;
@@ -70,6 +74,14 @@ public class ShiftReduceParserQuery implements ParserQuery  {
     Tsurgeon.parseOperation("[move punc >-1 top] [if exists single prune single]");
 
   private boolean parseInternal() {
+    try {
+      return parseBeam();
+    } finally {
+      closeBeamPool();
+    }
+  }
+
+  private boolean parseBeam() {
     final int maxBeamSize = Math.max(parser.op.testOptions().beamSize, 1);
 
     success = true;
@@ -87,11 +99,14 @@ public class ShiftReduceParserQuery implements ParserQuery  {
       PriorityQueue<State> oldBeam = beam;
       beam = new PriorityQueue<>(maxBeamSize + 1, ScoredComparator.ASCENDING_COMPARATOR);
       State bestState = null;
-      for (State state : oldBeam) {
+      List<State> states = new ArrayList<>(oldBeam);
+      List<Collection<ScoredObject<Integer>>> allPredictedTransitions = findHighestScoringTransitions(states, maxBeamSize);
+      for (int i = 0; i < states.size(); ++i) {
         if (Thread.interrupted()) {  // Allow interrupting the parser
           throw new RuntimeInterruptedException();
         }
-        Collection<ScoredObject<Integer>> predictedTransitions = parser.model.findHighestScoringTransitions(state, true, maxBeamSize, constraints);
+        State state = states.get(i);
+        Collection<ScoredObject<Integer>> predictedTransitions = allPredictedTransitions.get(i);
         // log.info("Examining state: " + state);
         for (ScoredObject<Integer> predictedTransition : predictedTransitions) {
           Transition transition = parser.model.transitionIndex.get(predictedTransition.object());
@@ -150,6 +165,78 @@ public class ShiftReduceParserQuery implements ParserQuery  {
     return success;
   }
 
+  /**
+   * Threads for scoring the beam, when more are asked for than the common
+   * pool has; made when first needed, and shut down once the sentence is parsed
+   */
+  private ForkJoinPool beamPool; // = null;
+
+  /**
+   * Finds the highest scoring transitions of each state of the beam.
+   * With more than one {@link ShiftReduceTestOptions#beamThreads}, the
+   * beam is split into that many slices, which are scored at the same
+   * time; the transitions are the same either way.
+   */
+  private List<Collection<ScoredObject<Integer>>> findHighestScoringTransitions(List<State> states, int maxBeamSize) {
+    final int numSlices = Math.min(parser.op.testOptions().beamThreads, states.size());
+    if (numSlices <= 1) {
+      return parser.model.findHighestScoringTransitions(states, true, maxBeamSize, constraints);
+    }
+    List<List<Collection<ScoredObject<Integer>>>> slices = new ArrayList<>(Collections.nCopies(numSlices, null));
+    int threads = parser.op.testOptions().beamThreads;
+    ForkJoinPool pool;
+    if (threads <= ForkJoinPool.getCommonPoolParallelism()) {
+      pool = ForkJoinPool.commonPool();
+    } else {
+      if (beamPool == null) {
+        beamPool = new ForkJoinPool(threads);
+      }
+      pool = beamPool;
+    }
+    pool.invoke(new SlicesTask(0, numSlices, slice -> {
+      List<State> sliceStates = states.subList(slice * states.size() / numSlices, (slice + 1) * states.size() / numSlices);
+      slices.set(slice, parser.model.findHighestScoringTransitions(sliceStates, true, maxBeamSize, constraints));
+    }));
+    List<Collection<ScoredObject<Integer>>> predictedTransitions = new ArrayList<>(states.size());
+    for (List<Collection<ScoredObject<Integer>>> slice : slices) {
+      predictedTransitions.addAll(slice);
+    }
+    return predictedTransitions;
+  }
+
+  private void closeBeamPool() {
+    if (beamPool != null) {
+      beamPool.shutdown();
+      beamPool = null;
+    }
+  }
+
+  /** Recursively splits a range of slices of the beam until there is one slice to score. */
+  private static class SlicesTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final int start;
+    private final int end;
+    private final IntConsumer scoreSlice;
+
+    SlicesTask(int start, int end, IntConsumer scoreSlice) {
+      this.start = start;
+      this.end = end;
+      this.scoreSlice = scoreSlice;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start == 1) {
+        scoreSlice.accept(start);
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(new SlicesTask(start, middle, scoreSlice),
+                new SlicesTask(middle, end, scoreSlice));
+    }
+  }
+
   /**
    * TODO: if we add anything interesting to report, we should report it here
    */
@@ -8,4 +8,14 @@ public class ShiftReduceTestOptions extends TestOptions {
   public String recordDebinarized = null;
 
   public int beamSize = 0;
+
+  /**
+   * How many threads to score the states of the beam with, when
+   * beamSize is more than 1.  The parses are the same as with one
+   * thread.  Set with -beamThreads.
+   */
+  public int beamThreads = 1;
+
+  // the same as before beamThreads was added, so older models still load
+  private static final long serialVersionUID = 8510025869993799309L;
 }
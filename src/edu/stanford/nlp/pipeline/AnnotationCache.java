@@ -0,0 +1,296 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.stanford.nlp.util.ErasureUtils;
+import edu.stanford.nlp.util.PropertiesUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * A cache of annotated documents, so that a pipeline which is given the
+ * same document again (boilerplate, reposts) can copy the annotations
+ * it made the first time instead of running the annotators.
+ * <br>
+ * Documents are looked up by a hash of their text and any other
+ * annotations they came with (such as a document id or date), together
+ * with a signature of the pipeline's annotators and their properties.
+ * Only documents whose annotations are all plain values (strings,
+ * numbers and so on) can be looked up; others are always annotated.
+ * <br>
+ * The annotated documents are kept serialized by {@link ProtobufAnnotationSerializer},
+ * which is more compact than the annotations themselves, and gives each
+ * hit its own copy to change.  The most recently used ones are kept in
+ * memory, and optionally more of them in a directory on disk, both of
+ * a bounded size with least recently used documents removed first.
+ * Documents which can't be serialized without losing annotations are not
+ * cached.
+ * <br>
+ * The cache is set up from these properties of a {@link StanfordCoreNLP}:
+ * <ul>
+ *   <li>{@code annotationCache.size}: how many documents to keep in memory (default 0, off)</li>
+ *   <li>{@code annotationCache.dir}: a directory to also keep documents in (default none)</li>
+ *   <li>{@code annotationCache.diskSize}: how many documents to keep in the directory (default 100000)</li>
+ * </ul>
+ */
+public class AnnotationCache {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotationCache.class);
+
+  private static final String SUFFIX = ".annotation.pb";
+
+  private final ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+
+  /** Tells apart pipelines which could annotate the same text differently */
+  private final String signature;
+
+  private final int maxMemoryEntries;
+  /** The serialized documents in memory, the least recently used first */
+  private final LinkedHashMap<String, byte[]> memory = new LinkedHashMap<>(16, 0.75f, true);
+
+  private final File dir; // = null;
+  private final int maxDiskEntries;
+  /** The files of the documents on disk, the least recently used first */
+  private final LinkedHashMap<String, File> disk = new LinkedHashMap<>(16, 0.75f, true);
+
+  private long hits; // = 0;
+  private long misses; // = 0;
+  private long uncacheable; // = 0;
+  private boolean warnedLossy; // = false;
+
+  /**
+   * @param signature A description of the pipeline, which changes whenever
+   *                  the same document could be annotated differently
+   * @param maxMemoryEntries How many documents to keep in memory
+   * @param dir A directory to also keep documents in, or null to only keep them in memory.
+   *            Documents already in it from before are used too.
+   * @param maxDiskEntries How many documents to keep in the directory
+   */
+  public AnnotationCache(String signature, int maxMemoryEntries, String dir, int maxDiskEntries) {
+    this.signature = signature;
+    this.maxMemoryEntries = maxMemoryEntries;
+    this.maxDiskEntries = maxDiskEntries;
+    if (dir == null) {
+      this.dir = null;
+    } else {
+      this.dir = new File(dir);
+      if ( ! this.dir.isDirectory() && ! this.dir.mkdirs()) {
+        throw new IllegalArgumentException("Cannot create annotation cache directory " + dir);
+      }
+      File[] files = this.dir.listFiles((d, name) -> name.endsWith(SUFFIX));
+      Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+      for (File file : files) {
+        String name = file.getName();
+        disk.put(name.substring(0, name.length() - SUFFIX.length()), file);
+      }
+      evictFromDisk();
+      log.info("Using annotation cache " + dir + " with " + disk.size() + " documents");
+    }
+  }
+
+  /**
+   * The cache described by the annotationCache properties, or null if there isn't one.
+   *
+   * @param signature A description of the pipeline, as for {@link #AnnotationCache(String, int, String, int)}
+   */
+  public static AnnotationCache fromProperties(Properties props, String signature) {
+    int size = PropertiesUtils.getInt(props, "annotationCache.size", 0);
+    String dir = props.getProperty("annotationCache.dir");
+    if (size <= 0 && dir == null) {
+      return null;
+    }
+    return new AnnotationCache(signature, Math.max(size, 0), dir, PropertiesUtils.getInt(props, "annotationCache.diskSize", 100000));
+  }
+
+  /**
+   * The key to look a document up by, or null if it can't be cached.
+   * This has to be taken before the document is annotated.
+   */
+  public String key(Annotation annotation) {
+    List<Class<?>> keys = new ArrayList<>(annotation.keySet());
+    keys.sort(Comparator.comparing(Class::getName));
+    StringBuilder sb = new StringBuilder(signature);
+    for (Class<?> key : keys) {
+      Object value = annotation.get(ErasureUtils.uncheckedCast(key));
+      if ( ! (value == null || value instanceof String || value instanceof Number ||
+              value instanceof Boolean || value instanceof Character || value instanceof Enum)) {
+        synchronized (this) {
+          uncacheable++;
+        }
+        return null;
+      }
+      sb.append('\n').append(key.getName()).append('=').append(value);
+    }
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    StringBuilder hash = new StringBuilder();
+    for (byte b : digest.digest(sb.toString().getBytes(StandardCharsets.UTF_8))) {
+      hash.append(String.format("%02x", b));
+    }
+    return hash.toString();
+  }
+
+  /**
+   * Copies the annotations of a cached document into this one.
+   *
+   * @param key The key of the document, from {@link #key(Annotation)}
+   * @return true if the document was in the cache, false if it still has to be annotated
+   */
+  public boolean fill(String key, Annotation annotation) {
+    byte[] serialized = lookup(key);
+    if (serialized == null) {
+      return false;
+    }
+    Annotation cached;
+    try {
+      cached = serializer.fromProto(CoreNLPProtos.Document.parseFrom(serialized));
+    } catch (IOException | RuntimeException e) {
+      log.warn("Cannot read cached annotation " + key + ", annotating again: " + e);
+      remove(key);
+      return false;
+    }
+    for (Class cachedKey : cached.keySet()) {
+      annotation.set(cachedKey, cached.get(cachedKey));
+    }
+    return true;
+  }
+
+  /**
+   * Adds an annotated document to the cache.
+   *
+   * @param key The key the document had before it was annotated, from {@link #key(Annotation)}
+   */
+  public void put(String key, Annotation annotation) {
+    byte[] serialized;
+    try {
+      serialized = serializer.toProto(annotation).toByteArray();
+    } catch (ProtobufAnnotationSerializer.LossySerializationException e) {
+      synchronized (this) {
+        uncacheable++;
+        if ( ! warnedLossy) {
+          log.warn("Not caching documents which can't be serialized completely: " + e.getMessage());
+          warnedLossy = true;
+        }
+      }
+      return;
+    }
+    synchronized (this) {
+      addToMemory(key, serialized);
+      if (dir != null) {
+        File file = new File(dir, key + SUFFIX);
+        try {
+          write(file, serialized);
+          disk.put(key, file);
+          evictFromDisk();
+        } catch (IOException e) {
+          log.warn("Cannot write cached annotation " + file + ": " + e);
+        }
+      }
+    }
+  }
+
+  private synchronized byte[] lookup(String key) {
+    byte[] serialized = memory.get(key);
+    if (serialized == null && dir != null) {
+      File file = disk.get(key);
+      if (file != null) {
+        try {
+          serialized = Files.readAllBytes(file.toPath());
+          // so that the least recently used documents are still known after a restart
+          file.setLastModified(System.currentTimeMillis());
+          addToMemory(key, serialized);
+        } catch (IOException e) {
+          // another process may have removed it
+          disk.remove(key);
+        }
+      }
+    }
+    if (serialized == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return serialized;
+  }
+
+  private void addToMemory(String key, byte[] serialized) {
+    if (maxMemoryEntries > 0) {
+      memory.put(key, serialized);
+      while (memory.size() > maxMemoryEntries) {
+        memory.remove(memory.keySet().iterator().next());
+      }
+    }
+  }
+
+  private synchronized void remove(String key) {
+    memory.remove(key);
+    File file = disk.remove(key);
+    if (file != null && ! file.delete()) {
+      log.warn("Cannot delete " + file);
+    }
+  }
+
+  private void evictFromDisk() {
+    while (disk.size() > maxDiskEntries) {
+      Map.Entry<String, File> eldest = disk.entrySet().iterator().next();
+      disk.remove(eldest.getKey());
+      if (eldest.getValue().exists() && ! eldest.getValue().delete()) {
+        log.warn("Cannot delete " + eldest.getValue());
+      }
+    }
+  }
+
+  /** Writes to a temporary file first, so no one ever reads half a document */
+  private void write(File file, byte[] serialized) throws IOException {
+    File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+    try {
+      try (OutputStream out = new FileOutputStream(tmp)) {
+        out.write(serialized);
+      }
+      Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      if (tmp.exists() && ! tmp.delete()) {
+        log.warn("Cannot delete " + tmp);
+      }
+    }
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  /** The fraction of documents looked up which were in the cache */
+  public synchronized double hitRate() {
+    return (hits + misses) == 0 ? 0.0 : hits / (double) (hits + misses);
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("Annotation cache: %d hits, %d misses (%.1f%% hit rate), %d documents not cacheable; %d documents in memory%s",
+        hits, misses, 100.0 * hitRate(), uncacheable, memory.size(), dir == null ? "" : ", " + disk.size() + " on disk");
+  }
+
+}
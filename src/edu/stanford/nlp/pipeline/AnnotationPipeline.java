@@ -9,6 +9,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Consumer;
 
 
@@ -33,6 +34,8 @@ public class AnnotationPipeline implements Annotator {
 
   private final List<Annotator> annotators;
   private List<MutableLong> accumulatedTime;
+  /** The stages run for each set of requested annotations, see {@link #stagesFor(Set)} */
+  private final Map<Set<Class<? extends CoreAnnotation>>, int[]> requestedStages = new ConcurrentHashMap<>();
 
   public AnnotationPipeline(List<Annotator> annotators) {
     this.annotators = annotators;
@@ -54,6 +57,7 @@ public class AnnotationPipeline implements Annotator {
     if (TIME) {
       accumulatedTime.add(new MutableLong());
     }
+    requestedStages.clear();
   }
 
   /**
@@ -82,6 +86,76 @@ public class AnnotationPipeline implements Annotator {
     }
   }
 
+  /**
+   * Run only the annotators which are needed to produce the requested
+   * annotations on an input annotation, as worked out from their
+   * {@link Annotator#requires()} and {@link Annotator#requirementsSatisfied()}.
+   * The pipeline is run up to the first annotator by which everything requested
+   * has been produced, skipping annotators whose output isn't needed on the way.
+   * Annotators after that point aren't run, even ones which would have changed the
+   * requested annotations (as regexner after ner does); and if the pipeline creates
+   * its annotators lazily, they aren't even loaded.
+   * The annotation should not have been annotated by this pipeline already.
+   *
+   * @param annotation The input annotation, usually a raw document
+   * @param requested The annotations wanted, such as
+   *                  {@code CorefCoreAnnotations.CorefChainAnnotation.class}
+   * @throws IllegalArgumentException If no annotator in the pipeline produces one of the requested annotations
+   */
+  public void annotate(Annotation annotation, Collection<Class<? extends CoreAnnotation>> requested) {
+    for (int stage : stagesFor(Generics.newHashSet(requested))) {
+      annotateStage(stage, annotation);
+    }
+  }
+
+  /** The stages to run, in order, to produce the requested annotations */
+  int[] stagesFor(Set<Class<? extends CoreAnnotation>> requested) {
+    int[] stages = requestedStages.get(requested);
+    if (stages == null) {
+      stages = findStages(requested);
+      requestedStages.put(requested, stages);
+    }
+    return stages;
+  }
+
+  private int[] findStages(Set<Class<? extends CoreAnnotation>> requested) {
+    // go forward until everything requested has been produced, so that later annotators aren't needed at all
+    Set<Class<? extends CoreAnnotation>> missing = Generics.newHashSet(requested);
+    int last = -1;
+    for (int stage = 0; stage < annotators.size() && ! missing.isEmpty(); stage++) {
+      if (missing.removeAll(annotators.get(stage).requirementsSatisfied())) {
+        last = stage;
+      }
+    }
+    if ( ! missing.isEmpty()) {
+      List<String> names = new ArrayList<>();
+      for (Class<? extends CoreAnnotation> key : missing) {
+        names.add(key.getSimpleName());
+      }
+      throw new IllegalArgumentException("No annotator in this pipeline produces " + StringUtils.join(names, ", "));
+    }
+
+    // then go back, keeping each annotator which produces something requested or required by an annotator kept
+    Set<Class<? extends CoreAnnotation>> needed = Generics.newHashSet(requested);
+    boolean[] keep = new boolean[last + 1];
+    int numKept = 0;
+    for (int stage = last; stage >= 0; stage--) {
+      Annotator annotator = annotators.get(stage);
+      if ( ! Collections.disjoint(annotator.requirementsSatisfied(), needed)) {
+        keep[stage] = true;
+        numKept++;
+        needed.addAll(annotator.requires());
+      }
+    }
+    int[] stages = new int[numKept];
+    for (int stage = 0, i = 0; stage <= last; stage++) {
+      if (keep[stage]) {
+        stages[i++] = stage;
+      }
+    }
+    return stages;
+  }
+
   /**
    * Annotate a collection of input annotations IN PARALLEL, making use of
    * all available cores.
@@ -117,7 +191,11 @@ public class AnnotationPipeline implements Annotator {
 
   /**
    * Annotate a collection of input annotations IN PARALLEL, making use of
-   * threads given in numThreads
+   * threads given in numThreads.
+   * The documents are run through an {@link AnnotationScheduler}, so
+   * numThreads bounds the total number of threads used, including any
+   * per-sentence threading of the individual annotators.
+   *
    * @param annotations The input annotations to process
    * @param numThreads The number of threads to run on
    * @param callback A function to be called when an annotation finishes.
@@ -130,41 +208,36 @@ public class AnnotationPipeline implements Annotator {
         annotate(ann);
         callback.accept(ann);
       }
+      return;
+    }
+    new AnnotationScheduler(this, numThreads).annotate(annotations, callback);
+  }
+
+  /** The number of annotators in this pipeline, each of which is one stage of an {@link AnnotationScheduler}. */
+  int numStages() {
+    return annotators.size();
+  }
+
+  /**
+   * Run only the annotator at position {@code stage} on an annotation.
+   * Used by {@link AnnotationScheduler}, which calls the stages of each
+   * document in order.
+   */
+  void annotateStage(int stage, Annotation annotation) {
+    if (Thread.interrupted()) {  // Allow interrupting
+      throw new RuntimeInterruptedException();
+    }
+    if (TIME) {
+      Timing t = new Timing();
+      annotators.get(stage).annotate(annotation);
+      long elapsed = t.stop();
+      MutableLong m = accumulatedTime.get(stage);
+      synchronized (m) {
+        m.incValue(elapsed);
+      }
+    } else {
+      annotators.get(stage).annotate(annotation);
     }
-    // Java's equivalent to ".map{ lambda(annotation) => annotate(annotation) }
-    Iterable<Runnable> threads = () -> {
-      final Iterator<Annotation> iter = annotations.iterator();
-      return new Iterator<Runnable>() {
-        @Override
-        public boolean hasNext() {
-          return iter.hasNext();
-        }
-        @Override
-        public Runnable next() {
-          if ( ! iter.hasNext()) {
-            throw new NoSuchElementException();
-          }
-          final Annotation input = iter.next();
-          return () -> {
-            //(logging)
-            String beginningOfDocument = input.toString().substring(0,Math.min(50,input.toString().length()));
-            Redwood.startTrack("Annotating \"" + beginningOfDocument + "...\"");
-            //(annotate)
-            annotate(input);
-            //(callback)
-            callback.accept(input);
-            //(logging again)
-            Redwood.endTrack("Annotating \"" + beginningOfDocument + "...\"");
-          };
-        }
-        @Override
-        public void remove() {
-          iter.remove();
-        }
-      };
-    };
-    // Thread
-    Redwood.Util.threadAndRun(this.getClass().getSimpleName(), threads, numThreads );
   }
 
   /** Return the total pipeline annotation time in milliseconds.
@@ -196,7 +269,8 @@ public class AnnotationPipeline implements Annotator {
       long total = 0;
       for (Annotator annotator : annotators) {
         MutableLong m = it.next();
-        sb.append(StringUtils.getShortClassName(annotator)).append(": ");
+        String name = (annotator instanceof LazyAnnotator) ? ((LazyAnnotator) annotator).shortName() : StringUtils.getShortClassName(annotator);
+        sb.append(name).append(": ");
         sb.append(Timing.toSecondsString(m.longValue())).append(" sec.");
         sb.append(IOUtils.eolChar);
         total += m.longValue();
@@ -0,0 +1,248 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.util.RuntimeInterruptedException;
+import edu.stanford.nlp.util.logging.Redwood;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Runs an {@link AnnotationPipeline} over many documents with a single,
+ * globally bounded set of worker threads.
+ *
+ * The unit of work is a (document, annotator) pair.  When one stage of a
+ * document finishes, the next stage of that document is queued, so that
+ * different documents can be in different stages of the pipeline at the
+ * same time (e.g., document N in ner while document N+1 is in pos).
+ * Only a bounded number of documents are admitted at once, which keeps
+ * memory use proportional to the number of threads rather than to the
+ * size of the input.
+ *
+ * Annotators which can split their work by sentence ({@link SentenceAnnotator},
+ * {@link POSTaggerAnnotator}) check {@link #inScheduler()} and, instead of
+ * starting their own threads for their {@code nthreads} setting, spread
+ * the sentences of a document over the same worker pool via
+ * {@link #forEach(List, Consumer)}.  Idle workers steal those sentence
+ * tasks, so a few long documents still use all the cores while a stream
+ * of short documents never oversubscribes them.
+ */
+public class AnnotationScheduler {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(AnnotationScheduler.class);
+
+  /** A Phaser cannot have more than this many registered parties */
+  private static final int MAX_DOCUMENTS_IN_FLIGHT = 65535;
+
+  /**
+   * Sentence-level work is split into roughly this many chunks per
+   * worker thread, which gives the pool room to balance sentences of
+   * uneven length without creating a task per sentence.
+   */
+  private static final int CHUNKS_PER_THREAD = 4;
+
+  private final AnnotationPipeline pipeline;
+  private final int numThreads;
+  private final int maxDocumentsInFlight;
+
+  /**
+   * Creates a scheduler which admits up to twice as many documents as
+   * there are threads.
+   *
+   * @param pipeline The pipeline whose annotators are run, in order, on each document
+   * @param numThreads The total number of worker threads.  If less than or
+   *                   equal to 0, the number of available processors is used.
+   */
+  public AnnotationScheduler(AnnotationPipeline pipeline, int numThreads) {
+    this(pipeline, numThreads, 0);
+  }
+
+  /**
+   * @param pipeline The pipeline whose annotators are run, in order, on each document
+   * @param numThreads The total number of worker threads.  If less than or
+   *                   equal to 0, the number of available processors is used.
+   * @param maxDocumentsInFlight How many documents may be partially annotated
+   *                             at once.  If less than or equal to 0, twice the
+   *                             number of threads is used.
+   */
+  public AnnotationScheduler(AnnotationPipeline pipeline, int numThreads, int maxDocumentsInFlight) {
+    this.pipeline = pipeline;
+    this.numThreads = numThreads <= 0 ? Runtime.getRuntime().availableProcessors() : numThreads;
+    if (maxDocumentsInFlight <= 0) {
+      maxDocumentsInFlight = 2 * this.numThreads;
+    }
+    this.maxDocumentsInFlight = Math.min(maxDocumentsInFlight, MAX_DOCUMENTS_IN_FLIGHT);
+  }
+
+  /**
+   * Annotate all of the given documents, blocking until they are done.
+   * The callback is called from a worker thread as each document
+   * finishes, so documents are not necessarily returned in input order.
+   *
+   * If any annotator throws an exception, no further documents are
+   * started, the documents already in flight are allowed to finish,
+   * and the first exception is rethrown from this method.
+   *
+   * @param annotations The documents to annotate
+   * @param callback Called once for each document after its last annotator has run
+   */
+  public void annotate(Iterable<Annotation> annotations, Consumer<Annotation> callback) {
+    ForkJoinPool pool = new ForkJoinPool(numThreads, SchedulerWorker::new, null, false);
+    Semaphore slots = new Semaphore(maxDocumentsInFlight);
+    // The calling thread is registered as a party so that the phase can't
+    // advance until all of the input has been submitted
+    Phaser pending = new Phaser(1);
+    AtomicReference<Throwable> failure = new AtomicReference<>();
+    try {
+      Iterator<Annotation> iterator = annotations.iterator();
+      while (failure.get() == null && iterator.hasNext()) {
+        Annotation annotation = iterator.next();
+        slots.acquire();
+        pending.register();
+        pool.execute(new StageTask(annotation, 0, callback, slots, pending, failure));
+      }
+      pending.arriveAndAwaitAdvance();
+    } catch (InterruptedException e) {
+      pool.shutdownNow();
+      throw new RuntimeInterruptedException(e);
+    } finally {
+      pool.shutdown();
+    }
+
+    Throwable t = failure.get();
+    if (t instanceof RuntimeException) {
+      throw (RuntimeException) t;
+    } else if (t instanceof Error) {
+      throw (Error) t;
+    } else if (t != null) {
+      throw new RuntimeException(t);
+    }
+  }
+
+  /**
+   * Whether or not the current thread is one of the workers of an
+   * AnnotationScheduler.  Annotators with their own multithreading
+   * should defer to {@link #forEach(List, Consumer)} in that case.
+   */
+  public static boolean inScheduler() {
+    return Thread.currentThread() instanceof SchedulerWorker;
+  }
+
+  /**
+   * Applies {@code function} to every element of {@code items}.  When
+   * called from a scheduler worker, the items are split into chunks
+   * which are run on the scheduler's pool; otherwise they are processed
+   * sequentially on the calling thread.  Either way, all of the items
+   * have been processed when this method returns.
+   */
+  public static <T> void forEach(List<T> items, Consumer<T> function) {
+    if (!inScheduler() || items.size() <= 1) {
+      for (T item : items) {
+        function.accept(item);
+      }
+      return;
+    }
+    int parallelism = ForkJoinTask.getPool().getParallelism();
+    int chunkSize = Math.max(1, items.size() / (parallelism * CHUNKS_PER_THREAD));
+    new ChunkTask<>(items, 0, items.size(), chunkSize, function).invoke();
+  }
+
+
+  /** Worker threads are marked with their own class so annotators can tell they are being scheduled. */
+  private static class SchedulerWorker extends ForkJoinWorkerThread {
+    SchedulerWorker(ForkJoinPool pool) {
+      super(pool);
+      setDaemon(true);
+      setName(AnnotationScheduler.class.getSimpleName() + '-' + getPoolIndex());
+    }
+  }
+
+
+  /** Runs one annotator on one document, then queues the next annotator for that document. */
+  private class StageTask extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final Annotation annotation;
+    private final int stage;
+    private final Consumer<Annotation> callback;
+    private final Semaphore slots;
+    private final Phaser pending;
+    private final AtomicReference<Throwable> failure;
+
+    StageTask(Annotation annotation, int stage, Consumer<Annotation> callback,
+              Semaphore slots, Phaser pending, AtomicReference<Throwable> failure) {
+      this.annotation = annotation;
+      this.stage = stage;
+      this.callback = callback;
+      this.slots = slots;
+      this.pending = pending;
+      this.failure = failure;
+    }
+
+    @Override
+    protected void compute() {
+      try {
+        if (failure.get() == null) {
+          if (stage < pipeline.numStages()) {
+            pipeline.annotateStage(stage, annotation);
+          }
+          if (stage + 1 < pipeline.numStages()) {
+            // forked tasks go on this worker's own queue, so the document
+            // usually stays on the same core unless another worker is idle
+            new StageTask(annotation, stage + 1, callback, slots, pending, failure).fork();
+            return;
+          }
+          callback.accept(annotation);
+        }
+      } catch (Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+          log.error("Annotation failed; no further documents will be started");
+        }
+      }
+      slots.release();
+      pending.arriveAndDeregister();
+    }
+  }
+
+
+  /** Recursively splits a range of items until it is at most chunkSize long. */
+  private static class ChunkTask<T> extends RecursiveAction {
+    private static final long serialVersionUID = 1L;
+
+    private final List<T> items;
+    private final int start;
+    private final int end;
+    private final int chunkSize;
+    private final Consumer<T> function;
+
+    ChunkTask(List<T> items, int start, int end, int chunkSize, Consumer<T> function) {
+      this.items = items;
+      this.start = start;
+      this.end = end;
+      this.chunkSize = chunkSize;
+      this.function = function;
+    }
+
+    @Override
+    protected void compute() {
+      if (end - start <= chunkSize) {
+        for (int i = start; i < end; ++i) {
+          function.accept(items.get(i));
+        }
+        return;
+      }
+      int middle = (start + end) >>> 1;
+      invokeAll(new ChunkTask<>(items, start, middle, chunkSize, function),
+                new ChunkTask<>(items, middle, end, chunkSize, function));
+    }
+  }
+
+}
@@ -0,0 +1,115 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.TypesafeMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Compares the default scanning lookups of {@link ArrayCoreMap} with the
+ * key indexed lookups, replaying the sequence of keys a real pipeline
+ * asked for.
+ * <br>
+ * Usage: {@code java edu.stanford.nlp.pipeline.ArrayCoreMapBenchmark -annotators tokenize,ssplit,pos,lemma,ner -file input.txt}
+ * <br>
+ * Any other properties are passed to {@link StanfordCoreNLP}.  Without
+ * a file, a short built-in text is annotated repeatedly.
+ */
+public class ArrayCoreMapBenchmark {
+
+  private static final String DEFAULT_TEXT =
+      "USAir said in the filings that Mr. Icahn first contacted Mr. Colodny last September to discuss the " +
+      "benefits of combining TWA and USAir -- either by TWA's acquisition of USAir, or USAir's acquisition of TWA. ";
+
+  private ArrayCoreMapBenchmark() {} // main method only
+
+  /** Looks up every key of the trace in turn, cycling through the tokens */
+  @SuppressWarnings("unchecked")
+  private static long replay(List<Class<? extends TypesafeMap.Key<?>>> trace, CoreLabel[] tokens) {
+    long found = 0;
+    int t = 0;
+    for (Class key : trace) {
+      if (tokens[t].get(key) != null) {
+        found++;
+      }
+      if (++t == tokens.length) {
+        t = 0;
+      }
+    }
+    return found;
+  }
+
+  private static CoreLabel[] copyTokens(List<CoreLabel> tokens, boolean keyIndexed) {
+    CoreLabel[] copies = new CoreLabel[tokens.size()];
+    for (int i = 0; i < copies.length; i++) {
+      copies[i] = new CoreLabel(tokens.get(i));
+      copies[i].setKeyIndexed(keyIndexed);
+    }
+    return copies;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Properties props = StringUtils.argsToProperties(args);
+    if ( ! props.containsKey("annotators")) {
+      props.setProperty("annotators", "tokenize,ssplit");
+    }
+    String file = props.getProperty("file");
+    props.remove("file");
+    int iterations = Integer.parseInt(props.getProperty("iterations", "20"));
+    props.remove("iterations");
+
+    String text;
+    if (file != null) {
+      text = IOUtils.slurpFile(file);
+    } else {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < 200; i++) {
+        sb.append(DEFAULT_TEXT);
+      }
+      text = sb.toString();
+    }
+
+    StanfordCoreNLP pipeline = new StanfordCoreNLP(props);
+    Annotation annotation = new Annotation(text);
+    List<Class<? extends TypesafeMap.Key<?>>> trace = new ArrayList<>();
+    ArrayCoreMap.listener = trace::add;
+    pipeline.annotate(annotation);
+    ArrayCoreMap.listener = null;
+
+    List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    System.out.printf("Recorded %d lookups over %d tokens%n", trace.size(), tokens.size());
+    CoreLabel[] scanned = copyTokens(tokens, false);
+    CoreLabel[] indexed = copyTokens(tokens, true);
+
+    // warm up the JIT on both code paths
+    for (int i = 0; i < 5; i++) {
+      replay(trace, scanned);
+      replay(trace, indexed);
+    }
+
+    long scannedTime = 0;
+    long indexedTime = 0;
+    for (int i = 0; i < iterations; i++) {
+      long start = System.nanoTime();
+      long scannedFound = replay(trace, scanned);
+      scannedTime += System.nanoTime() - start;
+      start = System.nanoTime();
+      long indexedFound = replay(trace, indexed);
+      indexedTime += System.nanoTime() - start;
+      if (scannedFound != indexedFound) {
+        throw new IllegalStateException("Lookups disagree: " + scannedFound + " vs " + indexedFound);
+      }
+    }
+    double lookups = (double) trace.size() * iterations;
+    System.out.printf("scan:    %.2f ns/lookup%n", scannedTime / lookups);
+    System.out.printf("indexed: %.2f ns/lookup%n", indexedTime / lookups);
+  }
+
+}
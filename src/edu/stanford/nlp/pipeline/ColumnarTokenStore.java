@@ -0,0 +1,396 @@
+package edu.stanford.nlp.pipeline;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Interner;
+
+import java.io.ObjectStreamException;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Stores the tokens of a document column by column: the word, lemma,
+ * tag, ner, offsets and indices of all tokens are kept in one primitive
+ * or interned String array per annotation, rather than in a separate
+ * {@link CoreLabel} per token with its own boxed values.
+ * <br>
+ * Annotators still see ordinary CoreLabels.  {@link #token(int)} returns
+ * a small view object, created the first time a token is asked for,
+ * which reads and writes the columns.  Any annotation that is not one of
+ * the columns is stored on the view itself, exactly as in a CoreLabel.
+ * Views are cached, so the same token is always the same object.
+ * <br>
+ * The usual way to use this is {@link #compact(Annotation)} right after
+ * tokenization and sentence splitting, before any annotator keeps its
+ * own references to the tokens (trees, dependency graphs and mentions all
+ * do).  Compacting a fully annotated document is safe but frees little
+ * memory, since those structures still point at the original tokens.
+ * <br>
+ * Differences from a regular CoreLabel: setting a column to null removes
+ * it, and {@link CoreLabel#keySet()} lists the columns first rather than
+ * in insertion order.  Serializing a view writes a plain CoreLabel.
+ */
+public class ColumnarTokenStore {
+
+  /** Annotations stored as interned String columns */
+  @SuppressWarnings("rawtypes")
+  private static final Class[] STRING_KEYS = {
+      CoreAnnotations.ValueAnnotation.class,
+      CoreAnnotations.TextAnnotation.class,
+      CoreAnnotations.OriginalTextAnnotation.class,
+      CoreAnnotations.LemmaAnnotation.class,
+      CoreAnnotations.PartOfSpeechAnnotation.class,
+      CoreAnnotations.NamedEntityTagAnnotation.class,
+      CoreAnnotations.BeforeAnnotation.class,
+      CoreAnnotations.AfterAnnotation.class,
+  };
+
+  /** Annotations stored as int columns */
+  @SuppressWarnings("rawtypes")
+  private static final Class[] INT_KEYS = {
+      CoreAnnotations.CharacterOffsetBeginAnnotation.class,
+      CoreAnnotations.CharacterOffsetEndAnnotation.class,
+      CoreAnnotations.TokenBeginAnnotation.class,
+      CoreAnnotations.TokenEndAnnotation.class,
+      CoreAnnotations.IndexAnnotation.class,
+      CoreAnnotations.SentenceIndexAnnotation.class,
+  };
+
+  /** Annotations stored as byte columns */
+  @SuppressWarnings("rawtypes")
+  private static final Class[] BOOLEAN_KEYS = {
+      CoreAnnotations.IsNewlineAnnotation.class,
+  };
+
+  /** Marks an absent value in an int column */
+  private static final int NO_INT = Integer.MIN_VALUE;
+
+  /** Values of a byte column */
+  private static final byte NO_BOOLEAN = 0, FALSE = 1, TRUE = 2;
+
+  private final int size;
+  private final String[][] strings;
+  private final int[][] ints;
+  private final byte[][] booleans;
+  private final AtomicReferenceArray<CoreLabel> views;
+  private final Interner<String> interner = new Interner<>();
+
+  /**
+   * Creates a store with room for numTokens tokens, none of which have
+   * any annotations yet.
+   */
+  public ColumnarTokenStore(int numTokens) {
+    size = numTokens;
+    strings = new String[STRING_KEYS.length][numTokens];
+    ints = new int[INT_KEYS.length][numTokens];
+    for (int[] column : ints) {
+      Arrays.fill(column, NO_INT);
+    }
+    booleans = new byte[BOOLEAN_KEYS.length][numTokens];
+    views = new AtomicReferenceArray<>(numTokens);
+  }
+
+  /**
+   * Creates a store holding copies of the given tokens.  Annotations
+   * which are not columns are copied to the views.
+   */
+  @SuppressWarnings("unchecked")
+  public ColumnarTokenStore(List<? extends CoreMap> tokens) {
+    this(tokens.size());
+    for (int i = 0; i < size; i++) {
+      CoreLabel view = token(i);
+      CoreMap original = tokens.get(i);
+      for (Class key : original.keySet()) {
+        view.set(key, original.get(key));
+      }
+    }
+  }
+
+  /** The number of tokens in this store */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Returns the view of token i, creating it if this is the first time
+   * it was asked for.
+   */
+  public CoreLabel token(int i) {
+    CoreLabel view = views.get(i);
+    if (view == null) {
+      views.compareAndSet(i, null, new TokenView(this, i));
+      view = views.get(i);
+    }
+    return view;
+  }
+
+  /** All of the tokens, as a list of views */
+  public List<CoreLabel> tokens() {
+    return new TokenList(0, size);
+  }
+
+  /** Tokens begin (inclusive) to end (exclusive), as a list of views */
+  public List<CoreLabel> tokens(int begin, int end) {
+    if (begin < 0 || end > size || begin > end) {
+      throw new IndexOutOfBoundsException("Tokens " + begin + " to " + end + " out of " + size);
+    }
+    return new TokenList(begin, end);
+  }
+
+  /**
+   * Replaces the tokens of a document, and of each of its sentences,
+   * with views into a new store.  The sentences need the
+   * TokenBeginAnnotation and TokenEndAnnotation set by ssplit.
+   *
+   * @return The new store
+   */
+  public static ColumnarTokenStore compact(Annotation annotation) {
+    List<CoreLabel> original = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    if (original == null) {
+      throw new IllegalArgumentException("Cannot compact a document without tokens");
+    }
+    ColumnarTokenStore store = new ColumnarTokenStore(original);
+    annotation.set(CoreAnnotations.TokensAnnotation.class, store.tokens());
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    if (sentences != null) {
+      for (CoreMap sentence : sentences) {
+        Integer begin = sentence.get(CoreAnnotations.TokenBeginAnnotation.class);
+        Integer end = sentence.get(CoreAnnotations.TokenEndAnnotation.class);
+        if (begin == null || end == null) {
+          throw new IllegalArgumentException("Sentence is missing its token offsets: " + sentence);
+        }
+        sentence.set(CoreAnnotations.TokensAnnotation.class, store.tokens(begin, end));
+      }
+    }
+    return store;
+  }
+
+  @SuppressWarnings("rawtypes")
+  private static int indexOf(Class[] keys, Class<?> key) {
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == key) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+
+  /** A read-only list of views over a range of the store */
+  private class TokenList extends AbstractList<CoreLabel> implements RandomAccess {
+    private final int begin;
+    private final int end;
+
+    TokenList(int begin, int end) {
+      this.begin = begin;
+      this.end = end;
+    }
+
+    @Override
+    public CoreLabel get(int index) {
+      if (index < 0 || index >= end - begin) {
+        throw new IndexOutOfBoundsException("Index " + index + " out of " + (end - begin));
+      }
+      return token(begin + index);
+    }
+
+    @Override
+    public int size() {
+      return end - begin;
+    }
+
+    @Override
+    public List<CoreLabel> subList(int fromIndex, int toIndex) {
+      return tokens(begin + fromIndex, begin + toIndex);
+    }
+  }
+
+
+  /**
+   * A CoreLabel whose column annotations live in the store.  Other
+   * annotations use the ordinary ArrayCoreMap storage, which starts
+   * out empty.
+   */
+  private static class TokenView extends CoreLabel {
+
+    private static final long serialVersionUID = 1L;
+
+    private final ColumnarTokenStore store;
+    private final int index;
+
+    TokenView(ColumnarTokenStore store, int index) {
+      super(0);
+      this.store = store;
+      this.index = index;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+      int column = indexOf(STRING_KEYS, key);
+      if (column >= 0) {
+        return (VALUE) store.strings[column][index];
+      }
+      column = indexOf(INT_KEYS, key);
+      if (column >= 0) {
+        int value = store.ints[column][index];
+        return value == NO_INT ? null : (VALUE) Integer.valueOf(value);
+      }
+      column = indexOf(BOOLEAN_KEYS, key);
+      if (column >= 0) {
+        byte value = store.booleans[column][index];
+        return value == NO_BOOLEAN ? null : (VALUE) Boolean.valueOf(value == TRUE);
+      }
+      return super.get(key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
+      int column = indexOf(STRING_KEYS, key);
+      if (column >= 0) {
+        String[] strings = store.strings[column];
+        String old = strings[index];
+        if (value == null) {
+          strings[index] = null;
+        } else {
+          strings[index] = store.interner.intern((String) value);
+        }
+        return (VALUE) old;
+      }
+      column = indexOf(INT_KEYS, key);
+      if (column >= 0) {
+        VALUE old = get(key);
+        store.ints[column][index] = value == null ? NO_INT : (Integer) value;
+        return old;
+      }
+      column = indexOf(BOOLEAN_KEYS, key);
+      if (column >= 0) {
+        VALUE old = get(key);
+        store.booleans[column][index] = value == null ? NO_BOOLEAN : ((Boolean) value ? TRUE : FALSE);
+        return old;
+      }
+      return super.set(key, value);
+    }
+
+    @Override
+    public <VALUE> VALUE remove(Class<? extends Key<VALUE>> key) {
+      if (indexOf(STRING_KEYS, key) >= 0 || indexOf(INT_KEYS, key) >= 0 || indexOf(BOOLEAN_KEYS, key) >= 0) {
+        return set(key, null);
+      }
+      return super.remove(key);
+    }
+
+    @Override
+    public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+      if (indexOf(STRING_KEYS, key) >= 0 || indexOf(INT_KEYS, key) >= 0 || indexOf(BOOLEAN_KEYS, key) >= 0) {
+        return get(key) != null;
+      }
+      return super.containsKey(key);
+    }
+
+    /** The column keys which have a value for this token */
+    @SuppressWarnings("rawtypes")
+    private Set<Class<?>> columnKeys() {
+      Set<Class<?>> keys = new LinkedHashSet<>();
+      for (int i = 0; i < STRING_KEYS.length; i++) {
+        if (store.strings[i][index] != null) {
+          keys.add(STRING_KEYS[i]);
+        }
+      }
+      for (int i = 0; i < INT_KEYS.length; i++) {
+        if (store.ints[i][index] != NO_INT) {
+          keys.add(INT_KEYS[i]);
+        }
+      }
+      for (int i = 0; i < BOOLEAN_KEYS.length; i++) {
+        if (store.booleans[i][index] != NO_BOOLEAN) {
+          keys.add(BOOLEAN_KEYS[i]);
+        }
+      }
+      return keys;
+    }
+
+    @Override
+    public Set<Class<?>> keySet() {
+      Set<Class<?>> keys = columnKeys();
+      keys.addAll(super.keySet());
+      return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public Set<Class<?>> keySetNotNull() {
+      Set<Class<?>> keys = columnKeys();
+      keys.addAll(super.keySetNotNull());
+      return keys;
+    }
+
+    @Override
+    public int size() {
+      return columnKeys().size() + super.size();
+    }
+
+    @Override
+    protected boolean valuesInArrays() {
+      return false;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof CoreMap)) {
+        return false;
+      }
+      CoreMap other = (CoreMap) obj;
+      Set<Class<?>> keys = keySet();
+      if ( ! keys.equals(other.keySet())) {
+        return false;
+      }
+      for (Class key : keys) {
+        if ( ! Objects.equals(get(key), other.get(key))) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /** Same formula as {@link ArrayCoreMap#hashCode()}, which is a sum over the entries */
+    @Override
+    @SuppressWarnings("unchecked")
+    public int hashCode() {
+      int hash = super.hashCode();
+      for (Class key : columnKeys()) {
+        hash += key.hashCode() * 37 + get(key).hashCode();
+      }
+      return hash;
+    }
+
+    @Override
+    public String toShorterString(String... what) {
+      return new CoreLabel(this).toShorterString(what);
+    }
+
+    @Override
+    public String toShortString(char separator, String... what) {
+      return new CoreLabel(this).toShortString(separator, what);
+    }
+
+    /** Views are serialized as ordinary CoreLabels rather than dragging the whole store along */
+    private Object writeReplace() throws ObjectStreamException {
+      return new CoreLabel(this);
+    }
+  }
+
+}
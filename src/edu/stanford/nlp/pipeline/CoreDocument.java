@@ -61,6 +61,17 @@ public class CoreDocument {
               map(coreMapQuote -> new CoreQuote(this, coreMapQuote)).collect(Collectors.toList());
   }
 
+  /**
+   * Move the tokens of this document into a {@link ColumnarTokenStore},
+   * which needs far less memory for large documents.  This should be done
+   * after tokenize and ssplit, before the rest of the pipeline runs.
+   **/
+  public ColumnarTokenStore compactTokens() {
+    ColumnarTokenStore store = ColumnarTokenStore.compact(this.annotationDocument);
+    wrapAnnotations();
+    return store;
+  }
+
   /** provide access to the underlying annotation if needed **/
   public Annotation annotation() {
     return this.annotationDocument;
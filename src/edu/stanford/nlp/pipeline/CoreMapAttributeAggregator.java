@@ -7,6 +7,8 @@ import edu.stanford.nlp.util.ArrayMap;
 import edu.stanford.nlp.util.CoreMap;
 import edu.stanford.nlp.util.Generics;
 
+import java.io.ObjectStreamException;
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -14,8 +16,10 @@ import java.util.*;
 *
 * @author Angel Chang
 */
-public abstract class CoreMapAttributeAggregator
+public abstract class CoreMapAttributeAggregator implements Serializable
 {
+  private static final long serialVersionUID = 1L;
+
   public static Map<Class, CoreMapAttributeAggregator> getDefaultAggregators()
   {
     return DEFAULT_AGGREGATORS;
@@ -28,6 +32,29 @@ public abstract class CoreMapAttributeAggregator
 
   public abstract Object aggregate(Class key, List<? extends CoreMap> in);
 
+  /** The named aggregators are written out by name, so they are the same objects when read back in */
+  protected Object writeReplace() throws ObjectStreamException {
+    for (Map.Entry<String, CoreMapAttributeAggregator> entry : AGGREGATOR_LOOKUP.entrySet()) {
+      if (entry.getValue() == this) {
+        return new NamedAggregator(entry.getKey());
+      }
+    }
+    return this;
+  }
+
+  private static class NamedAggregator implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String name;
+
+    private NamedAggregator(String name) {
+      this.name = name;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+      return getAggregator(name);
+    }
+  }
+
   public static final CoreMapAttributeAggregator FIRST_NON_NIL = new CoreMapAttributeAggregator() {
       public Object aggregate(Class key, List<? extends CoreMap> in) {
         if (in == null) return null;
@@ -78,6 +105,7 @@ public abstract class CoreMapAttributeAggregator
     };
 
   public static final class ConcatListAggregator<T> extends CoreMapAttributeAggregator {
+    private static final long serialVersionUID = -2543811427767871421L;
     public ConcatListAggregator()
     {
     }
@@ -97,6 +125,7 @@ public abstract class CoreMapAttributeAggregator
     }
   }
   public static final class ConcatCoreMapListAggregator<T extends CoreMap> extends CoreMapAttributeAggregator {
+    private static final long serialVersionUID = 2647583774348556007L;
     boolean concatSelf = false;
     public ConcatCoreMapListAggregator()
     {
@@ -128,6 +157,7 @@ public abstract class CoreMapAttributeAggregator
   public static final ConcatCoreMapListAggregator<CoreMap> CONCAT_COREMAP = new ConcatCoreMapListAggregator<>(true);
 
   public static final class ConcatAggregator extends CoreMapAttributeAggregator {
+    private static final long serialVersionUID = 1291706489390635480L;
     String delimiter;
     public ConcatAggregator(String delimiter)
     {
@@ -149,6 +179,7 @@ public abstract class CoreMapAttributeAggregator
     }
   }
   public static final class ConcatTextAggregator extends CoreMapAttributeAggregator {
+    private static final long serialVersionUID = 1176161236196050718L;
     String delimiter;
     public ConcatTextAggregator(String delimiter)
     {
@@ -232,6 +263,7 @@ public abstract class CoreMapAttributeAggregator
   };
 
   public static final class MostFreqAggregator extends CoreMapAttributeAggregator {
+    private static final long serialVersionUID = 351018614033531680L;
     Set<Object> ignoreSet;
     public MostFreqAggregator()
     {
@@ -4,6 +4,7 @@ import edu.stanford.nlp.util.logging.Redwood;
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.parser.nndep.DependencyParser;
+import edu.stanford.nlp.parser.nndep.DependencyTree;
 import edu.stanford.nlp.semgraph.SemanticGraph;
 import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
 import edu.stanford.nlp.semgraph.SemanticGraphFactory;
@@ -48,6 +49,9 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
    */
   private final GrammaticalStructure.Extras extraDependencies;
 
+  /** The parses of sentences seen before, by their words and tags, or null if they aren't kept */
+  private final SentenceCache<DependencyTree> sentenceCache;
+
   public DependencyParseAnnotator() {
     this(new Properties());
   }
@@ -59,6 +63,7 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
     nThreads = PropertiesUtils.getInt(properties, "nthreads", DEFAULT_NTHREADS);
     maxTime = PropertiesUtils.getLong(properties, "sentenceTimeout", DEFAULT_MAXTIME);
     extraDependencies = MetaClass.cast(properties.getProperty("extradependencies", "NONE"), GrammaticalStructure.Extras.class);
+    sentenceCache = SentenceCache.fromProperties(properties, "");
   }
 
   @Override
@@ -71,10 +76,64 @@ public class DependencyParseAnnotator extends SentenceAnnotator  {
     return maxTime;
   }
 
+  /**
+   * When running in a single thread without a timeout, parses all the
+   * sentences together with {@link DependencyParser#predictTrees}, which
+   * scores the transitions of a batch of sentences at once (see the
+   * {@code parseBatchSize} property).  Otherwise sentences are parsed one
+   * at a time, as usual.  Either way, sentences already in the sentence
+   * cache aren't parsed again.
+   */
+  @Override
+  public void annotate(Annotation annotation) {
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    if (sentences == null || nThreads() != 1 || maxTime() > 0 || AnnotationScheduler.inScheduler()) {
+      super.annotate(annotation);
+      return;
+    }
+    DependencyTree[] trees = new DependencyTree[sentences.size()];
+    String[] keys = new String[sentences.size()];
+    List<CoreMap> toParse = new ArrayList<>();
+    List<Integer> toParseIndices = new ArrayList<>();
+    for (int i = 0; i < sentences.size(); i++) {
+      if (sentenceCache != null) {
+        keys[i] = SentenceCache.tokensKey(sentences.get(i).get(CoreAnnotations.TokensAnnotation.class), true);
+        trees[i] = sentenceCache.get(keys[i]);
+      }
+      if (trees[i] == null) {
+        toParse.add(sentences.get(i));
+        toParseIndices.add(i);
+      }
+    }
+    List<DependencyTree> parsed = toParse.isEmpty() ? Collections.emptyList() : parser.predictTrees(toParse);
+    for (int j = 0; j < parsed.size(); j++) {
+      int i = toParseIndices.get(j);
+      trees[i] = parsed.get(j);
+      if (sentenceCache != null) {
+        sentenceCache.put(keys[i], trees[i]);
+      }
+    }
+    for (int i = 0; i < sentences.size(); i++) {
+      setDependencies(sentences.get(i), parser.toGrammaticalStructure(sentences.get(i), trees[i]));
+    }
+  }
+
   @Override
   protected void doOneSentence(Annotation annotation, CoreMap sentence) {
-    GrammaticalStructure gs = parser.predict(sentence);
+    if (sentenceCache == null) {
+      setDependencies(sentence, parser.predict(sentence));
+      return;
+    }
+    String key = SentenceCache.tokensKey(sentence.get(CoreAnnotations.TokensAnnotation.class), true);
+    DependencyTree tree = sentenceCache.get(key);
+    if (tree == null) {
+      tree = parser.predictTree(sentence);
+      sentenceCache.put(key, tree);
+    }
+    setDependencies(sentence, parser.toGrammaticalStructure(sentence, tree));
+  }
 
+  private void setDependencies(CoreMap sentence, GrammaticalStructure gs) {
     SemanticGraph deps = SemanticGraphFactory.makeFromTree(gs, Mode.COLLAPSED, extraDependencies, null),
                   uncollapsedDeps = SemanticGraphFactory.makeFromTree(gs, Mode.BASIC, extraDependencies, null),
                   ccDeps = SemanticGraphFactory.makeFromTree(gs, Mode.CCPROCESSED, extraDependencies, null),
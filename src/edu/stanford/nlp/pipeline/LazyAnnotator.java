@@ -0,0 +1,67 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.Set;
+import java.util.function.Supplier;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.util.StringUtils;
+
+/**
+ * An annotator in a pipeline which is only created (loading its models)
+ * the first time it is used, whether to annotate or to ask what it
+ * requires or produces.  Once created, it is kept for the life of the
+ * pipeline, as an annotator added directly would be.
+ */
+class LazyAnnotator implements Annotator {
+
+  private final String name;
+  private final Supplier<Annotator> loader;
+  private volatile Annotator annotator; // = null;
+
+  LazyAnnotator(String name, Supplier<Annotator> loader) {
+    this.name = name;
+    this.loader = loader;
+  }
+
+  /** The annotator, which is created if it hasn't been yet */
+  Annotator get() {
+    Annotator annotator = this.annotator;
+    if (annotator == null) {
+      synchronized (this) {
+        annotator = this.annotator;
+        if (annotator == null) {
+          annotator = loader.get();
+          this.annotator = annotator;
+        }
+      }
+    }
+    return annotator;
+  }
+
+  /** The class of the annotator, as for other annotators, or just its name if it hasn't been created */
+  String shortName() {
+    Annotator annotator = this.annotator;
+    return annotator == null ? name : StringUtils.getShortClassName(annotator);
+  }
+
+  @Override
+  public void annotate(Annotation annotation) {
+    get().annotate(annotation);
+  }
+
+  @Override
+  public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+    return get().requirementsSatisfied();
+  }
+
+  @Override
+  public Set<Class<? extends CoreAnnotation>> requires() {
+    return get().requires();
+  }
+
+  @Override
+  public String toString() {
+    return "LazyAnnotator[" + name + ']';
+  }
+
+}
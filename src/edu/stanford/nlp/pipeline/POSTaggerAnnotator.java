@@ -5,6 +5,7 @@ import java.util.*;
 
 import edu.stanford.nlp.ling.*;
 import edu.stanford.nlp.tagger.maxent.MaxentTagger;
+import edu.stanford.nlp.tagger.maxent.TaggerWorkspace;
 import edu.stanford.nlp.util.*;
 import edu.stanford.nlp.util.concurrent.MulticoreWrapper;
 import edu.stanford.nlp.util.concurrent.ThreadsafeProcessor;
@@ -27,6 +28,12 @@ public class POSTaggerAnnotator implements Annotator  {
 
   private final boolean reuseTags;
 
+  /** The tags of sentences already tagged, by their words, or null if they aren't kept */
+  private final SentenceCache<String[]> sentenceCache;
+
+  /** Each thread tags with its own workspace, so the tagger's arrays are kept between sentences */
+  private final ThreadLocal<TaggerWorkspace> workspaces = ThreadLocal.withInitial(this::newWorkspace);
+
   /** Create a tagger annotator using the default English tagger from the models jar
    *  (and non-verbose initialization).
    */
@@ -62,6 +69,7 @@ public class POSTaggerAnnotator implements Annotator  {
     this.maxSentenceLength = maxSentenceLength;
     this.nThreads = numThreads;
     this.reuseTags = false;
+    this.sentenceCache = null;
   }
 
   public POSTaggerAnnotator(String annotatorName, Properties props) {
@@ -74,6 +82,7 @@ public class POSTaggerAnnotator implements Annotator  {
     this.maxSentenceLength = PropertiesUtils.getInt(props, annotatorName + ".maxlen", Integer.MAX_VALUE);
     this.nThreads = PropertiesUtils.getInt(props, annotatorName + ".nthreads", PropertiesUtils.getInt(props, "nthreads", 1));
     this.reuseTags = PropertiesUtils.getBool(props, annotatorName + ".reuseTags", false);
+    this.sentenceCache = SentenceCache.fromProperties(props, annotatorName + '.');
   }
 
   private static MaxentTagger loadModel(String loc, boolean verbose) {
@@ -93,7 +102,10 @@ public class POSTaggerAnnotator implements Annotator  {
   public void annotate(Annotation annotation) {
     // turn the annotation into a sentence
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
-      if (nThreads == 1) {
+      if (AnnotationScheduler.inScheduler()) {
+        // share the scheduler's threads rather than starting nThreads more
+        AnnotationScheduler.forEach(annotation.get(CoreAnnotations.SentencesAnnotation.class), this::doOneSentence);
+      } else if (nThreads == 1) {
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
           doOneSentence(sentence);
         }
@@ -127,23 +139,41 @@ public class POSTaggerAnnotator implements Annotator  {
     }
   }
 
+  private TaggerWorkspace newWorkspace() {
+    return pos.newWorkspace();
+  }
+
   private CoreMap doOneSentence(CoreMap sentence) {
     List<CoreLabel> tokens = sentence.get(CoreAnnotations.TokensAnnotation.class);
-    List<TaggedWord> tagged = null;
+    String[] tags = null;
     if (tokens.size() <= maxSentenceLength) {
-      try {
-        tagged = pos.tagSentence(tokens, this.reuseTags);
-      } catch (OutOfMemoryError e) {
-        log.error(e); // Beware that we can now get an OOM in logging, too.
-        log.warn("Tagging of sentence ran out of memory. " +
-                           "Will ignore and continue: " +
-                           SentenceUtils.listToString(tokens));
+      // tags the tagger is given to keep are part of what it looks at
+      String cacheKey = (sentenceCache == null) ? null : SentenceCache.tokensKey(tokens, reuseTags);
+      if (cacheKey != null) {
+        tags = sentenceCache.get(cacheKey);
+      }
+      if (tags == null) {
+        try {
+          List<TaggedWord> tagged = pos.tagSentence(tokens, this.reuseTags, workspaces.get());
+          tags = new String[tagged.size()];
+          for (int i = 0; i < tags.length; i++) {
+            tags[i] = tagged.get(i).tag();
+          }
+          if (cacheKey != null) {
+            sentenceCache.put(cacheKey, tags);
+          }
+        } catch (OutOfMemoryError e) {
+          log.error(e); // Beware that we can now get an OOM in logging, too.
+          log.warn("Tagging of sentence ran out of memory. " +
+                             "Will ignore and continue: " +
+                             SentenceUtils.listToString(tokens));
+        }
       }
     }
 
-    if (tagged != null) {
+    if (tags != null) {
       for (int i = 0, sz = tokens.size(); i < sz; i++) {
-        tokens.get(i).set(CoreAnnotations.PartOfSpeechAnnotation.class, tagged.get(i).tag());
+        tokens.get(i).set(CoreAnnotations.PartOfSpeechAnnotation.class, tags[i]);
       }
     } else {
       for (CoreLabel token : tokens) {
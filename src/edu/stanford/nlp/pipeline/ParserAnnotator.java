@@ -75,7 +75,10 @@ public class ParserAnnotator extends SentenceAnnotator  {
   // around this height, protobuf might potentially barf
   private final static int DEFAULT_MAX_HEIGHT = 80;
   private final int maxHeight;
-  
+
+  /** The parses of sentences seen before, by their words and tags, or null if they aren't kept */
+  private final SentenceCache<List<Tree>> sentenceCache;
+
   public ParserAnnotator(boolean verbose, int maxSent) {
     this(System.getProperty("parse.model", LexicalizedParser.DEFAULT_PARSER_LOC), verbose, maxSent, StringUtils.EMPTY_STRING_ARRAY);
   }
@@ -112,6 +115,7 @@ public class ParserAnnotator extends SentenceAnnotator  {
     this.noSquash = false;
     this.extraDependencies = GrammaticalStructure.Extras.NONE;
     this.maxHeight = DEFAULT_MAX_HEIGHT;
+    this.sentenceCache = null;
   }
 
 
@@ -166,6 +170,7 @@ public class ParserAnnotator extends SentenceAnnotator  {
     this.saveBinaryTrees = PropertiesUtils.getBool(props, annotatorName + ".binaryTrees", usesBinary);
     this.noSquash = PropertiesUtils.getBool(props, annotatorName + ".nosquash", false);
     this.extraDependencies = MetaClass.cast(props.getProperty(annotatorName + ".extradependencies", "NONE"), GrammaticalStructure.Extras.class);
+    this.sentenceCache = SentenceCache.fromProperties(props, annotatorName + '.');
   }
 
   @SuppressWarnings("StringConcatenationInsideStringBufferAppend")
@@ -259,7 +264,25 @@ public class ParserAnnotator extends SentenceAnnotator  {
     if (maxSentenceLength <= 0 || words.size() <= maxSentenceLength) {
       try {
         final List<ParserConstraint> constraints = sentence.get(ParserAnnotations.ConstraintAnnotation.class);
-        trees = doOneSentence(constraints, words);
+        // a sentence with constraints may be parsed differently from the same words without them
+        String key = (sentenceCache == null || constraints != null) ? null : SentenceCache.tokensKey(words, true);
+        List<Tree> cached = (key == null) ? null : sentenceCache.get(key);
+        if (cached != null) {
+          trees = new ArrayList<>(cached.size());
+          for (Tree tree : cached) {
+            trees.add(copyTree(tree, words));
+          }
+        } else {
+          trees = doOneSentence(constraints, words);
+          if (key != null && ! trees.isEmpty()) {
+            // finishSentence changes the trees, so keep copies of them as they came from the parser
+            List<Tree> copies = new ArrayList<>(trees.size());
+            for (Tree tree : trees) {
+              copies.add(copyTree(tree, null));
+            }
+            sentenceCache.put(key, copies);
+          }
+        }
       } catch (RuntimeInterruptedException e) {
         if (VERBOSE) {
           log.info("Took too long parsing: " + words);
@@ -328,6 +351,34 @@ public class ParserAnnotator extends SentenceAnnotator  {
     }
   }
 
+  /**
+   * Copies a tree with the score of each node.  If words are given and
+   * there is one for each leaf, they become the leaves, as the parser
+   * itself does with the words it parses; otherwise the leaves are copied.
+   */
+  private static Tree copyTree(Tree tree, List<CoreLabel> words) {
+    Iterator<CoreLabel> leaves = (words != null && words.size() == tree.yield().size()) ? words.iterator() : null;
+    return copyNodes(tree, leaves);
+  }
+
+  private static Tree copyNodes(Tree tree, Iterator<CoreLabel> leaves) {
+    Tree copy;
+    if (tree.isLeaf()) {
+      copy = tree.treeFactory().newLeaf(leaves != null ? leaves.next() : tree.label().labelFactory().newLabel(tree.label()));
+    } else {
+      Tree[] kids = tree.children();
+      List<Tree> newKids = new ArrayList<>(kids.length);
+      for (Tree kid : kids) {
+        newKids.add(copyNodes(kid, leaves));
+      }
+      copy = tree.treeFactory().newTreeNode(tree.label().labelFactory().newLabel(tree.label()), newKids);
+    }
+    if ( ! Double.isNaN(tree.score())) {
+      copy.setScore(tree.score());
+    }
+    return copy;
+  }
+
   private List<Tree> doOneSentence(List<ParserConstraint> constraints,
                              List<CoreLabel> words) {
     ParserQuery pq = parser.parserQuery();
@@ -630,6 +630,30 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     return builder.build();
   }
 
+  /**
+   * Create a Document proto with everything except the sentences and tokens.
+   * This is the trailer written by {@link ProtobufAnnotationStream.Writer}, after
+   * the sentences have been written one at a time.
+   *
+   * @param doc The document to serialize.
+   * @return A protocol buffer message with the document-level annotations of this document
+   */
+  CoreNLPProtos.Document toProtoWithoutSentences(Annotation doc) {
+    Annotation shallowCopy = new Annotation(doc);
+    shallowCopy.remove(SentencesAnnotation.class);
+    shallowCopy.remove(TokensAnnotation.class);
+    if (shallowCopy.get(TextAnnotation.class) == null) {
+      shallowCopy.set(TextAnnotation.class, "");  // text is a required field
+    }
+    Set<Class<?>> keysToSerialize = new HashSet<>(shallowCopy.keySet());
+    CoreNLPProtos.Document.Builder builder = toProtoBuilder(shallowCopy, keysToSerialize);
+    // Completeness Check
+    if (enforceLosslessSerialization && !keysToSerialize.isEmpty()) {
+      throw new LossySerializationException("Keys are not being serialized: " + StringUtils.join(keysToSerialize));
+    }
+    return builder.build();
+  }
+
   /**
    * Create a protobuf builder, rather than a compiled protobuf.
    * Useful for, e.g., the simple CoreNLP interface.
@@ -1550,6 +1574,77 @@ public class ProtobufAnnotationSerializer extends AnnotationSerializer {
     return lossySentence;
   }
 
+  /**
+   * Create a CoreMap representing a sentence read on its own, without the rest of its document,
+   * as done by {@link ProtobufAnnotationStream.Reader}.
+   * Unlike {@link #fromProto(CoreNLPProtos.Sentence)}, this also restores the OpenIE and KBP triples,
+   * as long as they only refer to tokens of this sentence.
+   * Annotations which depend on the document, such as the coref mention indices of the tokens, are not restored.
+   *
+   * @param proto The serialized protobuf to read the sentence from.
+   * @param sentenceIndex The index of this sentence in the document.
+   * @param header A document proto with the docID of the document this sentence is from.
+   * @return A CoreMap, representing a sentence as stored in the protocol buffer
+   */
+  CoreMap fromProtoStreamed(CoreNLPProtos.Sentence proto, int sentenceIndex, CoreNLPProtos.Document header) {
+    CoreMap sentence = fromProto(proto.toBuilder().clearOpenieTriple().clearKbpTriple().build());
+    List<CoreLabel> tokens = sentence.get(TokensAnnotation.class);
+    String docID = header.hasDocID() ? header.getDocID() : null;
+    // Set what fromProto(Document) would have set from the document
+    for (int i = 0; i < tokens.size(); ++i) {
+      CoreLabel token = tokens.get(i);
+      if (docID != null) {
+        token.setDocID(docID);
+      }
+      token.setSentIndex(sentenceIndex);
+      token.setIndex(i + 1);
+      if (proto.hasParagraph()) {
+        token.set(ParagraphAnnotation.class, proto.getParagraph());
+      }
+    }
+    if (proto.hasText()) {
+      sentence.set(TextAnnotation.class, proto.getText());
+    }
+    if (proto.getHasOpenieTriplesAnnotation() || proto.getOpenieTripleCount() > 0 ||
+        proto.getHasKBPTriplesAnnotation() || proto.getKbpTripleCount() > 0) {
+      // The triples look their tokens up by sentence index in a document,
+      // so give them a document in which this is the only sentence there is
+      Annotation doc = new Annotation("");
+      if (docID != null) {
+        doc.set(DocIDAnnotation.class, docID);
+      }
+      doc.set(SentencesAnnotation.class, new AbstractList<CoreMap>() {
+        @Override
+        public CoreMap get(int index) {
+          if (index != sentenceIndex) {
+            throw new IllegalStateException("Triple in sentence " + sentenceIndex + " refers to sentence " + index + ", which is not available when streaming");
+          }
+          return sentence;
+        }
+
+        @Override
+        public int size() {
+          return sentenceIndex + 1;
+        }
+      });
+      if (proto.getHasOpenieTriplesAnnotation() || proto.getOpenieTripleCount() > 0) {
+        List<RelationTriple> triples = new ArrayList<>();
+        for (CoreNLPProtos.RelationTriple triple : proto.getOpenieTripleList()) {
+          triples.add(fromProto(triple, doc, sentenceIndex));
+        }
+        sentence.set(NaturalLogicAnnotations.RelationTriplesAnnotation.class, triples);
+      }
+      if (proto.getHasKBPTriplesAnnotation() || proto.getKbpTripleCount() > 0) {
+        List<RelationTriple> triples = new ArrayList<>();
+        for (CoreNLPProtos.RelationTriple triple : proto.getKbpTripleList()) {
+          triples.add(fromProto(triple, doc, sentenceIndex));
+        }
+        sentence.set(KBPTriplesAnnotation.class, triples);
+      }
+    }
+    return sentence;
+  }
+
   /**
    * Create a CoreMap representing a sentence from this protocol buffer.
    * Note that the sentence is very lossy -- most glaringly, the tokens are missing, awaiting a document
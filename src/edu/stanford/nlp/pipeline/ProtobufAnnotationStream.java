@@ -0,0 +1,238 @@
+package edu.stanford.nlp.pipeline;
+
+import com.google.protobuf.CodedInputStream;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads and writes documents in the protobuf format one sentence at a time,
+ * so that neither side has to hold a whole {@link CoreNLPProtos.Document}
+ * in memory.
+ * <p>
+ * A streamed document is a sequence of length-delimited messages:
+ * </p>
+ * <ol>
+ *   <li>A header {@link CoreNLPProtos.Document} with the docID, docDate and
+ *       calendar of the document, empty text, and nothing else.</li>
+ *   <li>Any number of {@link CoreNLPProtos.Sentence} messages, each written as
+ *       soon as the sentence is done, with the text of the sentence.</li>
+ *   <li>An empty message, which can't be a valid Sentence since a Sentence has
+ *       required fields.  This marks the end of the sentences.</li>
+ *   <li>A trailer {@link CoreNLPProtos.Document} with the text of the document
+ *       and the document-level annotations (coref chains, mentions, quotes,
+ *       sections, ...), but no sentences.</li>
+ * </ol>
+ * <p>
+ * Several documents may follow each other in one stream.
+ * {@link Reader#readAll()} puts a streamed document back together into the
+ * same Annotation that {@link ProtobufAnnotationSerializer#read(InputStream)}
+ * would have produced for the non-streamed document.
+ * </p>
+ */
+public class ProtobufAnnotationStream {
+
+  private ProtobufAnnotationStream() {} // static methods and nested classes only
+
+  /**
+   * Write a whole document in the streamed format.  Each sentence is
+   * converted to a proto and written before the next one is converted,
+   * so the serialized form of the document is never in memory all at once.
+   */
+  public static void write(ProtobufAnnotationSerializer serializer, Annotation doc, OutputStream os) throws IOException {
+    Writer writer = new Writer(serializer, doc, os);
+    if (doc.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
+      for (CoreMap sentence : doc.get(CoreAnnotations.SentencesAnnotation.class)) {
+        writer.writeSentence(sentence);
+      }
+    }
+    writer.finish(doc);
+  }
+
+  /**
+   * Writes one document incrementally: the header when created, then each
+   * sentence as it is passed to {@link #writeSentence(CoreMap)}, then the
+   * trailer on {@link #finish(Annotation)}.
+   */
+  public static class Writer {
+    private final ProtobufAnnotationSerializer serializer;
+    private final OutputStream os;
+    private boolean finished; // = false;
+
+    /**
+     * Writes the header of the document.  Only the docID, docDate and
+     * calendar of doc are used at this point, so its text need not be known yet.
+     */
+    public Writer(ProtobufAnnotationSerializer serializer, Annotation doc, OutputStream os) throws IOException {
+      this.serializer = serializer;
+      this.os = os;
+      CoreNLPProtos.Document.Builder header = CoreNLPProtos.Document.newBuilder();
+      header.setText("");  // text is a required field, but comes with the sentences and the trailer
+      if (doc.containsKey(CoreAnnotations.DocIDAnnotation.class)) {
+        header.setDocID(doc.get(CoreAnnotations.DocIDAnnotation.class));
+      }
+      if (doc.containsKey(CoreAnnotations.DocDateAnnotation.class)) {
+        header.setDocDate(doc.get(CoreAnnotations.DocDateAnnotation.class));
+      }
+      Calendar calendar = doc.get(CoreAnnotations.CalendarAnnotation.class);
+      if (calendar != null) {
+        header.setCalendar(calendar.toInstant().toEpochMilli());
+      }
+      header.build().writeDelimitedTo(os);
+      os.flush();
+    }
+
+    /** Write a finished sentence.  Sentences should be written in order. */
+    public void writeSentence(CoreMap sentence) throws IOException {
+      if (finished) {
+        throw new IllegalStateException("Document has already been finished");
+      }
+      CoreNLPProtos.Sentence proto = serializer.toProto(sentence);
+      String text = sentence.get(CoreAnnotations.TextAnnotation.class);
+      if (text != null) {
+        proto = proto.toBuilder().setText(text).build();
+      }
+      proto.writeDelimitedTo(os);
+      os.flush();
+    }
+
+    /**
+     * Write the end of the document: the end marker for the sentences and
+     * the document-level annotations of doc.  Sentences and tokens of doc
+     * are ignored, so it is fine if they have been dropped by now.
+     */
+    public void finish(Annotation doc) throws IOException {
+      if (finished) {
+        throw new IllegalStateException("Document has already been finished");
+      }
+      finished = true;
+      os.write(0);  // a zero length message
+      serializer.toProtoWithoutSentences(doc).writeDelimitedTo(os);
+      os.flush();
+    }
+  }
+
+
+  /**
+   * Reads one streamed document.  The header is read when the reader is
+   * created; the sentences can then be iterated one at a time, and are
+   * not kept after they are returned.
+   */
+  public static class Reader implements Iterator<CoreMap> {
+    private final ProtobufAnnotationSerializer serializer;
+    private final InputStream is;
+    private final CoreNLPProtos.Document header;
+    /** The next sentence, if it has been read but not returned */
+    private CoreNLPProtos.Sentence next; // = null;
+    private CoreNLPProtos.Document trailer; // = null;
+    /** How many sentences have been returned so far */
+    private int sentenceIndex; // = 0;
+
+    /**
+     * Read the header of the next document in the stream.
+     *
+     * @throws EOFException If there are no more documents in the stream
+     */
+    public Reader(ProtobufAnnotationSerializer serializer, InputStream is) throws IOException {
+      this.serializer = serializer;
+      this.is = is;
+      this.header = CoreNLPProtos.Document.parseDelimitedFrom(is);
+      if (header == null) {
+        throw new EOFException("No more documents in stream");
+      }
+    }
+
+    /** The docID, docDate and calendar of the document */
+    public CoreNLPProtos.Document header() {
+      return header;
+    }
+
+    /** Read the next sentence proto, or the end marker and trailer. */
+    private void advance() {
+      if (next != null || trailer != null) {
+        return;
+      }
+      try {
+        int firstByte = is.read();
+        if (firstByte == -1) {
+          throw new EOFException("Stream ended in the middle of a document");
+        }
+        int size = CodedInputStream.readRawVarint32(firstByte, is);
+        if (size == 0) {
+          trailer = CoreNLPProtos.Document.parseDelimitedFrom(is);
+          if (trailer == null) {
+            throw new EOFException("Stream ended before the end of the document");
+          }
+        } else {
+          byte[] bytes = new byte[size];
+          new DataInputStream(is).readFully(bytes);
+          next = CoreNLPProtos.Sentence.parseFrom(bytes);
+        }
+      } catch (IOException e) {
+        throw new RuntimeIOException(e);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      advance();
+      return next != null;
+    }
+
+    /** The next sentence, as a proto */
+    public CoreNLPProtos.Sentence nextProto() {
+      if ( ! hasNext()) {
+        throw new NoSuchElementException();
+      }
+      CoreNLPProtos.Sentence sentence = next;
+      next = null;
+      ++sentenceIndex;
+      return sentence;
+    }
+
+    /**
+     * The next sentence.  See {@link ProtobufAnnotationSerializer#fromProtoStreamed}
+     * for what can and can't be recovered without the rest of the document.
+     */
+    @Override
+    public CoreMap next() {
+      int index = sentenceIndex;
+      return serializer.fromProtoStreamed(nextProto(), index, header);
+    }
+
+    /**
+     * The document-level annotations, which come after the sentences.
+     * Any sentences which have not been read yet are skipped.
+     */
+    public CoreNLPProtos.Document trailer() {
+      while (hasNext()) {
+        nextProto();
+      }
+      return trailer;
+    }
+
+    /**
+     * Read the rest of the document into a regular Annotation.  This is
+     * the same as reading the non-streamed document, except that any
+     * sentences already returned by {@link #next()} are missing.
+     */
+    public Annotation readAll() {
+      CoreNLPProtos.Document.Builder builder = header.toBuilder();
+      while (hasNext()) {
+        builder.addSentence(nextProto());
+      }
+      builder.mergeFrom(trailer);  // including the text, which the header leaves empty
+      return serializer.fromProto(builder.build());
+    }
+  }
+
+}
@@ -46,7 +46,13 @@ public abstract class SentenceAnnotator implements Annotator {
   @Override
   public void annotate(Annotation annotation) {
     if (annotation.containsKey(CoreAnnotations.SentencesAnnotation.class)) {
-      if (nThreads() != 1 || maxTime() > 0) {
+      if (maxTime() <= 0 && AnnotationScheduler.inScheduler()) {
+        // The scheduler already bounds the total number of threads, so
+        // nThreads() is ignored and the sentences go to the shared pool.
+        // Annotators with a timeout still need their own wrapper below.
+        AnnotationScheduler.forEach(annotation.get(CoreAnnotations.SentencesAnnotation.class),
+                                    sentence -> doOneSentence(annotation, sentence));
+      } else if (nThreads() != 1 || maxTime() > 0) {
         InterruptibleMulticoreWrapper<CoreMap, CoreMap> wrapper = buildWrapper(annotation);
         for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
           boolean success = false;
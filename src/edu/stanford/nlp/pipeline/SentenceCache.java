@@ -0,0 +1,114 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.PropertiesUtils;
+
+/**
+ * A bounded cache of what an annotator worked out for a sentence, so
+ * that a sentence which comes again (boilerplate, disclaimers) can be
+ * given the same annotations without running the model again.
+ * Sentences are looked up by a key made from whatever the annotator's
+ * model looks at, such as the words and tags of the tokens.  What is
+ * cached must not refer to the tokens of the sentence it came from;
+ * the annotator builds the annotations of a repeated sentence from it
+ * and that sentence's own tokens.
+ * <br>
+ * An annotator which can cache sentences has one if its properties
+ * give a size, with {@code <annotator>.sentenceCache}.  When the
+ * cache is full, {@code <annotator>.sentenceCache.eviction} decides
+ * which sentence is dropped: the least recently used one ({@code lru},
+ * the default) or the first one added ({@code fifo}).
+ *
+ * @param <V> What is kept for each sentence
+ */
+public class SentenceCache<V> {
+
+  public enum Eviction { LRU, FIFO }
+
+  private final int capacity;
+  private final Map<String, V> entries;
+
+  private long hits; // = 0;
+  private long misses; // = 0;
+
+  public SentenceCache(int capacity, Eviction eviction) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Sentence cache needs a positive capacity, not " + capacity);
+    }
+    this.capacity = capacity;
+    this.entries = new LinkedHashMap<String, V>(16, 0.75f, eviction == Eviction.LRU) {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+        return size() > SentenceCache.this.capacity;
+      }
+    };
+  }
+
+  /**
+   * The cache set by the sentenceCache properties, or null if they don't give it a size.
+   *
+   * @param prefix The prefix of the annotator's properties, such as "parse."
+   */
+  public static <V> SentenceCache<V> fromProperties(Properties props, String prefix) {
+    int capacity = PropertiesUtils.getInt(props, prefix + "sentenceCache", 0);
+    if (capacity <= 0) {
+      return null;
+    }
+    String eviction = props.getProperty(prefix + "sentenceCache.eviction", "lru");
+    return new SentenceCache<>(capacity, Eviction.valueOf(eviction.toUpperCase(Locale.ROOT)));
+  }
+
+  /** A key of the words of the tokens, and their tags if {@code withTags} */
+  public static String tokensKey(List<CoreLabel> tokens, boolean withTags) {
+    StringBuilder sb = new StringBuilder();
+    for (CoreLabel token : tokens) {
+      sb.append(token.word());
+      if (withTags) {
+        sb.append('\t').append(token.tag());
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /** What was kept for the sentence with this key, or null if there is nothing */
+  public synchronized V get(String key) {
+    V value = entries.get(key);
+    if (value == null) {
+      misses++;
+    } else {
+      hits++;
+    }
+    return value;
+  }
+
+  public synchronized void put(String key, V value) {
+    entries.put(key, value);
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+
+  public synchronized long hits() {
+    return hits;
+  }
+
+  public synchronized long misses() {
+    return misses;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return String.format("SentenceCache[%d of %d sentences, %d hits, %d misses]", entries.size(), capacity, hits, misses);
+  }
+
+}
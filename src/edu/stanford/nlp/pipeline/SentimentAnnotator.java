@@ -2,11 +2,14 @@ package edu.stanford.nlp.pipeline;
 
 import java.util.*;
 
+import org.ejml.simple.SimpleMatrix;
+
 import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
 import edu.stanford.nlp.sentiment.CollapseUnaryTransformer;
+import edu.stanford.nlp.sentiment.DenseSentimentModel;
 import edu.stanford.nlp.sentiment.SentimentCoreAnnotations;
 import edu.stanford.nlp.sentiment.SentimentCostAndGradient;
 import edu.stanford.nlp.sentiment.SentimentModel;
@@ -43,6 +46,8 @@ public class SentimentAnnotator extends SentenceAnnotator {
 
   private final String modelPath;
   private final SentimentModel model;
+  /** The model copied into arrays for labeling trees, or null to label them with the model itself */
+  private final DenseSentimentModel denseModel;
   private final CollapseUnaryTransformer transformer = new CollapseUnaryTransformer();
 
   private final int nThreads;
@@ -53,14 +58,43 @@ public class SentimentAnnotator extends SentenceAnnotator {
    */
   private final long maxTime;
 
+  /** What the model found for each node of trees seen before, or null if they aren't kept */
+  private final SentenceCache<List<NodeScores>> sentenceCache;
+
+  /**
+   * The annotations forward propagation leaves on one node of a tree.
+   * Each tree gets its own copies of the matrices, so that changing the
+   * matrices of one tree can't change the cache or another tree.
+   */
+  private static class NodeScores {
+    final SimpleMatrix predictions;
+    final SimpleMatrix nodeVector;
+    final int predictedClass;
+
+    NodeScores(Tree node) {
+      this.predictions = RNNCoreAnnotations.getPredictions(node).copy();
+      this.nodeVector = RNNCoreAnnotations.getNodeVector(node).copy();
+      this.predictedClass = RNNCoreAnnotations.getPredictedClass(node);
+    }
+
+    void set(Tree node) {
+      CoreLabel label = (CoreLabel) node.label();
+      label.set(RNNCoreAnnotations.Predictions.class, predictions.copy());
+      label.set(RNNCoreAnnotations.PredictedClass.class, predictedClass);
+      label.set(RNNCoreAnnotations.NodeVector.class, nodeVector.copy());
+    }
+  }
+
   public SentimentAnnotator(String annotatorName, Properties props) {
     this.modelPath = props.getProperty(annotatorName + ".model", DEFAULT_MODEL);
     if (modelPath == null) {
       throw new IllegalArgumentException("No model specified for Sentiment annotator");
     }
     this.model = SentimentModel.loadSerialized(modelPath);
+    this.denseModel = PropertiesUtils.getBool(props, annotatorName + ".dense", true) ? new DenseSentimentModel(model) : null;
     this.nThreads = PropertiesUtils.getInt(props, annotatorName + ".nthreads", PropertiesUtils.getInt(props, "nthreads", 1));
     this.maxTime = PropertiesUtils.getLong(props, annotatorName + ".maxtime", -1);
+    this.sentenceCache = SentenceCache.fromProperties(props, annotatorName + '.');
   }
 
   @Override
@@ -111,8 +145,33 @@ public class SentimentAnnotator extends SentenceAnnotator {
       throw new AssertionError("Binarized sentences not built by parser");
     }
     Tree collapsedUnary = transformer.transformTree(binarized);
-    SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
-    scorer.forwardPropagateTree(collapsedUnary);
+    // the model only looks at the words and categories of the tree, all of which are in its string
+    String key = (sentenceCache == null) ? null : collapsedUnary.toString();
+    List<NodeScores> cached = (key == null) ? null : sentenceCache.get(key);
+    if (cached != null) {
+      Iterator<NodeScores> scores = cached.iterator();
+      for (Tree node : collapsedUnary) {
+        if ( ! node.isLeaf()) {
+          scores.next().set(node);
+        }
+      }
+    } else {
+      if (denseModel != null) {
+        denseModel.forwardPropagateTree(collapsedUnary);
+      } else {
+        SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
+        scorer.forwardPropagateTree(collapsedUnary);
+      }
+      if (key != null) {
+        List<NodeScores> scores = new ArrayList<>();
+        for (Tree node : collapsedUnary) {
+          if ( ! node.isLeaf()) {
+            scores.add(new NodeScores(node));
+          }
+        }
+        sentenceCache.put(key, scores);
+      }
+    }
     sentence.set(SentimentCoreAnnotations.SentimentAnnotatedTree.class, collapsedUnary);
     int sentiment = RNNCoreAnnotations.getPredictedClass(collapsedUnary);
     sentence.set(SentimentCoreAnnotations.SentimentClass.class, SentimentUtils.sentimentString(model, sentiment));
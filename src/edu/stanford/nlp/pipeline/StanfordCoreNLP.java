@@ -171,6 +171,9 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
   /** The annotator pool we should be using to get annotators. */
   public final AnnotatorPool pool;
 
+  /** Annotated documents to reuse when the same document comes again, or null if caching isn't on. */
+  private final AnnotationCache annotationCache;
+
 
   /**
    * Constructs a pipeline using as properties the properties file found in the classpath
@@ -240,31 +243,43 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
       this.availableProcessors = new Semaphore(1);
     }
 
-    // now construct the annotators from the given properties in the given order
+    // now construct the annotators from the given properties in the given order,
+    // or, with lazyAnnotators, only when each one is first needed
+    boolean lazyAnnotators = PropertiesUtils.getBool(this.properties, "lazyAnnotators", false);
     String[] annoNames = getRequiredProperty(this.properties, "annotators").split("[, \t]+");
     Set<String> alreadyAddedAnnoNames = Generics.newHashSet();
+    List<Annotator> added = new ArrayList<>();
     Set<Class<? extends CoreAnnotation>> requirementsSatisfied = Generics.newHashSet();
     for (String name : annoNames) {
       name = name.trim();
       if (name.isEmpty()) { continue; }
       logger.info("Adding annotator " + name);
 
-      Annotator an = pool.get(name);
-      this.addAnnotator(an);
-
-      if (enforceRequirements) {
-        Set<Class<? extends CoreAnnotation>> allRequirements = an.requires();
-        for (Class<? extends CoreAnnotation> requirement : allRequirements) {
-          if (!requirementsSatisfied.contains(requirement)) {
-            String fmt = "annotator \"%s\" requires annotation \"%s\". The usual requirements for this annotator are: %s";
-            throw new IllegalArgumentException(
-                String.format(fmt, name, requirement.getSimpleName(),
-                    StringUtils.join(Annotator.DEFAULT_REQUIREMENTS.getOrDefault(name, Collections.singleton("unknown")), ",")
-                ));
+      Annotator an;
+      if (lazyAnnotators) {
+        String annotatorName = name;
+        List<Annotator> previous = new ArrayList<>(added);
+        an = new LazyAnnotator(name, () -> {
+          Annotator loaded = pool.get(annotatorName);
+          if (enforceRequirements) {
+            // this loads the annotators before it too, as an eager pipeline would have
+            Set<Class<? extends CoreAnnotation>> satisfied = Generics.newHashSet();
+            for (Annotator other : previous) {
+              satisfied.addAll(other.requirementsSatisfied());
+            }
+            checkRequirements(annotatorName, loaded, satisfied);
           }
+          return loaded;
+        });
+      } else {
+        an = pool.get(name);
+        if (enforceRequirements) {
+          checkRequirements(name, an, requirementsSatisfied);
+          requirementsSatisfied.addAll(an.requirementsSatisfied());
         }
-        requirementsSatisfied.addAll(an.requirementsSatisfied());
       }
+      this.addAnnotator(an);
+      added.add(an);
 
       alreadyAddedAnnoNames.add(name);
     }
@@ -273,9 +288,40 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     if (! alreadyAddedAnnoNames.contains(STANFORD_SSPLIT)) {
       System.setProperty(NEWLINE_SPLITTER_PROPERTY, "false");
     }
+
+    this.annotationCache = AnnotationCache.fromProperties(this.properties, annotatorsSignature(annoNames));
     this.pipelineSetupTime = tim.report();
   }
 
+  /** The names and signatures of the annotators, which change whenever they could annotate a document differently */
+  private String annotatorsSignature(String[] annoNames) {
+    StringBuilder sb = new StringBuilder();
+    for (String name : annoNames) {
+      name = name.trim();
+      if (name.isEmpty()) { continue; }
+      sb.append(new AnnotatorSignature(name, PropertiesUtils.getSignature(name, properties)));
+      String customClassName = properties.getProperty(CUSTOM_ANNOTATOR_PREFIX + name);
+      if (customClassName != null) {
+        sb.append('=').append(customClassName);
+      }
+      sb.append('\n');
+    }
+    return sb.toString();
+  }
+
+  /** Throws an exception if an annotator requires something that the annotators before it don't produce */
+  private static void checkRequirements(String name, Annotator an, Set<Class<? extends CoreAnnotation>> requirementsSatisfied) {
+    for (Class<? extends CoreAnnotation> requirement : an.requires()) {
+      if (!requirementsSatisfied.contains(requirement)) {
+        String fmt = "annotator \"%s\" requires annotation \"%s\". The usual requirements for this annotator are: %s";
+        throw new IllegalArgumentException(
+            String.format(fmt, name, requirement.getSimpleName(),
+                StringUtils.join(Annotator.DEFAULT_REQUIREMENTS.getOrDefault(name, Collections.singleton("unknown")), ",")
+            ));
+      }
+    }
+  }
+
   //
   // @Override-able methods to change pipeline behavior
   //
@@ -634,16 +680,80 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     document.wrapAnnotations();
   }
 
-  /** {@inheritDoc} */
+  /**
+   * {@inheritDoc}
+   * If the pipeline has an {@link AnnotationCache} and has annotated the
+   * same document before, the annotations are copied from the cache instead.
+   */
   @Override
   public void annotate(Annotation annotation) {
-    super.annotate(annotation);
+    String cacheKey = (annotationCache == null) ? null : annotationCache.key(annotation);
+    if (cacheKey == null || ! annotationCache.fill(cacheKey, annotation)) {
+      super.annotate(annotation);
+      if (cacheKey != null) {
+        annotationCache.put(cacheKey, annotation);
+      }
+    }
+    countWords(annotation);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void annotate(Annotation annotation, Collection<Class<? extends CoreAnnotation>> requested) {
+    super.annotate(annotation, requested);
+    countWords(annotation);
+  }
+
+  /** {@inheritDoc} */
+  @Override
+  public void annotate(final Iterable<Annotation> annotations, int numThreads, final Consumer<Annotation> callback) {
+    if (numThreads == 1) {
+      super.annotate(annotations, numThreads, callback);
+      return;
+    }
+    // the scheduler runs the annotators one stage at a time rather than
+    // through annotate(Annotation), so count the tokens as documents finish,
+    // and only give it the documents which aren't in the cache
+    Iterable<Annotation> toAnnotate = annotations;
+    Map<Annotation, String> cacheKeys = Collections.synchronizedMap(new IdentityHashMap<>());
+    if (annotationCache != null) {
+      toAnnotate = Iterables.filter(annotations, annotation -> {
+        String cacheKey = annotationCache.key(annotation);
+        if (cacheKey != null && annotationCache.fill(cacheKey, annotation)) {
+          countWords(annotation);
+          callback.accept(annotation);
+          return false;
+        }
+        if (cacheKey != null) {
+          cacheKeys.put(annotation, cacheKey);
+        }
+        return true;
+      });
+    }
+    super.annotate(toAnnotate, numThreads, annotation -> {
+      String cacheKey = cacheKeys.remove(annotation);
+      if (cacheKey != null) {
+        annotationCache.put(cacheKey, annotation);
+      }
+      countWords(annotation);
+      callback.accept(annotation);
+    });
+  }
+
+  private void countWords(Annotation annotation) {
     List<CoreLabel> words = annotation.get(CoreAnnotations.TokensAnnotation.class);
     if (words != null) {
-      numWords += words.size();
+      synchronized (this) {
+        numWords += words.size();
+      }
     }
   }
 
+  /** The cache of annotated documents, or null if the pipeline doesn't have one. */
+  public AnnotationCache getAnnotationCache() {
+    return annotationCache;
+  }
+
 
   public void annotate(final Annotation annotation, final Consumer<Annotation> callback){
     if (PropertiesUtils.getInt(properties, "threads", 1) == 1) {
@@ -833,6 +943,8 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
     os.println("\t\"props\" - path to file with configuration properties");
     os.println("\t\"annotators\" - comma separated list of annotators");
     os.println("\tThe following annotators are supported: cleanxml, tokenize, quote, ssplit, pos, lemma, ner, truecase, parse, hcoref, relation");
+    os.println("\t\"lazyAnnotators\" - if true, create each annotator (loading its models) only when it is first needed");
+    os.println("\t\"annotationCache.size\", \"annotationCache.dir\", \"annotationCache.diskSize\" - reuse the annotations of repeated documents (see AnnotationCache)");
 
     os.println();
     os.println("\tIf annotator \"tokenize\" is defined:");
@@ -924,6 +1036,9 @@ public class StanfordCoreNLP extends AnnotationPipeline  {
       sb.append(String.format("%.1f", numWords / (((double) total)/1000)));
       sb.append( " tokens/sec.");
     }
+    if (annotationCache != null) {
+      sb.append(IOUtils.eolChar).append(annotationCache);
+    }
     return sb.toString();
   }
 
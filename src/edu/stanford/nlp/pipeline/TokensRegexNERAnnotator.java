@@ -6,6 +6,8 @@ import edu.stanford.nlp.ling.CoreAnnotation;
 import edu.stanford.nlp.ling.CoreAnnotations;
 import edu.stanford.nlp.ling.CoreLabel;
 import edu.stanford.nlp.ling.tokensregex.*;
+import edu.stanford.nlp.ling.tokensregex.matcher.AhoCorasickMatcher;
+import edu.stanford.nlp.ling.tokensregex.matcher.Match;
 import edu.stanford.nlp.ling.tokensregex.matcher.TrieMap;
 import edu.stanford.nlp.sequences.SeqClassifierFlags;
 import edu.stanford.nlp.util.*;
@@ -29,7 +31,8 @@ import java.util.regex.Pattern;
  * where each argument is tab-separated, and the last two arguments are optional. Several regexes can be
  * associated with a single type. In the case where multiple regexes match a phrase, the priority ranking
  * (higher priority is favored) is used to choose between the possible types.
- * When the priority is the same, then longer matches are favored.
+ * When the priority is the same, then longer matches are favored, and then
+ * the regex which comes first in the mapping files.
  *
  * <p>
  * This annotator is designed to be used as part of a full
@@ -120,6 +123,11 @@ import java.util.regex.Pattern;
  *      <td>{@code false}</td></tr>
  *   <tr><td>{@code verbose}</td><td>If true, turns on extra debugging messages.</td>
  *      <td>{@code false}</td></tr>
+ *   <tr><td>{@code dictionary}</td>
+ *      <td>If true, entries which are plain sequences of words, with no regex characters, are matched
+ *          all at once with an Aho-Corasick automaton rather than compiled into TokensRegex patterns.
+ *          Large gazetteers load and match much faster this way.</td>
+ *      <td>{@code true}</td></tr>
  * </table>
  *
  * <p>
@@ -159,6 +167,12 @@ public class TokensRegexNERAnnotator implements Annotator  {
   private final List<Entry> entries;
   private final Map<SequencePattern<CoreMap>,Entry> patternToEntry;
   private final MultiPatternMatcher<CoreMap>  multiPatternMatcher;
+  /** Entries which are plain sequences of words, matched exactly */
+  private final AhoCorasickMatcher<String,Entry> dictionary;
+  /** Entries which are plain sequences of words, matched ignoring case, by their lowercased words */
+  private final AhoCorasickMatcher<String,Entry> caselessDictionary;
+  /** The position of each entry in entries, which breaks ties between overlapping dictionary matches */
+  private final Map<Entry,Integer> entryOrder;
   private final List<Class> annotationFields; // list of fields to annotate (default to just NamedEntityTag)
 
   private final Set<String> myLabels;  // set of labels to always overwrite
@@ -196,6 +210,7 @@ public class TokensRegexNERAnnotator implements Annotator  {
                   " specified overwriteableType for the regex will the NER type be overwritten."),
           new PropertiesUtils.Property("backgroundSymbol", DEFAULT_BACKGROUND_SYMBOL, "Comma separated list of NER labels to always replace."),
           new PropertiesUtils.Property("verbose", "false", ""),
+          new PropertiesUtils.Property("dictionary", "true", "Whether to match entries without regex characters with an automaton rather than with TokensRegex."),
   };
 
   /** Construct a new TokensRegexAnnotator.
@@ -230,6 +245,8 @@ public class TokensRegexNERAnnotator implements Annotator  {
   private static final Pattern SEMICOLON_DELIMITERS_PATTERN = Pattern.compile("\\s*;\\s*");
   private static final Pattern EQUALS_DELIMITERS_PATTERN = Pattern.compile("\\s*=\\s*");
   private static final Pattern NUMBER_PATTERN = Pattern.compile("-?[0-9]+(?:\\.[0-9]+)?");
+  // The same test TokensRegex uses to match a string exactly rather than as a regex
+  private static final Pattern LITERAL_PATTERN = Pattern.compile("[^\\[\\]?.\\\\^$()*+{}|]*");
 
   public TokensRegexNERAnnotator(String name, Properties properties) {
     String prefix = ! StringUtils.isNullOrEmpty(name) ? name + '.': "";
@@ -302,6 +319,7 @@ public class TokensRegexNERAnnotator implements Annotator  {
     this.noDefaultOverwriteLabels = Collections.unmodifiableSet(CollectionUtils.asSet(COMMA_DELIMITERS_PATTERN.split(noDefaultOverwriteLabelsProp)));
     this.ignoreCase = PropertiesUtils.getBool(properties, prefix + "ignorecase", false);
     this.verbose = PropertiesUtils.getBool(properties, prefix + "verbose", false);
+    boolean useDictionary = PropertiesUtils.getBool(properties, prefix + "dictionary", true);
 
     if ( ! StringUtils.isNullOrEmpty(validPosRegex)) {
       validPosPattern = Pattern.compile(validPosRegex);
@@ -314,9 +332,22 @@ public class TokensRegexNERAnnotator implements Annotator  {
     entryToMappingFileNumber = new HashMap<>();
     annotationFieldnames = processPerFileOptions(name, mappings, ignoreCaseList, validPosPatternList, headerList, ignoreCase, validPosPattern, headerFields, annotationFieldnames, annotationFields);
     entries = Collections.unmodifiableList(readEntries(name, noDefaultOverwriteLabels, ignoreCaseList, headerList, entryToMappingFileNumber, verbose, annotationFieldnames, mappings));
+    IdentityHashMap<Entry, Integer> entryOrder = new IdentityHashMap<>();
+    for (Entry entry : entries) {
+      entryOrder.put(entry, entryOrder.size());
+    }
+    this.entryOrder = Collections.unmodifiableMap(entryOrder);
     IdentityHashMap<SequencePattern<CoreMap>, Entry> patternToEntry = new IdentityHashMap<>();
-    multiPatternMatcher = createPatternMatcher(patternToEntry);
+    dictionary = new AhoCorasickMatcher<>();
+    caselessDictionary = new AhoCorasickMatcher<>();
+    multiPatternMatcher = createPatternMatcher(patternToEntry, useDictionary);
+    dictionary.build();
+    caselessDictionary.build();
     this.patternToEntry = Collections.unmodifiableMap(patternToEntry);
+    if (useDictionary) {
+      logger.log(name + ": Matching " + (dictionary.size() + caselessDictionary.size()) + " entries with a dictionary, and " +
+          patternToEntry.size() + " with TokensRegex.");
+    }
     Set<String> myLabels = Generics.newHashSet();
     // Can always override background or none.
     Collections.addAll(myLabels, backgroundSymbols);
@@ -353,7 +384,23 @@ public class TokensRegexNERAnnotator implements Annotator  {
       logger.info("done.");
   }
 
-  private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry) {
+  /**
+   * Whether an entry is a plain sequence of words, which TokensRegex would
+   * match exactly (or ignoring case), with nothing else to check.
+   */
+  private static boolean isDictionaryEntry(Entry entry) {
+    if (entry.tokensRegex != null || entry.annotateGroup != 0) {
+      return false;
+    }
+    for (String word : entry.regex) {
+      if ( ! LITERAL_PATTERN.matcher(word).matches()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private MultiPatternMatcher<CoreMap> createPatternMatcher(Map<SequencePattern<CoreMap>, Entry> patternToEntry, boolean useDictionary) {
     // Convert to tokensregex pattern
 
     List<TokenSequencePattern> patterns = new ArrayList<>(entries.size());
@@ -361,13 +408,27 @@ public class TokensRegexNERAnnotator implements Annotator  {
       TokenSequencePattern pattern;
 
       Boolean ignoreCaseEntry = ignoreCaseList.get(entryToMappingFileNumber.get(entry));
+      boolean matchAllPosTags = validPosPatternList.get(entryToMappingFileNumber.get(entry)) != null && PosMatchType.MATCH_ALL_TOKENS.equals(posMatchType);
+      if (useDictionary && ! matchAllPosTags && isDictionaryEntry(entry)) {
+        if (ignoreCaseEntry) {
+          List<String> words = new ArrayList<>(entry.regex.length);
+          for (String word : entry.regex) {
+            words.add(word.toLowerCase(Locale.ROOT));
+          }
+          caselessDictionary.add(words, entry);
+        } else {
+          dictionary.add(Arrays.asList(entry.regex), entry);
+        }
+        continue;
+      }
+
       int patternFlags = ignoreCaseEntry? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE:0;
       int stringMatchFlags = ignoreCaseEntry? (NodePattern.CASE_INSENSITIVE | NodePattern.UNICODE_CASE):0;
       Env env = TokenSequencePattern.getNewEnv();
       env.setDefaultStringPatternFlags(patternFlags);
       env.setDefaultStringMatchFlags(stringMatchFlags);
 
-      NodePattern<String> posTagPattern = (validPosPatternList.get(entryToMappingFileNumber.get(entry)) != null && PosMatchType.MATCH_ALL_TOKENS.equals(posMatchType))?
+      NodePattern<String> posTagPattern = matchAllPosTags?
               new CoreMapNodePattern.StringAnnotationRegexPattern(validPosPatternList.get(entryToMappingFileNumber.get(entry))):null;
       if (entry.tokensRegex != null) {
         // TODO: posTagPatterns...
@@ -397,21 +458,147 @@ public class TokensRegexNERAnnotator implements Annotator  {
     return TokenSequencePattern.getMultiPatternMatcher(patterns);
   }
 
+  /** A match of an entry, from either TokensRegex or the dictionary */
+  private static class EntryMatch {
+    final Entry entry;
+    final int order;
+    /** The span of the whole match, which may not overlap other matches */
+    final int start;
+    final int end;
+    /** The span of the group to annotate */
+    final int groupStart;
+    final int groupEnd;
+    /** The text of the group, if TokensRegex gave it */
+    final String group;
+
+    EntryMatch(Entry entry, int order, int start, int end, int groupStart, int groupEnd, String group) {
+      this.entry = entry;
+      this.order = order;
+      this.start = start;
+      this.end = end;
+      this.groupStart = groupStart;
+      this.groupEnd = groupEnd;
+      this.group = group;
+    }
+  } // end static class EntryMatch
+
+  /**
+   * Orders matches the way {@link SequenceMatchResult#DEFAULT_COMPARATOR} does for
+   * {@link MultiPatternMatcher#findNonOverlapping}: by priority, weight and length
+   * (highest first), then by the order of the entries in the mapping files and offset.
+   */
+  private static final Comparator<EntryMatch> ENTRY_MATCH_COMPARATOR = (m1, m2) -> {
+    if (m1.entry.priority != m2.entry.priority) {
+      return (m1.entry.priority > m2.entry.priority) ? -1 : 1;
+    }
+    if (m1.entry.weight != m2.entry.weight) {
+      return (m1.entry.weight > m2.entry.weight) ? -1 : 1;
+    }
+    int length1 = m1.end - m1.start;
+    int length2 = m2.end - m2.start;
+    if (length1 != length2) {
+      return (length1 > length2) ? -1 : 1;
+    }
+    if (m1.order != m2.order) {
+      return (m1.order < m2.order) ? -1 : 1;
+    }
+    if (m1.start != m2.start) {
+      return (m1.start < m2.start) ? -1 : 1;
+    }
+    return Integer.compare(m1.end, m2.end);
+  };
+
+  private static final Comparator<EntryMatch> ENTRY_MATCH_OFFSET_COMPARATOR =
+      Comparator.<EntryMatch>comparingInt(m -> m.start).thenComparingInt(m -> m.end);
+
+  /**
+   * Adds the matches of the dictionary entries.  Like the matches of a
+   * TokensRegex pattern, the matches of each entry don't overlap each other,
+   * and the leftmost ones are kept.
+   */
+  private void addDictionaryMatches(List<CoreLabel> tokens, List<EntryMatch> matches) {
+    List<String> words = new ArrayList<>(tokens.size());
+    for (CoreLabel token : tokens) {
+      words.add(token.word());
+    }
+    // the matches come in order of where they end, so each entry's matches come in order of where they start
+    Map<Entry,Integer> lastEnds = new IdentityHashMap<>();
+    if (dictionary.size() > 0) {
+      for (Match<String,Entry> match : dictionary.findAllMatches(words)) {
+        addDictionaryMatch(match.getValue(), match.getBegin(), match.getEnd(), lastEnds, matches);
+      }
+    }
+    if (caselessDictionary.size() > 0) {
+      List<String> lowercased = new ArrayList<>(words.size());
+      for (String word : words) {
+        lowercased.add((word != null) ? word.toLowerCase(Locale.ROOT) : null);
+      }
+      for (Match<String,Entry> match : caselessDictionary.findAllMatches(lowercased)) {
+        Entry entry = match.getValue();
+        // the words are the same lowercased, but TokensRegex checks they are the same ignoring case
+        boolean sameWords = true;
+        for (int i = match.getBegin(); i < match.getEnd(); i++) {
+          if ( ! entry.regex[i - match.getBegin()].equalsIgnoreCase(words.get(i))) {
+            sameWords = false;
+            break;
+          }
+        }
+        if (sameWords) {
+          addDictionaryMatch(entry, match.getBegin(), match.getEnd(), lastEnds, matches);
+        }
+      }
+    }
+  }
+
+  private void addDictionaryMatch(Entry entry, int start, int end, Map<Entry,Integer> lastEnds, List<EntryMatch> matches) {
+    Integer lastEnd = lastEnds.get(entry);
+    if (lastEnd == null || start >= lastEnd) {
+      lastEnds.put(entry, end);
+      matches.add(new EntryMatch(entry, entryOrder.get(entry), start, end, start, end, null));
+    }
+  }
+
+  /**
+   * The non-overlapping matches of both the TokensRegex patterns and the
+   * dictionary, chosen the way {@link MultiPatternMatcher#findNonOverlapping}
+   * chooses between the matches of the patterns.  Between matches which are
+   * otherwise equal, the entry which comes first in the mapping files wins,
+   * whether it is matched by a pattern or by the dictionary.
+   */
+  private List<EntryMatch> findNonOverlapping(List<CoreLabel> tokens) {
+    List<EntryMatch> all = new ArrayList<>();
+    addDictionaryMatches(tokens, all);
+    for (SequencePattern<CoreMap> pattern : multiPatternMatcher.getTriggeredPatterns(tokens)) {
+      if (Thread.interrupted()) {  // Allow interrupting
+        throw new RuntimeInterruptedException();
+      }
+      Entry entry = patternToEntry.get(pattern);
+      int g = entry.annotateGroup;
+      SequenceMatcher<CoreMap> m = pattern.getMatcher(tokens);
+      while (m.find()) {
+        all.add(new EntryMatch(entry, entryOrder.get(entry), m.start(), m.end(), m.start(g), m.end(g), m.group(g)));
+      }
+    }
+    List<EntryMatch> nonOverlapping = IntervalTree.getNonOverlapping(all,
+        m -> Interval.toInterval(m.start, m.end, Interval.INTERVAL_OPEN_END), ENTRY_MATCH_COMPARATOR);
+    nonOverlapping.sort(ENTRY_MATCH_OFFSET_COMPARATOR);
+    return nonOverlapping;
+  }
+
   private void annotateMatched(List<CoreLabel> tokens) {
-    List<SequenceMatchResult<CoreMap>> matched = multiPatternMatcher.findNonOverlapping(tokens);
-    for (SequenceMatchResult<CoreMap> m:matched) {
-      Entry entry = patternToEntry.get(m.pattern());
+    for (EntryMatch m : findNonOverlapping(tokens)) {
+      Entry entry = m.entry;
 
       // Check if we will overwrite the existing annotation with this annotation
-      int g = entry.annotateGroup;
-      int start = m.start(g);
-      int end = m.end(g);
+      int start = m.groupStart;
+      int end = m.groupEnd;
+      List<CoreLabel> groupTokens = tokens.subList(start, end);
 
-      String str = m.group(g);
+      String str = (m.group != null) ? m.group : ChunkAnnotationUtils.getTokenText(groupTokens, CoreAnnotations.TextAnnotation.class);
       if (commonWords.contains(str)) {
         if (verbose) {
           logger.info("Not annotating (common word) '" + str + "': " +
-              StringUtils.joinFields(m.groupNodes(g), CoreAnnotations.NamedEntityTagAnnotation.class)
+              StringUtils.joinFields(groupTokens, CoreAnnotations.NamedEntityTagAnnotation.class)
               + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
         }
         continue;
@@ -431,8 +618,8 @@ public class TokensRegexNERAnnotator implements Annotator  {
         }
       } else {
         if (verbose) {
-          logger.info("Not annotating  '" + m.group(g) + "': " +
-                  StringUtils.joinFields(m.groupNodes(g), CoreAnnotations.NamedEntityTagAnnotation.class)
+          logger.info("Not annotating  '" + str + "': " +
+                  StringUtils.joinFields(groupTokens, CoreAnnotations.NamedEntityTagAnnotation.class)
                   + " with " + entry.getTypeDescription() + ", sentence is '" + StringUtils.joinWords(tokens, " ") + "'");
         }
       }
@@ -740,7 +927,7 @@ public class TokensRegexNERAnnotator implements Annotator  {
       if (ignoreCase) {
         String[] norm = new String[key.length];
         for (int i = 0; i < key.length; i++) {
-          norm[i] = key[i].toLowerCase();
+          norm[i] = key[i].toLowerCase(Locale.ROOT);
         }
         key = norm;
       }
@@ -990,4 +1177,68 @@ public class TokensRegexNERAnnotator implements Annotator  {
     return Collections.unmodifiableSet(new ArraySet(annotationFields));
   }
 
+  /**
+   * Compares the load time and speed of matching a mapping file with and
+   * without the dictionary, on the sentences of a text file:
+   * <br>
+   * {@code java edu.stanford.nlp.pipeline.TokensRegexNERAnnotator -mapping file -textFile file [-ignorecase] [-iterations n]}
+   */
+  public static void main(String[] args) throws IOException {
+    Properties options = StringUtils.argsToProperties(args, Collections.singletonMap("ignorecase", 0));
+    String mapping = options.getProperty("mapping");
+    String textFile = options.getProperty("textFile");
+    if (mapping == null || textFile == null) {
+      logger.info("Usage: java edu.stanford.nlp.pipeline.TokensRegexNERAnnotator -mapping file -textFile file [-ignorecase] [-iterations n]");
+      return;
+    }
+    int iterations = PropertiesUtils.getInt(options, "iterations", 5);
+
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit");
+    Annotation document = new Annotation(IOUtils.slurpFile(textFile));
+    new StanfordCoreNLP(props).annotate(document);
+    List<CoreLabel> tokens = document.get(CoreAnnotations.TokensAnnotation.class);
+
+    List<String> nerTags = null;
+    for (boolean useDictionary : new boolean[] { false, true }) {
+      Properties annotatorProps = new Properties();
+      annotatorProps.setProperty("tokensregexner.mapping", mapping);
+      annotatorProps.setProperty("tokensregexner.ignorecase", options.getProperty("ignorecase", "false"));
+      annotatorProps.setProperty("tokensregexner.dictionary", String.valueOf(useDictionary));
+      long start = System.nanoTime();
+      TokensRegexNERAnnotator annotator = new TokensRegexNERAnnotator("tokensregexner", annotatorProps);
+      double loadTime = (System.nanoTime() - start) / 1e9;
+
+      double matchTime = 0.0;
+      // the first iteration warms up the JIT
+      for (int iteration = 0; iteration <= iterations; iteration++) {
+        for (CoreLabel token : tokens) {
+          token.setNER(null);
+        }
+        start = System.nanoTime();
+        annotator.annotate(document);
+        if (iteration > 0) {
+          matchTime += (System.nanoTime() - start) / 1e9;
+        }
+      }
+      System.out.printf("%s: loaded in %.3f s, %.1f tokens/s%n", useDictionary ? "With dictionary" : "TokensRegex only",
+          loadTime, iterations * tokens.size() / matchTime);
+
+      List<String> tags = new ArrayList<>(tokens.size());
+      for (CoreLabel token : tokens) {
+        tags.add(token.ner());
+      }
+      if (nerTags != null && ! nerTags.equals(tags)) {
+        int different = 0;
+        for (int i = 0; i < tags.size(); i++) {
+          if ( ! Objects.equals(nerTags.get(i), tags.get(i))) {
+            different++;
+          }
+        }
+        System.out.println("The dictionary labeled " + different + " of " + tags.size() + " tokens differently");
+      }
+      nerTags = tags;
+    }
+  }
+
 }
@@ -38,6 +38,9 @@ public class CoordinationPattern extends SemgrexPattern  {
 
   public boolean isNodeCoord() { return isNodeCoord; }
 
+  /** Whether this is an "and" of its children rather than an "or" */
+  boolean isConj() { return isConj; }
+
   @Override
   public void setChild(SemgrexPattern child) {
     if (isNodeCoord) {
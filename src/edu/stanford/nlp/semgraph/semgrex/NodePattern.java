@@ -190,6 +190,39 @@ public class NodePattern extends SemgrexPattern  {
     return !negDesc;
   }
 
+  GraphRelation relation() {
+    return reln;
+  }
+
+  boolean isLink() {
+    return isLink;
+  }
+
+  /**
+   * The description of the nodes this pattern matches, without its name
+   * or relation, which is the same for patterns which match the same nodes.
+   */
+  String description() {
+    return (negDesc ? "!" : "") + descString;
+  }
+
+  /**
+   * The attributes, by key, for which a node needs exactly this value to
+   * match, ignoring case or not; none if the description is negated.
+   */
+  Map<String, String> exactAttributes(boolean ignoreCase) {
+    Map<String, String> exact = Generics.newHashMap();
+    if ( ! negDesc) {
+      for (Map.Entry<String, Pair<Object, Object>> attr : attributes.entrySet()) {
+        Object toMatch = ignoreCase ? attr.getValue().second : attr.getValue().first;
+        if (toMatch instanceof String) {
+          exact.put(attr.getKey(), (String) toMatch);
+        }
+      }
+    }
+    return exact;
+  }
+
   public void makeLink() {
     isLink = true;
   }
@@ -34,6 +34,8 @@ public abstract class SemgrexMatcher  {
   // these things are used by "find"
   private Iterator<IndexedWord> findIterator;
   private IndexedWord findCurrent;
+  /** If not null, the only nodes find() tries to match at; see {@link SemgrexPatternSet} */
+  private List<IndexedWord> findCandidates;
 
 
   SemgrexMatcher(SemanticGraph sg,
@@ -128,17 +130,30 @@ public abstract class SemgrexMatcher  {
    */
   private static final WeakHashMap<Integer, List<IndexedWord>> topologicalSortCache = new WeakHashMap<>();
 
+  /** The nodes of a graph in the order find() tries them */
+  static List<IndexedWord> findOrder(SemanticGraph sg) {
+    try {
+      synchronized (topologicalSortCache) {
+        List<IndexedWord> topoSort = topologicalSortCache.get(System.identityHashCode(sg));
+        if (topoSort == null || topoSort.size() != sg.size()) {  // size check to mitigate a stale cache
+          topoSort = sg.topologicalSort();
+          topologicalSortCache.put(System.identityHashCode(sg), topoSort);
+        }
+        return topoSort;
+      }
+    } catch (Exception ex) {
+      return new ArrayList<>(sg.vertexSet());
+    }
+  }
+
   private void setupFindIterator() {
+    if (findCandidates != null) {
+      findIterator = findCandidates.iterator();
+      return;
+    }
     try {
       if (hyp) {
-        synchronized (topologicalSortCache) {
-          List<IndexedWord> topoSort = topologicalSortCache.get(System.identityHashCode(sg));
-          if (topoSort == null || topoSort.size() != sg.size()) {  // size check to mitigate a stale cache
-            topoSort = sg.topologicalSort();
-            topologicalSortCache.put(System.identityHashCode(sg), topoSort);
-          }
-          findIterator = topoSort.iterator();
-        }
+        findIterator = findOrder(sg).iterator();
       } else if (sg_aligned == null) {
         return;
       } else {
@@ -162,6 +177,17 @@ public abstract class SemgrexMatcher  {
     }
   }
 
+  /**
+   * Makes {@link #find()} only look for matches rooted at these nodes,
+   * which are in the order {@link #findOrder} gives them.  This is for
+   * when it is known that nothing else can match.
+   */
+  void findOnlyAt(List<IndexedWord> nodes) {
+    findCandidates = nodes;
+    findIterator = null;
+    findCurrent = null;
+  }
+
   /**
    * Find the next match of the pattern in the graph.
    *
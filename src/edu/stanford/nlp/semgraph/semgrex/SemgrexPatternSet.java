@@ -0,0 +1,333 @@
+package edu.stanford.nlp.semgraph.semgrex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphEdge;
+import edu.stanford.nlp.trees.ud.CoNLLUDocumentReader;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.Pair;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * Many Semgrex patterns compiled together, for matching all of them
+ * against each graph, such as the thousands of rules of a relation
+ * extractor.  Matching each pattern separately tries every pattern at
+ * every node of the graph, while most patterns can only match at the
+ * few nodes with the word, lemma or tag their root node asks for.
+ * <br>
+ * The patterns are grouped by the description of their root node and by
+ * the relations it must have to its children, such as {@code {lemma:buy}}
+ * with an {@code nsubj} dependent for {@code {lemma:buy} >nsubj {}=e}.
+ * Each group's anchor is checked once at each node of a graph, for all
+ * the patterns in the group.  The anchors with an exact attribute, such as
+ * {@code lemma:buy}, are indexed by it, so that at each node only the
+ * anchors whose attribute the node has are checked at all.  Then each
+ * pattern is matched only at the nodes its anchor accepted, and patterns
+ * whose anchor accepted no node aren't matched at all.
+ * <br>
+ * {@link #matchers} gives a matcher for each pattern which may match.
+ * Its matches are the same as those of {@link SemgrexPattern#matcher},
+ * in the same order.  Patterns whose root isn't a single node, such as
+ * those joined with {@code :}, are matched as usual.
+ * <br>
+ * The main method compares the time to match a file of patterns, one
+ * per line, against the graphs of a CoNLL-U file with and without a
+ * pattern set:
+ * <br>
+ * {@code java edu.stanford.nlp.semgraph.semgrex.SemgrexPatternSet -patterns file -conlluFile file [-iterations n]}
+ */
+public class SemgrexPatternSet {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(SemgrexPatternSet.class);
+
+  private final List<SemgrexPattern> patterns;
+  private final boolean ignoreCase;
+
+  /** The distinct root nodes of the patterns */
+  private final List<Anchor> anchors = new ArrayList<>();
+  /** [pattern]: the index of its anchor, or -1 if it has to be tried at every node */
+  private final int[] anchorOf;
+  /** For each annotation key, anchors which need a node to have a certain value for it */
+  private final Map<Class, Map<String, List<Anchor>>> anchorsByAttribute = Generics.newHashMap();
+  /** The anchors which aren't indexed, and are checked at every node */
+  private final List<Anchor> unindexedAnchors = new ArrayList<>();
+
+  /** A root node description shared by patterns, checked once per node for all of them */
+  private static class Anchor {
+
+    final int index;
+    final NodePattern node;
+    /** Relations the node must be the governor of */
+    final Set<String> outgoing;
+    /** Relations the node must be the dependent of */
+    final Set<String> incoming;
+
+    Anchor(int index, NodePattern node, Set<String> outgoing, Set<String> incoming) {
+      this.index = index;
+      this.node = node;
+      this.outgoing = outgoing;
+      this.incoming = incoming;
+    }
+
+  } // end class Anchor
+
+  public SemgrexPatternSet(Collection<SemgrexPattern> patterns) {
+    this(patterns, false);
+  }
+
+  /**
+   * @param ignoreCase Whether to match node attributes ignoring case, as
+   *     with {@link SemgrexPattern#matcher(SemanticGraph, boolean)}
+   */
+  public SemgrexPatternSet(Collection<SemgrexPattern> patterns, boolean ignoreCase) {
+    this.patterns = new ArrayList<>(patterns);
+    this.ignoreCase = ignoreCase;
+    anchorOf = new int[this.patterns.size()];
+    Map<Pair<String, Env>, Anchor> anchorsByKey = Generics.newHashMap();
+    for (int i = 0; i < anchorOf.length; i++) {
+      SemgrexPattern pattern = this.patterns.get(i);
+      if ( ! isAnchorable(pattern)) {
+        anchorOf[i] = -1;
+        continue;
+      }
+      NodePattern root = (NodePattern) pattern;
+      Set<String> outgoing = new HashSet<>();
+      Set<String> incoming = new HashSet<>();
+      for (SemgrexPattern child : root.getChildren()) {
+        addRequiredRelations(child, outgoing, incoming);
+      }
+      String key = root.description() + '\t' + new ArrayList<>(outgoing) + '\t' + new ArrayList<>(incoming);
+      Anchor anchor = anchorsByKey.get(Pair.makePair(key, root.env));
+      if (anchor == null) {
+        anchor = new Anchor(anchors.size(), root, outgoing, incoming);
+        anchorsByKey.put(Pair.makePair(key, root.env), anchor);
+        anchors.add(anchor);
+        index(anchor);
+      }
+      anchorOf[i] = anchor.index;
+    }
+  }
+
+  /** Whether a pattern is matched starting with a node whose description can be checked on its own */
+  private static boolean isAnchorable(SemgrexPattern pattern) {
+    if ( ! (pattern instanceof NodePattern) || pattern.isNegated() || pattern.isOptional()) {
+      return false;
+    }
+    NodePattern node = (NodePattern) pattern;
+    return node.relation() == GraphRelation.ROOT && ! node.isLink();
+  }
+
+  /**
+   * Adds the relations of the pattern's root node to the nodes matched
+   * by this child pattern which have to be there for it to match.
+   */
+  private static void addRequiredRelations(SemgrexPattern child, Set<String> outgoing, Set<String> incoming) {
+    if (child.isNegated() || child.isOptional()) {
+      return;
+    }
+    if (child instanceof CoordinationPattern) {
+      CoordinationPattern coordination = (CoordinationPattern) child;
+      if (coordination.isConj() && ! coordination.isNodeCoord()) {
+        for (SemgrexPattern relation : coordination.getChildren()) {
+          addRequiredRelations(relation, outgoing, incoming);
+        }
+      }
+      return;
+    }
+    GraphRelation relation = ((NodePattern) child).relation();
+    if (relation.rawType == null || relation.rawType.isEmpty() || relation.rawType.matches("/.*/")) {
+      return;
+    }
+    if (relation.symbol.equals(">")) {
+      outgoing.add(relation.rawType);
+    } else if (relation.symbol.equals("<")) {
+      incoming.add(relation.rawType);
+    }
+  }
+
+  /** Indexes an anchor by one of its exact attributes, if it has any */
+  private void index(Anchor anchor) {
+    if ( ! ignoreCase) {
+      for (Map.Entry<String, String> attribute : anchor.node.exactAttributes(false).entrySet()) {
+        Class key = Env.lookupAnnotationKey(anchor.node.env, attribute.getKey());
+        if (key != null) {
+          anchorsByAttribute.computeIfAbsent(key, x -> Generics.newHashMap())
+              .computeIfAbsent(attribute.getValue(), x -> new ArrayList<>()).add(anchor);
+          return;
+        }
+      }
+    }
+    unindexedAnchors.add(anchor);
+  }
+
+  /** The patterns, in the order they were given */
+  public List<SemgrexPattern> patterns() {
+    return Collections.unmodifiableList(patterns);
+  }
+
+  /** The number of distinct root nodes of the patterns, which is how many checks there are at each node at most */
+  public int numAnchors() {
+    return anchors.size();
+  }
+
+  /** The relations of each of the edges, for checking anchors' required relations */
+  private static Set<String> relations(Iterable<SemanticGraphEdge> edges) {
+    Set<String> relations = new HashSet<>();
+    for (SemanticGraphEdge edge : edges) {
+      relations.add(edge.getRelation().toString());
+    }
+    return relations;
+  }
+
+  /**
+   * Matchers for the patterns which may match in this graph, in the order
+   * of the patterns, paired with their patterns.  Each matcher's
+   * {@link SemgrexMatcher#find()} only tries the nodes the pattern's root
+   * node matches.
+   */
+  public List<Pair<SemgrexPattern, SemgrexMatcher>> matchers(SemanticGraph sg) {
+    List<IndexedWord> order = SemgrexMatcher.findOrder(sg);
+    List<List<IndexedWord>> anchored = new ArrayList<>(Collections.nCopies(anchors.size(), null));
+    List<Anchor> toCheck = new ArrayList<>();
+    for (IndexedWord node : order) {
+      toCheck.clear();
+      for (Map.Entry<Class, Map<String, List<Anchor>>> entry : anchorsByAttribute.entrySet()) {
+        @SuppressWarnings("unchecked")
+        Object value = node.get(entry.getKey());
+        if (value != null) {
+          List<Anchor> indexed = entry.getValue().get(value.toString());
+          if (indexed != null) {
+            toCheck.addAll(indexed);
+          }
+        }
+      }
+      toCheck.addAll(unindexedAnchors);
+      // the relations of the node, found the first time an anchor needs them
+      Set<String> outgoing = null;
+      Set<String> incoming = null;
+      for (Anchor anchor : toCheck) {
+        if ( ! anchor.outgoing.isEmpty()) {
+          if (outgoing == null) {
+            outgoing = relations(sg.outgoingEdgeIterable(node));
+          }
+          if ( ! outgoing.containsAll(anchor.outgoing)) {
+            continue;
+          }
+        }
+        if ( ! anchor.incoming.isEmpty()) {
+          if (incoming == null) {
+            incoming = relations(sg.incomingEdgeIterable(node));
+          }
+          if ( ! incoming.containsAll(anchor.incoming)) {
+            continue;
+          }
+        }
+        if (anchor.node.nodeAttrMatch(node, sg, ignoreCase)) {
+          if (anchored.get(anchor.index) == null) {
+            anchored.set(anchor.index, new ArrayList<>());
+          }
+          anchored.get(anchor.index).add(node);
+        }
+      }
+    }
+
+    List<Pair<SemgrexPattern, SemgrexMatcher>> matchers = new ArrayList<>();
+    for (int i = 0; i < anchorOf.length; i++) {
+      SemgrexPattern pattern = patterns.get(i);
+      if (anchorOf[i] < 0) {
+        matchers.add(Pair.makePair(pattern, pattern.matcher(sg, ignoreCase)));
+      } else if (anchored.get(anchorOf[i]) != null) {
+        SemgrexMatcher matcher = pattern.matcher(sg, ignoreCase);
+        matcher.findOnlyAt(anchored.get(anchorOf[i]));
+        matchers.add(Pair.makePair(pattern, matcher));
+      }
+    }
+    return matchers;
+  }
+
+  /** Counts the matches of the patterns one at a time, as without a pattern set */
+  private static int countMatches(List<SemgrexPattern> patterns, List<SemanticGraph> graphs) {
+    int numMatches = 0;
+    for (SemanticGraph graph : graphs) {
+      for (SemgrexPattern pattern : patterns) {
+        SemgrexMatcher matcher = pattern.matcher(graph);
+        while (matcher.find()) {
+          numMatches++;
+        }
+      }
+    }
+    return numMatches;
+  }
+
+  private static int countMatches(SemgrexPatternSet patternSet, List<SemanticGraph> graphs) {
+    int numMatches = 0;
+    for (SemanticGraph graph : graphs) {
+      for (Pair<SemgrexPattern, SemgrexMatcher> matcher : patternSet.matchers(graph)) {
+        while (matcher.second().find()) {
+          numMatches++;
+        }
+      }
+    }
+    return numMatches;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, Integer> flagMap = Generics.newHashMap();
+    flagMap.put("-patterns", 1);
+    flagMap.put("-conlluFile", 1);
+    flagMap.put("-iterations", 1);
+    Map<String, String[]> argsMap = StringUtils.argsToMap(args, flagMap);
+    if ( ! argsMap.containsKey("-patterns") || ! argsMap.containsKey("-conlluFile")) {
+      log.info("Usage: java edu.stanford.nlp.semgraph.semgrex.SemgrexPatternSet -patterns file -conlluFile file [-iterations n]");
+      return;
+    }
+    int iterations = argsMap.containsKey("-iterations") ? Integer.parseInt(argsMap.get("-iterations")[0]) : 5;
+
+    List<SemgrexPattern> patterns = new ArrayList<>();
+    for (String line : IOUtils.readLines(argsMap.get("-patterns")[0])) {
+      if ( ! line.trim().isEmpty()) {
+        patterns.add(SemgrexPattern.compile(line.trim()));
+      }
+    }
+    List<SemanticGraph> graphs = new ArrayList<>();
+    CoNLLUDocumentReader reader = new CoNLLUDocumentReader();
+    for (Iterator<Pair<SemanticGraph, SemanticGraph>> it = reader.getIterator(IOUtils.readerFromString(argsMap.get("-conlluFile")[0])); it.hasNext(); ) {
+      graphs.add(it.next().first);
+    }
+
+    long start = System.nanoTime();
+    SemgrexPatternSet patternSet = new SemgrexPatternSet(patterns);
+    log.info(String.format("Compiled %d patterns with %d anchors in %.3f s", patterns.size(), patternSet.numAnchors(), (System.nanoTime() - start) / 1e9));
+
+    // the first iteration warms up the JIT
+    for (int iteration = 0; iteration <= iterations; iteration++) {
+      start = System.nanoTime();
+      int expected = countMatches(patterns, graphs);
+      double separately = (System.nanoTime() - start) / 1e9;
+      start = System.nanoTime();
+      int numMatches = countMatches(patternSet, graphs);
+      double together = (System.nanoTime() - start) / 1e9;
+      if (numMatches != expected) {
+        throw new IllegalStateException("The pattern set found " + numMatches + " matches, but the patterns found " + expected);
+      }
+      if (iteration > 0) {
+        System.out.printf("%d graphs, %d matches: %.3f s pattern by pattern (%.1f graphs/s), %.3f s as a set (%.1f graphs/s), speedup %.2f%n",
+            graphs.size(), numMatches, separately, graphs.size() / separately, together, graphs.size() / together, separately / together);
+      }
+    }
+  }
+
+}
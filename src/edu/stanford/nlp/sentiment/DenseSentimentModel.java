@@ -0,0 +1,278 @@
+package edu.stanford.nlp.sentiment;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.ejml.data.DMatrixRMaj;
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.neural.SimpleTensor;
+import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.TwoDimensionalMap;
+
+/**
+ * The parameters of a {@link SentimentModel} copied into plain arrays,
+ * for labeling trees with the model without training it.
+ * <br>
+ * {@link SentimentCostAndGradient#forwardPropagateTree} looks up the
+ * matrices of each node in maps keyed by the categories of its children
+ * and makes several new matrices for each node along the way.  Here the
+ * categories of a node's children index an array of the matrices for
+ * each pair of categories, the word vectors already have tanh applied,
+ * and the arithmetic is done in buffers kept by each thread, so the
+ * only new matrices are the node vector and predictions each node is
+ * labeled with.  The sums are done in the same order as EJML does them,
+ * so the labels are the same as those of forwardPropagateTree.
+ * <br>
+ * The model should not be changed after this is made from it.
+ */
+public class DenseSentimentModel {
+
+  private final SentimentModel model;
+  private final int numHid;
+  private final int numClasses;
+  private final boolean useTensors;
+
+  /** The index of each basic category of the model */
+  private final Map<String, Integer> categoryIndex = Generics.newHashMap();
+  /** The index of the basic category of each category seen, or -1 if the model doesn't have it */
+  private final Map<String, Integer> rawCategoryIndex = new ConcurrentHashMap<>();
+
+  /** The index of the parameters for each pair of categories, or -1 */
+  private final int[][] pairIndex;
+  /** For each pair, numHid x (2 numHid + 1), row major */
+  private final double[][] binaryTransform;
+  /** For each pair, numHid slices of 2 numHid x 2 numHid, row major */
+  private final double[][][] binaryTensors;
+  /** For each pair, numClasses x (numHid + 1), row major */
+  private final double[][] binaryClassification;
+  /** For each category, numClasses x (numHid + 1), row major */
+  private final double[][] unaryClassification;
+  /** The classification used for every binary node when the model has combineClassification */
+  private final double[] combinedClassification;
+
+  /** tanh of the word vectors, which is the node vector of a preterminal */
+  private final Map<String, double[]> wordNodeVectors = Generics.newHashMap();
+
+  private final ThreadLocal<double[][]> buffers;
+
+  public DenseSentimentModel(SentimentModel model) {
+    this.model = model;
+    this.numHid = model.numHid;
+    this.numClasses = model.numClasses;
+    this.useTensors = model.op.useTensors;
+
+    for (TwoDimensionalMap.Entry<String, String, SimpleMatrix> entry : model.binaryTransform) {
+      addCategory(entry.getFirstKey());
+      addCategory(entry.getSecondKey());
+    }
+    for (TwoDimensionalMap.Entry<String, String, SimpleMatrix> entry : model.binaryClassification) {
+      addCategory(entry.getFirstKey());
+      addCategory(entry.getSecondKey());
+    }
+    for (String category : model.unaryClassification.keySet()) {
+      addCategory(category);
+    }
+    int numCategories = categoryIndex.size();
+
+    pairIndex = new int[numCategories][numCategories];
+    int numPairs = 0;
+    for (int[] row : pairIndex) {
+      Arrays.fill(row, -1);
+    }
+    for (TwoDimensionalMap.Entry<String, String, SimpleMatrix> entry : model.binaryTransform) {
+      pairIndex[categoryIndex.get(entry.getFirstKey())][categoryIndex.get(entry.getSecondKey())] = numPairs++;
+    }
+    for (TwoDimensionalMap.Entry<String, String, SimpleMatrix> entry : model.binaryClassification) {
+      int[] row = pairIndex[categoryIndex.get(entry.getFirstKey())];
+      int right = categoryIndex.get(entry.getSecondKey());
+      if (row[right] < 0) {
+        row[right] = numPairs++;
+      }
+    }
+
+    binaryTransform = new double[numPairs][];
+    binaryTensors = new double[numPairs][][];
+    binaryClassification = new double[numPairs][];
+    for (TwoDimensionalMap.Entry<String, String, SimpleMatrix> entry : model.binaryTransform) {
+      int pair = pair(entry.getFirstKey(), entry.getSecondKey());
+      binaryTransform[pair] = data(entry.getValue());
+      if (useTensors) {
+        SimpleTensor tensor = model.binaryTensors.get(entry.getFirstKey(), entry.getSecondKey());
+        if (tensor != null) {
+          binaryTensors[pair] = new double[tensor.numSlices()][];
+          for (int slice = 0; slice < tensor.numSlices(); ++slice) {
+            binaryTensors[pair][slice] = data(tensor.getSlice(slice));
+          }
+        }
+      }
+    }
+    for (TwoDimensionalMap.Entry<String, String, SimpleMatrix> entry : model.binaryClassification) {
+      binaryClassification[pair(entry.getFirstKey(), entry.getSecondKey())] = data(entry.getValue());
+    }
+    unaryClassification = new double[numCategories][];
+    for (Map.Entry<String, SimpleMatrix> entry : model.unaryClassification.entrySet()) {
+      unaryClassification[categoryIndex.get(entry.getKey())] = data(entry.getValue());
+    }
+    SimpleMatrix combined = model.unaryClassification.get("");
+    combinedClassification = (combined == null) ? null : data(combined);
+
+    for (Map.Entry<String, SimpleMatrix> entry : model.wordVectors.entrySet()) {
+      double[] vector = data(entry.getValue());
+      for (int i = 0; i < vector.length; ++i) {
+        vector[i] = Math.tanh(vector[i]);
+      }
+      wordNodeVectors.put(entry.getKey(), vector);
+    }
+
+    // the children's vectors with a bias, and the product of the tensor's slices with them
+    buffers = ThreadLocal.withInitial(() -> new double[][] { new double[2 * numHid + 1], new double[2 * numHid] });
+  }
+
+  private void addCategory(String category) {
+    if ( ! categoryIndex.containsKey(category)) {
+      categoryIndex.put(category, categoryIndex.size());
+    }
+  }
+
+  private int pair(String left, String right) {
+    return pairIndex[categoryIndex.get(left)][categoryIndex.get(right)];
+  }
+
+  /** A copy of the elements of the matrix, row by row */
+  private static double[] data(SimpleMatrix matrix) {
+    return ((DMatrixRMaj) matrix.getMatrix()).data.clone();
+  }
+
+  private int category(Tree node) {
+    return rawCategoryIndex.computeIfAbsent(node.label().value(), category -> {
+      Integer index = categoryIndex.get(model.basicCategory(category));
+      return (index == null) ? -1 : index;
+    });
+  }
+
+  /**
+   * Labels each non-leaf node of the tree with its node vector,
+   * predictions and predicted class, as
+   * {@link SentimentCostAndGradient#forwardPropagateTree} does.
+   */
+  public void forwardPropagateTree(Tree tree) {
+    forwardPropagate(tree, buffers.get());
+  }
+
+  /** Labels the tree and returns its node vector */
+  private double[] forwardPropagate(Tree tree, double[][] buffer) {
+    double[] nodeVector;
+    double[] classification;
+
+    if (tree.isLeaf()) {
+      throw new ForwardPropagationException("We should not have reached leaves in forwardPropagate");
+    } else if (tree.isPreTerminal()) {
+      int category = category(tree);
+      classification = (category < 0) ? null : unaryClassification[category];
+      if (classification == null) {
+        throw new ForwardPropagationException("No unary classification for " + tree.label().value());
+      }
+      nodeVector = wordNodeVectors.get(model.getVocabWord(tree.children()[0].label().value())).clone();
+    } else if (tree.children().length == 1) {
+      throw new ForwardPropagationException("Non-preterminal nodes of size 1 should have already been collapsed");
+    } else if (tree.children().length == 2) {
+      double[] leftVector = forwardPropagate(tree.children()[0], buffer);
+      double[] rightVector = forwardPropagate(tree.children()[1], buffer);
+
+      int left = category(tree.children()[0]);
+      int right = category(tree.children()[1]);
+      int pair = (left < 0 || right < 0) ? -1 : pairIndex[left][right];
+      double[] transform = (pair < 0) ? null : binaryTransform[pair];
+      if (transform == null) {
+        throw new ForwardPropagationException("No binary transform for " + tree.children()[0].label().value() + " " + tree.children()[1].label().value());
+      }
+      classification = model.op.combineClassification ? combinedClassification : binaryClassification[pair];
+      if (classification == null) {
+        throw new ForwardPropagationException("No binary classification for " + tree.children()[0].label().value() + " " + tree.children()[1].label().value());
+      }
+
+      double[] childrenVector = buffer[0];
+      System.arraycopy(leftVector, 0, childrenVector, 0, numHid);
+      System.arraycopy(rightVector, 0, childrenVector, numHid, numHid);
+      childrenVector[2 * numHid] = 1.0;
+
+      nodeVector = new double[numHid];
+      multiply(transform, childrenVector, nodeVector);
+      if (useTensors) {
+        double[][] tensor = binaryTensors[pair];
+        double[] product = buffer[1];
+        int size = 2 * numHid;
+        for (int slice = 0; slice < numHid; ++slice) {
+          // (in^T slice) in, as SimpleTensor.bilinearProducts does it
+          double[] weights = tensor[slice];
+          for (int j = 0; j < size; ++j) {
+            product[j] = childrenVector[0] * weights[j];
+          }
+          for (int k = 1; k < size; ++k) {
+            double in = childrenVector[k];
+            int row = k * size;
+            for (int j = 0; j < size; ++j) {
+              product[j] += in * weights[row + j];
+            }
+          }
+          double result = product[0] * childrenVector[0];
+          for (int j = 1; j < size; ++j) {
+            result += product[j] * childrenVector[j];
+          }
+          nodeVector[slice] += result;
+        }
+      }
+      for (int i = 0; i < numHid; ++i) {
+        nodeVector[i] = Math.tanh(nodeVector[i]);
+      }
+    } else {
+      throw new AssertionError("Tree not correctly binarized");
+    }
+
+    double[] withBias = buffer[0];
+    System.arraycopy(nodeVector, 0, withBias, 0, numHid);
+    withBias[numHid] = 1.0;
+    double[] predictions = new double[numClasses];
+    multiply(classification, withBias, predictions);
+    double sum = 0.0;
+    for (int i = 0; i < numClasses; ++i) {
+      predictions[i] = Math.exp(predictions[i]);
+      sum += predictions[i];
+    }
+    double scale = 1.0 / sum;
+    int predictedClass = 0;
+    for (int i = 0; i < numClasses; ++i) {
+      predictions[i] *= scale;
+      if (predictions[i] > predictions[predictedClass]) {
+        predictedClass = i;
+      }
+    }
+
+    if (!(tree.label() instanceof CoreLabel)) {
+      throw new AssertionError("Expected CoreLabels in the nodes");
+    }
+    CoreLabel label = (CoreLabel) tree.label();
+    label.set(RNNCoreAnnotations.Predictions.class, SimpleMatrix.wrap(DMatrixRMaj.wrap(numClasses, 1, predictions)));
+    label.set(RNNCoreAnnotations.PredictedClass.class, predictedClass);
+    label.set(RNNCoreAnnotations.NodeVector.class, SimpleMatrix.wrap(DMatrixRMaj.wrap(numHid, 1, nodeVector)));
+    return nodeVector;
+  }
+
+  /** out = matrix in, where matrix has out.length rows of in's length, for the first in.length elements of in */
+  private static void multiply(double[] matrix, double[] in, double[] out) {
+    int cols = matrix.length / out.length;
+    for (int i = 0, row = 0; i < out.length; ++i, row += cols) {
+      double total = matrix[row] * in[0];
+      for (int j = 1; j < cols; ++j) {
+        total += matrix[row + j] * in[j];
+      }
+      out[i] = total;
+    }
+  }
+
+}
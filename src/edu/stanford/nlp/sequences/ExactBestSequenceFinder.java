@@ -22,8 +22,54 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
 
   private static final boolean DEBUG = false;
 
+  /** The arrays kept between searches, if this finder reuses them, or null */
+  private final Buffers buffers;
+
+  public ExactBestSequenceFinder() {
+    this(false);
+  }
+
+  /**
+   * Make a finder which may keep the arrays used by a search for the next
+   * search, so that once they are large enough, searching allocates nothing.
+   * Such a finder must only be used by one thread at a time, and the array
+   * returned by {@link #bestSequence(SequenceModel)} is only valid until
+   * the next search.
+   *
+   * @param reuseArrays Whether to keep the arrays between searches
+   */
+  public ExactBestSequenceFinder(boolean reuseArrays) {
+    buffers = reuseArrays ? new Buffers() : null;
+  }
+
+  /** The arrays used by one search, which only ever grow. */
+  private static class Buffers {
+    int[][] tags = new int[0][];
+    int[] tagNum = new int[0];
+    int[] productSizes = new int[0];
+    int[] tempTags = new int[0];
+    double[][] windowScore = new double[0][];
+    double[][] score = new double[0][];
+    int[][] trace = new int[0][];
+    double bestScore;
+
+    void ensure(int padLength) {
+      if (tagNum.length < padLength) {
+        tags = new int[padLength][];
+        tagNum = new int[padLength];
+        productSizes = new int[padLength];
+        tempTags = new int[padLength];
+        windowScore = Arrays.copyOf(windowScore, padLength);
+        score = Arrays.copyOf(score, padLength);
+        trace = Arrays.copyOf(trace, padLength);
+      }
+    }
+  }
+
   public static Pair<int[], Double> bestSequenceWithLinearConstraints(SequenceModel ts, double[][] linearConstraints) {
-    return bestSequence(ts, linearConstraints);
+    Buffers buffers = new Buffers();
+    int[] sequence = bestSequence(ts, linearConstraints, buffers);
+    return new Pair<>(sequence, buffers.bestScore);
   }
 
   /**
@@ -35,10 +81,14 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
    */
   @Override
   public int[] bestSequence(SequenceModel ts) {
-    return bestSequence(ts, null).first();
+    return bestSequence(ts, null, buffers != null ? buffers : new Buffers());
   }
 
-  private static Pair<int[], Double> bestSequence(SequenceModel ts, double[][] linearConstraints) {
+  /**
+   * The best sequence, with its score left in buffers.  The arrays in buffers
+   * are used if they are large enough, and are otherwise replaced.
+   */
+  private static int[] bestSequence(SequenceModel ts, double[][] linearConstraints, Buffers buffers) {
     // Set up tag options
     final int length = ts.length();
     final int leftWindow = ts.leftWindow();
@@ -46,8 +96,9 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     final int padLength = length + leftWindow + rightWindow;
     if (linearConstraints != null && linearConstraints.length != padLength)
       throw new RuntimeException("linearConstraints.length (" +  linearConstraints.length + ") does not match padLength (" + padLength + ") of SequenceModel" + ", length=="+length+", leftW="+leftWindow+", rightW="+rightWindow);
-    int[][] tags = new int[padLength][];
-    int[] tagNum = new int[padLength];
+    buffers.ensure(padLength);
+    final int[][] tags = buffers.tags;
+    final int[] tagNum = buffers.tagNum;
     if (DEBUG) { log.info("Doing bestSequence length " + length + "; leftWin " + leftWindow + "; rightWin " + rightWindow + "; padLength " + padLength); }
     for (int pos = 0; pos < padLength; pos++) {
       // potentially constrain values considered in inference (e.g., to only observed tags for a word if word is common)
@@ -57,18 +108,22 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     }
 
     // Set up product space sizes
-    int[] productSizes = initProductSizes(ts, tagNum, new int[padLength]);
+    final int[] productSizes = buffers.productSizes;
+    Arrays.fill(productSizes, 0, padLength, 0);
+    initProductSizes(ts, tagNum, productSizes, padLength);
 
     // Score all of each window's options
-    int[] tempTags = new int[padLength];
-    double[][] windowScore = computeWindowScore(ts, tags, tagNum, tempTags, productSizes);
+    final int[] tempTags = buffers.tempTags;
+    double[][] windowScore = computeWindowScore(ts, tags, tagNum, tempTags, productSizes, buffers.windowScore);
 
     // Set up score and backtrace arrays
-    double[][] score = new double[padLength][];
-    int[][] trace = new int[padLength][];
+    final double[][] score = buffers.score;
+    final int[][] trace = buffers.trace;
     for (int pos = 0; pos < padLength; pos++) {
-      score[pos] = new double[productSizes[pos]];
-      trace[pos] = new int[productSizes[pos]];
+      if (score[pos] == null || score[pos].length < productSizes[pos]) {
+        score[pos] = new double[productSizes[pos]];
+        trace[pos] = new int[productSizes[pos]];
+      }
     }
 
     // Do forward Viterbi algorithm
@@ -97,15 +152,15 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
       bestCurrentProduct = trace[pos + 1][bestNextProduct];
       tempTags[prevPos] = tags[prevPos][bestCurrentProduct / (productSizes[pos] / tagNum[prevPos])];
     }
-    return new Pair<>(tempTags, bestFinalScore);
+    buffers.bestScore = bestFinalScore;
+    return tempTags;
   }
 
   @SuppressWarnings("Convert2streamapi")
-  private static int[] initProductSizes(final SequenceModel ts, int[] tagNum, int[] productSizes) {
+  private static int[] initProductSizes(final SequenceModel ts, int[] tagNum, int[] productSizes, int padLength) {
     final int leftWindow = ts.leftWindow();
     final int rightWindow = ts.rightWindow();
     final int window = leftWindow + rightWindow;
-    final int padLength = productSizes.length;
 
     // Skip
     int curProduct = 1;
@@ -126,12 +181,11 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
     return productSizes;
   }
 
-  private static double[][] computeWindowScore(SequenceModel ts, int[][] tags, int[] tagNum, int[] tempTags, int[] productSizes) {
+  private static double[][] computeWindowScore(SequenceModel ts, int[][] tags, int[] tagNum, int[] tempTags, int[] productSizes,
+                                               double[][] windowScore) {
     final int length = ts.length();
     final int leftWindow = ts.leftWindow();
     final int rightWindow = ts.rightWindow();
-    final int padLength = length + leftWindow + rightWindow;
-    double[][] windowScore = new double[padLength][];
     for (int pos = leftWindow; pos < leftWindow + length; pos++) {
       if (Thread.interrupted()) {  // Allow interrupting
         throw new RuntimeInterruptedException();
@@ -139,7 +193,11 @@ public class ExactBestSequenceFinder implements BestSequenceFinder  {
       // Local constants, to avoid repeated array access.
       final int tagNum_pos = tagNum[pos];
       final int productSizes_pos = productSizes[pos];
-      final double[] windowScore_pos = windowScore[pos] = new double[productSizes_pos];
+      // every entry up to productSizes_pos is set below, so a longer array left from before is fine
+      if (windowScore[pos] == null || windowScore[pos].length < productSizes_pos) {
+        windowScore[pos] = new double[productSizes_pos];
+      }
+      final double[] windowScore_pos = windowScore[pos];
       if (DEBUG) { log.info("scoring word " + pos + " / " + (leftWindow + length) + ", productSizes =  " + productSizes_pos + ", tagNum = " + tagNum_pos + "..."); }
       Arrays.fill(tempTags, tags[0][0]);
       if (DEBUG) { log.info("windowScore[" + pos + "] has size (productSizes[pos]) " + windowScore_pos.length); }
@@ -1081,6 +1081,13 @@ public class SeqClassifierFlags implements Serializable  {
    */
   public boolean useMoreNeighborNGrams = false;
 
+  /**
+   * At test time, look features up by a hash of their names instead of
+   * building the names as Strings.  Only the CRFClassifier with NERFeatureFactory
+   * supports this; the model's feature index is hashed when it is first needed.
+   */
+  public boolean useHashedFeatureIds = false;
+
 
   // "ADD VARIABLES ABOVE HERE"
 
@@ -1984,6 +1991,8 @@ public class SeqClassifierFlags implements Serializable  {
         numSamples = Integer.parseInt(val);
       } else if (key.equalsIgnoreCase("inferenceType")) {
         inferenceType = val;
+      } else if (key.equalsIgnoreCase("useHashedFeatureIds")) {
+        useHashedFeatureIds = Boolean.parseBoolean(val);
       } else if (key.equalsIgnoreCase("loadProcessedData")) {
         loadProcessedData = val;
       } else if (key.equalsIgnoreCase("normalizationTable")) {
@@ -1064,6 +1064,36 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
     return testSentence.tagSentence(sentence, reuseTags);
   }
 
+  /**
+   * Returns a new Sentence that is a copy of the given sentence with all the
+   * words tagged with their part-of-speech, as {@link #tagSentence(List, boolean)}
+   * does, but using the arrays kept in the given workspace rather than new ones.
+   *
+   * @param sentence sentence to tag
+   * @param reuseTags whether or not to reuse the given tag
+   * @param workspace A workspace from {@link #newWorkspace()} of this tagger
+   * @return tagged sentence
+   */
+  public List<TaggedWord> tagSentence(List<? extends HasWord> sentence,
+                                      boolean reuseTags, TaggerWorkspace workspace) {
+    return checkWorkspace(workspace).testSentence.tagSentence(sentence, reuseTags);
+  }
+
+  /**
+   * Returns a new workspace for tagging sentences with this tagger.
+   * Workspaces are not thread-safe; each thread should have its own.
+   */
+  public TaggerWorkspace newWorkspace() {
+    return new TaggerWorkspace(this);
+  }
+
+  private TaggerWorkspace checkWorkspace(TaggerWorkspace workspace) {
+    if (workspace.tagger != this) {
+      throw new IllegalArgumentException("TaggerWorkspace was made by a different tagger");
+    }
+    return workspace;
+  }
+
   /**
    * Takes a sentence composed of CoreLabels and add the tags to the
    * CoreLabels, modifying the input sentence.
@@ -1088,6 +1118,22 @@ public class MaxentTagger extends Tagger implements ListProcessor<List<? extends
     }
   }
 
+  /**
+   * Takes a sentence composed of CoreLabels and add the tags to the
+   * CoreLabels, modifying the input sentence, using the arrays kept in
+   * the given workspace.  Unlike {@link #tagCoreLabels(List, boolean)},
+   * no list of TaggedWords is made along the way.
+   */
+  public void tagCoreLabels(List<CoreLabel> sentence,
+                            boolean reuseTags, TaggerWorkspace workspace) {
+    TestSentence testSentence = checkWorkspace(workspace).testSentence;
+    testSentence.tag(sentence, reuseTags);
+    String[] tags = testSentence.finalTags;
+    for (int i = 0, size = sentence.size(); i < size; ++i) {
+      sentence.get(i).setTag(tags[i]);
+    }
+  }
+
   /**
    * Adds lemmas to the given list of CoreLabels, using the given
    * Morphology object.  The input list must already have tags set.
@@ -0,0 +1,26 @@
+package edu.stanford.nlp.tagger.maxent;
+
+/**
+ * The working state used to tag sentences with a {@link MaxentTagger},
+ * kept from one sentence to the next so that tagging many sentences
+ * doesn't allocate new score arrays, Viterbi tables, and word lists for
+ * each of them.  Get one with {@link MaxentTagger#newWorkspace()} and
+ * pass it to {@link MaxentTagger#tagSentence(java.util.List, boolean, TaggerWorkspace)}
+ * or {@link MaxentTagger#tagCoreLabels(java.util.List, boolean, TaggerWorkspace)}.
+ * <br>
+ * A workspace is not thread-safe: give each thread its own, for
+ * example with a {@code ThreadLocal}.  The arrays it keeps grow to fit
+ * the longest sentence seen so far, and the cache of word scores is
+ * emptied whenever it reaches a fixed size, so its memory use stays bounded.
+ */
+public class TaggerWorkspace {
+
+  final MaxentTagger tagger;
+  final TestSentence testSentence;
+
+  TaggerWorkspace(MaxentTagger tagger) {
+    this.tagger = tagger;
+    this.testSentence = new TestSentence(tagger, true);
+  }
+
+}
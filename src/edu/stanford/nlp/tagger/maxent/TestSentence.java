@@ -89,7 +89,33 @@ public class TestSentence implements SequenceModel  {
 
   protected final MaxentTagger maxentTagger;
 
+  /**
+   * If true, the arrays and lists used for one sentence are kept for the
+   * next, so that once they are large enough tagging allocates very little.
+   */
+  private final boolean reuseArrays;
+  /** The most words whose local scores are cached when reusing arrays; the cache is emptied when it gets this big */
+  private static final int MAX_CACHED_WORDS = 10000;
+  private final ExactBestSequenceFinder bestSequenceFinder;
+  /** The candidate tags at each position of the current sentence, as found by stringTagsAt and getPossibleValues */
+  private String[][] tagsAt = new String[0][];
+  private int[][] valuesAt = new int[0][];
+  /** When reusing arrays, the arrays the local context scores of each position are put in */
+  private double[][] contextScoreArrays = new double[0][];
+  /** When reusing arrays, the arrays returned by scoresOf */
+  private double[] dynamicScores = new double[0];
+  private double[] exactScores = new double[0];
+
   public TestSentence(MaxentTagger maxentTagger) {
+    this(maxentTagger, false);
+  }
+
+  /**
+   * @param reuseArrays Whether to keep the arrays used for one sentence for the next.
+   *                    Such a TestSentence must not be used by more than one thread at a time,
+   *                    and its finalTags may be longer than the sentence.
+   */
+  TestSentence(MaxentTagger maxentTagger, boolean reuseArrays) {
     assert(maxentTagger != null);
     assert(maxentTagger.getLambdaSolve() != null);
     this.maxentTagger = maxentTagger;
@@ -105,6 +131,8 @@ public class TestSentence implements SequenceModel  {
       minWordsLockTags = 1;
     }
     history = new History(pairs, maxentTagger.extractors);
+    this.reuseArrays = reuseArrays;
+    this.bestSequenceFinder = reuseArrays ? new ExactBestSequenceFinder(true) : null;
   }
 
   public void setCorrectTags(List<? extends HasTag> sentence) {
@@ -124,9 +152,33 @@ public class TestSentence implements SequenceModel  {
    */
   public ArrayList<TaggedWord> tagSentence(List<? extends HasWord> s,
                                            boolean reuseTags) {
-    this.origWords = new ArrayList<>(s);
+    tag(s, reuseTags);
+    ArrayList<TaggedWord> result = getTaggedSentence();
+    if (maxentTagger.wordFunction != null) {
+      for (int j = 0, sz = s.size(); j < sz; ++j) {
+        result.get(j).setWord(s.get(j).word());
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Tags the sentence s, leaving the tags in finalTags.
+   *
+   * @param s Input sentence (List).  This isn't changed.
+   */
+  void tag(List<? extends HasWord> s, boolean reuseTags) {
     int sz = s.size();
-    this.sent = new ArrayList<>(sz + 1);
+    if (reuseArrays && sent != null) {
+      origWords.clear();
+      for (HasWord word : s) {
+        origWords.add(word);
+      }
+      sent.clear();
+    } else {
+      this.origWords = new ArrayList<>(s);
+      this.sent = new ArrayList<>(sz + 1);
+    }
     for (HasWord value1 : s) {
       if (maxentTagger.wordFunction != null) {
         sent.add(maxentTagger.wordFunction.apply(value1.word()));
@@ -136,7 +188,11 @@ public class TestSentence implements SequenceModel  {
     }
     sent.add(Tagger.EOS_WORD);
     if (reuseTags) {
-      this.originalTags = new ArrayList<>(sz + 1);
+      if (reuseArrays && originalTags != null) {
+        originalTags.clear();
+      } else {
+        this.originalTags = new ArrayList<>(sz + 1);
+      }
       for (HasWord value : s) {
         if (value instanceof HasTag) {
           originalTags.add(((HasTag) value).tag());
@@ -145,19 +201,15 @@ public class TestSentence implements SequenceModel  {
         }
       }
       originalTags.add(Tagger.EOS_TAG);
+    } else {
+      this.originalTags = null;
     }
     size = sz + 1;
     if (VERBOSE) {
       log.info("Sentence: " + SentenceUtils.listToString(sent, false, tagSeparator));
     }
     init();
-    ArrayList<TaggedWord> result = testTagInference();
-    if (maxentTagger.wordFunction != null) {
-      for (int j = 0; j < sz; ++j) {
-        result.get(j).setWord(s.get(j).word());
-      }
-    }
-    return result;
+    runTagInference();
   }
 
 
@@ -167,7 +219,24 @@ public class TestSentence implements SequenceModel  {
 
   protected void init() {
     //the eos are assumed already there
-    localContextScores = new double[size][];
+    if (reuseArrays) {
+      if (localContextScores == null || localContextScores.length < size) {
+        localContextScores = new double[size][];
+        contextScoreArrays = Arrays.copyOf(contextScoreArrays, size);
+      } else {
+        Arrays.fill(localContextScores, 0, size, null);
+      }
+    } else {
+      localContextScores = new double[size][];
+    }
+    int padLength = size + leftWindow() + rightWindow();
+    if (tagsAt.length < padLength) {
+      tagsAt = new String[padLength][];
+      valuesAt = new int[padLength][];
+    } else {
+      Arrays.fill(tagsAt, 0, padLength, null);
+      Arrays.fill(valuesAt, 0, padLength, null);
+    }
     for (int i = 0; i < size - 1; i++) {
       if (maxentTagger.dict.isUnknown(sent.get(i))) {
         numUnknown++;
@@ -317,26 +386,21 @@ public class TestSentence implements SequenceModel  {
 
 
   /**
-   * Test using (exact Viterbi) TagInference.
-   *
-   * @return The tagged sentence
+   * Tag the sentence using (exact Viterbi) TagInference, leaving the tags in finalTags.
    */
-  private ArrayList<TaggedWord> testTagInference() {
-    runTagInference();
-    return getTaggedSentence();
-  }
-
   private void runTagInference() {
     this.initializeScorer();
     if (Thread.interrupted()) {  // Allow interrupting
       throw new RuntimeInterruptedException();
     }
 
-    BestSequenceFinder ti = new ExactBestSequenceFinder();
+    BestSequenceFinder ti = bestSequenceFinder != null ? bestSequenceFinder : new ExactBestSequenceFinder();
       //new BeamBestSequenceFinder(50);
       //new KBestSequenceFinder()
     int[] bestTags = ti.bestSequence(this);
-    finalTags = new String[bestTags.length];
+    if ( ! reuseArrays || finalTags == null || finalTags.length < size) {
+      finalTags = new String[reuseArrays ? size : bestTags.length];
+    }
     for (int j = 0; j < size; j++) {
       finalTags[j] = maxentTagger.tags.getTag(bestTags[j + leftWindow()]);
     }
@@ -388,10 +452,18 @@ public class TestSentence implements SequenceModel  {
   }
 
   private double[] getExactScores(History h) {
-    String[] tags = stringTagsAt(h.current - h.start + leftWindow());
+    String[] tags = cachedTagsAt(h.current - h.start + leftWindow());
     double[] histories = getHistories(tags, h); // log score for each tag
     ArrayMath.logNormalize(histories);
-    double[] scores = new double[tags.length];
+    double[] scores;
+    if (reuseArrays) {
+      if (exactScores.length != tags.length) {
+        exactScores = new double[tags.length];
+      }
+      scores = exactScores;
+    } else {
+      scores = new double[tags.length];
+    }
     for (int j = 0; j < tags.length; j++) {
       // score the j-th tag
       String tag = tags[j];
@@ -405,7 +477,7 @@ public class TestSentence implements SequenceModel  {
   // (e.g., apple_CC) gets a default (constant) score instead of its exact score.
   // The scores of all other tags are computed exactly.
   private double[] getApproximateScores(History h) {
-    String[] tags = stringTagsAt(h.current - h.start + leftWindow());
+    String[] tags = cachedTagsAt(h.current - h.start + leftWindow());
     double[] scores = getHistories(tags, h); // log score for each active tag, unnormalized
 
     // Number of tags that get assigned a default score:
@@ -469,7 +541,7 @@ public class TestSentence implements SequenceModel  {
         extractorVals.set(kf + ex.size(), e + " " + val);
       }
 
-      double[] totalS = getHistories(tags, h, allEx, rare ? allExR : null);
+      double[] totalS = getHistories(tags, h, allEx, rare ? allExR : null, null);
 
       NumberFormat nf = new DecimalFormat("0.00");
       Object[] colNames = IntStream.range(0, maxentTagger.ySize).mapToObj(k -> maxentTagger.tags.getTag(k)).toArray();
@@ -480,7 +552,10 @@ public class TestSentence implements SequenceModel  {
 
     double[] lS = localScores.get(w);
     if (lS == null) {
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+      lS = getHistories(tags, h, ex.local, rare ? exR.local : null, null);
+      if (reuseArrays && localScores.size() >= MAX_CACHED_WORDS) {
+        localScores.clear();
+      }
       localScores.put(w, lS);
     } else if (lS.length != tags.length) {
       // This case can occur when a word was given a specific forced
@@ -488,28 +563,54 @@ public class TestSentence implements SequenceModel  {
       // TODO: if a word is given a forced tag, we should always get
       // its features rather than use the cache, just in case the tag
       // given is not the same tag as before
-      lS = getHistories(tags, h, ex.local, rare ? exR.local : null);
+      lS = getHistories(tags, h, ex.local, rare ? exR.local : null, null);
       if (tags.length > 1) {
         localScores.put(w, lS);
       }
     }
     double[] lcS = localContextScores[h.current];
     if (lcS == null) {
-      lcS = getHistories(tags, h, ex.localContext, rare ? exR.localContext : null);
+      double[] into = null;
+      if (reuseArrays) {
+        into = contextScoreArrays[h.current];
+        if (into == null || into.length != scoresLength(tags)) {
+          into = contextScoreArrays[h.current] = new double[scoresLength(tags)];
+        }
+      }
+      lcS = getHistories(tags, h, ex.localContext, rare ? exR.localContext : null, into);
       localContextScores[h.current] = lcS;
       ArrayMath.pairwiseAddInPlace(lcS, lS);
     }
-    double[] totalS = getHistories(tags, h, ex.dynamic, rare ? exR.dynamic : null);
+    double[] into = null;
+    if (reuseArrays) {
+      if (dynamicScores.length != scoresLength(tags)) {
+        dynamicScores = new double[scoresLength(tags)];
+      }
+      into = dynamicScores;
+    }
+    double[] totalS = getHistories(tags, h, ex.dynamic, rare ? exR.dynamic : null, into);
     ArrayMath.pairwiseAddInPlace(totalS, lcS);
     return totalS;
   }
 
-  private double[] getHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
-    return maxentTagger.hasApproximateScoring() ? getApproximateHistories(tags, h, extractors, extractorsRare) : getExactHistories(h, extractors, extractorsRare);
+  /** The length of the arrays of scores returned by getHistories */
+  private int scoresLength(String[] tags) {
+    return maxentTagger.hasApproximateScoring() ? tags.length : maxentTagger.ySize;
+  }
+
+  /**
+   * @param into An array of scoresLength(tags) to put the scores in, or null to make a new one
+   */
+  private double[] getHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare,
+                                double[] into) {
+    if (into != null) {
+      Arrays.fill(into, 0.0);
+    }
+    return maxentTagger.hasApproximateScoring() ? getApproximateHistories(tags, h, extractors, extractorsRare, into) : getExactHistories(h, extractors, extractorsRare, into);
   }
 
-  private double[] getExactHistories(History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
-    double[] scores = new double[maxentTagger.ySize];
+  private double[] getExactHistories(History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare, double[] into) {
+    double[] scores = into != null ? into : new double[maxentTagger.ySize];
     if (VERBOSE) { System.err.println("Calling exact histories"); }
     double[] lambda = maxentTagger.getLambdaSolve().lambda;
     for (Pair<Integer,Extractor> e : extractors) {
@@ -538,8 +639,8 @@ public class TestSentence implements SequenceModel  {
   }
 
   /** Returns an unnormalized score (in log space) for each tag. */
-  private double[] getApproximateHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare) {
-    double[] scores = new double[tags.length];
+  private double[] getApproximateHistories(String[] tags, History h, List<Pair<Integer,Extractor>> extractors, List<Pair<Integer,Extractor>> extractorsRare, double[] into) {
+    double[] scores = into != null ? into : new double[tags.length];
     if (VERBOSE) { System.err.println("Calling approx histories"); }
     double[] lambda = maxentTagger.getLambdaSolve().lambda;
 
@@ -722,15 +823,27 @@ public class TestSentence implements SequenceModel  {
 
   @Override
   public int[] getPossibleValues(int pos) {
-    String[] arr1 = stringTagsAt(pos);
-    int[] arr = new int[arr1.length];
-    for (int i = 0; i < arr.length; i++) {
-      arr[i] = maxentTagger.tags.getIndex(arr1[i]);
+    int[] arr = valuesAt[pos];
+    if (arr == null) {
+      String[] arr1 = cachedTagsAt(pos);
+      arr = new int[arr1.length];
+      for (int i = 0; i < arr.length; i++) {
+        arr[i] = maxentTagger.tags.getIndex(arr1[i]);
+      }
+      valuesAt[pos] = arr;
     }
-
     return arr;
   }
 
+  /** stringTagsAt, remembered for the rest of the sentence */
+  private String[] cachedTagsAt(int pos) {
+    String[] tags = tagsAt[pos];
+    if (tags == null) {
+      tags = tagsAt[pos] = stringTagsAt(pos);
+    }
+    return tags;
+  }
+
   @Override
   public double scoreOf(int[] tags, int pos) {
     double[] scores = scoresOf(tags, pos);
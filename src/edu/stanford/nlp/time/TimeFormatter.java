@@ -12,6 +12,7 @@ import edu.stanford.nlp.util.Generics;
 import org.joda.time.*;
 import org.joda.time.format.*;
 
+import java.io.Serializable;
 import java.lang.reflect.Method;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -30,7 +31,8 @@ public class TimeFormatter {
 
 
   public static class JavaDateFormatExtractor implements
-          Function<CoreMap, Value> {
+          Function<CoreMap, Value>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private static final Class<CoreAnnotations.TextAnnotation> textAnnotationField = CoreAnnotations.TextAnnotation.class;
     private final SimpleDateFormat format;
@@ -82,7 +84,8 @@ public class TimeFormatter {
   }
 
 
-  static class ApplyActionWrapper<I,O> implements Function<I,O> {
+  static class ApplyActionWrapper<I,O> implements Function<I,O>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final Env env;
     private final Function<I,O> base;
@@ -191,7 +194,8 @@ public class TimeFormatter {
   /**
    * Converts time string pattern to text pattern.
    */
-  public static class CustomDateFormatExtractor implements Function<String, Value> {
+  public static class CustomDateFormatExtractor implements Function<String, Value>, Serializable {
+    private static final long serialVersionUID = 1L;
 
     private final FormatterBuilder builder;
     private final String timePattern;
@@ -241,7 +245,8 @@ public class TimeFormatter {
   }
 
 
-  private abstract static class FormatComponent {
+  private abstract static class FormatComponent implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     int group = -1;
     String quantifier = null;
@@ -275,6 +280,7 @@ public class TimeFormatter {
   }
 
   private abstract static class DateTimeFieldComponent extends FormatComponent {
+    private static final long serialVersionUID = 1L;
 
     DateTimeFieldType fieldType;
 
@@ -300,6 +306,7 @@ public class TimeFormatter {
 
 
   private static class NumericDateComponent extends DateTimeFieldComponent {
+    private static final long serialVersionUID = 1L;
 
     private final int minValue;
     private final int maxValue;
@@ -341,6 +348,8 @@ public class TimeFormatter {
 
   private static class RelaxedNumericDateComponent extends FormatComponent
   {
+    private static final long serialVersionUID = 1L;
+
     NumericDateComponent[] possibleNumericDateComponents;
     int minDigits;
     int maxDigits;
@@ -391,6 +400,7 @@ public class TimeFormatter {
 
 
   private static class TextDateComponent extends DateTimeFieldComponent {
+    private static final long serialVersionUID = 1L;
 
     Map<String, Integer> valueMapping;
     List<String> validValues;
@@ -458,6 +468,8 @@ public class TimeFormatter {
 
   private static class TimeZoneOffsetComponent extends FormatComponent
   {
+    private static final long serialVersionUID = 1L;
+
     String zeroOffsetParseText;  // Text indicating timezone offset is zero
 
     // TimezoneOffset is + or - followed by
@@ -563,25 +575,30 @@ public class TimeFormatter {
   //  NameKey    PST (or PDT depending on input milliseconds)
   private static class TimeZoneIdComponent extends FormatComponent
   {
-    static final Map<String, DateTimeZone> timeZonesById;
-    static final List<String> timeZoneIds;
-    static final String timeZoneIdsRegex;
-    static {
-      timeZoneIds = new ArrayList<>(DateTimeZone.getAvailableIDs());
-      timeZonesById = Generics.newHashMap();
-      for (String str:timeZoneIds) {
-        DateTimeZone dtz = DateTimeZone.forID(str);
-        timeZonesById.put(str.toLowerCase(), dtz);
+    private static final long serialVersionUID = 1L;
+
+    // The time zones are looked up when they are first needed, rather than when a component is made or read
+    static class TimeZoneIds {
+      static final Map<String, DateTimeZone> timeZonesById;
+      static final List<String> timeZoneIds;
+      static final String timeZoneIdsRegex;
+      static {
+        timeZoneIds = new ArrayList<>(DateTimeZone.getAvailableIDs());
+        timeZonesById = Generics.newHashMap();
+        for (String str:timeZoneIds) {
+          DateTimeZone dtz = DateTimeZone.forID(str);
+          timeZonesById.put(str.toLowerCase(), dtz);
 //        System.out.println(str);
 //        long time = System.currentTimeMillis();
 //        System.out.println(dtz.getShortName(time));
 //        System.out.println(dtz.getName(time));
 //        System.out.println(dtz.getNameKey(time));
 //        System.out.println();
+        }
+        // Order by length for regex
+        Collections.sort(timeZoneIds, STRING_LENGTH_REV_COMPARATOR);
+        timeZoneIdsRegex = makeRegex(timeZoneIds);
       }
-      // Order by length for regex
-      Collections.sort(timeZoneIds, STRING_LENGTH_REV_COMPARATOR);
-      timeZoneIdsRegex = makeRegex(timeZoneIds);
     }
 
     public TimeZoneIdComponent()
@@ -590,12 +607,12 @@ public class TimeFormatter {
 
     private static DateTimeZone parseDateTimeZone(String str) {
       str = str.toLowerCase();
-      DateTimeZone v = timeZonesById.get(str);
+      DateTimeZone v = TimeZoneIds.timeZonesById.get(str);
       return v;
     }
 
     protected StringBuilder appendRegex0(StringBuilder sb) {
-      sb.append(timeZoneIdsRegex);
+      sb.append(TimeZoneIds.timeZoneIdsRegex);
       return sb;
     }
 
@@ -610,6 +627,8 @@ public class TimeFormatter {
 
   private static class TimeZoneComponent extends FormatComponent
   {
+    private static final long serialVersionUID = 1L;
+
     Locale locale;
 
     static Map<Locale, CollectionValuedMap<String, DateTimeZone>> timeZonesByName = Generics.newHashMap();
@@ -619,6 +638,11 @@ public class TimeFormatter {
     public TimeZoneComponent(Locale locale)
     {
       this.locale = locale;
+      ensureTimeZoneNames(locale);
+    }
+
+    /** The names are made when a component is, and when one which was read in is first used */
+    private static void ensureTimeZoneNames(Locale locale) {
       synchronized (TimeZoneComponent.class) {
         String regex = timeZoneRegexes.get(locale);
         if (regex == null) {
@@ -631,7 +655,7 @@ public class TimeFormatter {
       long time1 = new SUTime.IsoDate(2013,1,1).getJodaTimeInstant().getMillis();
       long time2 = new SUTime.IsoDate(2013,6,1).getJodaTimeInstant().getMillis();
       CollectionValuedMap<String,DateTimeZone> tzMap = new CollectionValuedMap<>();
-      for (DateTimeZone dtz:TimeZoneIdComponent.timeZonesById.values()) {
+      for (DateTimeZone dtz:TimeZoneIdComponent.TimeZoneIds.timeZonesById.values()) {
         // standard timezones
         tzMap.add(dtz.getShortName(time1, locale).toLowerCase(), dtz);
         tzMap.add(dtz.getName(time1, locale).toLowerCase(), dtz);
@@ -656,6 +680,7 @@ public class TimeFormatter {
       // TODO: do something about these multiple timezones that match the same name...
       // pick one based on location
       str = str.toLowerCase();
+      ensureTimeZoneNames(locale);
       CollectionValuedMap<String,DateTimeZone> tzMap = timeZonesByName.get(locale);
       Collection<DateTimeZone> v = tzMap.get(str);
       if (v == null || v.isEmpty()) return null;
@@ -679,6 +704,7 @@ public class TimeFormatter {
 
 
   private static class LiteralComponent extends FormatComponent {
+    private static final long serialVersionUID = 1L;
 
     private final String text;
 
@@ -696,6 +722,7 @@ public class TimeFormatter {
 
 
   private static class RegexComponent extends FormatComponent {
+    private static final long serialVersionUID = 1L;
 
     private final String regex;
 
@@ -712,11 +739,13 @@ public class TimeFormatter {
   }
 
 
-  private static class FormatterBuilder {
+  private static class FormatterBuilder implements Serializable {
+    private static final long serialVersionUID = 1L;
 
     boolean useRelaxedHour = true;
     Locale locale;
-    DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
+    // Only needed while the format is being built
+    transient DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder();
     List<FormatComponent> pieces = new ArrayList<>();
     int curGroup = 0;
 
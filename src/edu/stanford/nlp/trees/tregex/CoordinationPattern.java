@@ -23,6 +23,11 @@ class CoordinationPattern extends TregexPattern {
     //    System.out.println("Made " + (isConj ? "and " : "or ") + "node with " + children.size() + " children.");
   }
 
+  /** Whether this is an "and" of its children rather than an "or" */
+  boolean isConjunction() {
+    return isConj;
+  }
+
   @Override
   public List<TregexPattern> getChildren() {
     return children;
@@ -269,6 +269,34 @@ public class DescriptionPattern extends TregexPattern  {
     return sb.toString();
   }
 
+  Relation relation() {
+    return rel;
+  }
+
+  /**
+   * The labels one of which a node has to have to match this description,
+   * or null if that isn't known from the description alone, as for
+   * regular expressions, negated descriptions, basic categories and
+   * backreferences.  This doesn't depend on whether the pattern is
+   * negated or optional.
+   */
+  Set<String> requiredLabels() {
+    if (negDesc || basicCatFunction != null || descriptionMode == null) {
+      return null;
+    }
+    switch (descriptionMode) {
+    case EXACT:
+      return Collections.singleton(exactMatch);
+    case STRINGS:
+      if (stringFilter instanceof ArrayStringFilter && ((ArrayStringFilter) stringFilter).mode() == ArrayStringFilter.Mode.EXACT) {
+        return new HashSet<>(((ArrayStringFilter) stringFilter).words());
+      }
+      return null;
+    default:
+      return null;
+    }
+  }
+
   public void setChild(TregexPattern n) {
     child = n;
   }
@@ -209,6 +209,16 @@ abstract class Relation implements Serializable {
     return symbol;
   }
 
+  /** Whether the first node of this relation has to be the parent of the second, as with {@code <} and {@code <1} */
+  boolean isParentOf() {
+    return this == PARENT_OF || this == HAS_ONLY_CHILD || this instanceof HasIthChild;
+  }
+
+  /** Whether the first node of this relation has to be a child of the second, as with {@code >} and {@code >1} */
+  boolean isChildOf() {
+    return this == CHILD_OF || this == ONLY_CHILD_OF || this instanceof IthChildOf;
+  }
+
   /**
    * This abstract Iterator implements a NULL iterator, but by subclassing and
    * overriding advance and/or initialize, it is an efficient implementation.
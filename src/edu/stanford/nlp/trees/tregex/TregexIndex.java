@@ -0,0 +1,482 @@
+package edu.stanford.nlp.trees.tregex;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.io.RuntimeIOException;
+import edu.stanford.nlp.trees.DiskTreebank;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Treebank;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.StringUtils;
+import edu.stanford.nlp.util.Timing;
+import edu.stanford.nlp.util.logging.Redwood;
+
+/**
+ * An inverted index of a treebank, for running many Tregex patterns over
+ * a large treebank without matching each pattern at every node of every
+ * tree.  For each node label, the index has the trees with nodes with
+ * that label and where those nodes are, and for each pair of labels, the
+ * trees in which a node with the one label has a child with the other.
+ * <br>
+ * Before matching a pattern, {@link #candidateTrees} looks at the labels
+ * the pattern requires: those of the nodes which aren't negated, optional
+ * or in a disjunction, and whose descriptions are exact labels, such as
+ * {@code NP} or {@code /^(?:NN|NNS)$/}, and of the parent and child nodes
+ * of {@code <} and {@code >} relations between them.  Only the trees with
+ * all of those can match, and the rest need not be matched at all.  For
+ * the trees which can, {@link #matcher} gives a matcher which only tries
+ * the nodes with the label of the root of the pattern.  The matches are
+ * the same as those of {@link TregexPattern#matcher}, in the same order.
+ * <br>
+ * Trees are identified by their position in the treebank, counting from
+ * 0, so an index can only be used with the treebank it was made from.
+ * An index is made once with {@link #TregexIndex(Iterable)}, saved with
+ * {@link #save} and loaded again with {@link #load}.  It is also used by
+ * {@link TregexPattern#main} with the {@code -index} flag.
+ * <br>
+ * The main method of this class runs each pattern of a file, one per
+ * line, over a treebank, and reports the number of matches and the time
+ * taken:
+ * <br>
+ * {@code java edu.stanford.nlp.trees.tregex.TregexIndex -treebank path -index file -patterns file [-compare]}
+ * <br>
+ * The index file is made if it doesn't exist yet.  With {@code -compare},
+ * each pattern is also run without the index, to check the matches are
+ * the same and to compare the times.
+ */
+public class TregexIndex implements Serializable {
+
+  /** A logger for this class */
+  private static final Redwood.RedwoodChannels log = Redwood.channels(TregexIndex.class);
+
+  /** [tree]: the number of nodes of each tree, to check trees are the ones the index was made from */
+  private final int[] treeSizes;
+  /** For each label, where nodes with it are */
+  private final Map<String, Postings> labels;
+  /** For each parent label and child label, joined by a tab, the trees where a node with the one has a child with the other */
+  private final Map<String, int[]> parentChildPairs;
+
+  /** The trees a label is in, and the positions of its nodes in each of them */
+  private static class Postings implements Serializable {
+
+    /** The trees, in order */
+    final int[] trees;
+    /** [i]: where the node positions of trees[i] start in positions; with a final entry for the end */
+    final int[] starts;
+    /** The preorder positions of the nodes with the label, in each tree in turn */
+    final int[] positions;
+
+    Postings(int[] trees, int[] starts, int[] positions) {
+      this.trees = trees;
+      this.starts = starts;
+      this.positions = positions;
+    }
+
+    private static final long serialVersionUID = 1L;
+
+  } // end class Postings
+
+  /** A growable int array, for building the postings */
+  private static class IntList {
+
+    private int[] values = new int[4];
+    private int size;
+
+    void add(int value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size * 2);
+      }
+      values[size++] = value;
+    }
+
+    int last() {
+      return size == 0 ? -1 : values[size - 1];
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+
+  } // end class IntList
+
+  /**
+   * Indexes trees, which are numbered from 0 in the order they are given.
+   */
+  public TregexIndex(Iterable<Tree> trees) {
+    // (tree, position) pairs for each label
+    Map<String, IntList> nodes = Generics.newHashMap();
+    Map<String, IntList> pairs = Generics.newHashMap();
+    IntList sizes = new IntList();
+    int treeId = 0;
+    for (Tree tree : trees) {
+      int position = 0;
+      for (Tree node : tree) {
+        String label = node.value();
+        if (label != null) {
+          IntList list = nodes.computeIfAbsent(label, x -> new IntList());
+          list.add(treeId);
+          list.add(position);
+          for (Tree child : node.children()) {
+            String childLabel = child.value();
+            if (childLabel != null) {
+              IntList pairTrees = pairs.computeIfAbsent(label + '\t' + childLabel, x -> new IntList());
+              if (pairTrees.last() != treeId) {
+                pairTrees.add(treeId);
+              }
+            }
+          }
+        }
+        position++;
+      }
+      sizes.add(position);
+      treeId++;
+    }
+
+    treeSizes = sizes.toArray();
+    labels = Generics.newHashMap(nodes.size());
+    for (Map.Entry<String, IntList> entry : nodes.entrySet()) {
+      int[] treesAndPositions = entry.getValue().toArray();
+      IntList labelTrees = new IntList();
+      IntList starts = new IntList();
+      int[] positions = new int[treesAndPositions.length / 2];
+      for (int i = 0; i < positions.length; i++) {
+        int tree = treesAndPositions[2 * i];
+        if (labelTrees.last() != tree) {
+          labelTrees.add(tree);
+          starts.add(i);
+        }
+        positions[i] = treesAndPositions[2 * i + 1];
+      }
+      starts.add(positions.length);
+      labels.put(entry.getKey(), new Postings(labelTrees.toArray(), starts.toArray(), positions));
+    }
+    parentChildPairs = Generics.newHashMap(pairs.size());
+    for (Map.Entry<String, IntList> entry : pairs.entrySet()) {
+      parentChildPairs.put(entry.getKey(), entry.getValue().toArray());
+    }
+  }
+
+  /** The number of trees indexed */
+  public int size() {
+    return treeSizes.length;
+  }
+
+  /** Writes the index to a file, for {@link #load} */
+  public void save(String path) throws IOException {
+    IOUtils.writeObjectToFile(this, path);
+  }
+
+  /** Reads an index written with {@link #save} */
+  public static TregexIndex load(String path) throws IOException {
+    try {
+      return IOUtils.readObjectFromFile(path);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeIOException("Not a Tregex index: " + path, e);
+    }
+  }
+
+  /**
+   * The labels a pattern requires, found by {@link #addRequirements}.
+   * Each set is of alternatives, one of which every match needs.
+   */
+  private static class Requirements {
+    final List<Set<String>> labels = new ArrayList<>();
+    final List<Set<String>> pairs = new ArrayList<>();
+  }
+
+  /**
+   * Adds what a pattern requires of a tree for it to match to requirements.
+   * Negated and optional patterns and disjunctions require nothing, as a
+   * tree without their nodes may still match.
+   */
+  private static void addRequirements(TregexPattern pattern, Requirements requirements) {
+    if (pattern.isNegated() || pattern.isOptional()) {
+      return;
+    }
+    if (pattern instanceof CoordinationPattern) {
+      if (((CoordinationPattern) pattern).isConjunction()) {
+        for (TregexPattern child : pattern.getChildren()) {
+          addRequirements(child, requirements);
+        }
+      }
+      return;
+    }
+    DescriptionPattern description = (DescriptionPattern) pattern;
+    Set<String> labels = description.requiredLabels();
+    if (labels != null) {
+      requirements.labels.add(labels);
+      for (DescriptionPattern related : relatedNodes(description)) {
+        Set<String> relatedLabels = related.requiredLabels();
+        if (relatedLabels == null) {
+          continue;
+        }
+        if (related.relation().isParentOf()) {
+          requirements.pairs.add(pairs(labels, relatedLabels));
+        } else if (related.relation().isChildOf()) {
+          requirements.pairs.add(pairs(relatedLabels, labels));
+        }
+      }
+    }
+    for (TregexPattern child : description.getChildren()) {
+      addRequirements(child, requirements);
+    }
+  }
+
+  /** The required patterns of the nodes the node of this description is related to */
+  private static List<DescriptionPattern> relatedNodes(DescriptionPattern description) {
+    List<DescriptionPattern> related = new ArrayList<>();
+    List<TregexPattern> agenda = new ArrayList<>(description.getChildren());
+    while ( ! agenda.isEmpty()) {
+      TregexPattern pattern = agenda.remove(agenda.size() - 1);
+      if (pattern.isNegated() || pattern.isOptional()) {
+        continue;
+      }
+      if (pattern instanceof DescriptionPattern) {
+        related.add((DescriptionPattern) pattern);
+      } else if (((CoordinationPattern) pattern).isConjunction()) {
+        agenda.addAll(pattern.getChildren());
+      }
+    }
+    return related;
+  }
+
+  private static Set<String> pairs(Set<String> parents, Set<String> children) {
+    Set<String> pairs = new HashSet<>();
+    for (String parent : parents) {
+      for (String child : children) {
+        pairs.add(parent + '\t' + child);
+      }
+    }
+    return pairs;
+  }
+
+  /**
+   * The trees in which a pattern may match, in order; or null if the
+   * index doesn't rule out any of them.  The pattern can't match in any
+   * other tree.
+   */
+  public int[] candidateTrees(TregexPattern pattern) {
+    Requirements requirements = new Requirements();
+    addRequirements(pattern, requirements);
+    int[] candidates = null;
+    for (Set<String> alternatives : requirements.labels) {
+      int[] trees = null;
+      for (String label : alternatives) {
+        Postings postings = labels.get(label);
+        trees = union(trees, postings == null ? null : postings.trees);
+      }
+      candidates = intersection(candidates, trees == null ? new int[0] : trees);
+    }
+    for (Set<String> alternatives : requirements.pairs) {
+      int[] trees = null;
+      for (String pair : alternatives) {
+        trees = union(trees, parentChildPairs.get(pair));
+      }
+      candidates = intersection(candidates, trees == null ? new int[0] : trees);
+    }
+    return candidates;
+  }
+
+  /** The union of two sorted arrays, where null is empty */
+  private static int[] union(int[] a, int[] b) {
+    if (a == null) {
+      return b;
+    }
+    if (b == null) {
+      return a;
+    }
+    int[] union = new int[a.length + b.length];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < a.length || j < b.length) {
+      if (j == b.length || (i < a.length && a[i] < b[j])) {
+        union[size++] = a[i++];
+      } else if (i == a.length || b[j] < a[i]) {
+        union[size++] = b[j++];
+      } else {
+        union[size++] = a[i++];
+        j++;
+      }
+    }
+    return Arrays.copyOf(union, size);
+  }
+
+  /** The intersection of two sorted arrays, where null is everything */
+  private static int[] intersection(int[] a, int[] b) {
+    if (a == null) {
+      return b;
+    }
+    int[] intersection = new int[Math.min(a.length, b.length)];
+    int i = 0;
+    int j = 0;
+    int size = 0;
+    while (i < a.length && j < b.length) {
+      if (a[i] < b[j]) {
+        i++;
+      } else if (b[j] < a[i]) {
+        j++;
+      } else {
+        intersection[size++] = a[i++];
+        j++;
+      }
+    }
+    return Arrays.copyOf(intersection, size);
+  }
+
+  /**
+   * The preorder positions in a tree of the nodes at which a pattern may
+   * match, in order; or null if the index doesn't rule out any of them.
+   */
+  public int[] candidateNodes(TregexPattern pattern, int treeId) {
+    if ( ! (pattern instanceof DescriptionPattern)) {
+      return null;
+    }
+    Set<String> rootLabels = ((DescriptionPattern) pattern).requiredLabels();
+    if (rootLabels == null) {
+      return null;
+    }
+    int[] positions = null;
+    for (String label : rootLabels) {
+      Postings postings = labels.get(label);
+      if (postings == null) {
+        continue;
+      }
+      int i = Arrays.binarySearch(postings.trees, treeId);
+      if (i >= 0) {
+        positions = union(positions, Arrays.copyOfRange(postings.positions, postings.starts[i], postings.starts[i + 1]));
+      }
+    }
+    return positions == null ? new int[0] : positions;
+  }
+
+  /**
+   * A matcher for a pattern on a tree of the index, which finds the same
+   * matches as {@code pattern.matcher(tree)}, but whose {@link TregexMatcher#find()}
+   * only tries the nodes given by {@link #candidateNodes}.
+   *
+   * @throws IllegalArgumentException If the tree isn't the one the index has with this number
+   */
+  public TregexMatcher matcher(TregexPattern pattern, Tree tree, int treeId) {
+    if (treeId < 0 || treeId >= treeSizes.length || tree.size() != treeSizes[treeId]) {
+      throw new IllegalArgumentException("Tree " + treeId + " is not the tree indexed with that number; is the index of this treebank?");
+    }
+    TregexMatcher matcher = pattern.matcher(tree);
+    int[] positions = candidateNodes(pattern, treeId);
+    if (positions != null) {
+      List<Tree> nodes = new ArrayList<>(positions.length);
+      if (positions.length > 0) {
+        int position = 0;
+        int next = 0;
+        for (Iterator<Tree> it = tree.iterator(); next < positions.length; position++) {
+          Tree node = it.next();
+          if (position == positions[next]) {
+            nodes.add(node);
+            next++;
+          }
+        }
+      }
+      matcher.findOnlyAt(nodes);
+    }
+    return matcher;
+  }
+
+  /** Whether a tree is one of the candidates returned by {@link #candidateTrees} */
+  public static boolean isCandidate(int[] candidates, int treeId) {
+    return candidates == null || Arrays.binarySearch(candidates, treeId) >= 0;
+  }
+
+  /** The index in a file, which is made and saved there first if it doesn't exist yet */
+  public static TregexIndex loadOrMake(String path, Treebank treebank) throws IOException {
+    if (new File(path).exists()) {
+      return load(path);
+    }
+    log.info("Indexing trees into " + path);
+    TregexIndex index = new TregexIndex(treebank);
+    index.save(path);
+    return index;
+  }
+
+  /** Counts the matches of a pattern over a treebank, with an index or, if it is null, without */
+  private static int countMatches(TregexPattern pattern, List<Tree> trees, TregexIndex index) {
+    int numMatches = 0;
+    int[] candidates = (index == null) ? null : index.candidateTrees(pattern);
+    for (int treeId = 0; treeId < trees.size(); treeId++) {
+      if ( ! isCandidate(candidates, treeId)) {
+        continue;
+      }
+      Tree tree = trees.get(treeId);
+      TregexMatcher matcher = (index == null) ? pattern.matcher(tree) : index.matcher(pattern, tree, treeId);
+      while (matcher.find()) {
+        numMatches++;
+      }
+    }
+    return numMatches;
+  }
+
+  public static void main(String[] args) throws IOException {
+    Map<String, Integer> flagMap = Generics.newHashMap();
+    flagMap.put("-treebank", 1);
+    flagMap.put("-index", 1);
+    flagMap.put("-patterns", 1);
+    flagMap.put("-compare", 0);
+    Map<String, String[]> argsMap = StringUtils.argsToMap(args, flagMap);
+    if ( ! argsMap.containsKey("-treebank") || ! argsMap.containsKey("-index")) {
+      log.info("Usage: java edu.stanford.nlp.trees.tregex.TregexIndex -treebank path -index file [-patterns file] [-compare]");
+      return;
+    }
+    Treebank treebank = new DiskTreebank(new TregexPattern.TRegexTreeReaderFactory());
+    treebank.loadPath(argsMap.get("-treebank")[0]);
+    Timing timing = new Timing();
+    TregexIndex index = loadOrMake(argsMap.get("-index")[0], treebank);
+    timing.done(log, "Index of " + index.size() + " trees ready");
+    if ( ! argsMap.containsKey("-patterns")) {
+      return;
+    }
+
+    List<Tree> trees = new ArrayList<>(treebank);
+    if (trees.size() != index.size()) {
+      throw new IllegalArgumentException("The index has " + index.size() + " trees but the treebank has " + trees.size());
+    }
+    boolean compare = argsMap.containsKey("-compare");
+    double indexedSeconds = 0.0;
+    double fullSeconds = 0.0;
+    for (String line : IOUtils.readLines(argsMap.get("-patterns")[0])) {
+      if (line.trim().isEmpty()) {
+        continue;
+      }
+      TregexPattern pattern = TregexPattern.compile(line.trim());
+      long start = System.nanoTime();
+      int numMatches = countMatches(pattern, trees, index);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      indexedSeconds += seconds;
+      int[] candidates = index.candidateTrees(pattern);
+      String report = String.format("%8d matches %8d candidate trees %8.3f s", numMatches, candidates == null ? trees.size() : candidates.length, seconds);
+      if (compare) {
+        start = System.nanoTime();
+        int fullMatches = countMatches(pattern, trees, null);
+        double full = (System.nanoTime() - start) / 1e9;
+        fullSeconds += full;
+        if (fullMatches != numMatches) {
+          throw new IllegalStateException("Pattern " + pattern + " has " + fullMatches + " matches without the index but " + numMatches + " with it");
+        }
+        report += String.format(" %8.3f s without the index", full);
+      }
+      System.out.println(report + "  " + line.trim());
+    }
+    System.out.printf("Total: %.3f s with the index%s%n", indexedSeconds, compare ? String.format(", %.3f s without", fullSeconds) : "");
+  }
+
+  private static final long serialVersionUID = 1L;
+
+}
@@ -51,6 +51,8 @@ public abstract class TregexMatcher {
   // these things are used by "find"
   private Iterator<Tree> findIterator;
   private Tree findCurrent;
+  /** If not null, the only nodes find() tries to match at; see {@link TregexIndex} */
+  private List<Tree> findCandidates;
 
   final HeadFinder headFinder;
 
@@ -131,7 +133,7 @@ public abstract class TregexMatcher {
       if (root == null) {
         return false;
       }
-      findIterator = root.iterator();
+      findIterator = (findCandidates == null) ? root.iterator() : findCandidates.iterator();
     }
     if (findCurrent != null && matches()) {
       return true;
@@ -146,6 +148,17 @@ public abstract class TregexMatcher {
     return false;
   }
 
+  /**
+   * Makes {@link #find()} only look for matches rooted at these nodes,
+   * which are in the order root.iterator() gives them.  This is for when
+   * it is known that nothing else can match.
+   */
+  void findOnlyAt(List<Tree> nodes) {
+    findCandidates = nodes;
+    findIterator = null;
+    findCurrent = null;
+  }
+
   /**
    * Similar to {@code find()}, but matches only if {@code node} is
    * the root of the match.  All other matches are ignored.  If you
@@ -588,6 +588,8 @@ public abstract class TregexPattern implements Serializable  {
    * <li> {@code -filter} causes this to act as a filter, reading tree input from stdin
    * <li> {@code -T} causes all trees to be printed as processed (for debugging purposes).  Otherwise only matching nodes are printed.
    * <li> {@code -macros <filename>} filename with macro substitutions to use.  file with tab separated lines original-tab-replacement
+   * <li> {@code -index <filename>} use the {@link TregexIndex} of the trees in this file to skip the trees and nodes which can't match.
+   *     If the file doesn't exist, the trees are indexed first and the index is saved there, to be used the next time.
    * </ul>
    */
   public static void main(String[] args) throws IOException {
@@ -623,6 +625,7 @@ public abstract class TregexPattern implements Serializable  {
     String rootLabelOnly = "-u";
     String oneLine = "-s";
     String uniqueTrees = "-q";
+    String indexOption = "-index";
 
     Map<String,Integer> flagMap = Generics.newHashMap();
     flagMap.put(extractSubtreesOption,2);
@@ -648,6 +651,7 @@ public abstract class TregexPattern implements Serializable  {
     flagMap.put(rootLabelOnly, 0);
     flagMap.put(oneLine, 0);
     flagMap.put(uniqueTrees, 0);
+    flagMap.put(indexOption, 1);
     Map<String, String[]> argsMap = StringUtils.argsToMap(args, flagMap);
     args = argsMap.get(null);
 
@@ -781,7 +785,11 @@ public abstract class TregexPattern implements Serializable  {
         treebank = new DiskTreebank(trf, encoding);
         treebank.loadPath(args[last], extension, true);
       }
-      TRegexTreeVisitor vis = new TRegexTreeVisitor(p, handles, encoding);
+      TregexIndex index = null;
+      if (argsMap.containsKey(indexOption)) {
+        index = TregexIndex.loadOrMake(argsMap.get(indexOption)[0], treebank);
+      }
+      TRegexTreeVisitor vis = new TRegexTreeVisitor(p, handles, encoding, index);
 
       treebank.apply(vis);
       Timing.endTime();
@@ -839,9 +847,16 @@ public abstract class TregexPattern implements Serializable  {
     String[] handles;
     int numMatches;
 
-    TRegexTreeVisitor(TregexPattern p, String[] handles, String encoding) {
+    /** If not null, used to skip the trees and nodes which can't match */
+    private final TregexIndex index;
+    /** The trees which can match, from the index; null for all of them */
+    private final int[] candidateTrees;
+
+    TRegexTreeVisitor(TregexPattern p, String[] handles, String encoding, TregexIndex index) {
       this.p = p;
       this.handles = handles;
+      this.index = index;
+      this.candidateTrees = (index == null) ? null : index.candidateTrees(p);
       try {
         pw = new PrintWriter(new OutputStreamWriter(System.out, encoding),true);
       }
@@ -860,7 +875,17 @@ public abstract class TregexPattern implements Serializable  {
         pw.println("Next tree read:");
         tp.printTree(t,pw);
       }
-      TregexMatcher match = p.matcher(t);
+      TregexMatcher match;
+      if (index == null) {
+        match = p.matcher(t);
+      } else if (TregexIndex.isCandidate(candidateTrees, treeNumber - 1)) {
+        match = index.matcher(p, t, treeNumber - 1);
+      } else {
+        if (printNonMatchingTrees) {
+          tp.printTree(t, pw);
+        }
+        return;
+      }
       if(printNonMatchingTrees) {
         if(match.find())
           numMatches++;
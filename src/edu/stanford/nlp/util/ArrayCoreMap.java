@@ -1,9 +1,12 @@
 package edu.stanford.nlp.util;
 
 import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import edu.stanford.nlp.util.logging.PrettyLogger;
@@ -25,6 +28,19 @@ import edu.stanford.nlp.util.logging.Redwood.RedwoodChannels;
  * Equality is defined over the complete set of keys and values currently
  * stored in the map.  Because this class is mutable, it should not be used
  * as a key in a Map.
+ * <p>
+ * Lookups normally scan the key array, which is fast for the handful of
+ * keys most maps hold but adds up for tokens carrying dozens of annotations.
+ * A map can instead be <i>key indexed</i>: every key class is given a small
+ * dense integer id the first time any map sees it, and the map keeps a
+ * {@code byte[]} from id to position in its arrays, making get and set
+ * constant time.  The arrays remain the actual storage, so iteration order,
+ * equality and serialization are the same in both modes.  Keys whose id is
+ * beyond {@link #MAX_INDEXED_KEY_ID} fall back to the scan.  Indexing is
+ * turned on for a single map with {@link #setKeyIndexed(boolean)}, or for
+ * every new map (including every CoreLabel and Annotation) with the system
+ * property {@code edu.stanford.nlp.util.ArrayCoreMap.keyIndexed=true} or
+ * {@link #setKeyIndexedByDefault(boolean)}.
  *
  * @author dramage
  * @author rafferty
@@ -49,6 +65,24 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   /** Total number of elements actually in keys,values */
   private int size; // = 0;
 
+  /**
+   * Key ids at or above this value are never indexed.  Realistic pipelines
+   * use somewhat more than a hundred distinct annotation keys in total.
+   */
+  static final int MAX_INDEXED_KEY_ID = 256;
+
+  /** Positions are stored as unsigned bytes, with 0 meaning absent */
+  private static final int MAX_INDEXED_SIZE = 255;
+
+  private static volatile boolean keyIndexedByDefault = Boolean.getBoolean("edu.stanford.nlp.util.ArrayCoreMap.keyIndexed");
+
+  /**
+   * If non-null, positions[KeyIds.of(key)] is one more than the position of
+   * key in the keys array, or 0 if the key is not present.  It only covers
+   * the ids up to the largest one set in this map so far.
+   */
+  private transient byte[] positions; // = null;
+
   /**
    * Default constructor - initializes with default initial annotation
    * capacity of 4.
@@ -67,6 +101,9 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     keys = ErasureUtils.uncheckedCast(new Class[capacity]);
     values = new Object[capacity];
     // size starts at 0
+    if (keyIndexedByDefault) {
+      positions = new byte[0];
+    }
   }
 
   /**
@@ -77,6 +114,11 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     size = other.size;
     keys = Arrays.copyOf(other.keys, size);
     values = Arrays.copyOf(other.values, size);
+    if (other.positions != null) {
+      positions = other.positions.clone();
+    } else if (keyIndexedByDefault) {
+      buildPositions();
+    }
   }
 
   /**
@@ -97,6 +139,71 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       this.values[i] = other.get(key);
       i++;
     }
+    if (keyIndexedByDefault) {
+      buildPositions();
+    }
+  }
+
+  /**
+   * Turns the key index for this map on or off.
+   * See the class documentation for details.
+   */
+  public void setKeyIndexed(boolean keyIndexed) {
+    if (!keyIndexed) {
+      positions = null;
+    } else if (positions == null) {
+      buildPositions();
+    }
+  }
+
+  /** Whether or not lookups in this map go through the key index */
+  public boolean isKeyIndexed() {
+    return positions != null;
+  }
+
+  /**
+   * Sets whether maps created from now on are key indexed.
+   * Existing maps are unaffected.
+   */
+  public static void setKeyIndexedByDefault(boolean keyIndexed) {
+    keyIndexedByDefault = keyIndexed;
+  }
+
+  /** Rebuilds the index from the contents of the keys array */
+  private void buildPositions() {
+    if (size > MAX_INDEXED_SIZE) {
+      positions = null;
+      return;
+    }
+    int maxId = -1;
+    for (int i = 0; i < size; i++) {
+      int id = KeyIds.of(keys[i]);
+      if (id < MAX_INDEXED_KEY_ID && id > maxId) {
+        maxId = id;
+      }
+    }
+    positions = new byte[maxId + 1];
+    for (int i = 0; i < size; i++) {
+      int id = KeyIds.of(keys[i]);
+      if (id < MAX_INDEXED_KEY_ID) {
+        positions[id] = (byte) (i + 1);
+      }
+    }
+  }
+
+  /**
+   * Returns the position of key in the arrays, -1 if it is absent, or
+   * -2 if the index can't answer and the keys need to be scanned.
+   */
+  private int indexedPosition(Class<?> key) {
+    int id = KeyIds.of(key);
+    if (id >= MAX_INDEXED_KEY_ID) {
+      return -2;
+    }
+    if (id >= positions.length) {
+      return -1;
+    }
+    return (positions[id] & 0xff) - 1;
   }
 
   /**
@@ -105,6 +212,17 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   @Override
   @SuppressWarnings("unchecked")
   public <VALUE> VALUE get(Class<? extends Key<VALUE>> key) {
+    if (positions != null) {
+      int i = indexedPosition(key);
+      if (i >= 0) {
+        if (listener != null) {
+          listener.accept(key);  // For tracking which entities were returned by the CoreMap
+        }
+        return (VALUE) values[i];
+      } else if (i == -1) {
+        return null;
+      }
+    }
     for (int i = 0; i < size; i++) {
       if (key == keys[i]) {
         if (listener != null) {
@@ -125,11 +243,18 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   public <VALUE> VALUE set(Class<? extends Key<VALUE>> key, VALUE value) {
 
     // search array for existing value to replace
-    for (int i = 0; i < size; i++) {
-      if (keys[i] == key) {
-        VALUE rv = (VALUE)values[i];
-        values[i] = value;
-        return rv;
+    int found = positions != null ? indexedPosition(key) : -2;
+    if (found >= 0) {
+      VALUE rv = (VALUE)values[found];
+      values[found] = value;
+      return rv;
+    } else if (found == -2) {
+      for (int i = 0; i < size; i++) {
+        if (keys[i] == key) {
+          VALUE rv = (VALUE)values[i];
+          values[i] = value;
+          return rv;
+        }
       }
     }
     // not found in arrays, add to end ...
@@ -150,6 +275,20 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     values[size] = value;
     size++;
 
+    if (positions != null) {
+      if (size > MAX_INDEXED_SIZE) {
+        positions = null;
+      } else {
+        int id = KeyIds.of(key);
+        if (id < MAX_INDEXED_KEY_ID) {
+          if (id >= positions.length) {
+            positions = Arrays.copyOf(positions, id + 1);
+          }
+          positions[id] = (byte) size;
+        }
+      }
+    }
+
     return null;
   }
 
@@ -226,6 +365,19 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
           System.arraycopy(values, i+1, values, i, size-(i+1));
         }
         size--;
+        if (positions != null) {
+          // every key after position i has moved down by one
+          int id = KeyIds.of(key);
+          if (id < positions.length) {
+            positions[id] = 0;
+          }
+          for (int j = i; j < size; j++) {
+            id = KeyIds.of(keys[j]);
+            if (id < positions.length) {
+              positions[id] = (byte) (j + 1);
+            }
+          }
+        }
         break;
       }
     }
@@ -237,6 +389,12 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
    */
   @Override
   public <VALUE> boolean containsKey(Class<? extends Key<VALUE>> key) {
+    if (positions != null) {
+      int i = indexedPosition(key);
+      if (i != -2) {
+        return i >= 0;
+      }
+    }
     for (int i = 0; i < size; i++) {
       if (keys[i] == key) {
         return true;
@@ -480,7 +638,7 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
       return obj.equals(this);
     }
 
-    if (obj instanceof ArrayCoreMap) {
+    if (obj instanceof ArrayCoreMap && ((ArrayCoreMap) obj).valuesInArrays()) {
       // specialized equals for ArrayCoreMap
       return equals((ArrayCoreMap)obj);
     }
@@ -515,6 +673,16 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
   }
 
 
+  /**
+   * Whether all of the entries of this map are in its key and value
+   * arrays.  Subclasses which keep some values elsewhere (and override
+   * get, set, keySet, etc. to find them) must return false, so that
+   * equals compares them entry by entry instead of array by array.
+   */
+  protected boolean valuesInArrays() {
+    return true;
+  }
+
   private boolean equals(ArrayCoreMap other) {
     TwoDimensionalMap<CoreMap, CoreMap, Boolean> calledMap = equalsCalled.get();
     boolean createdCalledMap = (calledMap == null);
@@ -641,6 +809,43 @@ public class ArrayCoreMap implements CoreMap /*, Serializable */ {
     out.defaultWriteObject();
   }
 
+  /**
+   * Key ids are only meaningful within one JVM, so the index is not
+   * serialized but rebuilt here if new maps are indexed by default.
+   */
+  private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+    in.defaultReadObject();
+    if (keyIndexedByDefault) {
+      buildPositions();
+    }
+  }
+
+
+  /**
+   * Assigns each key class a dense integer id, in the order the classes
+   * are first seen.  The ClassValue makes repeated lookups cheap, and the
+   * map makes sure two threads can never give one class different ids.
+   */
+  private static class KeyIds {
+
+    private static final ConcurrentMap<Class<?>, Integer> ids = new ConcurrentHashMap<>();
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private static final ClassValue<Integer> cache = new ClassValue<Integer>() {
+      @Override
+      protected Integer computeValue(Class<?> type) {
+        return ids.computeIfAbsent(type, k -> nextId.getAndIncrement());
+      }
+    };
+
+    private KeyIds() {} // static methods
+
+    static int of(Class<?> key) {
+      return cache.get(key);
+    }
+  }
+
   // TODO: make prettyLog work in the situation of loops in the object graph
 
   /**
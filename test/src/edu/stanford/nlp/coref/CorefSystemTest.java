@@ -0,0 +1,234 @@
+package edu.stanford.nlp.coref;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import edu.stanford.nlp.coref.data.CorefChain;
+import edu.stanford.nlp.coref.data.CorefCluster;
+import edu.stanford.nlp.coref.data.Dictionaries;
+import edu.stanford.nlp.coref.data.Document;
+import edu.stanford.nlp.coref.data.DocumentMaker;
+import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.semgraph.SemanticGraphCoreAnnotations;
+import edu.stanford.nlp.trees.UniversalEnglishGrammaticalRelations;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.Pair;
+
+/**
+ * Checks that running coref over windows of sentences gives the chains,
+ * mentions and tokens that running it over the whole document does.
+ */
+public class CorefSystemTest extends TestCase {
+
+  /** Every sentence names Smith, and every other one quotes him */
+  private static final String[] SENTENCES = {
+      "Smith met Jones .",
+      "Smith said `` Jones is late . ''",
+      "Smith waited .",
+      "Smith said `` Brown is here . ''",
+      "Smith left .",
+      "Smith said `` Jones is gone . ''",
+      "Smith sat .",
+      "Smith said `` Brown is late . ''",
+      "Smith slept .",
+      "Smith said `` Jones is here . ''",
+  };
+
+  /** The sentences which start a new paragraph */
+  private static final int[] PARAGRAPHS = { 3, 6 };
+
+  /**
+   * Links each mention to the mentions with the same head in its own
+   * sentence and the sentence before, so the chains of the whole
+   * document are the same as those of windows that overlap by a sentence.
+   */
+  private static class SameHeadAlgorithm implements CorefAlgorithm {
+    /** The clusters of more than one mention each document came with */
+    final List<List<Set<Mention>>> givenClusters = new ArrayList<>();
+
+    @Override
+    public void runCoref(Document document) {
+      List<Set<Mention>> given = new ArrayList<>();
+      for (CorefCluster c : document.corefClusters.values()) {
+        if (c.size() > 1) {
+          Set<Mention> mentions = Collections.newSetFromMap(new IdentityHashMap<>());
+          mentions.addAll(c.getCorefMentions());
+          given.add(mentions);
+        }
+      }
+      givenClusters.add(given);
+
+      List<Mention> mentions = CorefUtils.getSortedMentions(document);
+      for (int i = 0; i < mentions.size(); i++) {
+        for (int j = 0; j < i; j++) {
+          Mention m = mentions.get(i);
+          Mention antecedent = mentions.get(j);
+          if (m.headString.equals(antecedent.headString) && m.sentNum - antecedent.sentNum <= 1) {
+            CorefUtils.mergeCoreferenceClusters(new Pair<>(antecedent.mentionID, m.mentionID), document);
+          }
+        }
+      }
+    }
+  }
+
+  private static Dictionaries emptyDictionaries() throws IOException {
+    File empty = File.createTempFile("CorefSystemTest", ".txt");
+    empty.deleteOnExit();
+    String path = empty.getPath();
+    return new Dictionaries("en", path, path, path, null, null, null, null, null,
+        path, path, path, path, false, null, null, null);
+  }
+
+  private static CoreLabel token(String word, int index, int sentenceIndex, int begin) {
+    CoreLabel token = new CoreLabel();
+    token.setWord(word);
+    token.setValue(word);
+    token.setOriginalText(word);
+    token.setIndex(index);
+    token.setSentIndex(sentenceIndex);
+    token.setBeginPosition(begin);
+    token.setEndPosition(begin + word.length());
+    boolean name = Character.isUpperCase(word.charAt(0));
+    token.setTag(word.equals("said") ? "VBD" : name ? "NNP" : "NN");
+    token.setLemma(word.equals("said") ? "say" : word.toLowerCase());
+    token.setNER(name ? "PERSON" : "O");
+    return token;
+  }
+
+  /** Each sentence of SENTENCES, with a mention for each name and a subject for each said */
+  private static Annotation annotation() {
+    StringBuilder text = new StringBuilder();
+    List<CoreMap> sentences = new ArrayList<>();
+    List<CoreLabel> allTokens = new ArrayList<>();
+    for (int i = 0; i < SENTENCES.length; i++) {
+      for (int paragraph : PARAGRAPHS) {
+        if (paragraph == i) {
+          text.append("\n\n");
+        }
+      }
+      List<CoreLabel> tokens = new ArrayList<>();
+      SemanticGraph dependencies = new SemanticGraph();
+      for (String word : SENTENCES[i].split(" ")) {
+        CoreLabel token = token(word, tokens.size() + 1, i, text.length());
+        text.append(word).append(' ');
+        tokens.add(token);
+        dependencies.addVertex(new IndexedWord(token));
+      }
+      dependencies.addRoot(dependencies.getNodeByIndex(1));
+      if (tokens.get(1).word().equals("said")) {
+        dependencies.addEdge(dependencies.getNodeByIndex(2), dependencies.getNodeByIndex(1),
+            UniversalEnglishGrammaticalRelations.NOMINAL_SUBJECT, 1.0, false);
+      }
+      List<Mention> mentions = new ArrayList<>();
+      for (int j = 0; j < tokens.size(); j++) {
+        if (tokens.get(j).tag().equals("NNP")) {
+          Mention m = new Mention(-1, j, j + 1, tokens, dependencies, dependencies, new ArrayList<>(tokens.subList(j, j + 1)));
+          m.headIndex = j;
+          m.headWord = tokens.get(j);
+          mentions.add(m);
+        }
+      }
+
+      CoreMap sentence = new ArrayCoreMap();
+      sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+      sentence.set(CoreAnnotations.SentenceIndexAnnotation.class, i);
+      sentence.set(SemanticGraphCoreAnnotations.BasicDependenciesAnnotation.class, dependencies);
+      sentence.set(CorefCoreAnnotations.CorefMentionsAnnotation.class, mentions);
+      sentences.add(sentence);
+      allTokens.addAll(tokens);
+    }
+    Annotation annotation = new Annotation(text.toString());
+    annotation.set(CoreAnnotations.TokensAnnotation.class, allTokens);
+    annotation.set(CoreAnnotations.SentencesAnnotation.class, sentences);
+    return annotation;
+  }
+
+  private static List<Mention> mentions(Annotation annotation) {
+    List<Mention> mentions = new ArrayList<>();
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      mentions.addAll(sentence.get(CorefCoreAnnotations.CorefMentionsAnnotation.class));
+    }
+    return mentions;
+  }
+
+  public void testWindows() throws Exception {
+    DocumentMaker docMaker = new DocumentMaker(new Properties(), emptyDictionaries());
+
+    Annotation whole = annotation();
+    new CorefSystem(docMaker, new SameHeadAlgorithm(), false, false).annotate(whole);
+    Annotation windowed = annotation();
+    SameHeadAlgorithm algorithm = new SameHeadAlgorithm();
+    // windows of sentences 0-3, 2-5, 4-7 and 6-9
+    new CorefSystem(docMaker, algorithm, false, false, 4, 2).annotate(windowed);
+    assertEquals(4, algorithm.givenClusters.size());
+
+    Map<Integer, CorefChain> chains = windowed.get(CorefCoreAnnotations.CorefChainAnnotation.class);
+    assertEquals(whole.get(CorefCoreAnnotations.CorefChainAnnotation.class), chains);
+    // Smith's chain was joined through the sentences the windows share
+    List<Mention> mentions = mentions(windowed);
+    Mention firstSmith = mentions.get(0);
+    assertEquals(SENTENCES.length, chains.get(firstSmith.corefClusterID).getMentionsInTextualOrder().size());
+
+    List<Mention> wholeMentions = mentions(whole);
+    for (int i = 0; i < mentions.size(); i++) {
+      Mention m = mentions.get(i);
+      Mention expected = wholeMentions.get(i);
+      assertEquals(i, m.mentionID);
+      assertEquals(expected.mentionID, m.mentionID);
+      assertEquals(expected.sentNum, m.sentNum);
+      assertEquals(expected.corefClusterID, m.corefClusterID);
+      assertEquals(expected.paragraph, m.paragraph);
+      assertEquals(expected.utter, m.utter);
+    }
+
+    // each window after the first started with Smith's mentions in the sentences it shares with the window before in one cluster
+    for (int window = 1; window < 4; window++) {
+      List<Set<Mention>> given = algorithm.givenClusters.get(window);
+      assertEquals(1, given.size());
+      Set<Mention> smiths = given.get(0);
+      assertEquals(2, smiths.size());
+      for (Mention m : smiths) {
+        assertEquals("Smith", m.headWord.word());
+        assertTrue(m.sentNum == window * 2 || m.sentNum == window * 2 + 1);
+      }
+    }
+
+    // the tokens have the paragraphs, utterances and speakers of the whole document
+    List<CoreLabel> tokens = windowed.get(CoreAnnotations.TokensAnnotation.class);
+    List<CoreLabel> wholeTokens = whole.get(CoreAnnotations.TokensAnnotation.class);
+    int quotes = 0;
+    for (int i = 0; i < tokens.size(); i++) {
+      CoreLabel token = tokens.get(i);
+      CoreLabel expected = wholeTokens.get(i);
+      String where = token.word() + " in sentence " + token.sentIndex();
+      assertEquals(where, expected.get(CoreAnnotations.ParagraphAnnotation.class), token.get(CoreAnnotations.ParagraphAnnotation.class));
+      assertEquals(where, expected.get(CoreAnnotations.UtteranceAnnotation.class), token.get(CoreAnnotations.UtteranceAnnotation.class));
+      assertEquals(where, expected.get(CoreAnnotations.SpeakerAnnotation.class), token.get(CoreAnnotations.SpeakerAnnotation.class));
+      if (token.word().equals("is")) {
+        quotes++;
+        // each quotation is an utterance of its own, spoken by the Smith of its sentence
+        assertEquals(where, quotes, (int) token.get(CoreAnnotations.UtteranceAnnotation.class));
+        Mention smith = mentions(windowed).stream().filter(m -> m.sentNum == token.sentIndex()).findFirst().get();
+        assertEquals(where, Integer.toString(smith.mentionID), token.get(CoreAnnotations.SpeakerAnnotation.class));
+      }
+    }
+    assertEquals(5, quotes);
+    assertEquals(3, (int) tokens.get(tokens.size() - 1).get(CoreAnnotations.ParagraphAnnotation.class));
+  }
+
+}
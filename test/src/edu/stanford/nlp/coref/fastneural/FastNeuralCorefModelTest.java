@@ -0,0 +1,159 @@
+package edu.stanford.nlp.coref.fastneural;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.coref.data.Document;
+import edu.stanford.nlp.coref.data.Mention;
+import edu.stanford.nlp.coref.neural.EmbeddingExtractor;
+import edu.stanford.nlp.coref.statistical.CompressedFeatureVector;
+import edu.stanford.nlp.coref.statistical.Compressor;
+import edu.stanford.nlp.coref.statistical.DocumentExamples;
+import edu.stanford.nlp.coref.statistical.Example;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.IndexedWord;
+import edu.stanford.nlp.ling.SentenceUtils;
+import edu.stanford.nlp.neural.Embedding;
+import edu.stanford.nlp.neural.NeuralUtils;
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.stats.ClassicCounter;
+import edu.stanford.nlp.stats.Counter;
+
+/**
+ * Checks that a {@link FastNeuralCorefModel.DocumentScorer} gives the
+ * scores {@link FastNeuralCorefModel#score} gives one pair at a time.
+ */
+public class FastNeuralCorefModelTest extends TestCase {
+
+  private static final int EMBEDDING_SIZE = 3;
+  private static final int MENTION_SIZE = 5;
+  private static final int PAIR_SIZE = 4;
+
+  private final Random random = new Random(1234);
+
+  private final String[][] sentences = {
+    { "John", "told", "Mary", "that", "he", "liked", "her", "hat", "." },
+    { "She", "gave", "him", "the", "hat", "in", "1998", "." },
+  };
+
+  private final Map<String, Integer> pairFeatureIds = featureIds("same-head", "same-speaker", "relaxed-match");
+  private final Map<String, Integer> mentionFeatureIds = featureIds("pronoun", "proper", "nominal", "first");
+
+  private static Map<String, Integer> featureIds(String ... features) {
+    Map<String, Integer> ids = new HashMap<>();
+    for (String feature : features) {
+      ids.put(feature, ids.size());
+    }
+    return ids;
+  }
+
+  private SimpleMatrix random(int rows, int cols) {
+    return NeuralUtils.randomGaussian(rows, cols, random);
+  }
+
+  private FastNeuralCorefModel model() {
+    Map<String, SimpleMatrix> vectors = new HashMap<>();
+    for (String[] sentence : sentences) {
+      for (String word : sentence) {
+        vectors.put(word.replaceAll("\\d", "0").toLowerCase(), random(EMBEDDING_SIZE, 1));
+      }
+    }
+    vectors.put("<missing>", random(EMBEDDING_SIZE, 1));
+    vectors.put("*UNK*", random(EMBEDDING_SIZE, 1));
+    EmbeddingExtractor extractor = new EmbeddingExtractor(false, null, new Embedding(vectors), "<missing>");
+
+    int inputSize = 9 * EMBEDDING_SIZE + mentionFeatureIds.size();
+    int pairInputSize = pairFeatureIds.size() + 23;
+    List<SimpleMatrix> weights = new ArrayList<>(Arrays.asList(
+        random(MENTION_SIZE, inputSize), random(MENTION_SIZE, 1),
+        random(MENTION_SIZE, inputSize), random(MENTION_SIZE, 1),
+        random(PAIR_SIZE, pairInputSize), random(PAIR_SIZE, 1),
+        random(MENTION_SIZE, 1),
+        random(6, 2 * MENTION_SIZE + PAIR_SIZE), random(6, 1),
+        random(1, 6), random(1, 1)));
+    return new FastNeuralCorefModel(extractor, pairFeatureIds, mentionFeatureIds, weights);
+  }
+
+  private Counter<String> features(Map<String, Integer> featureIds) {
+    Counter<String> features = new ClassicCounter<>();
+    for (String feature : featureIds.keySet()) {
+      if (random.nextBoolean()) {
+        features.setCount(feature, random.nextInt(3) + 1);
+      }
+    }
+    // features the model doesn't know are left out
+    features.setCount("unknown", 1);
+    return features;
+  }
+
+  public void testDocumentScorer() {
+    FastNeuralCorefModel model = model();
+
+    // every word is a mention, so there are enough candidates for EJML to multiply the matrices both ways
+    Document document = new Document();
+    List<Mention> mentions = new ArrayList<>();
+    for (int sentNum = 0; sentNum < sentences.length; sentNum++) {
+      List<CoreLabel> words = SentenceUtils.toCoreLabelList(sentences[sentNum]);
+      for (int i = 0; i < words.size(); i++) {
+        Mention mention = new Mention();
+        mention.mentionID = mentions.size() + 1;
+        mention.mentionNum = mentions.size();
+        mention.sentNum = sentNum;
+        mention.startIndex = i;
+        mention.endIndex = i + 1;
+        mention.headIndex = i;
+        mention.sentenceWords = words;
+        mention.enhancedDependency = new SemanticGraph();
+        mention.headIndexedWord = new IndexedWord(words.get(i));
+        mentions.add(mention);
+        document.predictedMentionsByID.put(mention.mentionID, mention);
+      }
+    }
+
+    Compressor<String> compressor = new Compressor<>();
+    Map<Integer, CompressedFeatureVector> mentionFeatures = new HashMap<>();
+    for (Mention mention : mentions) {
+      mentionFeatures.put(mention.mentionID, compressor.compress(features(mentionFeatureIds)));
+    }
+    List<Example> examples = new ArrayList<>();
+    for (Mention anaphor : mentions) {
+      for (Mention antecedent : mentions.subList(0, anaphor.mentionNum)) {
+        examples.add(new Example(0, antecedent, anaphor, 0, compressor.compress(features(pairFeatureIds))));
+      }
+    }
+    DocumentExamples documentExamples = new DocumentExamples(0, examples, mentionFeatures);
+
+    FastNeuralCorefModel.DocumentScorer scorer = model.documentScorer(document, documentExamples, compressor);
+    Map<Integer, SimpleMatrix> antecedentCache = new HashMap<>();
+    Map<Integer, SimpleMatrix> anaphorCache = new HashMap<>();
+    for (Mention anaphor : mentions) {
+      List<Example> pairs = new ArrayList<>();
+      for (Example example : examples) {
+        if (example.mentionId2 == anaphor.mentionID) {
+          pairs.add(example);
+        }
+      }
+      double[] scores = scorer.score(anaphor.mentionID, pairs);
+      assertEquals(pairs.size() + 1, scores.length);
+      Counter<String> anaphorFeatures = compressor.uncompress(mentionFeatures.get(anaphor.mentionID));
+      assertEquals(model.score(null, anaphor, null, anaphorFeatures, null, antecedentCache, anaphorCache),
+          scores[0], 1e-12);
+      for (int i = 0; i < pairs.size(); i++) {
+        Example pair = pairs.get(i);
+        assertEquals(model.score(document.predictedMentionsByID.get(pair.mentionId1), anaphor,
+            compressor.uncompress(mentionFeatures.get(pair.mentionId1)), anaphorFeatures,
+            compressor.uncompress(pair.pairwiseFeatures), antecedentCache, anaphorCache),
+            scores[i + 1], 1e-12);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,54 @@
+package edu.stanford.nlp.coref.neural;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.ejml.simple.SimpleMatrix;
+
+import edu.stanford.nlp.neural.NeuralUtils;
+
+/**
+ * Checks that scoring the candidate antecedents of an anaphor together
+ * gives the same scores as scoring them one at a time.
+ */
+public class NeuralCorefModelTest extends TestCase {
+
+  public void testPairwiseScores() {
+    Random random = new Random(1234);
+    int embeddingSize = 6;
+    int numPairFeatures = 9;
+    // two hidden layers, then the score
+    List<SimpleMatrix> pairwiseModel = Arrays.asList(
+        NeuralUtils.randomGaussian(5, embeddingSize, random), NeuralUtils.randomGaussian(5, 1, random),
+        NeuralUtils.randomGaussian(4, 5, random), NeuralUtils.randomGaussian(4, 1, random),
+        NeuralUtils.randomGaussian(1, 4, random), NeuralUtils.randomGaussian(1, 1, random));
+    NeuralCorefModel model = new NeuralCorefModel(null, null,
+        NeuralUtils.randomGaussian(embeddingSize, numPairFeatures, random),
+        NeuralUtils.randomGaussian(embeddingSize, 1, random),
+        null, pairwiseModel, null);
+
+    SimpleMatrix anaphorEmbedding = NeuralUtils.randomGaussian(embeddingSize, 1, random);
+    // enough candidates that EJML multiplies the matrices both ways
+    for (int numCandidates : new int[] { 1, 3, 20 }) {
+      List<SimpleMatrix> antecedentEmbeddings = new ArrayList<>();
+      SimpleMatrix pairFeatures = new SimpleMatrix(numPairFeatures, numCandidates);
+      for (int i = 0; i < numCandidates; i++) {
+        antecedentEmbeddings.add(NeuralUtils.randomGaussian(embeddingSize, 1, random));
+        for (int j = 0; j < numPairFeatures; j++) {
+          pairFeatures.set(j, i, random.nextInt(2));
+        }
+      }
+      double[] scores = model.getPairwiseScores(antecedentEmbeddings, anaphorEmbedding, pairFeatures);
+      assertEquals(numCandidates, scores.length);
+      for (int i = 0; i < numCandidates; i++) {
+        assertEquals(model.getPairwiseScore(antecedentEmbeddings.get(i), anaphorEmbedding,
+            pairFeatures.extractVector(false, i)), scores[i], 1e-12);
+      }
+    }
+  }
+
+}
@@ -0,0 +1,131 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ie.HashedFeatureIndex;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.Triple;
+
+/**
+ * Checks that looking features up by hash finds exactly the features
+ * that building their Strings would, including for a model which was
+ * trained and saved without hashing.
+ */
+public class CRFHashedFeaturesTest {
+
+  private static final String[][] WORDS = {
+      { "the", "O" }, { "a", "O" }, { "went", "O" }, { "to", "O" }, { "in", "O" }, { "said", "O" },
+      { "John", "PERSON" }, { "Mary", "PERSON" }, { "Smith", "PERSON" }, { "McDonald", "PERSON" },
+      { "Paris", "LOCATION" }, { "Stanford", "LOCATION" }, { "York", "LOCATION" },
+      { "Google", "ORGANIZATION" }, { "Acme", "ORGANIZATION" }, { "IBM", "ORGANIZATION" },
+  };
+
+  private static List<List<CoreLabel>> makeDocuments(Random random, int numDocuments) {
+    List<List<CoreLabel>> documents = new ArrayList<>();
+    for (int d = 0; d < numDocuments; d++) {
+      List<CoreLabel> document = new ArrayList<>();
+      int length = 3 + random.nextInt(15);
+      for (int i = 0; i < length; i++) {
+        String[] word = WORDS[random.nextInt(WORDS.length)];
+        CoreLabel token = new CoreLabel();
+        token.setWord(word[0]);
+        token.setValue(word[0]);
+        token.set(CoreAnnotations.AnswerAnnotation.class, word[1]);
+        document.add(token);
+      }
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  private static CRFClassifier<CoreLabel> train(Random random) {
+    Properties props = new Properties();
+    for (String flag : new String[] { "useWord", "useNGrams", "usePrev", "useNext", "useClassFeature",
+                                      "useSequences", "usePrevSequences", "useTypeSeqs", "useTypeSeqs2",
+                                      "useDisjunctive", "useWordPairs", "useShapeStrings", "noMidNGrams" }) {
+      props.setProperty(flag, "true");
+    }
+    props.setProperty("wordShape", "chris2useLC");
+    props.setProperty("maxLeft", "1");
+    props.setProperty("maxIterations", "10");
+    props.setProperty("map", "word=0,answer=1");
+    CRFClassifier<CoreLabel> crf = new CRFClassifier<>(props);
+    crf.train(makeDocuments(random, 50));
+    return crf;
+  }
+
+  @Test
+  public void testIncrementalHash() {
+    long h = HashedFeatureIndex.START;
+    h = HashedFeatureIndex.append(h, "Smith");
+    h = HashedFeatureIndex.append(h, '-');
+    h = HashedFeatureIndex.append(h, "WORD|C");
+    Assert.assertEquals(HashedFeatureIndex.hash("Smith-WORD|C"), h);
+    Assert.assertEquals(HashedFeatureIndex.hash("null"), HashedFeatureIndex.append(HashedFeatureIndex.START, (String) null));
+    Assert.assertNotEquals(HashedFeatureIndex.hash("ab"), HashedFeatureIndex.hash("ba"));
+  }
+
+  @Test
+  public void testSameFeatures() {
+    Random random = new Random(4321);
+    CRFClassifier<CoreLabel> crf = train(random);
+
+    for (List<CoreLabel> document : makeDocuments(random, 20)) {
+      crf.flags.useHashedFeatureIds = false;
+      Triple<int[][][], int[], double[][][]> expected = crf.documentToDataAndLabels(document);
+      crf.flags.useHashedFeatureIds = true;
+      Triple<int[][][], int[], double[][][]> hashed = crf.documentToDataAndLabels(document);
+
+      Assert.assertArrayEquals(expected.second(), hashed.second());
+      for (int i = 0; i < document.size(); i++) {
+        for (int k = 0; k < crf.windowSize; k++) {
+          int[] expectedIds = expected.first()[i][k].clone();
+          int[] hashedIds = hashed.first()[i][k].clone();
+          Arrays.sort(expectedIds);
+          Arrays.sort(hashedIds);
+          Assert.assertArrayEquals(expectedIds, hashedIds);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testLoadWithHashing() throws Exception {
+    Random random = new Random(5678);
+    CRFClassifier<CoreLabel> crf = train(random);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+      crf.serializeClassifier(oos);
+    }
+    Properties props = new Properties();
+    props.setProperty("useHashedFeatureIds", "true");
+    CRFClassifier<CoreLabel> loaded = CRFClassifier.getClassifier(
+        new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())), props);
+    Assert.assertTrue(loaded.flags.useHashedFeatureIds);
+
+    for (List<CoreLabel> document : makeDocuments(random, 20)) {
+      List<String> expected = new ArrayList<>();
+      for (CoreLabel token : crf.classify(document)) {
+        expected.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      List<String> answers = new ArrayList<>();
+      for (CoreLabel token : loaded.classify(document)) {
+        answers.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+      }
+      Assert.assertEquals(expected, answers);
+    }
+  }
+
+}
@@ -0,0 +1,92 @@
+package edu.stanford.nlp.ie.crf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Checks that the flat array inference gives the same labels and
+ * probabilities as going through the clique tree.
+ */
+public class CRFLinearChainInferenceTest {
+
+  private static final String[][] WORDS = {
+      { "the", "O" }, { "a", "O" }, { "went", "O" }, { "to", "O" }, { "in", "O" }, { "said", "O" },
+      { "John", "PERSON" }, { "Mary", "PERSON" }, { "Smith", "PERSON" },
+      { "Paris", "LOCATION" }, { "Stanford", "LOCATION" }, { "York", "LOCATION" },
+      { "Google", "ORGANIZATION" }, { "Acme", "ORGANIZATION" },
+  };
+
+  private static List<List<CoreLabel>> makeDocuments(Random random, int numDocuments, boolean withAnswers) {
+    List<List<CoreLabel>> documents = new ArrayList<>();
+    for (int d = 0; d < numDocuments; d++) {
+      List<CoreLabel> document = new ArrayList<>();
+      int length = 3 + random.nextInt(15);
+      for (int i = 0; i < length; i++) {
+        String[] word = WORDS[random.nextInt(WORDS.length)];
+        CoreLabel token = new CoreLabel();
+        token.setWord(word[0]);
+        token.setValue(word[0]);
+        if (withAnswers) {
+          token.set(CoreAnnotations.AnswerAnnotation.class, word[1]);
+        }
+        document.add(token);
+      }
+      documents.add(document);
+    }
+    return documents;
+  }
+
+  private static void checkAgainstCliqueTree(int maxLeft) {
+    Properties props = new Properties();
+    props.setProperty("useWord", "true");
+    props.setProperty("usePrev", "true");
+    props.setProperty("useNext", "true");
+    props.setProperty("useClassFeature", "true");
+    props.setProperty("useSequences", "true");
+    props.setProperty("usePrevSequences", "true");
+    props.setProperty("maxLeft", Integer.toString(maxLeft));
+    props.setProperty("maxIterations", "20");
+    props.setProperty("map", "word=0,answer=1");
+    CRFClassifier<CoreLabel> crf = new CRFClassifier<>(props);
+    Random random = new Random(1234);
+    crf.train(makeDocuments(random, 100, true));
+
+    for (List<CoreLabel> document : makeDocuments(random, 50, false)) {
+      crf.flags.inferenceType = "CliqueTreeViterbi";
+      crf.classify(document);
+      List<String> expectedAnswers = new ArrayList<>();
+      List<Double> expectedProbs = new ArrayList<>();
+      for (CoreLabel token : document) {
+        expectedAnswers.add(token.get(CoreAnnotations.AnswerAnnotation.class));
+        expectedProbs.add(token.get(CoreAnnotations.AnswerProbAnnotation.class));
+      }
+
+      crf.flags.inferenceType = "Viterbi";
+      crf.classify(document);
+      for (int i = 0; i < document.size(); i++) {
+        CoreLabel token = document.get(i);
+        Assert.assertEquals(expectedAnswers.get(i), token.get(CoreAnnotations.AnswerAnnotation.class));
+        Assert.assertEquals(expectedProbs.get(i), token.get(CoreAnnotations.AnswerProbAnnotation.class), 1e-9);
+      }
+    }
+  }
+
+  @Test
+  public void testFirstOrder() {
+    checkAgainstCliqueTree(1);
+  }
+
+  @Test
+  public void testSecondOrder() {
+    checkAgainstCliqueTree(2);
+  }
+
+}
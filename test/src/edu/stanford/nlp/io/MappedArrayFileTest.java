@@ -0,0 +1,111 @@
+package edu.stanford.nlp.io;
+
+import java.io.File;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Writes a MappedArrayFile and checks that the arrays read back through
+ * the mapped buffers are the ones written.
+ */
+public class MappedArrayFileTest {
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    File file = File.createTempFile("MappedArrayFileTest", ".map");
+    file.deleteOnExit();
+    Assert.assertFalse(MappedArrayFile.isMappedArrayFile(file.getPath()));
+
+    double[][] matrix = { { 1.5, -2.25, 3.0 }, { 1e-300, Double.MAX_VALUE, -0.0 } };
+    new MappedArrayFile.Writer()
+        .addString("name", "ça marche")
+        .addStrings("words", Arrays.asList("a", "", "ünïcödé"))
+        .addStrings("none", Collections.emptyList())
+        .addInts("ids", new int[] { 7, -1, Integer.MAX_VALUE })
+        .addDoubles("doubles", matrix)
+        .addFloats("floats", matrix)
+        .addDoubles("empty", new double[0][])
+        .write(file.getPath());
+    Assert.assertTrue(MappedArrayFile.isMappedArrayFile(file.getPath()));
+
+    MappedArrayFile mapped = MappedArrayFile.open(file.getPath());
+    Assert.assertEquals("ça marche", mapped.string("name"));
+    Assert.assertEquals(Arrays.asList("a", "", "ünïcödé"), mapped.strings("words"));
+    Assert.assertEquals(Collections.emptyList(), mapped.strings("none"));
+
+    IntBuffer ids = mapped.ints("ids");
+    Assert.assertEquals(3, ids.limit());
+    Assert.assertEquals(7, ids.get(0));
+    Assert.assertEquals(-1, ids.get(1));
+    Assert.assertEquals(Integer.MAX_VALUE, ids.get(2));
+
+    Assert.assertTrue(mapped.isDoubles("doubles"));
+    Assert.assertFalse(mapped.isDoubles("floats"));
+    Assert.assertEquals(2, mapped.rows("doubles"));
+    Assert.assertEquals(3, mapped.columns("doubles"));
+    DoubleBuffer doubles = mapped.doubles("doubles");
+    FloatBuffer floats = mapped.floats("floats");
+    for (int i = 0; i < matrix.length; i++) {
+      for (int j = 0; j < matrix[i].length; j++) {
+        Assert.assertEquals(Double.doubleToRawLongBits(matrix[i][j]), Double.doubleToRawLongBits(doubles.get(i * 3 + j)));
+        Assert.assertEquals((float) matrix[i][j], floats.get(i * 3 + j), 0.0f);
+      }
+    }
+    Assert.assertEquals(0, mapped.rows("empty"));
+    Assert.assertFalse(mapped.contains("missing"));
+  }
+
+  /** Names whose modified UTF-8, as written by writeUTF, is longer than their UTF-8 */
+  @Test
+  public void testUnusualNames() throws Exception {
+    File file = File.createTempFile("MappedArrayFileTest", ".map");
+    file.deleteOnExit();
+    MappedArrayFile.Writer writer = new MappedArrayFile.Writer();
+    for (int i = 0; i < 20; i++) {
+      writer.addInts("\uD83D\uDE00\u0000" + i, new int[] { i });
+    }
+    writer.write(file.getPath());
+
+    MappedArrayFile mapped = MappedArrayFile.open(file.getPath());
+    for (int i = 0; i < 20; i++) {
+      Assert.assertEquals(i, mapped.ints("\uD83D\uDE00\u0000" + i).get(0));
+    }
+  }
+
+  /** Replacing a file mustn't change the arrays already mapped from it */
+  @Test
+  public void testRewrite() throws Exception {
+    File file = File.createTempFile("MappedArrayFileTest", ".map");
+    file.deleteOnExit();
+    new MappedArrayFile.Writer().addDoubles("weights", new double[][] { { 1.0, 2.0 } }).write(file.getPath());
+    DoubleBuffer before = MappedArrayFile.open(file.getPath()).doubles("weights");
+
+    new MappedArrayFile.Writer().addDoubles("weights", new double[][] { { 3.0 } }).write(file.getPath());
+    Assert.assertEquals(2, before.limit());
+    Assert.assertEquals(1.0, before.get(0), 0.0);
+    Assert.assertEquals(2.0, before.get(1), 0.0);
+    DoubleBuffer after = MappedArrayFile.open(file.getPath()).doubles("weights");
+    Assert.assertEquals(1, after.limit());
+    Assert.assertEquals(3.0, after.get(0), 0.0);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWrongType() throws Exception {
+    File file = File.createTempFile("MappedArrayFileTest", ".map");
+    file.deleteOnExit();
+    new MappedArrayFile.Writer().addFloats("floats", new double[][] { { 1.0 } }).write(file.getPath());
+    MappedArrayFile.open(file.getPath()).doubles("floats");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testRaggedRows() {
+    new MappedArrayFile.Writer().addDoubles("ragged", new double[][] { { 1.0 }, { 1.0, 2.0 } });
+  }
+
+}
@@ -0,0 +1,162 @@
+package edu.stanford.nlp.ling.tokensregex;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.ArrayCoreMap;
+import edu.stanford.nlp.util.CoreMap;
+
+public class RuleBundleTest extends TestCase {
+
+  private static final String RULES =
+      "ner = { type: \"CLASS\", value: \"edu.stanford.nlp.ling.CoreAnnotations$NamedEntityTagAnnotation\" }\n" +
+      "nested = { type: \"CLASS\", value: \"edu.stanford.nlp.ling.CoreAnnotations$NumerizedTokensAnnotation\" }\n" +
+      "ENV.defaultResultAnnotationKey = ner\n" +
+      "ENV.defaultNestedResultsAnnotationKey = nested\n" +
+      "$COLOR = \"/red|green|blue/\"\n" +
+      "ENV.defaults[\"stage\"] = 1\n" +
+      "{ ruleType: \"tokens\", pattern: ( $COLOR /car|house/ ), action: ( Annotate($0, ner, \"COLORED\") ), result: \"THING\" }\n" +
+      "{ ruleType: \"tokens\", pattern: ( /the/? /big|small/ ), result: Concat(\"SIZE \", $0.word), priority: 1 }\n" +
+      "{ ruleType: \"text\", pattern: /\\d+ (km|miles)/, result: \"DISTANCE\" }\n" +
+      "ENV.defaults[\"stage\"] = 2\n" +
+      "{ ruleType: \"composite\", pattern: ( [ { ner:THING } ] /near/ ), result: \"NEAR\" }\n";
+
+  private static final String[] SENTENCES = {
+      "the big red car is near 5 km away",
+      "a green house near the small blue car",
+      "nothing to see here",
+      "10 miles from the red house near big trees",
+  };
+
+  private File dir;
+
+  @Override
+  protected void setUp() throws IOException {
+    dir = Files.createTempDirectory("rulebundle").toFile();
+  }
+
+  @Override
+  protected void tearDown() {
+    RuleBundle.setCacheDir(null);
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  private String writeRules(String name, String rules) throws IOException {
+    File file = new File(dir, name);
+    Files.write(file.toPath(), rules.getBytes(StandardCharsets.UTF_8));
+    return file.getPath();
+  }
+
+  private static CoreMap sentence(String text) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    int offset = 0;
+    for (String word : text.split(" ")) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setValue(word);
+      token.set(CoreAnnotations.TextAnnotation.class, word);
+      token.setBeginPosition(offset);
+      token.setEndPosition(offset + word.length());
+      token.setIndex(tokens.size() + 1);
+      token.set(CoreAnnotations.TokenBeginAnnotation.class, tokens.size());
+      token.set(CoreAnnotations.TokenEndAnnotation.class, tokens.size() + 1);
+      tokens.add(token);
+      offset += word.length() + 1;
+    }
+    CoreMap sentence = new ArrayCoreMap();
+    sentence.set(CoreAnnotations.TextAnnotation.class, text);
+    sentence.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    sentence.set(CoreAnnotations.CharacterOffsetBeginAnnotation.class, 0);
+    sentence.set(CoreAnnotations.CharacterOffsetEndAnnotation.class, text.length());
+    return sentence;
+  }
+
+  private static List<String> extract(CoreMapExpressionExtractor<MatchedExpression> extractor) {
+    List<String> results = new ArrayList<>();
+    for (String text : SENTENCES) {
+      CoreMap sentence = sentence(text);
+      for (MatchedExpression expr : extractor.extractExpressions(sentence)) {
+        results.add(expr.getText() + ' ' + expr.getTokenOffsets() + ' ' + expr.getValue());
+      }
+      for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+        results.add(token.word() + '/' + token.ner());
+      }
+    }
+    return results;
+  }
+
+  public void testSameExtractions() throws Exception {
+    List<String> files = Collections.singletonList(writeRules("rules.txt", RULES));
+    List<String> expected = extract(CoreMapExpressionExtractor.createExtractorFromFiles(TokenSequencePattern.getNewEnv(), files));
+    assertTrue(expected.contains("red car (2,4) STRING(THING)"));
+    assertTrue(expected.contains("green house near (1,4) STRING(NEAR)"));
+
+    String bundle = new File(dir, "rules.ser").getPath();
+    assertEquals(expected, extract(RuleBundle.compile(TokenSequencePattern.getNewEnv(), files, bundle)));
+    Env env = TokenSequencePattern.getNewEnv();
+    assertEquals(expected, extract(RuleBundle.load(env, bundle)));
+    // the environment has what the rules put in it
+    assertNotNull(env.get("$COLOR"));
+    assertEquals(2, env.getDefaults().get("stage"));
+  }
+
+  public void testCache() throws Exception {
+    String rulesFile = writeRules("rules.txt", RULES);
+    List<String> files = Collections.singletonList(rulesFile);
+    List<String> expected = extract(CoreMapExpressionExtractor.createExtractorFromFiles(TokenSequencePattern.getNewEnv(), files));
+
+    RuleBundle.setCacheDir(dir.getPath());
+    String key = RuleBundle.key(TokenSequencePattern.getNewEnv(), files);
+    File bundle = new File(dir, key + ".tokensregex.ser");
+    assertEquals(expected, extract(CoreMapExpressionExtractor.createExtractorFromFiles(TokenSequencePattern.getNewEnv(), files)));
+    assertTrue(bundle.exists());
+    long modified = bundle.lastModified();
+    assertEquals(expected, extract(CoreMapExpressionExtractor.createExtractorFromFiles(TokenSequencePattern.getNewEnv(), files)));
+    assertEquals(modified, bundle.lastModified());
+
+    // a different environment or different rules get a different bundle
+    Env env = TokenSequencePattern.getNewEnv();
+    env.bind("$SIZE", "/big|small/");
+    assertFalse(key.equals(RuleBundle.key(env, files)));
+    writeRules("rules.txt", RULES.replace("DISTANCE", "LENGTH"));
+    assertFalse(key.equals(RuleBundle.key(TokenSequencePattern.getNewEnv(), files)));
+    List<String> changed = extract(CoreMapExpressionExtractor.createExtractorFromFiles(TokenSequencePattern.getNewEnv(), files));
+    assertTrue(changed.contains("5 km (6,8) STRING(LENGTH)"));
+    assertEquals(3, dir.listFiles().length);
+
+    // a broken bundle is made again
+    Files.write(bundle.toPath(), new byte[] { 1, 2, 3 });
+    writeRules("rules.txt", RULES);
+    assertEquals(expected, extract(CoreMapExpressionExtractor.createExtractorFromFiles(TokenSequencePattern.getNewEnv(), files)));
+    assertTrue(bundle.length() > 3);
+  }
+
+  public void testNotSerializable() throws Exception {
+    // rules which are collapsed into a MultiPatternMatcher can't be written out, so they are parsed each time
+    String rules = RULES.substring(0, RULES.indexOf("ENV.defaults[\"stage\"] = 2"));
+    List<String> files = Collections.singletonList(writeRules("rules.txt", rules));
+    Env env = TokenSequencePattern.getNewEnv();
+    env.bind("collapseExtractionRules", true);
+    List<String> expected = extract(CoreMapExpressionExtractor.createExtractorFromFiles(env, files));
+
+    RuleBundle.setCacheDir(dir.getPath());
+    env = TokenSequencePattern.getNewEnv();
+    env.bind("collapseExtractionRules", true);
+    assertEquals(expected, extract(CoreMapExpressionExtractor.createExtractorFromFiles(env, files)));
+    assertEquals(Collections.singletonList("rules.txt"), Arrays.asList(dir.list()));
+  }
+
+}
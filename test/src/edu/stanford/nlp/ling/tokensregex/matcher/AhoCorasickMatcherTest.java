@@ -0,0 +1,93 @@
+package edu.stanford.nlp.ling.tokensregex.matcher;
+
+import junit.framework.TestCase;
+
+import java.util.*;
+
+public class AhoCorasickMatcherTest extends TestCase {
+
+  private static List<String> words(String phrase) {
+    return Arrays.asList(phrase.split(" "));
+  }
+
+  private static String toString(List<Match<String,Integer>> matches) {
+    StringBuilder sb = new StringBuilder();
+    for (Match<String,Integer> match : matches) {
+      sb.append(match.getBegin()).append('-').append(match.getEnd()).append(':').append(match.getValue()).append(' ');
+    }
+    return sb.toString().trim();
+  }
+
+  public void testMatches() {
+    AhoCorasickMatcher<String,Integer> matcher = new AhoCorasickMatcher<>();
+    matcher.add(words("a white cat"), 0);
+    matcher.add(words("white cat"), 1);
+    matcher.add(words("cat"), 2);
+    matcher.add(words("a white hat"), 3);
+    matcher.add(words("white"), 4);
+    matcher.add(words("cat"), 5);
+    matcher.build();
+    assertEquals(6, matcher.size());
+    // overlapping matches and matches inside others are all found, longest first
+    assertEquals("2-3:4 1-4:0 2-4:1 3-4:2 3-4:5 6-7:4 5-8:3",
+        toString(matcher.findAllMatches(words("the a white cat saw a white hat"))));
+    assertEquals("", toString(matcher.findAllMatches(words("a black dog"))));
+    assertEquals("", toString(matcher.findAllMatches(new ArrayList<>())));
+  }
+
+  public void testSameAsTrie() {
+    Random random = new Random(1234);
+    String[] vocabulary = { "a", "b", "c", "d" };
+    AhoCorasickMatcher<String,Integer> matcher = new AhoCorasickMatcher<>();
+    List<List<String>> phrases = new ArrayList<>();
+    for (int i = 0; i < 200; i++) {
+      List<String> phrase = new ArrayList<>();
+      for (int length = random.nextInt(5) + 1; phrase.size() < length; ) {
+        phrase.add(vocabulary[random.nextInt(vocabulary.length)]);
+      }
+      phrases.add(phrase);
+      matcher.add(phrase, i);
+    }
+    matcher.build();
+    for (int i = 0; i < 50; i++) {
+      List<String> sequence = new ArrayList<>();
+      for (int length = random.nextInt(20); sequence.size() < length; ) {
+        sequence.add(vocabulary[random.nextInt(vocabulary.length + 1) % vocabulary.length]);
+      }
+      Set<String> expected = new HashSet<>();
+      for (int begin = 0; begin < sequence.size(); begin++) {
+        for (int end = begin + 1; end <= sequence.size(); end++) {
+          for (int p = 0; p < phrases.size(); p++) {
+            if (phrases.get(p).equals(sequence.subList(begin, end))) {
+              expected.add(begin + "-" + end + ":" + p);
+            }
+          }
+        }
+      }
+      List<Match<String,Integer>> matches = matcher.findAllMatches(sequence);
+      Set<String> actual = new HashSet<>(Arrays.asList(toString(matches).split(" ")));
+      actual.remove("");
+      assertEquals(expected, actual);
+      assertEquals(expected.size(), matches.size());
+    }
+  }
+
+  public void testBuiltOnce() {
+    AhoCorasickMatcher<String,Integer> matcher = new AhoCorasickMatcher<>();
+    matcher.add(words("a"), 0);
+    try {
+      matcher.findAllMatches(words("a"));
+      fail("Expected matching before building to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    matcher.build();
+    try {
+      matcher.add(words("b"), 1);
+      fail("Expected adding after building to fail");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+  }
+
+}
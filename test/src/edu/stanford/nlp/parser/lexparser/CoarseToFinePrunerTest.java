@@ -0,0 +1,123 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Checks coarse-to-fine pruning: that the coarse grammar never scores a
+ * sentence worse than the fine one, that pruning hardly anything gives
+ * the unpruned parses, and that pruning everything it can still gives a parse.
+ */
+public class CoarseToFinePrunerTest {
+
+  private static LexicalizedParser parser;
+
+  @BeforeClass
+  public static void train() {
+    parser = LexparserTestUtils.parser();
+  }
+
+  private static List<List<HasWord>> sentences(int numSentences) {
+    Random random = new Random(5678);
+    List<List<HasWord>> sentences = new ArrayList<>();
+    for (int i = 0; i < numSentences; i++) {
+      sentences.add(LexparserTestUtils.words(random));
+    }
+    return sentences;
+  }
+
+  private static List<Tree> parse(List<List<HasWord>> sentences, boolean coarseToFine, double threshold) {
+    Options op = parser.getOp();
+    op.testOptions.coarseToFine = coarseToFine;
+    op.testOptions.coarseToFineThreshold = threshold;
+    try {
+      List<Tree> parses = new ArrayList<>();
+      for (List<HasWord> sentence : sentences) {
+        parses.add(parser.parse(sentence));
+      }
+      return parses;
+    } finally {
+      op.testOptions.coarseToFine = false;
+      op.testOptions.coarseToFineThreshold = -10.0;
+    }
+  }
+
+  @Test
+  public void testProjection() {
+    BasicCategoryGrammarProjection gp = BasicCategoryGrammarProjection.of(parser.bg, parser.ug, parser.stateIndex, parser.getOp().langpack());
+    Assert.assertSame(gp, BasicCategoryGrammarProjection.of(parser.bg, parser.ug, parser.stateIndex, parser.getOp().langpack()));
+    Assert.assertTrue(gp.targetStateIndex().size() <= parser.stateIndex.size());
+    // every rule's projection is in the coarse grammar, scoring at least as well
+    for (BinaryRule rule : parser.bg) {
+      BinaryRule coarse = new BinaryRule(gp.project(rule.parent), gp.project(rule.leftChild), gp.project(rule.rightChild));
+      Assert.assertTrue(gp.targetBG().scoreRule(coarse) >= rule.score);
+    }
+  }
+
+  @Test
+  public void testLooseThreshold() {
+    List<List<HasWord>> sentences = sentences(30);
+    Assert.assertEquals(parse(sentences, false, -10.0), parse(sentences, true, -1000.0));
+  }
+
+  /** The number of states built over each span of the sentence */
+  private static int builtStates(ExhaustivePCFGParser pparser) {
+    int built = 0;
+    for (int start = 0; start < pparser.length; start++) {
+      for (int end = start + 1; end <= pparser.length; end++) {
+        for (float score : pparser.iScore[start][end]) {
+          if (score > Float.NEGATIVE_INFINITY) {
+            built++;
+          }
+        }
+      }
+    }
+    return built;
+  }
+
+  @Test
+  public void testTightThreshold() {
+    List<List<HasWord>> sentences = sentences(30);
+    List<Tree> expected = parse(sentences, false, -10.0);
+    List<Tree> pruned = parse(sentences, true, 0.0);
+    for (int i = 0; i < sentences.size(); i++) {
+      Assert.assertNotNull(pruned.get(i));
+      Assert.assertEquals(expected.get(i).yield(), pruned.get(i).yield());
+    }
+
+    // pruning builds fewer states, and so can only find parses which score no better
+    Options op = parser.getOp();
+    ExhaustivePCFGParser full = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    ExhaustivePCFGParser coarseToFine = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    op.testOptions.coarseToFineThreshold = 0.0;
+    int fullStates = 0;
+    int prunedStates = 0;
+    try {
+      for (List<HasWord> sentence : sentences) {
+        List<HasWord> words = new ArrayList<>(sentence);
+        words.add(new TaggedWord(Lexicon.BOUNDARY, Lexicon.BOUNDARY_TAG));
+        op.testOptions.coarseToFine = false;
+        Assert.assertTrue(full.parse(words));
+        op.testOptions.coarseToFine = true;
+        Assert.assertTrue(coarseToFine.parse(words));
+        Assert.assertTrue(coarseToFine.bestScore <= full.bestScore);
+        fullStates += builtStates(full);
+        prunedStates += builtStates(coarseToFine);
+      }
+    } finally {
+      op.testOptions.coarseToFine = false;
+      op.testOptions.coarseToFineThreshold = -10.0;
+    }
+    Assert.assertTrue(prunedStates + " of " + fullStates + " states built", prunedStates < fullStates);
+  }
+
+}
@@ -0,0 +1,136 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.util.ScoredObject;
+
+/**
+ * Checks that parsing with a compact chart gives the same scores and
+ * parses as with a full one.
+ */
+public class CompactChartTest {
+
+  private static LexicalizedParser parser;
+
+  @BeforeClass
+  public static void train() {
+    parser = LexparserTestUtils.parser();
+  }
+
+  @Test
+  public void testPutAndGet() {
+    CompactChart chart = new CompactChart(150);
+    chart.clear(3);
+    float[] cell = new float[150];
+    Arrays.fill(cell, Float.NEGATIVE_INFINITY);
+    cell[0] = -1.0f;
+    cell[63] = -2.0f;
+    cell[64] = -3.0f;
+    cell[149] = -4.0f;
+    chart.put(0, 2, cell);
+    chart.put(1, 3, new float[150]);
+    Assert.assertEquals(-1.0f, chart.get(0, 2, 0), 0.0f);
+    Assert.assertEquals(-2.0f, chart.get(0, 2, 63), 0.0f);
+    Assert.assertEquals(-3.0f, chart.get(0, 2, 64), 0.0f);
+    Assert.assertEquals(-4.0f, chart.get(0, 2, 149), 0.0f);
+    Assert.assertEquals(Float.NEGATIVE_INFINITY, chart.get(0, 2, 1), 0.0f);
+    Assert.assertEquals(Float.NEGATIVE_INFINITY, chart.get(0, 1, 0), 0.0f);
+    Assert.assertEquals(0.0f, chart.get(1, 3, 100), 0.0f);
+    Assert.assertEquals(154, chart.size());
+    chart.clear(3);
+    Assert.assertEquals(0, chart.size());
+    Assert.assertEquals(Float.NEGATIVE_INFINITY, chart.get(1, 3, 100), 0.0f);
+  }
+
+  private static void assertSameParse(int threads, boolean coarseToFine) {
+    Options op = parser.getOp();
+    ExhaustivePCFGParser full = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    ExhaustivePCFGParser compact = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    Random random = new Random(5678);
+    op.testOptions.useFastFactored = true;
+    op.testOptions.pcfgThreads = threads;
+    op.testOptions.coarseToFine = coarseToFine;
+    try {
+      for (int i = 0; i < 30; i++) {
+        List<HasWord> words = LexparserTestUtils.words(random);
+        words.add(new TaggedWord(Lexicon.BOUNDARY, Lexicon.BOUNDARY_TAG));
+
+        op.testOptions.compactChartLength = -1;
+        Assert.assertTrue(full.parse(words));
+        // only some of the sentences are longer than this, so the parser switches between charts
+        op.testOptions.compactChartLength = 10;
+        Assert.assertTrue(compact.parse(words));
+
+        int length = full.length;
+        Assert.assertEquals(full.bestScore, compact.bestScore, 0.0f);
+        Assert.assertEquals(full.getBestScore(), compact.getBestScore(), 0.0);
+        for (int start = 0; start < length; start++) {
+          for (int end = start + 1; end <= length; end++) {
+            for (int state = 0; state < full.numStates; state++) {
+              Assert.assertEquals(full.iScore[start][end][state], compact.insideScore(start, end, state), 0.0f);
+            }
+          }
+        }
+        Assert.assertEquals(full.getBestParse(), compact.getBestParse());
+        Tree best = full.getBestParse();
+        Assert.assertEquals(full.validateBinarizedTree(best, 0), compact.validateBinarizedTree(best, 0), 0.0);
+        List<ScoredObject<Tree>> expected = full.getKBestParses(5);
+        List<ScoredObject<Tree>> actual = compact.getKBestParses(5);
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int k = 0; k < expected.size(); k++) {
+          Assert.assertEquals(expected.get(k).object(), actual.get(k).object());
+          Assert.assertEquals(expected.get(k).score(), actual.get(k).score(), 0.0);
+        }
+      }
+    } finally {
+      op.testOptions.useFastFactored = false;
+      op.testOptions.pcfgThreads = 1;
+      op.testOptions.coarseToFine = false;
+      op.testOptions.compactChartLength = -1;
+    }
+  }
+
+  @Test
+  public void testSameParse() {
+    assertSameParse(1, false);
+  }
+
+  @Test
+  public void testSameParseInParallel() {
+    assertSameParse(3, false);
+  }
+
+  @Test
+  public void testSameParseWithCoarseToFine() {
+    assertSameParse(1, true);
+  }
+
+  @Test
+  public void testSameFastFactoredParses() {
+    Options op = parser.getOp();
+    Random random = new Random(9012);
+    op.testOptions.useFastFactored = true;
+    try {
+      for (int i = 0; i < 20; i++) {
+        List<HasWord> words = LexparserTestUtils.words(random);
+        op.testOptions.compactChartLength = -1;
+        Tree expected = parser.parse(words);
+        op.testOptions.compactChartLength = 0;
+        Assert.assertEquals(expected, parser.parse(words));
+      }
+    } finally {
+      op.testOptions.useFastFactored = false;
+      op.testOptions.compactChartLength = -1;
+    }
+  }
+
+}
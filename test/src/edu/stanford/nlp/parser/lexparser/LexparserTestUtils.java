@@ -0,0 +1,87 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.Word;
+import edu.stanford.nlp.trees.MemoryTreebank;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Random trees from a small English grammar, and a parser trained on
+ * them, for the tests of the exhaustive PCFG parser.  The parser is
+ * trained once and shared, so tests which change its test options
+ * must put them back.
+ */
+public class LexparserTestUtils {
+
+  private static final String[] DT = { "the", "a", "every" };
+  private static final String[] NN = { "dog", "cat", "park", "telescope", "man" };
+  private static final String[] JJ = { "big", "red", "old" };
+  private static final String[] NNP = { "John", "Paris", "Mary" };
+  private static final String[] VBZ = { "sees", "runs", "likes" };
+  private static final String[] IN = { "in", "with", "near" };
+
+  private static LexicalizedParser parser; // = null;
+
+  private LexparserTestUtils() {} // static methods only
+
+  private static String pick(Random random, String tag, String[] words) {
+    return '(' + tag + ' ' + words[random.nextInt(words.length)] + ')';
+  }
+
+  private static String np(Random random, int depth) {
+    int choice = random.nextInt(depth > 2 ? 3 : 4);
+    switch (choice) {
+      case 0:
+        return "(NP " + pick(random, "DT", DT) + ' ' + pick(random, "NN", NN) + ')';
+      case 1:
+        return "(NP " + pick(random, "DT", DT) + ' ' + pick(random, "JJ", JJ) + ' ' + pick(random, "NN", NN) + ')';
+      case 2:
+        return "(NP " + pick(random, "NNP", NNP) + ')';
+      default:
+        return "(NP " + np(random, depth + 1) + " (PP " + pick(random, "IN", IN) + ' ' + np(random, depth + 1) + "))";
+    }
+  }
+
+  private static String vp(Random random, int depth) {
+    int choice = random.nextInt(depth > 2 ? 2 : 3);
+    switch (choice) {
+      case 0:
+        return "(VP " + pick(random, "VBZ", VBZ) + ')';
+      case 1:
+        return "(VP " + pick(random, "VBZ", VBZ) + ' ' + np(random, depth + 1) + ')';
+      default:
+        return "(VP " + vp(random, depth + 1) + " (PP " + pick(random, "IN", IN) + ' ' + np(random, depth + 1) + "))";
+    }
+  }
+
+  public static Tree sentence(Random random) {
+    return Tree.valueOf("(ROOT (S " + np(random, 0) + ' ' + vp(random, 0) + " (. .)))");
+  }
+
+  /** The words of a random sentence */
+  public static List<HasWord> words(Random random) {
+    List<HasWord> words = new ArrayList<>();
+    for (Tree leaf : sentence(random).getLeaves()) {
+      words.add(new Word(leaf.value()));
+    }
+    return words;
+  }
+
+  /** A parser trained on 300 random trees, the first time it is asked for */
+  public static synchronized LexicalizedParser parser() {
+    if (parser == null) {
+      Random random = new Random(1234);
+      MemoryTreebank treebank = new MemoryTreebank();
+      for (int i = 0; i < 300; i++) {
+        treebank.add(sentence(random));
+      }
+      parser = LexicalizedParser.trainFromTreebank(treebank, new Options());
+    }
+    return parser;
+  }
+
+}
@@ -0,0 +1,80 @@
+package edu.stanford.nlp.parser.lexparser;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.HasWord;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.trees.Tree;
+
+/**
+ * Checks that filling in the PCFG chart with several threads gives
+ * exactly the inside and outside scores, and so the parses, of filling
+ * it in with one.
+ */
+public class ParallelPCFGParserTest {
+
+  private static LexicalizedParser parser;
+
+  @BeforeClass
+  public static void train() {
+    parser = LexparserTestUtils.parser();
+  }
+
+  private static void assertSameChart(float[][][] expected, float[][][] actual, int length) {
+    for (int start = 0; start < length; start++) {
+      for (int end = start + 1; end <= length; end++) {
+        Assert.assertArrayEquals("[" + start + ", " + end + ")", expected[start][end], actual[start][end], 0.0f);
+      }
+    }
+  }
+
+  @Test
+  public void testSameChart() {
+    Options op = parser.getOp();
+    ExhaustivePCFGParser sequential = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    ExhaustivePCFGParser parallel = new ExhaustivePCFGParser(parser.bg, parser.ug, parser.lex, op, parser.stateIndex, parser.wordIndex, parser.tagIndex);
+    Random random = new Random(5678);
+    try {
+      for (int i = 0; i < 30; i++) {
+        List<HasWord> words = LexparserTestUtils.words(random);
+        words.add(new TaggedWord(Lexicon.BOUNDARY, Lexicon.BOUNDARY_TAG));
+
+        op.testOptions.pcfgThreads = 1;
+        Assert.assertTrue(sequential.parse(words));
+        op.testOptions.pcfgThreads = 4;
+        Assert.assertTrue(parallel.parse(words));
+
+        int length = sequential.length;
+        Assert.assertEquals(sequential.bestScore, parallel.bestScore, 0.0f);
+        assertSameChart(sequential.iScore, parallel.iScore, length);
+        assertSameChart(sequential.oScore, parallel.oScore, length);
+        Assert.assertEquals(sequential.getBestParse(), parallel.getBestParse());
+      }
+    } finally {
+      op.testOptions.pcfgThreads = 1;
+    }
+  }
+
+  @Test
+  public void testSameParses() {
+    Options op = parser.getOp();
+    Random random = new Random(9012);
+    try {
+      for (int i = 0; i < 20; i++) {
+        List<HasWord> words = LexparserTestUtils.words(random);
+        op.testOptions.pcfgThreads = 1;
+        Tree expected = parser.parse(words);
+        op.testOptions.pcfgThreads = 3;
+        Assert.assertEquals(expected, parser.parse(words));
+      }
+    } finally {
+      op.testOptions.pcfgThreads = 1;
+    }
+  }
+
+}
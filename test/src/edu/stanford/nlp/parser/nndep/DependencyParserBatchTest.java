@@ -0,0 +1,242 @@
+package edu.stanford.nlp.parser.nndep;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.international.Language;
+import edu.stanford.nlp.trees.GrammaticalStructure;
+import edu.stanford.nlp.trees.PennTreebankLanguagePack;
+import edu.stanford.nlp.trees.TypedDependency;
+import edu.stanford.nlp.util.CoreMap;
+import edu.stanford.nlp.util.StringUtils;
+
+/**
+ * Checks that parsing sentences in batches gives exactly the parses of
+ * parsing them one at a time, and that parsing with compacted weights
+ * gives nearly the same parses.
+ */
+public class DependencyParserBatchTest {
+
+  private static final String[][] WORDS = {
+      { "the", "DT" }, { "a", "DT" }, { "dog", "NN" }, { "cat", "NN" }, { "park", "NN" },
+      { "runs", "VBZ" }, { "sees", "VBZ" }, { "quickly", "RB" }, { "big", "JJ" }, { "red", "JJ" },
+      { "Paris", "NNP" }, { "John", "NNP" }, { "in", "IN" },
+  };
+
+  private static final String[] LABELS = { "root", "dep", "obj" };
+
+  private static File modelFile;
+
+  /** Writes sentences in CoNLL-U format, with arbitrary but projective trees */
+  private static File writeSentences(Random random, int numSentences) throws Exception {
+    File file = File.createTempFile("DependencyParserBatchTest", ".conllu");
+    file.deleteOnExit();
+    try (PrintWriter pw = new PrintWriter(file, "utf-8")) {
+      for (int s = 0; s < numSentences; s++) {
+        int length = 1 + random.nextInt(15);
+        int root = 1 + random.nextInt(length);
+        for (int i = 1; i <= length; i++) {
+          String[] word = WORDS[random.nextInt(WORDS.length)];
+          int head = i == root ? 0 : (i < root ? i + 1 : i - 1);
+          String label = i == root ? LABELS[0] : (i < root ? LABELS[1] : LABELS[2]);
+          pw.println(i + "\t" + word[0] + "\t_\t" + word[1] + "\t" + word[1] + "\t_\t" + head + "\t" + label + "\t_\t_");
+        }
+        pw.println();
+      }
+    }
+    return file;
+  }
+
+  private static Properties props(int parseBatchSize) {
+    return props(parseBatchSize, Config.WeightPrecision.DOUBLE);
+  }
+
+  private static Properties props(int parseBatchSize, Config.WeightPrecision precision) {
+    Properties props = new Properties();
+    props.setProperty("parseBatchSize", Integer.toString(parseBatchSize));
+    props.setProperty("weightPrecision", precision.name().toLowerCase());
+    return props;
+  }
+
+  private static void writeRow(PrintWriter pw, String name, Random random, int size) {
+    StringBuilder row = new StringBuilder(name == null ? "" : name + ' ');
+    for (int i = 0; i < size; i++) {
+      if (i > 0) {
+        row.append(' ');
+      }
+      row.append(random.nextGaussian() * 0.5);
+    }
+    pw.println(row);
+  }
+
+  /**
+   * Writes a model in the text format of {@link DependencyParser#writeModelFile}
+   * with weights drawn from a seeded generator rather than trained, so
+   * that every run parses with the same weights.
+   */
+  @BeforeClass
+  public static void writeModel() throws Exception {
+    List<String> words = new ArrayList<>(Arrays.asList(Config.UNKNOWN, Config.NULL, Config.ROOT));
+    List<String> tags = new ArrayList<>(Arrays.asList(Config.UNKNOWN, Config.NULL, Config.ROOT));
+    for (String[] word : WORDS) {
+      words.add(word[0]);
+      if ( ! tags.contains(word[1])) {
+        tags.add(word[1]);
+      }
+    }
+    List<String> labels = new ArrayList<>(Arrays.asList(Config.NULL));
+    labels.addAll(Arrays.asList(LABELS));
+    int embeddingSize = 10;
+    int hiddenSize = 20;
+    int numEmbeddings = words.size() + tags.size() + labels.size();
+
+    Random random = new Random(1234);
+    modelFile = File.createTempFile("DependencyParserBatchTest", ".txt");
+    modelFile.deleteOnExit();
+    try (PrintWriter pw = new PrintWriter(modelFile, "utf-8")) {
+      pw.println("language=" + Language.English);
+      pw.println("tlp=" + PennTreebankLanguagePack.class.getCanonicalName());
+      pw.println("dict=" + words.size());
+      pw.println("pos=" + tags.size());
+      pw.println("label=" + labels.size());
+      pw.println("embeddingSize=" + embeddingSize);
+      pw.println("hiddenSize=" + hiddenSize);
+      pw.println("numTokens=" + Config.numTokens);
+      // few enough that some features are not precomputed
+      Set<Integer> preComputed = new LinkedHashSet<>();
+      while (preComputed.size() < 50) {
+        preComputed.add(random.nextInt(numEmbeddings * Config.numTokens));
+      }
+      pw.println("preComputed=" + preComputed.size());
+      for (List<String> names : Arrays.asList(words, tags, labels)) {
+        for (String name : names) {
+          writeRow(pw, name, random, embeddingSize);
+        }
+      }
+      for (int j = 0; j < embeddingSize * Config.numTokens; j++) {
+        writeRow(pw, null, random, hiddenSize);
+      }
+      writeRow(pw, null, random, hiddenSize);
+      for (int j = 0; j < hiddenSize; j++) {
+        writeRow(pw, null, random, labels.size() * 2 - 1);
+      }
+      pw.println(StringUtils.join(preComputed, " "));
+    }
+  }
+
+  private static List<CoreMap> testSentences() throws Exception {
+    List<CoreMap> sentences = new ArrayList<>();
+    Util.loadConllFile(writeSentences(new Random(5678), 50).getPath(), sentences, new ArrayList<>());
+    return sentences;
+  }
+
+  @Test
+  public void testSameParses() throws Exception {
+    List<CoreMap> sentences = testSentences();
+
+    DependencyParser single = DependencyParser.loadFromModelFile(modelFile.getPath(), props(1));
+    List<String> expected = new ArrayList<>();
+    for (CoreMap sentence : sentences) {
+      expected.add(single.predict(sentence).typedDependencies().toString());
+    }
+
+    for (int batchSize : new int[] { 1, 4, 64 }) {
+      DependencyParser batched = DependencyParser.loadFromModelFile(modelFile.getPath(), props(batchSize));
+      List<String> parses = new ArrayList<>();
+      for (GrammaticalStructure gs : batched.predictAll(sentences)) {
+        parses.add(gs.typedDependencies().toString());
+      }
+      Assert.assertEquals(expected, parses);
+    }
+  }
+
+  /** The dependencies of each sentence */
+  private static List<List<String>> dependencies(List<GrammaticalStructure> parses) {
+    List<List<String>> dependencies = new ArrayList<>();
+    for (GrammaticalStructure gs : parses) {
+      List<String> sentence = new ArrayList<>();
+      for (TypedDependency dependency : gs.typedDependencies()) {
+        sentence.add(dependency.toString());
+      }
+      dependencies.add(sentence);
+    }
+    return dependencies;
+  }
+
+  @Test
+  public void testCompactWeights() throws Exception {
+    List<CoreMap> sentences = testSentences();
+    DependencyParser parser = DependencyParser.loadFromModelFile(modelFile.getPath(), props(8));
+    List<List<String>> expected = dependencies(parser.predictAll(sentences));
+
+    for (Config.WeightPrecision precision : new Config.WeightPrecision[] { Config.WeightPrecision.FLOAT, Config.WeightPrecision.INT8 }) {
+      DependencyParser compacted = DependencyParser.loadFromModelFile(modelFile.getPath(), props(8, precision));
+      List<List<String>> parses = dependencies(compacted.predictAll(sentences));
+      if (precision == Config.WeightPrecision.FLOAT) {
+        // rounding each weight by about 1e-7 should never change a parse
+        Assert.assertEquals(expected, parses);
+      } else {
+        // bytes only rarely change a dependency.  A changed parse needn't
+        // have the same number of dependencies, so compare sentence by sentence
+        Assert.assertEquals(expected.size(), parses.size());
+        int total = 0;
+        int same = 0;
+        for (int i = 0; i < expected.size(); i++) {
+          total += expected.get(i).size();
+          for (String dependency : expected.get(i)) {
+            if (parses.get(i).contains(dependency)) {
+              same++;
+            }
+          }
+        }
+        Assert.assertTrue(precision + " changed " + (total - same) + " of " + total + " dependencies",
+                          same >= 0.95 * total);
+      }
+
+      File saved = File.createTempFile("DependencyParserBatchTest", ".txt.gz");
+      saved.deleteOnExit();
+      try {
+        compacted.writeModelFile(saved.getPath());
+        Assert.fail("Shouldn't be able to save a model whose weights were compacted");
+      } catch (IllegalStateException e) {
+        // expected
+      }
+    }
+  }
+
+  private static List<String> parse(DependencyParser parser, List<CoreMap> sentences) {
+    List<String> parses = new ArrayList<>();
+    for (GrammaticalStructure gs : parser.predictAll(sentences)) {
+      parses.add(gs.typedDependencies().toString());
+    }
+    return parses;
+  }
+
+  @Test
+  public void testMappedModel() throws Exception {
+    List<CoreMap> sentences = testSentences();
+    DependencyParser parser = DependencyParser.loadFromModelFile(modelFile.getPath(), props(8));
+    DependencyParser floatParser = DependencyParser.loadFromModelFile(modelFile.getPath(), props(8, Config.WeightPrecision.FLOAT));
+
+    for (Config.WeightPrecision precision : new Config.WeightPrecision[] { Config.WeightPrecision.DOUBLE, Config.WeightPrecision.FLOAT }) {
+      File mappedFile = File.createTempFile("DependencyParserBatchTest", ".map");
+      mappedFile.deleteOnExit();
+      parser.writeMappedModelFile(mappedFile.getPath(), precision);
+      DependencyParser mapped = DependencyParser.loadFromModelFile(mappedFile.getPath(), props(8));
+      DependencyParser expected = precision == Config.WeightPrecision.DOUBLE ? parser : floatParser;
+      Assert.assertEquals(parse(expected, sentences), parse(mapped, sentences));
+    }
+  }
+
+}
@@ -0,0 +1,81 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import edu.stanford.nlp.parser.lexparser.BinaryHeadFinder;
+import edu.stanford.nlp.parser.lexparser.Options;
+import edu.stanford.nlp.trees.HeadFinder;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Trees;
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * Checks that the hashed features of a state are the hashes of its
+ * feature strings, so that weights kept by string are found by hash.
+ */
+public class HashedFeaturesTest extends TestCase {
+
+  String[] treeStrings = {
+    "(ROOT (S (INTJ (RB No)) (@S (, ,) (@S (NP (PRP it)) (@S (VP (@VP (VBD was) (RB n't)) (NP (NNP Black) (NNP Monday))) (. .))))) (.$$. .$.))",
+    "(ROOT (FRAG (NP (DT A) (@NP (ADJP (JJ short) (@ADJP (, ,) (JJ simple))) (NN test)))))",
+  };
+
+  private List<State> states() {
+    Options op = new Options();
+    HeadFinder binaryHeadFinder = new BinaryHeadFinder(op.tlpParams.headFinder());
+    List<State> states = new ArrayList<>();
+    for (String treeText : treeStrings) {
+      Tree tree = Tree.valueOf(treeText);
+      Trees.convertToCoreLabels(tree);
+      tree.percolateHeadAnnotations(binaryHeadFinder);
+      List<Transition> transitions = CreateTransitionSequence.createTransitionSequence(tree, true, Collections.singleton("ROOT"), Collections.singleton("ROOT"));
+      State state = ShiftReduceParser.initialStateFromGoldTagTree(tree);
+      states.add(state);
+      for (Transition transition : transitions) {
+        state = transition.apply(state);
+        states.add(state);
+      }
+    }
+    return states;
+  }
+
+  public void testHashesMatchStrings() {
+    FeatureFactory factory = new BasicFeatureFactory();
+    for (State state : states()) {
+      List<String> features = factory.featurize(state);
+      HashedFeatures hashed = new HashedFeatures(4);
+      factory.featurize(state, hashed);
+      assertEquals(features.size(), hashed.size());
+      for (int i = 0; i < features.size(); ++i) {
+        assertEquals(features.get(i), HashedFeatures.hash(features.get(i)), hashed.get(i));
+      }
+    }
+  }
+
+  public void testTable() {
+    FeatureFactory factory = new BasicFeatureFactory();
+    Map<String, Weight> featureWeights = Generics.newHashMap();
+    List<State> states = states();
+    // only give weights to the features of every other state
+    for (int i = 0; i < states.size(); i += 2) {
+      for (String feature : factory.featurize(states.get(i))) {
+        Weight weight = new Weight();
+        weight.updateWeight(feature.length() % 5, 1.0f);
+        featureWeights.put(feature, weight);
+      }
+    }
+    FeatureWeightTable table = new FeatureWeightTable(featureWeights);
+    assertEquals(featureWeights.size(), table.size());
+    for (State state : states) {
+      for (String feature : factory.featurize(state)) {
+        assertSame(feature, featureWeights.get(feature), table.get(HashedFeatures.hash(feature)));
+      }
+    }
+  }
+
+}
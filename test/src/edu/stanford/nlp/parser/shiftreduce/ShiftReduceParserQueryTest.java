@@ -0,0 +1,111 @@
+package edu.stanford.nlp.parser.shiftreduce;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import edu.stanford.nlp.parser.lexparser.BinaryHeadFinder;
+import edu.stanford.nlp.trees.HeadFinder;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Trees;
+import edu.stanford.nlp.util.Generics;
+import edu.stanford.nlp.util.HashIndex;
+import edu.stanford.nlp.util.Index;
+import edu.stanford.nlp.util.ScoredObject;
+
+/**
+ * Checks that scoring the beam in several threads, or all of its states
+ * together, finds the same parses as scoring one state at a time.
+ */
+public class ShiftReduceParserQueryTest extends TestCase {
+
+  String[] treeStrings = {
+    "(ROOT (S (INTJ (RB No)) (@S (, ,) (@S (NP (PRP it)) (@S (VP (@VP (VBD was) (RB n't)) (NP (NNP Black) (NNP Monday))) (. .))))) (.$$. .$.))",
+    "(ROOT (S (CC But) (@S (SBAR (IN while) (S (NP (DT the) (@NP (NNP New) (@NP (NNP York) (@NP (NNP Stock) (NNP Exchange))))) (VP (@VP (VBD did) (RB n't)) (VP (@VP (@VP (VB fall) (ADVP (RB apart))) (NP (NNP Friday))) (SBAR (IN as) (S (NP (DT the) (@NP (NNP Dow) (@NP (NNP Jones) (@NP (NNP Industrial) (NNP Average))))) (VP (VBD plunged) (NP (NP (CD 190.58) (NNS points)) (PRN (: --) (@PRN (NP (@NP (NP (JJS most)) (PP (IN of) (NP (PRP it)))) (PP (IN in) (NP (DT the) (@NP (JJ final) (NN hour))))) (: --))))))))))) (@S (NP (PRP it)) (@S (ADVP (RB barely)) (@S (VP (VBD managed) (S (VP (TO to) (VP (VB stay) (NP (NP (DT this) (NN side)) (PP (IN of) (NP (NN chaos)))))))) (. .)))))) (.$$. .$.))",
+    "(ROOT (FRAG (NP (DT A) (@NP (ADJP (JJ short) (@ADJP (, ,) (JJ simple))) (NN test)))))",
+  };
+
+  private List<Tree> trees;
+  private PerceptronModel model;
+
+  /** A model with random weights for the features of the states the trees go through */
+  @Override
+  public void setUp() {
+    ShiftReduceOptions op = new ShiftReduceOptions();
+    HeadFinder binaryHeadFinder = new BinaryHeadFinder(op.tlpParams.headFinder());
+    Set<String> rootStates = Collections.singleton("ROOT");
+    Set<String> knownStates = Generics.newHashSet();
+    Index<Transition> transitionIndex = new HashIndex<>();
+    List<List<Transition>> transitionLists = new ArrayList<>();
+    trees = new ArrayList<>();
+    for (String treeText : treeStrings) {
+      Tree tree = Tree.valueOf(treeText);
+      Trees.convertToCoreLabels(tree);
+      tree.percolateHeadAnnotations(binaryHeadFinder);
+      trees.add(tree);
+      ShiftReduceParser.findKnownStates(tree, knownStates);
+      List<Transition> transitions = CreateTransitionSequence.createTransitionSequence(tree, op.compoundUnaries, rootStates, rootStates);
+      transitionIndex.addAll(transitions);
+      transitionLists.add(transitions);
+    }
+
+    model = new PerceptronModel(op, transitionIndex, knownStates, rootStates, rootStates);
+    Random random = new Random(1234);
+    for (int i = 0; i < trees.size(); ++i) {
+      State state = ShiftReduceParser.initialStateFromGoldTagTree(trees.get(i));
+      for (Transition transition : transitionLists.get(i)) {
+        for (String feature : model.featureFactory.featurize(state)) {
+          Weight weight = model.featureWeights.computeIfAbsent(feature, f -> new Weight());
+          weight.updateWeight(random.nextInt(transitionIndex.size()), random.nextFloat() - 0.5f);
+        }
+        state = transition.apply(state);
+      }
+    }
+  }
+
+  private List<String> parse(int beamSize, int beamThreads) {
+    model.op.testOptions().beamSize = beamSize;
+    model.op.testOptions().beamThreads = beamThreads;
+    ShiftReduceParser parser = new ShiftReduceParser(model.op, model);
+    List<String> parses = new ArrayList<>();
+    for (Tree tree : trees) {
+      ShiftReduceParserQuery query = (ShiftReduceParserQuery) parser.parserQuery();
+      assertTrue(query.parse(tree));
+      for (ScoredObject<Tree> parse : query.getKBestParses(beamSize)) {
+        parses.add(parse.score() + " " + parse.object());
+      }
+    }
+    return parses;
+  }
+
+  public void testBeamThreads() {
+    List<String> expected = parse(8, 1);
+    assertEquals(expected, parse(8, 3));
+    assertEquals(expected, parse(8, 16));
+  }
+
+  public void testBatchedScores() {
+    List<State> states = new ArrayList<>();
+    for (Tree tree : trees) {
+      states.add(ShiftReduceParser.initialStateFromGoldTagTree(tree));
+    }
+    for (int step = 0; step < 6; ++step) {
+      List<Collection<ScoredObject<Integer>>> batched = model.findHighestScoringTransitions(states, true, 3, null);
+      assertEquals(states.size(), batched.size());
+      for (int i = 0; i < states.size(); ++i) {
+        Collection<ScoredObject<Integer>> single = model.findHighestScoringTransitions(states.get(i), true, 3, null);
+        assertEquals(single.toString(), batched.get(i).toString());
+      }
+      for (int i = 0; i < states.size(); ++i) {
+        ScoredObject<Integer> any = batched.get(i).iterator().next();
+        states.set(i, model.transitionIndex.get(any.object()).apply(states.get(i), any.score()));
+      }
+    }
+  }
+
+}
@@ -0,0 +1,152 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Checks that a pipeline with an {@link AnnotationCache} gives repeated
+ * documents the same annotations without annotating them again.
+ */
+public class AnnotationCacheTest {
+
+  /** How many documents have really been annotated */
+  private static final AtomicInteger annotated = new AtomicInteger();
+
+  public static class CountingAnnotator implements Annotator {
+    @Override
+    public void annotate(Annotation annotation) {
+      annotated.incrementAndGet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.emptySet();
+    }
+  }
+
+  private File dir;
+
+  @Before
+  public void setUp() throws IOException {
+    dir = Files.createTempDirectory("annotationcache").toFile();
+    annotated.set(0);
+  }
+
+  @After
+  public void tearDown() {
+    for (File file : dir.listFiles()) {
+      file.delete();
+    }
+    dir.delete();
+  }
+
+  private static StanfordCoreNLP pipeline(String... cacheProperties) {
+    Properties props = new Properties();
+    props.setProperty("annotators", "tokenize,ssplit,count");
+    props.setProperty(StanfordCoreNLP.CUSTOM_ANNOTATOR_PREFIX + "count", CountingAnnotator.class.getName());
+    for (int i = 0; i < cacheProperties.length; i += 2) {
+      props.setProperty(cacheProperties[i], cacheProperties[i + 1]);
+    }
+    return new StanfordCoreNLP(props);
+  }
+
+  private static String describe(Annotation annotation) {
+    StringBuilder sb = new StringBuilder();
+    for (CoreMap sentence : annotation.get(CoreAnnotations.SentencesAnnotation.class)) {
+      for (CoreLabel token : sentence.get(CoreAnnotations.TokensAnnotation.class)) {
+        sb.append(token.word()).append('/').append(token.beginPosition()).append(' ');
+      }
+      sb.append("| ");
+    }
+    return sb.toString();
+  }
+
+  private static String annotate(StanfordCoreNLP pipeline, String text) {
+    Annotation annotation = new Annotation(text);
+    pipeline.annotate(annotation);
+    return describe(annotation);
+  }
+
+  @Test
+  public void testMemory() {
+    StanfordCoreNLP pipeline = pipeline("annotationCache.size", "2");
+    String first = annotate(pipeline, "The cat sat. It was happy.");
+    Assert.assertEquals("The/0 cat/4 sat/8 ./11 | It/13 was/16 happy/20 ./25 | ", first);
+    Assert.assertEquals(first, annotate(pipeline, "The cat sat. It was happy."));
+    Assert.assertEquals(1, annotated.get());
+    Assert.assertEquals(1, pipeline.getAnnotationCache().hits());
+
+    // a document with a different id is a different document
+    Annotation withId = new Annotation("The cat sat. It was happy.");
+    withId.set(CoreAnnotations.DocIDAnnotation.class, "doc1");
+    pipeline.annotate(withId);
+    Assert.assertEquals(first, describe(withId));
+    Assert.assertEquals("doc1", withId.get(CoreAnnotations.DocIDAnnotation.class));
+    Assert.assertEquals(2, annotated.get());
+
+    // only the two most recently used documents are kept
+    annotate(pipeline, "A dog barked.");
+    Assert.assertEquals(first, annotate(pipeline, "The cat sat. It was happy."));
+    Assert.assertEquals(4, annotated.get());
+    Assert.assertEquals(0.2, pipeline.getAnnotationCache().hitRate(), 1e-9);
+  }
+
+  @Test
+  public void testDisk() {
+    StanfordCoreNLP pipeline = pipeline("annotationCache.dir", dir.getPath(), "annotationCache.diskSize", "2");
+    String first = annotate(pipeline, "The cat sat.");
+    annotate(pipeline, "A dog barked.");
+    annotate(pipeline, "The cat sat.");
+    annotate(pipeline, "Birds sing.");
+    Assert.assertEquals(3, annotated.get());
+    Assert.assertEquals(2, dir.list().length);
+
+    // a new pipeline finds the documents left by the last one, except the one removed
+    StanfordCoreNLP another = pipeline("annotationCache.dir", dir.getPath(), "annotationCache.diskSize", "2");
+    Assert.assertEquals(first, annotate(another, "The cat sat."));
+    annotate(another, "Birds sing.");
+    Assert.assertEquals(3, annotated.get());
+    annotate(another, "A dog barked.");
+    Assert.assertEquals(4, annotated.get());
+  }
+
+  @Test
+  public void testThreads() {
+    StanfordCoreNLP pipeline = pipeline("annotationCache.size", "10");
+    annotate(pipeline, "The cat sat.");
+    List<Annotation> documents = new ArrayList<>();
+    for (String text : Arrays.asList("The cat sat.", "A dog barked.", "The cat sat.", "Birds sing.")) {
+      documents.add(new Annotation(text));
+    }
+    List<Annotation> done = Collections.synchronizedList(new ArrayList<>());
+    pipeline.annotate(documents, 2, done::add);
+    Assert.assertEquals(4, done.size());
+    Assert.assertEquals(3, annotated.get());
+    Assert.assertEquals("The/0 cat/4 sat/8 ./11 | ", describe(documents.get(2)));
+    Assert.assertEquals("A/0 dog/2 barked/6 ./12 | ", describe(documents.get(1)));
+  }
+
+}
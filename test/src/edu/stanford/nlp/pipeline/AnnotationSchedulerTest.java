@@ -0,0 +1,128 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Checks that the scheduler runs every stage of every document, in
+ * order, without letting annotators start threads of their own.
+ */
+public class AnnotationSchedulerTest {
+
+  /** Marks each sentence, remembering which threads did the work */
+  static class MarkingAnnotator extends SentenceAnnotator {
+    final Set<String> threadNames = ConcurrentHashMap.newKeySet();
+
+    @Override
+    protected int nThreads() {
+      return 8;
+    }
+
+    @Override
+    protected long maxTime() {
+      return -1;
+    }
+
+    @Override
+    protected void doOneSentence(Annotation annotation, CoreMap sentence) {
+      // the tokenizer stage must already have finished on this document
+      Assert.assertNotNull(annotation.get(CoreAnnotations.TokensAnnotation.class));
+      threadNames.add(Thread.currentThread().getName());
+      sentence.set(CoreAnnotations.TextAnnotation.class, "marked");
+    }
+
+    @Override
+    protected void doOneFailedSentence(Annotation annotation, CoreMap sentence) {
+      throw new AssertionError("Should not fail");
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return Collections.emptySet();
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return Collections.emptySet();
+    }
+  }
+
+  private static List<Annotation> makeDocuments(int numDocuments) {
+    List<Annotation> documents = new ArrayList<>();
+    for (int i = 0; i < numDocuments; ++i) {
+      StringBuilder text = new StringBuilder();
+      for (int j = 0; j <= i % 7; ++j) {
+        text.append("This is sentence ").append(j).append(" of document ").append(i).append(". ");
+      }
+      documents.add(new Annotation(text.toString()));
+    }
+    return documents;
+  }
+
+  @Test
+  public void testAllStagesRun() {
+    MarkingAnnotator marker = new MarkingAnnotator();
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    pipeline.addAnnotator(marker);
+
+    List<Annotation> documents = makeDocuments(200);
+    AtomicInteger finished = new AtomicInteger();
+    new AnnotationScheduler(pipeline, 4).annotate(documents, annotation -> finished.incrementAndGet());
+
+    Assert.assertEquals(documents.size(), finished.get());
+    for (int i = 0; i < documents.size(); ++i) {
+      List<CoreMap> sentences = documents.get(i).get(CoreAnnotations.SentencesAnnotation.class);
+      Assert.assertEquals(i % 7 + 1, sentences.size());
+      for (CoreMap sentence : sentences) {
+        Assert.assertEquals("marked", sentence.get(CoreAnnotations.TextAnnotation.class));
+      }
+    }
+    for (String name : marker.threadNames) {
+      Assert.assertTrue(name, name.startsWith(AnnotationScheduler.class.getSimpleName()));
+    }
+    Assert.assertFalse(AnnotationScheduler.inScheduler());
+  }
+
+  @Test
+  public void testExceptionPropagates() {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new Annotator() {
+      @Override
+      public void annotate(Annotation annotation) {
+        throw new IllegalStateException("broken");
+      }
+
+      @Override
+      public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+        return Collections.emptySet();
+      }
+
+      @Override
+      public Set<Class<? extends CoreAnnotation>> requires() {
+        return Collections.emptySet();
+      }
+    });
+
+    try {
+      pipeline.annotate(makeDocuments(20), 3);
+      Assert.fail("Expected the annotator's exception to be rethrown");
+    } catch (IllegalStateException e) {
+      Assert.assertEquals("broken", e.getMessage());
+    }
+  }
+
+}
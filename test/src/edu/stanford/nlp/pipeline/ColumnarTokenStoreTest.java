@@ -0,0 +1,112 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Checks that views over a ColumnarTokenStore behave like the CoreLabels they replaced.
+ */
+public class ColumnarTokenStoreTest {
+
+  private static Annotation annotate(String text) {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    Annotation annotation = new Annotation(text);
+    pipeline.annotate(annotation);
+    return annotation;
+  }
+
+  @Test
+  public void testCompact() {
+    Annotation annotation = annotate("The dog barked.  It was\nloud.");
+    List<CoreLabel> original = new ArrayList<>();
+    for (CoreLabel token : annotation.get(CoreAnnotations.TokensAnnotation.class)) {
+      original.add(new CoreLabel(token));
+    }
+
+    ColumnarTokenStore store = ColumnarTokenStore.compact(annotation);
+    List<CoreLabel> tokens = annotation.get(CoreAnnotations.TokensAnnotation.class);
+    Assert.assertEquals(original.size(), store.size());
+    Assert.assertEquals(original.size(), tokens.size());
+    for (int i = 0; i < tokens.size(); i++) {
+      Assert.assertEquals(original.get(i), tokens.get(i));
+      Assert.assertEquals(tokens.get(i), original.get(i));
+      Assert.assertEquals(original.get(i).hashCode(), tokens.get(i).hashCode());
+      Assert.assertEquals(original.get(i).keySet(), tokens.get(i).keySet());
+      Assert.assertEquals(original.get(i).size(), tokens.get(i).size());
+      Assert.assertSame(store.token(i), tokens.get(i));
+    }
+
+    // the sentences share the views of the document
+    List<CoreMap> sentences = annotation.get(CoreAnnotations.SentencesAnnotation.class);
+    Assert.assertEquals(2, sentences.size());
+    List<CoreLabel> second = sentences.get(1).get(CoreAnnotations.TokensAnnotation.class);
+    Assert.assertEquals("It", second.get(0).word());
+    Assert.assertSame(tokens.get(4), second.get(0));
+    Assert.assertEquals(1, second.get(0).sentIndex());
+    Assert.assertEquals(1, second.get(0).index());
+  }
+
+  @Test
+  public void testSetAndRemove() {
+    Annotation annotation = annotate("Dogs bark.");
+    ColumnarTokenStore.compact(annotation);
+    CoreLabel token = annotation.get(CoreAnnotations.TokensAnnotation.class).get(0);
+
+    token.setTag("NNS");
+    token.setLemma("dog");
+    token.setNER("O");
+    Assert.assertEquals("NNS", token.tag());
+    Assert.assertEquals("dog", token.lemma());
+    Assert.assertEquals("O", token.ner());
+
+    // a key which is not a column goes to the view itself
+    token.set(CoreAnnotations.CoarseTagAnnotation.class, "N");
+    Assert.assertEquals("N", token.get(CoreAnnotations.CoarseTagAnnotation.class));
+    Assert.assertTrue(token.keySet().contains(CoreAnnotations.CoarseTagAnnotation.class));
+
+    // changing the word clears the lemma, as in CoreLabel
+    token.setWord("Cats");
+    Assert.assertNull(token.lemma());
+    Assert.assertFalse(token.containsKey(CoreAnnotations.LemmaAnnotation.class));
+
+    token.remove(CoreAnnotations.CharacterOffsetBeginAnnotation.class);
+    Assert.assertFalse(token.containsKey(CoreAnnotations.CharacterOffsetBeginAnnotation.class));
+    Assert.assertEquals(-1, token.beginPosition());
+
+    CoreLabel copy = new CoreLabel(token);
+    Assert.assertEquals(copy, token);
+    Assert.assertEquals(token, copy);
+  }
+
+  @Test
+  public void testSerialization() throws IOException, ClassNotFoundException {
+    Annotation annotation = annotate("Dogs bark.");
+    ColumnarTokenStore.compact(annotation);
+    CoreLabel token = annotation.get(CoreAnnotations.TokensAnnotation.class).get(1);
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+      out.writeObject(token);
+    }
+    try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+      Object read = in.readObject();
+      Assert.assertEquals(CoreLabel.class, read.getClass());
+      Assert.assertEquals(token, read);
+    }
+  }
+
+}
@@ -0,0 +1,154 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.util.Generics;
+
+/**
+ * Checks that a pipeline with lazyAnnotators only creates annotators when
+ * they are needed, and that requesting annotations runs only the
+ * annotators which produce them.
+ */
+public class LazyAnnotatorTest {
+
+  private static final AtomicInteger pipelines = new AtomicInteger();
+
+  /** Which annotators have been created, and which have been run */
+  private static final List<String> created = Collections.synchronizedList(new ArrayList<>());
+  private static final List<String> ran = Collections.synchronizedList(new ArrayList<>());
+
+  /** Requires and produces the CoreAnnotations named in its properties */
+  public static class FakeAnnotator implements Annotator {
+    private final String name;
+    private final Set<Class<? extends CoreAnnotation>> requires;
+    private final Set<Class<? extends CoreAnnotation>> produces;
+
+    public FakeAnnotator(String name, Properties props) {
+      this.name = name;
+      this.requires = keys(props.getProperty(name + ".requires", ""));
+      this.produces = keys(props.getProperty(name + ".produces", ""));
+      created.add(name);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Set<Class<? extends CoreAnnotation>> keys(String names) {
+      Set<Class<? extends CoreAnnotation>> keys = Generics.newHashSet();
+      for (String name : names.split(",")) {
+        if ( ! name.isEmpty()) {
+          try {
+            keys.add((Class<? extends CoreAnnotation>) Class.forName(CoreAnnotations.class.getName() + '$' + name));
+          } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+          }
+        }
+      }
+      return keys;
+    }
+
+    @Override
+    public void annotate(Annotation annotation) {
+      ran.add(name);
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requirementsSatisfied() {
+      return produces;
+    }
+
+    @Override
+    public Set<Class<? extends CoreAnnotation>> requires() {
+      return requires;
+    }
+  }
+
+  private static StanfordCoreNLP pipeline(boolean lazy, String... extraProperties) {
+    created.clear();
+    ran.clear();
+    Properties props = new Properties();
+    props.setProperty("annotators", "a,b,c,d,e");
+    props.setProperty("lazyAnnotators", Boolean.toString(lazy));
+    props.setProperty("a.produces", "TokensAnnotation");
+    props.setProperty("b.requires", "TokensAnnotation");
+    props.setProperty("b.produces", "PartOfSpeechAnnotation");
+    props.setProperty("c.requires", "TokensAnnotation");
+    props.setProperty("c.produces", "LemmaAnnotation");
+    props.setProperty("d.requires", "PartOfSpeechAnnotation");
+    props.setProperty("d.produces", "NamedEntityTagAnnotation");
+    props.setProperty("e.requires", "NamedEntityTagAnnotation");
+    props.setProperty("e.produces", "MentionsAnnotation");
+    for (int i = 0; i < extraProperties.length; i += 2) {
+      props.setProperty(extraProperties[i], extraProperties[i + 1]);
+    }
+    // so that the annotators aren't shared with other pipelines through the global cache
+    int id = pipelines.incrementAndGet();
+    for (String name : props.getProperty("annotators").split(",")) {
+      props.setProperty(StanfordCoreNLP.CUSTOM_ANNOTATOR_PREFIX + name, FakeAnnotator.class.getName());
+      props.setProperty(name + ".pipeline", Integer.toString(id));
+    }
+    return new StanfordCoreNLP(props);
+  }
+
+  @Test
+  public void testEager() {
+    StanfordCoreNLP pipeline = pipeline(false);
+    Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), created);
+    pipeline.annotate(new Annotation(""), Collections.singleton(CoreAnnotations.NamedEntityTagAnnotation.class));
+    Assert.assertEquals(Arrays.asList("a", "b", "d"), ran);
+  }
+
+  @Test
+  public void testLazy() {
+    StanfordCoreNLP pipeline = pipeline(true);
+    Assert.assertEquals(Collections.emptyList(), created);
+
+    pipeline.annotate(new Annotation(""), Collections.singleton(CoreAnnotations.NamedEntityTagAnnotation.class));
+    Assert.assertEquals(Arrays.asList("a", "b", "c", "d"), created);
+    Assert.assertEquals(Arrays.asList("a", "b", "d"), ran);
+
+    ran.clear();
+    pipeline.annotate(new Annotation(""), Arrays.asList(CoreAnnotations.LemmaAnnotation.class, CoreAnnotations.TokensAnnotation.class));
+    Assert.assertEquals(Arrays.asList("a", "c"), ran);
+
+    ran.clear();
+    pipeline.annotate(new Annotation(""));
+    Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), created);
+    Assert.assertEquals(Arrays.asList("a", "b", "c", "d", "e"), ran);
+  }
+
+  @Test
+  public void testNotProduced() {
+    StanfordCoreNLP pipeline = pipeline(true);
+    try {
+      pipeline.annotate(new Annotation(""), Collections.singleton(CoreAnnotations.ParentAnnotation.class));
+      Assert.fail("Expected no annotator to produce ParentAnnotation");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("ParentAnnotation"));
+    }
+  }
+
+  @Test
+  public void testLazyRequirements() {
+    // d can't run without pos tags, but that is only found out when d is created
+    StanfordCoreNLP pipeline = pipeline(true, "b.produces", "");
+    pipeline.annotate(new Annotation(""), Collections.singleton(CoreAnnotations.LemmaAnnotation.class));
+    Assert.assertEquals(Arrays.asList("a", "c"), ran);
+    try {
+      pipeline.annotate(new Annotation(""));
+      Assert.fail("Expected annotator d to be missing its requirements");
+    } catch (IllegalArgumentException e) {
+      Assert.assertTrue(e.getMessage().contains("PartOfSpeechAnnotation"));
+    }
+  }
+
+}
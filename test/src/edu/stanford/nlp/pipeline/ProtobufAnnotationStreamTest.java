@@ -0,0 +1,119 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Round trips documents through the streamed protobuf format.
+ */
+public class ProtobufAnnotationStreamTest {
+
+  private static Annotation annotate(String text, String docID) {
+    AnnotationPipeline pipeline = new AnnotationPipeline();
+    pipeline.addAnnotator(new TokenizerAnnotator(false, "en"));
+    pipeline.addAnnotator(new WordsToSentencesAnnotator(false));
+    Annotation annotation = new Annotation(text);
+    annotation.set(CoreAnnotations.DocIDAnnotation.class, docID);
+    pipeline.annotate(annotation);
+    return annotation;
+  }
+
+  private static void assertSameTokens(List<CoreLabel> expected, List<CoreLabel> actual) {
+    Assert.assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      Assert.assertEquals(expected.get(i).word(), actual.get(i).word());
+      Assert.assertEquals(expected.get(i).beginPosition(), actual.get(i).beginPosition());
+      Assert.assertEquals(expected.get(i).endPosition(), actual.get(i).endPosition());
+      Assert.assertEquals(expected.get(i).index(), actual.get(i).index());
+    }
+  }
+
+  @Test
+  public void testSentenceBySentence() throws IOException {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation first = annotate("The dog barked. The cat ran away. Nobody cared.", "first");
+    Annotation second = annotate("Another document.", "second");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProtobufAnnotationStream.write(serializer, first, out);
+    ProtobufAnnotationStream.write(serializer, second, out);
+
+    InputStream in = new ByteArrayInputStream(out.toByteArray());
+    ProtobufAnnotationStream.Reader reader = new ProtobufAnnotationStream.Reader(serializer, in);
+    Assert.assertEquals("first", reader.header().getDocID());
+    // the text comes with the sentences, not all at once at the start
+    Assert.assertEquals("", reader.header().getText());
+    List<CoreMap> expected = first.get(CoreAnnotations.SentencesAnnotation.class);
+    int count = 0;
+    while (reader.hasNext()) {
+      CoreMap sentence = reader.next();
+      CoreMap original = expected.get(count);
+      Assert.assertEquals(original.get(CoreAnnotations.TextAnnotation.class), sentence.get(CoreAnnotations.TextAnnotation.class));
+      assertSameTokens(original.get(CoreAnnotations.TokensAnnotation.class), sentence.get(CoreAnnotations.TokensAnnotation.class));
+      Assert.assertEquals("first", sentence.get(CoreAnnotations.TokensAnnotation.class).get(0).docID());
+      ++count;
+    }
+    Assert.assertEquals(expected.size(), count);
+    Assert.assertEquals("first", reader.trailer().getDocID());
+
+    // the second document follows the first in the same stream
+    reader = new ProtobufAnnotationStream.Reader(serializer, in);
+    Annotation read = reader.readAll();
+    Assert.assertEquals("second", read.get(CoreAnnotations.DocIDAnnotation.class));
+    Assert.assertEquals(1, read.get(CoreAnnotations.SentencesAnnotation.class).size());
+
+    try {
+      new ProtobufAnnotationStream.Reader(serializer, in);
+      Assert.fail("Expected the stream to be empty");
+    } catch (EOFException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void testReadAllMatchesNonStreamed() throws IOException, ClassNotFoundException {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation doc = annotate("One sentence here. And another one there.", "doc");
+
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    ProtobufAnnotationStream.write(serializer, doc, streamed);
+    Annotation fromStream = new ProtobufAnnotationStream.Reader(serializer, new ByteArrayInputStream(streamed.toByteArray())).readAll();
+
+    ByteArrayOutputStream whole = new ByteArrayOutputStream();
+    serializer.write(doc, whole);
+    Annotation fromWhole = serializer.read(new ByteArrayInputStream(whole.toByteArray())).first();
+
+    Assert.assertEquals(fromWhole.get(CoreAnnotations.TextAnnotation.class), fromStream.get(CoreAnnotations.TextAnnotation.class));
+    Assert.assertEquals(fromWhole.get(CoreAnnotations.DocIDAnnotation.class), fromStream.get(CoreAnnotations.DocIDAnnotation.class));
+    assertSameTokens(fromWhole.get(CoreAnnotations.TokensAnnotation.class), fromStream.get(CoreAnnotations.TokensAnnotation.class));
+    Assert.assertEquals(fromWhole.get(CoreAnnotations.SentencesAnnotation.class).size(),
+                        fromStream.get(CoreAnnotations.SentencesAnnotation.class).size());
+  }
+
+  @Test
+  public void testNoText() throws IOException {
+    ProtobufAnnotationSerializer serializer = new ProtobufAnnotationSerializer();
+    Annotation doc = new Annotation((String) null);
+    doc.set(CoreAnnotations.DocIDAnnotation.class, "empty");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    ProtobufAnnotationStream.write(serializer, doc, out);
+    ProtobufAnnotationStream.Reader reader = new ProtobufAnnotationStream.Reader(serializer, new ByteArrayInputStream(out.toByteArray()));
+    Assert.assertFalse(reader.hasNext());
+    Annotation read = reader.readAll();
+    Assert.assertEquals("empty", read.get(CoreAnnotations.DocIDAnnotation.class));
+    Assert.assertEquals("", read.get(CoreAnnotations.TextAnnotation.class));
+  }
+
+}
@@ -0,0 +1,84 @@
+package edu.stanford.nlp.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreLabel;
+
+/** Checks the eviction of a {@link SentenceCache} and the keys it makes of sentences. */
+public class SentenceCacheTest {
+
+  private static List<CoreLabel> tokens(String... wordsAndTags) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (String wordAndTag : wordsAndTags) {
+      String[] pieces = wordAndTag.split("/");
+      CoreLabel token = new CoreLabel();
+      token.setWord(pieces[0]);
+      token.setValue(pieces[0]);
+      if (pieces.length > 1) {
+        token.setTag(pieces[1]);
+      }
+      tokens.add(token);
+    }
+    return tokens;
+  }
+
+  @Test
+  public void testLRU() {
+    SentenceCache<String> cache = new SentenceCache<>(2, SentenceCache.Eviction.LRU);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    Assert.assertEquals("A", cache.get("a"));
+    cache.put("c", "C");
+    // b was used least recently
+    Assert.assertNull(cache.get("b"));
+    Assert.assertEquals("A", cache.get("a"));
+    Assert.assertEquals("C", cache.get("c"));
+    Assert.assertEquals(2, cache.size());
+    Assert.assertEquals(3, cache.hits());
+    Assert.assertEquals(1, cache.misses());
+  }
+
+  @Test
+  public void testFIFO() {
+    SentenceCache<String> cache = new SentenceCache<>(2, SentenceCache.Eviction.FIFO);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    Assert.assertEquals("A", cache.get("a"));
+    cache.put("c", "C");
+    // a was added first, even though it was used since
+    Assert.assertNull(cache.get("a"));
+    Assert.assertEquals("B", cache.get("b"));
+    Assert.assertEquals("C", cache.get("c"));
+  }
+
+  @Test
+  public void testFromProperties() {
+    Properties props = new Properties();
+    Assert.assertNull(SentenceCache.fromProperties(props, "pos."));
+    props.setProperty("pos.sentenceCache", "1");
+    props.setProperty("pos.sentenceCache.eviction", "fifo");
+    SentenceCache<String> cache = SentenceCache.fromProperties(props, "pos.");
+    Assert.assertNotNull(cache);
+    cache.put("a", "A");
+    cache.put("b", "B");
+    Assert.assertEquals(1, cache.size());
+    Assert.assertEquals("B", cache.get("b"));
+    Assert.assertNull(SentenceCache.fromProperties(props, "parse."));
+  }
+
+  @Test
+  public void testTokensKey() {
+    List<CoreLabel> sentence = tokens("Time/NN", "flies/VBZ");
+    Assert.assertEquals(SentenceCache.tokensKey(sentence, true), SentenceCache.tokensKey(tokens("Time/NN", "flies/VBZ"), true));
+    Assert.assertNotEquals(SentenceCache.tokensKey(sentence, true), SentenceCache.tokensKey(tokens("Time/NNP", "flies/VBZ"), true));
+    Assert.assertEquals(SentenceCache.tokensKey(sentence, false), SentenceCache.tokensKey(tokens("Time/NNP", "flies/VBZ"), false));
+    // the words can't run together
+    Assert.assertNotEquals(SentenceCache.tokensKey(tokens("ab", "c"), false), SentenceCache.tokensKey(tokens("a", "bc"), false));
+  }
+
+}
@@ -0,0 +1,144 @@
+package edu.stanford.nlp.pipeline;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import edu.stanford.nlp.io.IOUtils;
+import edu.stanford.nlp.ling.CoreAnnotations;
+import edu.stanford.nlp.ling.CoreLabel;
+
+/**
+ * Checks that matching plain entries with the dictionary labels tokens the
+ * same as matching them with TokensRegex.
+ */
+public class TokensRegexNERAnnotatorTest {
+
+  private static final String[] MAPPING = {
+      "New York\tSTATE_OR_PROVINCE",
+      "New York City\tCITY\tLOCATION,O",
+      "York City Council\tORGANIZATION",
+      "Bank of America\tORGANIZATION\tMISC\t2",
+      "America\tCOUNTRY",
+      "of America\tMISC",
+      "Stanford University\tSCHOOL\tORGANIZATION",
+      "stanford\tSCHOOL",
+      "John\tPERSON",
+      "John Smith\tPERSON",
+      "smith smith\tTITLE",
+      "N[a-z]+ Y[a-z]+\tREGEX",
+      "( /The/ [ {word:/B.*/} ] )\tTOKENSREGEX",
+  };
+
+  private static final String[] SENTENCES = {
+      "I went to New York City to see the New York City Council .",
+      "The Bank of America is in America and not in New York .",
+      "John Smith went to Stanford University , not to stanford or STANFORD .",
+      "smith smith smith Smith smith SMITH SMITH",
+      "New Yorkers are from New York but Nyy Yzz is not .",
+  };
+
+  private static TokensRegexNERAnnotator annotator(boolean useDictionary, boolean ignoreCase) throws IOException {
+    return annotator(MAPPING, useDictionary, ignoreCase);
+  }
+
+  private static TokensRegexNERAnnotator annotator(String[] lines, boolean useDictionary, boolean ignoreCase) throws IOException {
+    File mapping = File.createTempFile("tokensregexner", ".tab");
+    mapping.deleteOnExit();
+    try (PrintWriter pw = IOUtils.getPrintWriter(mapping.getPath())) {
+      for (String line : lines) {
+        pw.println(line);
+      }
+    }
+    Properties props = new Properties();
+    props.setProperty("tokensregexner.mapping", mapping.getPath());
+    props.setProperty("tokensregexner.ignorecase", String.valueOf(ignoreCase));
+    props.setProperty("tokensregexner.dictionary", String.valueOf(useDictionary));
+    return new TokensRegexNERAnnotator("tokensregexner", props);
+  }
+
+  private static List<String> nerTags(TokensRegexNERAnnotator annotator, String sentence) {
+    List<CoreLabel> tokens = new ArrayList<>();
+    for (String word : sentence.split(" ")) {
+      CoreLabel token = new CoreLabel();
+      token.setWord(word);
+      token.setValue(word);
+      // an earlier NER model found some of the names
+      token.setNER(word.equals("Smith") || word.equals("Council") ? "PERSON" : "O");
+      tokens.add(token);
+    }
+    Annotation annotation = new Annotation(sentence);
+    annotation.set(CoreAnnotations.TokensAnnotation.class, tokens);
+    annotator.annotate(annotation);
+    List<String> tags = new ArrayList<>();
+    for (CoreLabel token : tokens) {
+      tags.add(token.ner());
+    }
+    return tags;
+  }
+
+  private static void assertSameTags(boolean ignoreCase) throws IOException {
+    TokensRegexNERAnnotator tokensRegex = annotator(false, ignoreCase);
+    TokensRegexNERAnnotator dictionary = annotator(true, ignoreCase);
+    for (String sentence : SENTENCES) {
+      Assert.assertEquals(sentence, nerTags(tokensRegex, sentence), nerTags(dictionary, sentence));
+    }
+  }
+
+  @Test
+  public void testSameTags() throws IOException {
+    assertSameTags(false);
+  }
+
+  @Test
+  public void testSameTagsIgnoringCase() throws IOException {
+    assertSameTags(true);
+  }
+
+  @Test
+  public void testDictionaryTags() throws IOException {
+    TokensRegexNERAnnotator dictionary = annotator(true, false);
+    Assert.assertEquals("[O, O, O, CITY, CITY, CITY, O, O, O, CITY, CITY, CITY, PERSON, O]",
+        nerTags(dictionary, SENTENCES[0]).toString());
+    // the regex is as long as New York, and New York comes first in the mapping
+    Assert.assertEquals("[O, ORGANIZATION, ORGANIZATION, ORGANIZATION, O, O, COUNTRY, O, O, O, STATE_OR_PROVINCE, STATE_OR_PROVINCE, O]",
+        nerTags(dictionary, SENTENCES[1]).toString());
+  }
+
+  /** Between equally good matches, the entry which comes first in the mapping wins */
+  @Test
+  public void testTiesInMappingOrder() throws IOException {
+    String[] plainFirst = { "New York\tSTATE_OR_PROVINCE", "N[a-z]+ Y[a-z]+\tREGEX" };
+    String[] regexFirst = { "N[a-z]+ Y[a-z]+\tREGEX", "New York\tSTATE_OR_PROVINCE" };
+    String sentence = "John went to New York .";
+    for (boolean useDictionary : new boolean[] { true, false }) {
+      Assert.assertEquals("[O, O, O, STATE_OR_PROVINCE, STATE_OR_PROVINCE, O]",
+          nerTags(annotator(plainFirst, useDictionary, false), sentence).toString());
+      Assert.assertEquals("[O, O, O, REGEX, REGEX, O]",
+          nerTags(annotator(regexFirst, useDictionary, false), sentence).toString());
+    }
+  }
+
+  /** The dictionary ignores case whatever the default locale, even one in which I lowercases to a dotless i */
+  @Test
+  public void testIgnoringCaseInTurkishLocale() throws IOException {
+    String[] mapping = { "Istanbul\tPLACE", "visit\tVERB" };
+    String sentence = "I VISIT ISTANBUL and Istanbul";
+    Locale locale = Locale.getDefault();
+    Locale.setDefault(new Locale("tr", "TR"));
+    try {
+      Assert.assertEquals("[O, VERB, PLACE, O, PLACE]",
+          nerTags(annotator(mapping, true, true), sentence).toString());
+    } finally {
+      Locale.setDefault(locale);
+    }
+  }
+
+}
@@ -0,0 +1,87 @@
+package edu.stanford.nlp.semgraph.semgrex;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.semgraph.SemanticGraph;
+import edu.stanford.nlp.util.Pair;
+
+public class SemgrexPatternSetTest extends TestCase {
+
+  private static final String[] PATTERNS = {
+      "{}", "{word:ate} >subj {}=s", "{word:ate} >obj {}=o", "{} >compound {}=c", "{word:muffins}",
+      "{word:/m.*/}", "{} < {word:A}", "{word:A} >/.*/ {}=d", "{word:E} <mark {} <expl {}",
+      "{word:X}", "{word:A} : {word:B}=b", "!{word:A}", "{word:B} ?>obj {}=o", "{word:E} !>amod {}",
+      "{word:ate} >subj {word:Bill} >obj {}=o", "{word:ate} >subj {}=s | >obj {}=s", "{word:bill}",
+      "{word:ate} >subj {}=s", "{$}", "{word:A} >>det {}=d",
+  };
+
+  private static List<SemanticGraph> graphs() {
+    return Arrays.asList(SemanticGraph.valueOf("[ate subj>Bill obj>[muffins compound>blueberry]]"),
+                         SemanticGraph.valueOf("[ate subj>bill obj>[muffins compound>blueberry compound>muffin]]"),
+                         SemgrexTest.makeComplicatedGraph());
+  }
+
+  private static List<SemgrexPattern> patterns() {
+    List<SemgrexPattern> patterns = new ArrayList<>();
+    for (String pattern : PATTERNS) {
+      patterns.add(SemgrexPattern.compile(pattern));
+    }
+    return patterns;
+  }
+
+  /** The node and named nodes of each match, so matches can be compared between matchers */
+  private static List<String> matches(SemgrexMatcher matcher) {
+    List<String> matches = new ArrayList<>();
+    while (matcher.find()) {
+      StringBuilder match = new StringBuilder(matcher.getMatch().toString());
+      for (String name : matcher.getNodeNames()) {
+        match.append(' ').append(name).append('=').append(matcher.getNode(name));
+      }
+      matches.add(match.toString());
+    }
+    return matches;
+  }
+
+  private static void assertSameMatches(boolean ignoreCase) {
+    List<SemgrexPattern> patterns = patterns();
+    SemgrexPatternSet patternSet = new SemgrexPatternSet(patterns, ignoreCase);
+    for (SemanticGraph graph : graphs()) {
+      List<Pair<SemgrexPattern, SemgrexMatcher>> matchers = patternSet.matchers(graph);
+      int next = 0;
+      for (SemgrexPattern pattern : patterns) {
+        List<String> expected = matches(pattern.matcher(graph, ignoreCase));
+        if (next < matchers.size() && matchers.get(next).first() == pattern) {
+          assertEquals(pattern + " in " + graph, expected, matches(matchers.get(next).second()));
+          next++;
+        } else {
+          assertEquals(pattern + " in " + graph, Arrays.asList(), expected);
+        }
+      }
+      assertEquals(matchers.size(), next);
+    }
+  }
+
+  public void testSameMatches() {
+    assertSameMatches(false);
+  }
+
+  public void testSameMatchesIgnoringCase() {
+    assertSameMatches(true);
+  }
+
+  public void testSharedAnchors() {
+    SemgrexPatternSet patternSet = new SemgrexPatternSet(patterns());
+    // the same root node and relations are only checked once
+    assertTrue(patternSet.numAnchors() < PATTERNS.length);
+    SemanticGraph graph = SemanticGraph.valueOf("[ate subj>Bill obj>[muffins compound>blueberry]]");
+    for (Pair<SemgrexPattern, SemgrexMatcher> matcher : patternSet.matchers(graph)) {
+      assertFalse(matcher.first().toString().contains("word:X"));
+      assertFalse(matcher.first().toString().contains("word:E"));
+    }
+  }
+
+}
@@ -0,0 +1,91 @@
+package edu.stanford.nlp.sentiment;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.Test;
+
+import edu.stanford.nlp.neural.rnn.RNNCoreAnnotations;
+import edu.stanford.nlp.trees.Tree;
+import edu.stanford.nlp.trees.Trees;
+
+/**
+ * Checks that the dense copy of a model labels trees the same way
+ * the model does.
+ */
+public class DenseSentimentModelTest {
+
+  String[] treeStrings = {
+    "(3 (2 It) (4 (2 (2 's) (3 (2 a) (4 (3 good) (2 movie)))) (2 .)))",
+    "(1 (2 (2 The) (2 plot)) (1 (2 (2 is) (1 (2 n't) (3 interesting))) (2 .)))",
+    "(2 (2 Unseen) (2 words))",
+  };
+
+  private static List<Tree> trees(String[] treeStrings) {
+    List<Tree> trees = new ArrayList<>();
+    for (String treeText : treeStrings) {
+      Tree tree = Tree.valueOf(treeText);
+      Trees.convertToCoreLabels(tree);
+      trees.add(tree);
+    }
+    return trees;
+  }
+
+  private void checkModel(boolean useTensors, boolean combineClassification) {
+    RNNOptions op = new RNNOptions();
+    op.randomSeed = 1234;
+    op.numHid = 6;
+    op.useTensors = useTensors;
+    op.combineClassification = combineClassification;
+    // leave the last tree's words out of the model, so they are unknown
+    SentimentModel model = new SentimentModel(op, trees(treeStrings).subList(0, 2));
+    DenseSentimentModel denseModel = new DenseSentimentModel(model);
+    SentimentCostAndGradient scorer = new SentimentCostAndGradient(model, null);
+
+    List<Tree> expected = trees(treeStrings);
+    List<Tree> dense = trees(treeStrings);
+    for (int i = 0; i < expected.size(); ++i) {
+      scorer.forwardPropagateTree(expected.get(i));
+      denseModel.forwardPropagateTree(dense.get(i));
+      List<Tree> expectedNodes = expected.get(i).preOrderNodeList();
+      List<Tree> denseNodes = dense.get(i).preOrderNodeList();
+      for (int j = 0; j < expectedNodes.size(); ++j) {
+        Tree expectedNode = expectedNodes.get(j);
+        Tree denseNode = denseNodes.get(j);
+        if (expectedNode.isLeaf()) {
+          continue;
+        }
+        assertEquals(RNNCoreAnnotations.getPredictedClass(expectedNode), RNNCoreAnnotations.getPredictedClass(denseNode));
+        assertMatrixEquals(RNNCoreAnnotations.getPredictions(expectedNode), RNNCoreAnnotations.getPredictions(denseNode));
+        assertMatrixEquals(RNNCoreAnnotations.getNodeVector(expectedNode), RNNCoreAnnotations.getNodeVector(denseNode));
+      }
+    }
+  }
+
+  private static void assertMatrixEquals(SimpleMatrix expected, SimpleMatrix actual) {
+    assertEquals(expected.numRows(), actual.numRows());
+    assertEquals(expected.numCols(), actual.numCols());
+    for (int i = 0; i < expected.getNumElements(); ++i) {
+      assertEquals(expected.get(i), actual.get(i), 1e-12);
+    }
+  }
+
+  @Test
+  public void testTensors() {
+    checkModel(true, true);
+  }
+
+  @Test
+  public void testNoTensors() {
+    checkModel(false, true);
+  }
+
+  @Test
+  public void testSeparateClassification() {
+    checkModel(true, false);
+  }
+
+}
@@ -448,6 +448,24 @@ public class BestSequenceFinderTest extends TestCase {
     runPossibleValuesChecker(tsm3, bsf);
   }
 
+  /** A finder which keeps its arrays must give the same answers whatever it tagged before. */
+  public void testExactBestSequenceFinderReusingArrays() {
+    BestSequenceFinder reusing = new ExactBestSequenceFinder(true);
+    TestSequenceModel[] models = { new TestSequenceModel1(), new TestSequenceModel3(), new TestSequenceModel2(),
+                                   new TestSequenceModel2nr(), new TestSequenceModel1(), new TestSequenceModel2() };
+    for (int round = 0; round < 2; round++) {
+      for (TestSequenceModel tsm : models) {
+        int[] expected = new ExactBestSequenceFinder().bestSequence(tsm);
+        int[] found = reusing.bestSequence(tsm);
+        int padLength = tsm.length() + tsm.leftWindow() + tsm.rightWindow();
+        assertTrue(found.length >= padLength);
+        assertTrue("Best sequence is wrong. Correct: " + Arrays.toString(expected) +
+                ", found: " + Arrays.toString(found),
+                Arrays.equals(expected, Arrays.copyOf(found, padLength)));
+      }
+    }
+  }
+
   // This doesn't seem to work either.  Dodgy stuff in our BestSequenceFinder's
   /*
   public void testKBestSequenceFinder() {
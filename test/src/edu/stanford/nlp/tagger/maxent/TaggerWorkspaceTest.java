@@ -0,0 +1,102 @@
+package edu.stanford.nlp.tagger.maxent;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.ling.TaggedWord;
+import edu.stanford.nlp.ling.Word;
+
+/**
+ * Checks that tagging with a {@link TaggerWorkspace} gives the same tags
+ * as tagging each sentence afresh, whatever was tagged with the workspace before.
+ */
+public class TaggerWorkspaceTest {
+
+  private static final String[][] WORDS = {
+      { "the", "DT" }, { "a", "DT" }, { "dog", "NN" }, { "cat", "NN" }, { "park", "NN" },
+      { "runs", "VBZ" }, { "sees", "VBZ" }, { "quickly", "RB" }, { "big", "JJ" }, { "red", "JJ" },
+      { "Paris", "NNP" }, { "John", "NNP" }, { "in", "IN" }, { ".", "." },
+  };
+
+  private static MaxentTagger tagger;
+
+  private static List<List<String[]>> makeSentences(Random random, int numSentences, int maxLength) {
+    List<List<String[]>> sentences = new ArrayList<>();
+    for (int s = 0; s < numSentences; s++) {
+      List<String[]> sentence = new ArrayList<>();
+      int length = 1 + random.nextInt(maxLength);
+      for (int i = 0; i < length; i++) {
+        sentence.add(WORDS[random.nextInt(WORDS.length)]);
+      }
+      sentences.add(sentence);
+    }
+    return sentences;
+  }
+
+  @BeforeClass
+  public static void train() throws Exception {
+    File trainFile = File.createTempFile("TaggerWorkspaceTest", ".txt");
+    trainFile.deleteOnExit();
+    try (PrintWriter pw = new PrintWriter(trainFile, "utf-8")) {
+      for (List<String[]> sentence : makeSentences(new Random(1234), 300, 12)) {
+        StringBuilder sb = new StringBuilder();
+        for (String[] word : sentence) {
+          sb.append(word[0]).append('_').append(word[1]).append(' ');
+        }
+        pw.println(sb.toString().trim());
+      }
+    }
+    File modelFile = File.createTempFile("TaggerWorkspaceTest", ".tagger");
+    modelFile.deleteOnExit();
+    new File(modelFile.getPath() + ".props").deleteOnExit();
+    MaxentTagger.main(new String[] { "-model", modelFile.getPath(),
+                                     "-trainFile", "format=TEXT," + trainFile.getPath(),
+                                     "-arch", "words(-1,1),order(2),suffix(3)",
+                                     "-tagSeparator", "_", "-iterations", "20" });
+    tagger = new MaxentTagger(modelFile.getPath());
+  }
+
+  @Test
+  public void testSameTags() {
+    TaggerWorkspace workspace = tagger.newWorkspace();
+    // include unknown words and sentences much longer than the ones before them
+    Random random = new Random(5678);
+    List<List<String[]>> sentences = makeSentences(random, 100, 30);
+    for (List<String[]> sentence : sentences) {
+      List<Word> words = new ArrayList<>();
+      List<CoreLabel> labels = new ArrayList<>();
+      for (String[] word : sentence) {
+        String w = random.nextInt(10) == 0 ? word[0] + "ish" : word[0];
+        words.add(new Word(w));
+        CoreLabel label = new CoreLabel();
+        label.setWord(w);
+        label.setValue(w);
+        labels.add(label);
+      }
+      List<TaggedWord> expected = tagger.tagSentence(words);
+      Assert.assertEquals(expected, tagger.tagSentence(words, false, workspace));
+
+      tagger.tagCoreLabels(labels, false, workspace);
+      for (int i = 0; i < labels.size(); i++) {
+        Assert.assertEquals(expected.get(i).tag(), labels.get(i).tag());
+      }
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testOtherTaggersWorkspace() {
+    TaggerWorkspace workspace = new MaxentTagger().newWorkspace();
+    List<Word> words = new ArrayList<>();
+    words.add(new Word("dog"));
+    tagger.tagSentence(words, false, workspace);
+  }
+
+}
@@ -0,0 +1,89 @@
+package edu.stanford.nlp.trees.tregex;
+
+import junit.framework.TestCase;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.trees.Tree;
+
+public class TregexIndexTest extends TestCase {
+
+  private static final Tree[] TREES = TregexTest.treesFromString(
+      "(ROOT (S (NP (DT The) (NN dog)) (VP (VBZ barks)) (. .)))",
+      "(ROOT (S (NP (NNP John)) (VP (VBZ sees) (NP (NP (DT a) (NN man)) (PP (IN with) (NP (DT a) (NN telescope))))) (. .)))",
+      "(ROOT (NP (NP (JJ red) (NNS apples)) (CC and) (NP (JJ green) (NNS pears))))",
+      "(ROOT (S (NP (PRP I)) (VP (VBD ran) (PP (IN in) (NP (DT the) (NN park)))) (. .)))",
+      "(ROOT (SQ (VBZ Is) (NP (PRP it)) (ADJP (JJ red)) (. ?)))");
+
+  private static final String[] PATTERNS = {
+      "NP", "NP < PP", "PP > NP", "NP < (PP < (IN $+ NP))", "/^(?:NN|NNS)$/ > NP",
+      "S < VP", "S < (VP < PP)", "NP !< PP", "NP ?< DT=d", "NP < DT | < JJ",
+      "NP <1 DT", "NP <- NN", "NP <... { DT ; NN }", "@NP < NN", "/^N/ < JJ",
+      "__ < (__ < red)", "VP << NN", "X < Y", "NP=a < (NP=b < NN) $ ~a",
+  };
+
+  /** The (tree, node) of each match, so matches can be compared between matchers */
+  private static List<String> matches(TregexMatcher matcher, Tree tree, int treeId) {
+    List<String> matches = new ArrayList<>();
+    while (matcher.find()) {
+      matches.add(treeId + ":" + matcher.getMatch().nodeNumber(tree) + ' ' + matcher.getNodeNames());
+    }
+    return matches;
+  }
+
+  private static void assertSameMatches(TregexIndex index) {
+    for (String patternString : PATTERNS) {
+      TregexPattern pattern = TregexPattern.compile(patternString);
+      int[] candidates = index.candidateTrees(pattern);
+      for (int treeId = 0; treeId < TREES.length; treeId++) {
+        List<String> expected = matches(pattern.matcher(TREES[treeId]), TREES[treeId], treeId);
+        if ( ! TregexIndex.isCandidate(candidates, treeId)) {
+          assertEquals(patternString + " in tree " + treeId, Arrays.asList(), expected);
+          continue;
+        }
+        List<String> actual = matches(index.matcher(pattern, TREES[treeId], treeId), TREES[treeId], treeId);
+        assertEquals(patternString + " in tree " + treeId, expected, actual);
+      }
+    }
+  }
+
+  public void testSameMatches() {
+    assertSameMatches(new TregexIndex(Arrays.asList(TREES)));
+  }
+
+  public void testCandidateTrees() {
+    TregexIndex index = new TregexIndex(Arrays.asList(TREES));
+    assertEquals(5, index.size());
+    assertNull(index.candidateTrees(TregexPattern.compile("__ < __")));
+    assertNull(index.candidateTrees(TregexPattern.compile("@NP")));
+    assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3, 4 }, index.candidateTrees(TregexPattern.compile("NP"))));
+    assertTrue(Arrays.equals(new int[] { 1 }, index.candidateTrees(TregexPattern.compile("NP < PP"))));
+    assertTrue(Arrays.equals(new int[] { 1, 3 }, index.candidateTrees(TregexPattern.compile("/^(?:NP|VP)$/ < PP"))));
+    assertTrue(Arrays.equals(new int[] { 2 }, index.candidateTrees(TregexPattern.compile("NP < (NP < NNS)"))));
+    assertTrue(Arrays.equals(new int[] { 0, 1, 2, 3, 4 }, index.candidateTrees(TregexPattern.compile("NP !< PP"))));
+    assertTrue(Arrays.equals(new int[0], index.candidateTrees(TregexPattern.compile("X < Y"))));
+    assertTrue(Arrays.equals(new int[] { 3, 6 }, index.candidateNodes(TregexPattern.compile("/^(?:NNP|VBZ)$/"), 1)));
+  }
+
+  public void testSaveAndLoad() throws IOException {
+    File file = File.createTempFile("tregex", ".index");
+    file.deleteOnExit();
+    new TregexIndex(Arrays.asList(TREES)).save(file.getPath());
+    assertSameMatches(TregexIndex.load(file.getPath()));
+  }
+
+  public void testWrongTree() {
+    TregexIndex index = new TregexIndex(Arrays.asList(TREES));
+    try {
+      index.matcher(TregexPattern.compile("NP"), TREES[1], 0);
+      fail("Expected the index to notice the tree isn't the one it has");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+  }
+
+}
@@ -351,4 +351,66 @@ public class ArrayCoreMapTest extends TestCase {
     assertEquals("fozzle", boff.get(CoreAnnotations.LemmaAnnotation.class));
   }
 
+  public void testKeyIndexed() {
+    ArrayCoreMap foo = new ArrayCoreMap();
+    foo.setKeyIndexed(true);
+    assertTrue(foo.isKeyIndexed());
+    foo.set(CoreAnnotations.TextAnnotation.class, "foo");
+    foo.set(CoreAnnotations.PartOfSpeechAnnotation.class, "F");
+    foo.set(CoreAnnotations.LemmaAnnotation.class, "fozzle");
+    foo.set(CoreAnnotations.DocIDAnnotation.class, null);
+    assertEquals(4, foo.size());
+    assertEquals("F", foo.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertTrue(foo.containsKey(CoreAnnotations.DocIDAnnotation.class));
+    assertFalse(foo.containsKey(CoreAnnotations.NamedEntityTagAnnotation.class));
+    assertEquals(null, foo.get(CoreAnnotations.NamedEntityTagAnnotation.class));
+
+    assertEquals("F", foo.set(CoreAnnotations.PartOfSpeechAnnotation.class, "G"));
+    assertEquals("G", foo.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+
+    // removing from the middle moves the later keys
+    foo.remove(CoreAnnotations.PartOfSpeechAnnotation.class);
+    assertEquals(3, foo.size());
+    assertEquals(null, foo.get(CoreAnnotations.PartOfSpeechAnnotation.class));
+    assertEquals("foo", foo.get(CoreAnnotations.TextAnnotation.class));
+    assertEquals("fozzle", foo.get(CoreAnnotations.LemmaAnnotation.class));
+    assertTrue(foo.containsKey(CoreAnnotations.DocIDAnnotation.class));
+
+    // indexing doesn't change equality or iteration order
+    ArrayCoreMap bar = new ArrayCoreMap();
+    bar.set(CoreAnnotations.TextAnnotation.class, "foo");
+    bar.set(CoreAnnotations.LemmaAnnotation.class, "fozzle");
+    bar.set(CoreAnnotations.DocIDAnnotation.class, null);
+    assertEquals(bar, foo);
+    assertEquals(foo, bar);
+    assertEquals(bar.hashCode(), foo.hashCode());
+    assertEquals(bar.toString(), foo.toString());
+
+    ArrayCoreMap copy = new ArrayCoreMap(foo);
+    assertTrue(copy.isKeyIndexed());
+    copy.set(CoreAnnotations.LemmaAnnotation.class, "fizzle");
+    assertEquals("fozzle", foo.get(CoreAnnotations.LemmaAnnotation.class));
+    assertEquals("fizzle", copy.get(CoreAnnotations.LemmaAnnotation.class));
+
+    foo.setKeyIndexed(false);
+    assertFalse(foo.isKeyIndexed());
+    assertEquals("fozzle", foo.get(CoreAnnotations.LemmaAnnotation.class));
+  }
+
+  public void testKeyIndexedByDefault() {
+    ArrayCoreMap.setKeyIndexedByDefault(true);
+    try {
+      CoreLabel label = new CoreLabel();
+      assertTrue(label.isKeyIndexed());
+      label.setWord("foo");
+      label.setTag("NN");
+      assertEquals("foo", label.word());
+      assertEquals("NN", label.tag());
+      assertTrue(new CoreLabel(label).isKeyIndexed());
+    } finally {
+      ArrayCoreMap.setKeyIndexedByDefault(false);
+    }
+    assertFalse(new CoreLabel().isKeyIndexed());
+  }
+
 }